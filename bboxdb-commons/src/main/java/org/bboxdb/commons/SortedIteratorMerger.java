@@ -17,41 +17,33 @@
  *******************************************************************************/
 package org.bboxdb.commons;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.HashMap;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.PriorityQueue;
 
 /**
  * This class merges a set with sorted iterators and returns a sorted 
  * list of elements. Duplicates are eliminated according the 
  * duplicateResolver
+ * 
+ * The heads of the iterators are kept in a binary heap, so finding 
+ * the next element costs O(log k) comparisons for k iterators.
  *
  * @param <E>
  */
 public final class SortedIteratorMerger<E> implements Iterable<E> {
 
 	private final class SortedIterator implements Iterator<E> {
-		
-		/*
-		 * The list with unconsumed duplicates for the current key
-		 */
-		final List<E> unconsumedDuplicates = new ArrayList<E>();
 
 		@Override
 		public boolean hasNext() {
-			
-			if(! unconsumedDuplicates.isEmpty()) {
-				return true;
-			}
-			
-			// Any new values left?
-			return iteratorElementMap.values()
-					.stream()
-					.anyMatch(e -> Objects.nonNull(e));
+			return ! unconsumedDuplicates.isEmpty() || ! heap.isEmpty();
 		}
 
 		@Override
@@ -59,70 +51,74 @@ public final class SortedIteratorMerger<E> implements Iterable<E> {
 						
 			// Consume the duplicates first 
 			if(! unconsumedDuplicates.isEmpty()) {
-				return unconsumedDuplicates.remove(0);
+				return unconsumedDuplicates.poll();
 			}
 			
-			E lowestElement = null;
-			
-			/* Find the lowest elemnt and ignore NULLs */
-			for(E element : iteratorElementMap.values()) {
-				if(element == null) {
-					continue;
-				}
-				
-				if(lowestElement == null) {
-					lowestElement = element;
-				} else {
-					if(elementComparator.compare(lowestElement, element) > 0) {
-						lowestElement = element;
-					}
-				}
+			if(heap.isEmpty()) {
+				throw new NoSuchElementException();
 			}
-						
-			assert (lowestElement != null);
 			
-			for(final Iterator<E> iteratorToCheck : iteratorElementMap.keySet()) {
-				E element = iteratorElementMap.get(iteratorToCheck);
+			final E lowestElement = heap.peek().element;
+			
+			// Move all elements of the current key from the heap to the duplicate list
+			while(! heap.isEmpty() && elementComparator.compare(heap.peek().element, lowestElement) == 0) {
+				final IteratorHead head = heap.poll();
+				duplicateCandidates.add(head.element);
 				
-				// Move the searched element from the iterator list to the result list
-				while(belongsElementToCurrentKey(lowestElement, element)) {	
-					unconsumedDuplicates.add(element);
-					element = refreshIterator(iteratorToCheck);
+				if(refreshIterator(head)) {
+					heap.add(head);
 				}
 			}
 			
-			assert (! unconsumedDuplicates.isEmpty());
-			duplicateResolver.removeDuplicates(unconsumedDuplicates);
-			assert (! unconsumedDuplicates.isEmpty());
+			assert (! duplicateCandidates.isEmpty());
+			duplicateResolver.removeDuplicates(duplicateCandidates);
+			assert (! duplicateCandidates.isEmpty());
 			
+			unconsumedDuplicates.addAll(duplicateCandidates);
+			duplicateCandidates.clear();
 			
-			return unconsumedDuplicates.remove(0);				
+			return unconsumedDuplicates.poll();
 		}
-
+	}
+	
+	private final class IteratorHead {
+		
 		/**
-		 * Belongs the given element to the current key
-		 * @param lowestElement
-		 * @param element
-		 * @return
+		 * The iterator
 		 */
-		protected boolean belongsElementToCurrentKey(final E lowestElement, final E element) {
-			if(element == null) {
-				return false;
-			}
-					
-			if(elementComparator.compare(element, lowestElement) == 0) {
-				return true;
-			}
-			
-			return false;
+		private final Iterator<E> iterator;
+		
+		/**
+		 * The position of the iterator in the iterator list, used to 
+		 * return the elements of the same key in a stable order
+		 */
+		private final int position;
+		
+		/**
+		 * The last fetched element
+		 */
+		private E element;
+
+		public IteratorHead(final Iterator<E> iterator, final int position) {
+			this.iterator = iterator;
+			this.position = position;
 		}
 	}
 
 	/**
-	 * The iterator map, contains all iterators and the
-	 * last fetched element
+	 * The heads of the non exhausted iterators
+	 */
+	private final PriorityQueue<IteratorHead> heap;
+	
+	/**
+	 * The list with the elements of the current key, passed to the duplicate resolver
+	 */
+	protected final List<E> duplicateCandidates = new ArrayList<>();
+	
+	/**
+	 * The list with unconsumed duplicates for the current key
 	 */
-	protected final Map<Iterator<E>, E> iteratorElementMap;
+	protected final Deque<E> unconsumedDuplicates = new ArrayDeque<>();
 	
 	/**
 	 * The element comparator
@@ -147,31 +143,44 @@ public final class SortedIteratorMerger<E> implements Iterable<E> {
 		this.duplicateResolver = Objects.requireNonNull(duplicateResolver);
 		Objects.requireNonNull(iteratorList);
 
-		iteratorElementMap = new HashMap<>();
+		final Comparator<IteratorHead> headComparator = (h1, h2) -> {
+			final int result = elementComparator.compare(h1.element, h2.element);
+			
+			if(result != 0) {
+				return result;
+			}
+			
+			return Integer.compare(h1.position, h2.position);
+		};
 		
-		for(final Iterator<E> iterator : iteratorList) {
-			iteratorElementMap.put(iterator, null);
-			refreshIterator(iterator);
+		heap = new PriorityQueue<>(Math.max(1, iteratorList.size()), headComparator);
+		
+		for(int i = 0; i < iteratorList.size(); i++) {
+			final IteratorHead head = new IteratorHead(iteratorList.get(i), i);
+			
+			if(refreshIterator(head)) {
+				heap.add(head);
+			}
 		}		
 	}
 	
 	/**
-	 * Refresh the specified iterator
-	 * @param iterator
+	 * Fetch the next element of the iterator
+	 * @param head
+	 * @return false if the iterator is exhausted
 	 */
-	protected E refreshIterator(final Iterator<E> iterator) {
+	private boolean refreshIterator(final IteratorHead head) {
 		
-		if(! iterator.hasNext()) {
-			iteratorElementMap.put(iterator, null);
-			return null;
+		if(! head.iterator.hasNext()) {
+			head.element = null;
+			return false;
 		}
 		
-		final E element = iterator.next();
+		head.element = head.iterator.next();
 		readElements++;
 		
-		iteratorElementMap.put(iterator, element);
-		
-		return element;
+		// A null element marks the end of the iterator
+		return head.element != null;
 	}
 
 	@Override
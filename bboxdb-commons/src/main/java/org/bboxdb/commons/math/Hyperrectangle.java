@@ -657,11 +657,20 @@ public final class Hyperrectangle implements Comparable<Hyperrectangle> {
 			return boundingBoxes.get(0);
 		}
 
-		final int dimensions = boundingBoxes.get(0).getDimension();
+		// The full space has no coordinates, the dimension is taken from the other boxes
+		final int dimensions = boundingBoxes.stream()
+				.mapToInt(Hyperrectangle::getDimension)
+				.filter(d -> d > 0)
+				.findFirst()
+				.orElse(0);
+		
+		if(dimensions == 0) {
+			return Hyperrectangle.FULL_SPACE;
+		}
 
 		if(enableChecks) {
 			final Optional<Hyperrectangle> result = boundingBoxes.stream()
-					.filter(b -> b.getDimension() != dimensions)
+					.filter(b -> b.getDimension() != 0 && b.getDimension() != dimensions)
 					.findAny();
 
 			if(result.isPresent()) {
@@ -681,7 +690,7 @@ public final class Hyperrectangle implements Comparable<Hyperrectangle> {
 			
 			for(final Hyperrectangle currentBox : boundingBoxes) {
 
-				if(currentBox == FULL_SPACE) {
+				if(currentBox.getDimension() == 0) {
 					continue;
 				}
 
@@ -17,7 +17,12 @@
  *******************************************************************************/
 package org.bboxdb.commons.math;
 
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.IntStream;
 
 public class HyperrectangleHelper {
 	
@@ -64,4 +69,163 @@ public class HyperrectangleHelper {
 		
 		return new Hyperrectangle(fullSpaceValues);
 	}
+	
+	/**
+	 * Get the order of the boxes along a z-order curve. The centers of the boxes are 
+	 * placed on a grid over the extent of all centers. Boxes without coordinates or 
+	 * with another dimensionality than the first box are ordered first.
+	 * 
+	 * @param boxes
+	 * @return the indices of the boxes in z-order
+	 */
+	public static int[] getZOrder(final List<Hyperrectangle> boxes) {
+		
+		final int dimensions = boxes.stream()
+				.mapToInt(Hyperrectangle::getDimension)
+				.filter(d -> d > 0)
+				.findFirst()
+				.orElse(0);
+		
+		final double[] low = new double[dimensions];
+		final double[] high = new double[dimensions];
+		Arrays.fill(low, Double.POSITIVE_INFINITY);
+		Arrays.fill(high, Double.NEGATIVE_INFINITY);
+		
+		final double[][] centers = new double[boxes.size()][];
+		
+		for(int i = 0; i < centers.length; i++) {
+			final Hyperrectangle box = boxes.get(i);
+			
+			if(box.getDimension() == 0 || box.getDimension() != dimensions) {
+				continue;
+			}
+			
+			centers[i] = new double[dimensions];
+			
+			for(int d = 0; d < dimensions; d++) {
+				final double center = box.getCoordinateLow(d) / 2 + box.getCoordinateHigh(d) / 2;
+				centers[i][d] = center;
+				low[d] = Math.min(low[d], center);
+				high[d] = Math.max(high[d], center);
+			}
+		}
+		
+		final long[] keys = new long[centers.length];
+		
+		for(int i = 0; i < centers.length; i++) {
+			keys[i] = getZValue(centers[i], low, high);
+		}
+		
+		return IntStream.range(0, keys.length)
+				.boxed()
+				.sorted(Comparator.comparingLong(i -> keys[i]))
+				.mapToInt(Integer::intValue)
+				.toArray();
+	}
+
+	/**
+	 * Get the min euclidean distance between the boxes (0 if the boxes intersect). The 
+	 * full space has a distance of 0 to all boxes.
+	 * 
+	 * @param box1
+	 * @param box2
+	 * @return
+	 */
+	public static double getMinDistance(final Hyperrectangle box1, final Hyperrectangle box2) {
+		return Math.sqrt(getMinDistanceSquared(box1.toDoubleArray(), box2.toDoubleArray()));
+	}
+	
+	/**
+	 * Get a comparator that orders the elements by the distance of their box to the 
+	 * query box. Elements without a box are treated as the full space.
+	 * 
+	 * @param queryBox
+	 * @param boxFunction
+	 * @return
+	 */
+	public static <T> Comparator<T> getDistanceComparator(final Hyperrectangle queryBox, 
+			final Function<T, Hyperrectangle> boxFunction) {
+		
+		final double[] queryValues = queryBox.toDoubleArray();
+		
+		return Comparator.comparingDouble(e -> {
+			final Hyperrectangle box = boxFunction.apply(e);
+			return box == null ? 0 : getMinDistanceSquared(box.toDoubleArray(), queryValues);
+		});
+	}
+	
+	/**
+	 * Get the squared min distance between the boxes, given as low / high pairs. A box 
+	 * without coordinates is the full space.
+	 * 
+	 * @param box1
+	 * @param box2
+	 * @return
+	 */
+	public static double getMinDistanceSquared(final double[] box1, final double[] box2) {
+		
+		if(box1.length == 0 || box2.length == 0) {
+			return 0;
+		}
+		
+		if(box1.length != box2.length) {
+			throw new IllegalArgumentException("Unable to calculate the distance between a box with " 
+					+ box1.length / 2 + " and a box with " + box2.length / 2 + " dimensions");
+		}
+		
+		double distance = 0;
+		
+		for(int i = 0; i < box1.length; i += 2) {
+			double gap = 0;
+			
+			if(box1[i + 1] < box2[i]) {
+				gap = box2[i] - box1[i + 1];
+			} else if(box2[i + 1] < box1[i]) {
+				gap = box1[i] - box2[i + 1];
+			}
+			
+			distance += gap * gap;
+		}
+		
+		return distance;
+	}
+
+	/**
+	 * Interleave the grid cells of the coordinates (max 63 bits)
+	 * @param center
+	 * @param low
+	 * @param high
+	 * @return
+	 */
+	private static long getZValue(final double[] center, final double[] low, final double[] high) {
+		
+		if(center == null) {
+			return -1;
+		}
+		
+		final int dimensions = center.length;
+		final int bitsPerDimension = Math.max(1, (Long.SIZE - 1) / dimensions);
+		final long maxCell = (1L << bitsPerDimension) - 1;
+		final long[] cells = new long[dimensions];
+		
+		for(int d = 0; d < dimensions; d++) {
+			final double extent = high[d] - low[d];
+			
+			if(extent > 0 && Double.isFinite(extent) && Double.isFinite(center[d])) {
+				cells[d] = (long) ((center[d] - low[d]) / extent * maxCell);
+			}
+		}
+		
+		long zValue = 0;
+		int bit = 0;
+		
+		for(int b = bitsPerDimension - 1; b >= 0 && bit < Long.SIZE - 1; b--) {
+			for(int d = 0; d < dimensions && bit < Long.SIZE - 1; d++) {
+				zValue = (zValue << 1) | ((cells[d] >> b) & 1);
+				bit++;
+			}
+		}
+		
+		return zValue;
+	}
 }
@@ -38,6 +38,11 @@ public class AcquirableService extends ServiceState implements AcquirableResourc
 		this.usageCounter = new AtomicInteger(0);
 	}
 
+	/**
+	 * Acquire the resource. The method is lock free, so readers of the 
+	 * resource don't block each other. The state is checked after the counter 
+	 * is increased, so a shutdown can not miss a usage.
+	 */
 	@Override
 	public boolean acquire() {
 		
@@ -45,18 +50,36 @@ public class AcquirableService extends ServiceState implements AcquirableResourc
 			return false;
 		}
 		
-		synchronized (usageCounterMonitor) {
-			usageCounter.incrementAndGet();
-			usageCounterMonitor.notifyAll();
+		usageCounter.incrementAndGet();
+		
+		if(! isInRunningState()) {
+			release();
+			return false;
 		}
 		
 		return true;
 	}
 
+	/**
+	 * Release the resource. The monitor is only used for the last usage, 
+	 * because waiting threads wait until the resource is unused
+	 */
 	@Override
 	public void release() {
 		assert (usageCounter.get() > 0) : "Usage counter is 0";
 		
+		while(true) {
+			final int usage = usageCounter.get();
+			
+			if(usage <= 1) {
+				break;
+			}
+			
+			if(usageCounter.compareAndSet(usage, usage - 1)) {
+				return;
+			}
+		}
+		
 		synchronized (usageCounterMonitor) {
 			usageCounter.decrementAndGet();
 			usageCounterMonitor.notifyAll();
@@ -19,9 +19,12 @@ package org.bboxdb;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
 
 import org.bboxdb.commons.DuplicateResolver;
 import org.bboxdb.commons.SortedIteratorMerger;
@@ -267,4 +270,71 @@ public class TestSortedIteratorMerger {
 		Assert.assertTrue(resultList.contains("geh"));
 		Assert.assertEquals(7, mergeIterator.getReadElements());
 	}
+	
+	/**
+	 * Test the merge of many iterators
+	 */
+	@Test(timeout=60000)
+	public void testManyIterators() {
+		final Random random = new Random(42);
+		final List<Iterator<Integer>> iteratorList = new ArrayList<>();
+		final List<Integer> expected = new ArrayList<>();
+		
+		for(int i = 0; i < 50; i++) {
+			final List<Integer> list = new ArrayList<>();
+			
+			for(int j = 0; j < 100; j++) {
+				list.add(random.nextInt(1000));
+			}
+			
+			Collections.sort(list);
+			expected.addAll(list);
+			iteratorList.add(list.iterator());
+		}
+		
+		Collections.sort(expected);
+		
+		final SortedIteratorMerger<Integer> mergeIterator = new SortedIteratorMerger<Integer>(
+				iteratorList, Integer::compare, (e) -> {});
+		
+		final List<Integer> resultList = new ArrayList<>();
+		mergeIterator.iterator().forEachRemaining(resultList::add);
+		
+		Assert.assertEquals(expected, resultList);
+		Assert.assertEquals(5000, mergeIterator.getReadElements());
+	}
+	
+	/**
+	 * The duplicates are passed to the resolver in the order of the iterators
+	 */
+	@Test(timeout=60000)
+	public void testDuplicateOrder() {
+		final List<String> list1 = Arrays.asList("a1", "b1", "b1");
+		final List<String> list2 = Arrays.asList("b2", "c2");
+		final List<String> list3 = Arrays.asList("a3", "b3");
+		final List<List<String>> duplicates = new ArrayList<>();
+		
+		// Compare only the first char
+		final Comparator<String> comparator = (e1, e2) -> Character.compare(e1.charAt(0), e2.charAt(0));
+		
+		final SortedIteratorMerger<String> mergeIterator = new SortedIteratorMerger<String>(
+				Arrays.asList(list1.iterator(), list2.iterator(), list3.iterator()), 
+				comparator, 
+				(e) -> duplicates.add(new ArrayList<>(e)));
+		
+		final List<String> resultList = getResultList(mergeIterator);
+		Assert.assertEquals(Arrays.asList("a1", "a3", "b1", "b1", "b2", "b3", "c2"), resultList);
+		Assert.assertEquals(Arrays.asList(Arrays.asList("a1", "a3"), 
+				Arrays.asList("b1", "b1", "b2", "b3"), Arrays.asList("c2")), duplicates);
+		
+		final Iterator<String> iterator = mergeIterator.iterator();
+		Assert.assertFalse(iterator.hasNext());
+		
+		try {
+			iterator.next();
+			Assert.fail("Exception expected");
+		} catch(NoSuchElementException e) {
+			// Expected
+		}
+	}
 }
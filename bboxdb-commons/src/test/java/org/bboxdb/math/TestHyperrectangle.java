@@ -355,6 +355,22 @@ public class TestHyperrectangle {
 		Assert.assertEquals(Hyperrectangle.FULL_SPACE, resultBox2);
 	}
 
+	/**
+	 * Test merge on array, the full space is the first box
+	 */
+	@Test(timeout=60000)
+	public void testMergeBoxes5() {
+		final Hyperrectangle boundingBox1 = new Hyperrectangle(1d, 2d, 1d, 2d);
+		final Hyperrectangle boundingBox2 = new Hyperrectangle(0d, 3d, 2d, 4d);
+
+		final Hyperrectangle resultBox = Hyperrectangle.getCoveringBox(
+				new ArrayList<>(Arrays.asList(Hyperrectangle.FULL_SPACE, boundingBox1, boundingBox2)));
+		
+		Assert.assertEquals(2, resultBox.getDimension());
+		Assert.assertArrayEquals(new double[] {0d, 3d, 1d, 4d}, resultBox.toDoubleArray(), EQUALS_DELTA);
+		Assert.assertEquals(0.0, resultBox.calculateEnlargement(boundingBox1), EQUALS_DELTA);
+	}
+
 	/**
 	 * Test the comparable interface of the bounding box
 	 */
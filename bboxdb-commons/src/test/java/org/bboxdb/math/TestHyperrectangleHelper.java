@@ -17,6 +17,10 @@
  *******************************************************************************/
 package org.bboxdb.math;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import org.bboxdb.commons.math.Hyperrectangle;
 import org.bboxdb.commons.math.HyperrectangleHelper;
 import org.junit.AfterClass;
@@ -90,4 +94,60 @@ public class TestHyperrectangleHelper {
 			Assert.assertEquals(1000, hyperrectangle.getCoordinateHigh(i), EQUALS_DELTA);
 		}
 	}
+	
+	@Test(timeout=60_000)
+	public void testZOrder() {
+		final List<Hyperrectangle> boxes = Arrays.asList(
+				new Hyperrectangle(9d, 10d, 9d, 10d),
+				new Hyperrectangle(0d, 1d, 0d, 1d),
+				Hyperrectangle.FULL_SPACE,
+				new Hyperrectangle(0d, 1d, 9d, 10d),
+				new Hyperrectangle(9d, 10d, 0d, 1d));
+		
+		// Full space first, then the quadrants in z-order
+		Assert.assertArrayEquals(new int[] {2, 1, 3, 4, 0}, HyperrectangleHelper.getZOrder(boxes));
+		
+		Assert.assertArrayEquals(new int[] {}, HyperrectangleHelper.getZOrder(new ArrayList<>()));
+		Assert.assertArrayEquals(new int[] {0}, 
+				HyperrectangleHelper.getZOrder(Arrays.asList(new Hyperrectangle(1d, 2d))));
+	}
+	
+	@Test(timeout=60_000)
+	public void testMinDistance() {
+		final Hyperrectangle box = new Hyperrectangle(0d, 1d, 0d, 1d);
+		
+		Assert.assertEquals(0, HyperrectangleHelper.getMinDistance(box, 
+				new Hyperrectangle(0.5d, 0.5d, 0.5d, 0.5d)), EQUALS_DELTA);
+		Assert.assertEquals(0, HyperrectangleHelper.getMinDistance(box, 
+				new Hyperrectangle(1d, 2d, 1d, 2d)), EQUALS_DELTA);
+		Assert.assertEquals(2, HyperrectangleHelper.getMinDistance(box, 
+				new Hyperrectangle(3d, 3d, 0.5d, 0.5d)), EQUALS_DELTA);
+		Assert.assertEquals(5, HyperrectangleHelper.getMinDistance(box, 
+				new Hyperrectangle(-4d, -3d, 5d, 6d)), EQUALS_DELTA);
+		Assert.assertEquals(0, HyperrectangleHelper.getMinDistance(box, 
+				Hyperrectangle.FULL_SPACE), EQUALS_DELTA);
+	}
+	
+	@Test(timeout=60_000, expected = IllegalArgumentException.class)
+	public void testMinDistanceDifferentDimensions() {
+		HyperrectangleHelper.getMinDistance(new Hyperrectangle(0d, 1d), 
+				new Hyperrectangle(0d, 1d, 0d, 1d));
+	}
+	
+	@Test(timeout=60_000)
+	public void testDistanceComparator() {
+		final List<Hyperrectangle> boxes = new ArrayList<>(Arrays.asList(
+				new Hyperrectangle(10d, 11d, 10d, 11d),
+				new Hyperrectangle(2d, 3d, 2d, 3d),
+				Hyperrectangle.FULL_SPACE,
+				new Hyperrectangle(5d, 6d, 0d, 1d)));
+		
+		boxes.sort(HyperrectangleHelper.getDistanceComparator(
+				new Hyperrectangle(0d, 0d, 0d, 0d), b -> b));
+		
+		Assert.assertEquals(Hyperrectangle.FULL_SPACE, boxes.get(0));
+		Assert.assertEquals(new Hyperrectangle(2d, 3d, 2d, 3d), boxes.get(1));
+		Assert.assertEquals(new Hyperrectangle(5d, 6d, 0d, 1d), boxes.get(2));
+		Assert.assertEquals(new Hyperrectangle(10d, 11d, 10d, 11d), boxes.get(3));
+	}
 }
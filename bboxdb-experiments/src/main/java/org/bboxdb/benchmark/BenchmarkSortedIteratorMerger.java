@@ -0,0 +1,96 @@
+package org.bboxdb.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.bboxdb.commons.DuplicateResolver;
+import org.bboxdb.commons.SortedIteratorMerger;
+
+import com.google.common.base.Stopwatch;
+
+public class BenchmarkSortedIteratorMerger {
+
+	/**
+	 * The total amount of elements per merge
+	 */
+	private final static int ELEMENTS = 5_000_000;
+
+	/**
+	 * Keep the first element of the duplicates
+	 */
+	private final static DuplicateResolver<String> FIRST_ELEMENT_DUPLICATE_RESOLVER = (e) -> {
+		final String element = e.get(0);
+		e.clear();
+		e.add(element);
+	};
+
+	public static void main(String[] args) {
+
+		for(final int ways : Arrays.asList(2, 10, 50)) {
+			final List<String[]> inputs = createInputs(ways);
+
+			final List<Long> elapsedBenchmarks = new ArrayList<>();
+
+			for(int iter = 0; iter < 20; iter++) {
+				final List<Iterator<String>> iterators = new ArrayList<>();
+
+				for(final String[] input : inputs) {
+					iterators.add(Arrays.asList(input).iterator());
+				}
+
+				final Stopwatch watch = Stopwatch.createStarted();
+
+				final SortedIteratorMerger<String> merger = new SortedIteratorMerger<>(iterators,
+						String::compareTo, FIRST_ELEMENT_DUPLICATE_RESOLVER);
+
+				long mergedElements = 0;
+				for(@SuppressWarnings("unused") final String element : merger) {
+					mergedElements++;
+				}
+
+				final long elapsed = watch.elapsed(TimeUnit.MILLISECONDS);
+
+				// The first iterations are the warmup
+				if(iter >= 5) {
+					elapsedBenchmarks.add(elapsed);
+				}
+
+				System.out.format("Ways %d, Iteration %d, Merged %d, Elapsed: %d%n", ways, iter,
+						mergedElements, elapsed);
+			}
+
+			final long max = elapsedBenchmarks.stream().mapToLong(l -> l).max().orElse(0);
+			final long min = elapsedBenchmarks.stream().mapToLong(l -> l).min().orElse(0);
+			final double avg = elapsedBenchmarks.stream().mapToLong(l -> l).average().orElse(0);
+
+			System.out.format("Ways %d, Max %d, Min %d, Avg %f%n", ways, max, min, avg);
+		}
+	}
+
+	/**
+	 * Create sorted inputs with overlapping keys
+	 * @param ways
+	 * @return
+	 */
+	private static List<String[]> createInputs(final int ways) {
+		final List<String[]> inputs = new ArrayList<>();
+		final int elementsPerInput = ELEMENTS / ways;
+
+		for(int i = 0; i < ways; i++) {
+			final String[] input = new String[elementsPerInput];
+
+			for(int j = 0; j < elementsPerInput; j++) {
+				input[j] = String.format("%010d", ThreadLocalRandom.current().nextInt(ELEMENTS));
+			}
+
+			Arrays.sort(input);
+			inputs.add(input);
+		}
+
+		return inputs;
+	}
+}
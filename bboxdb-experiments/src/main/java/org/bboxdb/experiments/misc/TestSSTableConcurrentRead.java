@@ -0,0 +1,248 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.experiments.misc;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.bboxdb.commons.MathUtil;
+import org.bboxdb.commons.io.FileUtil;
+import org.bboxdb.commons.math.Hyperrectangle;
+import org.bboxdb.storage.StorageManagerException;
+import org.bboxdb.storage.entity.Tuple;
+import org.bboxdb.storage.entity.TupleStoreName;
+import org.bboxdb.storage.sstable.SSTableCreator;
+import org.bboxdb.storage.sstable.SSTableHelper;
+import org.bboxdb.storage.sstable.SSTableWriter;
+import org.bboxdb.storage.sstable.reader.SSTableFacade;
+import org.bboxdb.tools.generator.SyntheticDataGenerator;
+
+import com.google.common.base.Stopwatch;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Read one SSTable with a different number of threads
+ */
+@SuppressFBWarnings(value = "DM_EXIT",
+		justification = "Standalone command line tool / entry point that intentionally terminates the JVM with an explicit exit status.")
+public class TestSSTableConcurrentRead implements Runnable {
+
+	/**
+	 * Tuple length
+	 */
+	public final static int TUPLE_LENGTH = 100;
+	
+	/**
+	 * The number of operations (split across the threads)
+	 */
+	public final static int OPERATIONS = 200000;
+	
+	/**
+	 * The number of bounding box queries (split across the threads)
+	 */
+	public final static int BOUNDING_BOX_OPERATIONS = 20000;
+	
+	/**
+	 * The number of threads
+	 */
+	public final static List<Integer> THREADS = Arrays.asList(1, 2, 4, 8, 16);
+	
+	/**
+	 * The name of the table
+	 */
+	private final static TupleStoreName TABLE_NAME = new TupleStoreName("testgroup_concurrentread");
+
+	/**
+	 * The storage directory
+	 */
+	private final File dir;
+
+	/**
+	 * The amount of tuples
+	 */
+	private final int tuples;
+
+	public TestSSTableConcurrentRead(final File dir, final int tuples) {
+		this.dir = dir;
+		this.tuples = tuples;
+	}
+
+	@Override
+	public void run() {
+		SSTableFacade facade = null;
+		
+		try {
+			writeSSTable();
+
+			facade = new SSTableFacade(dir.getAbsolutePath(), TABLE_NAME, 1, 0);
+			facade.init();
+			facade.acquire();
+			
+			System.out.println("#Threads\tKey lookups/s\tBounding box queries/s");
+
+			for(final int threads : THREADS) {
+				final double keyLookups = runOperations(facade, threads, false);
+				final double bboxQueries = runOperations(facade, threads, true);
+				System.out.format("%d\t%.0f\t%.0f%n", threads, keyLookups, bboxQueries);
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+		} finally {
+			if(facade != null) {
+				facade.release();
+				
+				try {
+					facade.shutdown();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Write the SSTable
+	 * @throws StorageManagerException
+	 */
+	protected void writeSSTable() throws StorageManagerException {
+		final String storageDir = dir.getAbsolutePath();
+		final File tableDir = new File(SSTableHelper.getSSTableDir(storageDir, TABLE_NAME));
+		
+		if(! tableDir.mkdirs() && ! tableDir.isDirectory()) {
+			throw new StorageManagerException("Unable to create directory: " + tableDir);
+		}
+		
+		System.out.format("# Writing %d tuples%n", tuples);
+		
+		final byte[] data = SyntheticDataGenerator.getRandomString(TUPLE_LENGTH).getBytes(StandardCharsets.UTF_8);
+		final SSTableWriter writer = new SSTableWriter(storageDir, TABLE_NAME, 1, tuples, SSTableCreator.MEMTABLE);
+		writer.open();
+		
+		for(int i = 0; i < tuples; i++) {
+			writer.addTuple(new Tuple(getKey(i), getBoundingBox(i), data));
+		}
+		
+		writer.close();
+	}
+	
+	/**
+	 * Get the key for the tuple
+	 * @param tuple
+	 * @return
+	 */
+	protected String getKey(final int tuple) {
+		return String.format("key_%010d", tuple);
+	}
+	
+	/**
+	 * Get the bounding box for the tuple
+	 * @param tuple
+	 * @return
+	 */
+	protected Hyperrectangle getBoundingBox(final int tuple) {
+		return new Hyperrectangle((double) tuple, tuple + 0.5, (double) tuple, tuple + 0.5);
+	}
+
+	/**
+	 * Run the operations with the given number of threads
+	 * @param facade
+	 * @param threads
+	 * @param boundingBoxQueries
+	 * @return the operations per second
+	 * @throws Exception
+	 */
+	protected double runOperations(final SSTableFacade facade, final int threads, 
+			final boolean boundingBoxQueries) throws Exception {
+		
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		final int operationsPerThread = (boundingBoxQueries ? BOUNDING_BOX_OPERATIONS : OPERATIONS) / threads;
+		final List<Future<Void>> futures = new ArrayList<>();
+		final Stopwatch stopwatch = Stopwatch.createStarted();
+		
+		try {
+			for(int thread = 0; thread < threads; thread++) {
+				final Random random = new Random(thread);
+				
+				futures.add(executor.submit(() -> {
+					for(int i = 0; i < operationsPerThread; i++) {
+						final int tuple = random.nextInt(tuples);
+						
+						if(boundingBoxQueries) {
+							final Iterator<Tuple> iterator = facade.getAllTuplesInBoundingBox(getBoundingBox(tuple));
+							
+							if(! iterator.hasNext()) {
+								throw new StorageManagerException("Unable to find tuple " + tuple);
+							}
+						} else if(facade.get(getKey(tuple)).isEmpty()) {
+							throw new StorageManagerException("Unable to find tuple " + tuple);
+						}
+					}
+					
+					return null;
+				}));
+			}
+			
+			for(final Future<Void> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+		
+		final long operations = (long) threads * operationsPerThread;
+		return operations / (stopwatch.elapsed(TimeUnit.MICROSECONDS) / (double) TimeUnit.SECONDS.toMicros(1));
+	}
+	
+	/**
+	 * Main * Main * Main
+	 */
+	public static void main(final String[] args) throws Exception {
+		// Check parameter
+		if(args.length != 2) {
+			System.err.println("Usage: programm <dir> <tuples>");
+			System.exit(-1);
+		}
+		
+		final String dirName = Objects.requireNonNull(args[0]);
+		final String tuplesString = Objects.requireNonNull(args[1]);
+		
+		final File dir = new File(dirName);
+		if(dir.exists()) {
+			System.err.println("Dir already exists, please remove");
+			System.exit(-1);
+		}
+		
+		final int tuples = MathUtil.tryParseIntOrExit(tuplesString);
+		
+		// Delete database on exit
+		FileUtil.deleteDirOnExit(dir.toPath());
+
+		final TestSSTableConcurrentRead testConcurrentRead = new TestSSTableConcurrentRead(dir, tuples);
+		testConcurrentRead.run();
+	}
+}
@@ -0,0 +1,218 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.experiments.misc;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.bboxdb.commons.MathUtil;
+import org.bboxdb.commons.io.FileUtil;
+import org.bboxdb.commons.math.Hyperrectangle;
+import org.bboxdb.storage.StorageManagerException;
+import org.bboxdb.storage.entity.Tuple;
+import org.bboxdb.storage.entity.TupleStoreName;
+import org.bboxdb.storage.sstable.SSTableCreator;
+import org.bboxdb.storage.sstable.SSTableHelper;
+import org.bboxdb.storage.sstable.SSTableWriter;
+import org.bboxdb.storage.sstable.reader.SSTableKeyIndexReader;
+import org.bboxdb.storage.sstable.reader.SSTableReader;
+import org.bboxdb.tools.generator.SyntheticDataGenerator;
+
+import com.google.common.base.Stopwatch;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Compare the point lookups with the sorted key index and the 
+ * binary search on the data file
+ */
+@SuppressFBWarnings(value = "DM_EXIT",
+		justification = "Standalone command line tool / entry point that intentionally terminates the JVM with an explicit exit status.")
+public class TestSSTableKeyIndex implements Runnable {
+
+	/**
+	 * Tuple length
+	 */
+	public final static int TUPLE_LENGTH = 100;
+	
+	/**
+	 * The number of lookups
+	 */
+	public final static int LOOKUPS = 1000000;
+	
+	/** 
+	 * The retry counter
+	 */
+	public final static int RETRY = 3;
+	
+	/**
+	 * The name of the table
+	 */
+	private final static TupleStoreName TABLE_NAME = new TupleStoreName("testgroup_keyindex");
+
+	/**
+	 * The storage directory
+	 */
+	private final File dir;
+
+	/**
+	 * The amount of tuples
+	 */
+	private final int tuples;
+
+	public TestSSTableKeyIndex(final File dir, final int tuples) {
+		this.dir = dir;
+		this.tuples = tuples;
+	}
+
+	@Override
+	public void run() {
+		SSTableReader sstableReader = null;
+		SSTableKeyIndexReader keyIndexReader = null;
+		
+		try {
+			writeSSTable();
+
+			sstableReader = new SSTableReader(dir.getAbsolutePath(), TABLE_NAME, 1);
+			sstableReader.init();
+			keyIndexReader = new SSTableKeyIndexReader(sstableReader);
+			keyIndexReader.init();
+			
+			if(keyIndexReader.getSortedKeyIndexReader() == null) {
+				throw new StorageManagerException("SSTable contains no sorted key index");
+			}
+			
+			System.out.println("#Run\tSorted key index (ms)\tBinary search (ms)");
+
+			for(int i = 0; i < RETRY; i++) {
+				final long timeKeyIndex = lookupKeys(keyIndexReader, true);
+				final long timeBinarySearch = lookupKeys(keyIndexReader, false);
+				System.out.format("%d\t%d\t%d%n", i, timeKeyIndex, timeBinarySearch);
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+		} finally {
+			try {
+				if(keyIndexReader != null) {
+					keyIndexReader.shutdown();
+				}
+				
+				if(sstableReader != null) {
+					sstableReader.shutdown();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Write the SSTable
+	 * @throws StorageManagerException
+	 */
+	protected void writeSSTable() throws StorageManagerException {
+		final String storageDir = dir.getAbsolutePath();
+		final File tableDir = new File(SSTableHelper.getSSTableDir(storageDir, TABLE_NAME));
+		
+		if(! tableDir.mkdirs() && ! tableDir.isDirectory()) {
+			throw new StorageManagerException("Unable to create directory: " + tableDir);
+		}
+		
+		System.out.format("# Writing %d tuples%n", tuples);
+		final Stopwatch stopwatch = Stopwatch.createStarted();
+		
+		final byte[] data = SyntheticDataGenerator.getRandomString(TUPLE_LENGTH).getBytes(StandardCharsets.UTF_8);
+		final SSTableWriter writer = new SSTableWriter(storageDir, TABLE_NAME, 1, tuples, SSTableCreator.MEMTABLE);
+		writer.open();
+		
+		for(int i = 0; i < tuples; i++) {
+			writer.addTuple(new Tuple(getKey(i), Hyperrectangle.FULL_SPACE, data));
+		}
+		
+		writer.close();
+		System.out.format("# Writing done in %d ms%n", stopwatch.elapsed(TimeUnit.MILLISECONDS));
+	}
+	
+	/**
+	 * Get the key for the tuple
+	 * @param tuple
+	 * @return
+	 */
+	protected String getKey(final int tuple) {
+		return String.format("key_%010d", tuple);
+	}
+
+	/**
+	 * Lookup random keys
+	 * @param keyIndexReader
+	 * @param useKeyIndex
+	 * @return
+	 * @throws StorageManagerException
+	 */
+	protected long lookupKeys(final SSTableKeyIndexReader keyIndexReader, final boolean useKeyIndex) 
+			throws StorageManagerException {
+		
+		final Random random = new Random(1);
+		final Stopwatch stopwatch = Stopwatch.createStarted();
+
+		for(int i = 0; i < LOOKUPS; i++) {
+			final String key = getKey(random.nextInt(tuples));
+			
+			final List<Long> positions = useKeyIndex 
+					? keyIndexReader.getPositionsForTuple(key) 
+					: keyIndexReader.getPositionsForTupleWithBinarySearch(key);
+			
+			if(positions.size() != 1) {
+				throw new StorageManagerException("Unable to find key " + key);
+			}
+		}
+		
+		return stopwatch.elapsed(TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Main * Main * Main
+	 */
+	public static void main(final String[] args) throws Exception {
+		// Check parameter
+		if(args.length != 2) {
+			System.err.println("Usage: programm <dir> <tuples>");
+			System.exit(-1);
+		}
+		
+		final String dirName = Objects.requireNonNull(args[0]);
+		final String tuplesString = Objects.requireNonNull(args[1]);
+		
+		final File dir = new File(dirName);
+		if(dir.exists()) {
+			System.err.println("Dir already exists, please remove");
+			System.exit(-1);
+		}
+		
+		final int tuples = MathUtil.tryParseIntOrExit(tuplesString);
+		
+		// Delete database on exit
+		FileUtil.deleteDirOnExit(dir.toPath());
+
+		final TestSSTableKeyIndex testKeyIndex = new TestSSTableKeyIndex(dir, tuples);
+		testKeyIndex.run();
+	}
+}
@@ -0,0 +1,297 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.experiments.misc;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.bboxdb.commons.MathUtil;
+import org.bboxdb.commons.math.Hyperrectangle;
+import org.bboxdb.storage.StorageManagerException;
+import org.bboxdb.storage.sstable.spatialindex.SpatialIndexBuilder;
+import org.bboxdb.storage.sstable.spatialindex.SpatialIndexEntry;
+import org.bboxdb.storage.sstable.spatialindex.SpatialIndexReader;
+import org.bboxdb.storage.sstable.spatialindex.rtree.RStarTreeBuilder;
+import org.bboxdb.storage.sstable.spatialindex.rtree.RTreeBuilder;
+import org.bboxdb.storage.sstable.spatialindex.rtree.RTreeDirectoryNode;
+import org.bboxdb.storage.sstable.spatialindex.rtree.STRPackedRTreeBuilder;
+import org.bboxdb.storage.sstable.spatialindex.rtree.mmf.RTreeMMFDirectReader;
+import org.bboxdb.storage.sstable.spatialindex.rtree.mmf.RTreeMMFReader;
+
+import com.google.common.base.Stopwatch;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Compare the insert based R-tree, the R*-tree and the STR packed R-tree and the 
+ * decoding with the direct memory mapped R-tree reader
+ */
+@SuppressFBWarnings(value = "DM_EXIT",
+		justification = "Standalone command line tool / entry point that intentionally terminates the JVM with an explicit exit status.")
+public class TestSpatialIndexBuilder implements Runnable {
+
+	/**
+	 * The number of queries
+	 */
+	public final static int QUERIES = 10000;
+	
+	/**
+	 * The size of the space
+	 */
+	public final static double SPACE_SIZE = 1000;
+	
+	/**
+	 * The size of a query
+	 */
+	public final static double QUERY_SIZE = 10;
+	
+	/** 
+	 * The retry counter
+	 */
+	public final static int RETRY = 3;
+	
+	/**
+	 * The amount of entries
+	 */
+	private final int entries;
+
+	public TestSpatialIndexBuilder(final int entries) {
+		this.entries = entries;
+	}
+
+	@Override
+	public void run() {
+		try {
+			final List<SpatialIndexEntry> indexEntries = generateEntries();
+			final List<Hyperrectangle> queries = generateQueries();
+			
+			System.out.println("#Run\tBuilder\tBuild (ms)\tWrite (ms)\tSize (bytes)\tQuery (ms)"
+					+ "\tQuery direct (ms)\tVisited nodes\tResults");
+			
+			for(int i = 0; i < RETRY; i++) {
+				runBuilder(i, "RTree", RTreeBuilder::new, RTreeBuilder::getRootNode, indexEntries, queries);
+				runBuilder(i, "RStar", RStarTreeBuilder::new, RStarTreeBuilder::getRootNode, indexEntries, queries);
+				runBuilder(i, "STR", STRPackedRTreeBuilder::new, STRPackedRTreeBuilder::getRootNode, 
+						indexEntries, queries);
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+		} 
+	}
+
+	/**
+	 * Build, write and query the index
+	 * @param run
+	 * @param name
+	 * @param supplier
+	 * @param rootNode
+	 * @param indexEntries
+	 * @param queries
+	 * @throws IOException
+	 * @throws StorageManagerException
+	 * @throws InterruptedException
+	 */
+	protected <T extends SpatialIndexBuilder> void runBuilder(final int run, final String name, 
+			final Supplier<T> supplier, final Function<T, RTreeDirectoryNode> rootNode, 
+			final List<SpatialIndexEntry> indexEntries, final List<Hyperrectangle> queries) 
+					throws IOException, StorageManagerException, InterruptedException {
+		
+		final File tempFile = File.createTempFile("rtree-", "-experiment");
+		tempFile.deleteOnExit();
+		
+		final Stopwatch buildStopwatch = Stopwatch.createStarted();
+		final T builder = supplier.get();
+		builder.bulkInsert(indexEntries);
+		final long buildTime = buildStopwatch.elapsed(TimeUnit.MILLISECONDS);
+		
+		final Stopwatch writeStopwatch = Stopwatch.createStarted();
+		try (final RandomAccessFile raf = new RandomAccessFile(tempFile, "rw")) {
+			builder.writeToFile(raf);
+		}
+		final long writeTime = writeStopwatch.elapsed(TimeUnit.MILLISECONDS);
+		
+		try {
+			final long queryTime = queryIndex(new RTreeMMFReader(), tempFile, queries);
+			final long queryTimeDirect = queryIndex(new RTreeMMFDirectReader(), tempFile, queries);
+			
+			final long visitedNodes = countVisitedNodes(rootNode.apply(builder), queries);
+			
+			System.out.format("%d\t%s\t%d\t%d\t%d\t%d\t%d\t%d\t%d%n", run, name, buildTime, writeTime, 
+					tempFile.length(), queryTime, queryTimeDirect, visitedNodes, countResults(tempFile, queries));
+		} finally {
+			if(! tempFile.delete()) {
+				System.err.println("Unable to delete: " + tempFile);
+			}
+		}
+	}
+	
+	/**
+	 * Execute the queries with the given reader
+	 * @param reader
+	 * @param indexFile
+	 * @param queries
+	 * @return the query time in ms
+	 * @throws IOException
+	 * @throws StorageManagerException
+	 * @throws InterruptedException
+	 */
+	protected long queryIndex(final SpatialIndexReader reader, final File indexFile, 
+			final List<Hyperrectangle> queries) throws IOException, StorageManagerException, InterruptedException {
+		
+		try (final RandomAccessFile raf = new RandomAccessFile(indexFile, "r")) {
+			reader.readFromFile(raf);
+		}
+		
+		try {
+			final Stopwatch queryStopwatch = Stopwatch.createStarted();
+			
+			for(final Hyperrectangle query : queries) {
+				reader.getPositionsForRegion(query);
+			}
+			
+			return queryStopwatch.elapsed(TimeUnit.MILLISECONDS);
+		} finally {
+			reader.close();
+		}
+	}
+	
+	/**
+	 * Count the nodes that are read by the queries
+	 * @param rootNode
+	 * @param queries
+	 * @return
+	 */
+	protected long countVisitedNodes(final RTreeDirectoryNode rootNode, final List<Hyperrectangle> queries) {
+		long visitedNodes = 0;
+		
+		for(final Hyperrectangle query : queries) {
+			visitedNodes += countVisitedNodes(rootNode, query);
+		}
+		
+		return visitedNodes;
+	}
+	
+	/**
+	 * Count the nodes of the subtree that are read by the query
+	 * @param node
+	 * @param query
+	 * @return
+	 */
+	protected long countVisitedNodes(final RTreeDirectoryNode node, final Hyperrectangle query) {
+		long visitedNodes = 1;
+		
+		for(final RTreeDirectoryNode child : node.getDirectoryNodeChilds()) {
+			if(child.getBoundingBox().intersects(query)) {
+				visitedNodes += countVisitedNodes(child, query);
+			}
+		}
+		
+		return visitedNodes;
+	}
+	
+	/**
+	 * Count the results of the queries
+	 * @param indexFile
+	 * @param queries
+	 * @return
+	 * @throws IOException
+	 * @throws StorageManagerException
+	 * @throws InterruptedException
+	 */
+	protected long countResults(final File indexFile, final List<Hyperrectangle> queries) 
+			throws IOException, StorageManagerException, InterruptedException {
+		
+		final SpatialIndexReader reader = new RTreeMMFDirectReader();
+		
+		try (final RandomAccessFile raf = new RandomAccessFile(indexFile, "r")) {
+			reader.readFromFile(raf);
+		}
+		
+		long results = 0;
+		
+		try {
+			for(final Hyperrectangle query : queries) {
+				results += reader.getPositionsForRegion(query).length;
+			}
+		} finally {
+			reader.close();
+		}
+		
+		return results;
+	}
+	
+	/**
+	 * Generate the index entries
+	 * @return
+	 */
+	protected List<SpatialIndexEntry> generateEntries() {
+		final Random random = new Random(1);
+		final List<SpatialIndexEntry> result = new ArrayList<>(entries);
+		
+		for(int i = 0; i < entries; i++) {
+			final double x = random.nextDouble() * SPACE_SIZE;
+			final double y = random.nextDouble() * SPACE_SIZE;
+			final Hyperrectangle box = new Hyperrectangle(x, x + random.nextDouble(), 
+					y, y + random.nextDouble());
+			result.add(new SpatialIndexEntry(box, i));
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Generate the query boxes
+	 * @return
+	 */
+	protected List<Hyperrectangle> generateQueries() {
+		final Random random = new Random(2);
+		final List<Hyperrectangle> result = new ArrayList<>(QUERIES);
+		
+		for(int i = 0; i < QUERIES; i++) {
+			final double x = random.nextDouble() * (SPACE_SIZE - QUERY_SIZE);
+			final double y = random.nextDouble() * (SPACE_SIZE - QUERY_SIZE);
+			result.add(new Hyperrectangle(x, x + QUERY_SIZE, y, y + QUERY_SIZE));
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Main * Main * Main
+	 */
+	public static void main(final String[] args) throws Exception {
+		// Check parameter
+		if(args.length != 1) {
+			System.err.println("Usage: programm <entries>");
+			System.exit(-1);
+		}
+		
+		final String entriesString = Objects.requireNonNull(args[0]);
+		final int entries = MathUtil.tryParseIntOrExit(entriesString);
+
+		final TestSpatialIndexBuilder testSpatialIndexBuilder = new TestSpatialIndexBuilder(entries);
+		testSpatialIndexBuilder.run();
+	}
+}
@@ -58,6 +58,31 @@ public class TupleStoreAdapter {
 	 * The duplicate ttl
 	 */
 	public static final String ZOOKEEPER_DUPLICATES_TTL = "duplicate_ttl";
+	
+	/**
+	 * The memtable type
+	 */
+	public static final String ZOOKEEPER_MEMTABLE_TYPE = "memtable_type";
+	
+	/**
+	 * The SSTable compression
+	 */
+	public static final String ZOOKEEPER_SSTABLE_COMPRESSION = "sstable_compression";
+	
+	/**
+	 * The SSTable block size
+	 */
+	public static final String ZOOKEEPER_SSTABLE_BLOCK_SIZE = "sstable_block_size";
+	
+	/**
+	 * The merge strategy
+	 */
+	public static final String ZOOKEEPER_MERGE_STRATEGY = "merge_strategy";
+	
+	/**
+	 * The spatial partitions
+	 */
+	public static final String ZOOKEEPER_SPATIAL_PARTITIONS = "spatial_partitions";
 
 	/**
 	 * The zookeeper client
@@ -99,6 +124,26 @@ public class TupleStoreAdapter {
 		zookeeperClient.createPersistentNode(getIndexWriterPath(tupleStoreName), 
 				spatialIndexWriter.getBytes(StandardCharsets.UTF_8));
 		
+		final String memtableType = tupleStoreConfiguration.getMemtableType();
+		zookeeperClient.createPersistentNode(getMemtableTypePath(tupleStoreName), 
+				memtableType.getBytes(StandardCharsets.UTF_8));
+		
+		final String sstableCompression = tupleStoreConfiguration.getSstableCompression();
+		zookeeperClient.createPersistentNode(getSSTableCompressionPath(tupleStoreName), 
+				sstableCompression.getBytes(StandardCharsets.UTF_8));
+		
+		final String sstableBlockSize = Integer.toString(tupleStoreConfiguration.getSstableBlockSize());
+		zookeeperClient.createPersistentNode(getSSTableBlockSizePath(tupleStoreName), 
+				sstableBlockSize.getBytes(StandardCharsets.UTF_8));
+		
+		final String mergeStrategy = tupleStoreConfiguration.getMergeStrategy();
+		zookeeperClient.createPersistentNode(getMergeStrategyPath(tupleStoreName), 
+				mergeStrategy.getBytes(StandardCharsets.UTF_8));
+		
+		final String spatialPartitions = Integer.toString(tupleStoreConfiguration.getSpatialPartitions());
+		zookeeperClient.createPersistentNode(getSpatialPartitionsPath(tupleStoreName), 
+				spatialPartitions.getBytes(StandardCharsets.UTF_8));
+		
 		final boolean allowDuplicates = tupleStoreConfiguration.isAllowDuplicates();
 		final String allowDuplicatesString = Boolean.toString(allowDuplicates);
 		zookeeperClient.createPersistentNode(getDuplicatesAllowedPath(tupleStoreName), 
@@ -243,6 +288,39 @@ public class TupleStoreAdapter {
 			
 			final Integer duplicateVersionsInteger = Integer.parseInt(duplicateVersions);
 			tupleStoreConfiguration.setVersions(duplicateVersionsInteger);
+			
+			// Tables created by older versions don't have a memtable type
+			final String memtableTypePath = getMemtableTypePath(tupleStoreName);
+			if(zookeeperClient.exists(memtableTypePath)) {
+				final String memtableType = zookeeperClient.readPathAndReturnString(memtableTypePath);
+				tupleStoreConfiguration.setMemtableType(memtableType);
+			}
+			
+			// Tables created by older versions don't have a SSTable compression
+			final String sstableCompressionPath = getSSTableCompressionPath(tupleStoreName);
+			if(zookeeperClient.exists(sstableCompressionPath)) {
+				final String sstableCompression = zookeeperClient.readPathAndReturnString(sstableCompressionPath);
+				tupleStoreConfiguration.setSstableCompression(sstableCompression);
+			}
+			
+			final String sstableBlockSizePath = getSSTableBlockSizePath(tupleStoreName);
+			if(zookeeperClient.exists(sstableBlockSizePath)) {
+				final String sstableBlockSize = zookeeperClient.readPathAndReturnString(sstableBlockSizePath);
+				tupleStoreConfiguration.setSstableBlockSize(Integer.parseInt(sstableBlockSize));
+			}
+			
+			// Tables created by older versions don't have a merge strategy
+			final String mergeStrategyPath = getMergeStrategyPath(tupleStoreName);
+			if(zookeeperClient.exists(mergeStrategyPath)) {
+				final String mergeStrategy = zookeeperClient.readPathAndReturnString(mergeStrategyPath);
+				tupleStoreConfiguration.setMergeStrategy(mergeStrategy);
+			}
+			
+			final String spatialPartitionsPath = getSpatialPartitionsPath(tupleStoreName);
+			if(zookeeperClient.exists(spatialPartitionsPath)) {
+				final String spatialPartitions = zookeeperClient.readPathAndReturnString(spatialPartitionsPath);
+				tupleStoreConfiguration.setSpatialPartitions(Integer.parseInt(spatialPartitions));
+			}
 		} catch (ZookeeperNotFoundException | NumberFormatException e) {
 			throw new ZookeeperException(e);
 		}
@@ -313,6 +391,56 @@ public class TupleStoreAdapter {
 		return tablePath + "/" + ZOOKEEPER_BUILD_BBOX_INDEX;
 	}
 
+	/**
+	 * The memtable type path
+	 * @param tupleStoreName
+	 * @return
+	 */
+	private String getMemtableTypePath(final TupleStoreName tupleStoreName) {
+		final String tablePath = getTablePath(tupleStoreName);
+		return tablePath + "/" + ZOOKEEPER_MEMTABLE_TYPE;
+	}
+	
+	/**
+	 * The SSTable compression path
+	 * @param tupleStoreName
+	 * @return
+	 */
+	private String getSSTableCompressionPath(final TupleStoreName tupleStoreName) {
+		final String tablePath = getTablePath(tupleStoreName);
+		return tablePath + "/" + ZOOKEEPER_SSTABLE_COMPRESSION;
+	}
+	
+	/**
+	 * The SSTable block size path
+	 * @param tupleStoreName
+	 * @return
+	 */
+	private String getSSTableBlockSizePath(final TupleStoreName tupleStoreName) {
+		final String tablePath = getTablePath(tupleStoreName);
+		return tablePath + "/" + ZOOKEEPER_SSTABLE_BLOCK_SIZE;
+	}
+	
+	/**
+	 * The merge strategy path
+	 * @param tupleStoreName
+	 * @return
+	 */
+	private String getMergeStrategyPath(final TupleStoreName tupleStoreName) {
+		final String tablePath = getTablePath(tupleStoreName);
+		return tablePath + "/" + ZOOKEEPER_MERGE_STRATEGY;
+	}
+	
+	/**
+	 * The spatial partitions path
+	 * @param tupleStoreName
+	 * @return
+	 */
+	private String getSpatialPartitionsPath(final TupleStoreName tupleStoreName) {
+		final String tablePath = getTablePath(tupleStoreName);
+		return tablePath + "/" + ZOOKEEPER_SPATIAL_PARTITIONS;
+	}
+
 	/**
 	 * The index writer path
 	 * @param tupleStoreName
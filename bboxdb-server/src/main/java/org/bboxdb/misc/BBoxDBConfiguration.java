@@ -23,6 +23,7 @@ import java.util.Collection;
 import java.util.List;
 
 import org.bboxdb.commons.NetworkInterfaceHelper;
+import org.bboxdb.storage.wal.WriteAheadLogDurability;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -51,6 +52,11 @@ public class BBoxDBConfiguration {
 	 * Size of the memtable in bytes
 	 */
 	private long memtableSizeMax = 128 * 1024 * 1014;
+	
+	/**
+	 * Size of all memtables of the node in bytes (0 = 40% of the max heap size)
+	 */
+	private long memtableGlobalSizeMax = 0;
 
 	/**
 	 * Number of memtable flush threads per storage
@@ -58,7 +64,17 @@ public class BBoxDBConfiguration {
 	private int memtableFlushThreadsPerStorage = 2;
 	
 	/**
-	 * The classname of the spatial index builder
+	 * Number of compaction threads per storage
+	 */
+	private int compactionThreadsPerStorage = 1;
+	
+	/**
+	 * The max written bytes per second of the compactions of a storage (0 = unlimited)
+	 */
+	private long compactionBytesPerSecond = 0;
+	
+	/**
+	 * The classname of the spatial index builder of the memtables (the R*-tree is opt-in)
 	 */
 	private String storageSpatialIndexBuilder = "org.bboxdb.storage.sstable.spatialindex.rtree.RTreeBuilder";
 	
@@ -67,6 +83,11 @@ public class BBoxDBConfiguration {
 	 */
 	private String storageSpatialIndexReader = "org.bboxdb.storage.sstable.spatialindex.rtree.mmf.RTreeMMFReader";
 	
+	/**
+	 * The max number of R-tree nodes per SSTable that are decoded into memory
+	 */
+	private int storageSpatialIndexPinnedNodes = 32;
+	
 	/**
 	 * The checkpoint interval
 	 */
@@ -77,6 +98,11 @@ public class BBoxDBConfiguration {
 	 */
 	private boolean storageWriteAheadLog = false;
 	
+	/**
+	 * The durability of the write ahead log (flush, group-fsync, per-write-fsync)
+	 */
+	private String storageWriteAheadLogDurability = "flush";
+	
 	/**
 	 * The port for client requests
 	 */
@@ -161,6 +187,14 @@ public class BBoxDBConfiguration {
 		this.memtableSizeMax = memtableSizeMax;
 	}
 
+	public long getMemtableGlobalSizeMax() {
+		return memtableGlobalSizeMax;
+	}
+
+	public void setMemtableGlobalSizeMax(final long memtableGlobalSizeMax) {
+		this.memtableGlobalSizeMax = memtableGlobalSizeMax;
+	}
+
 	public int getNetworkListenPort() {
 		return networkListenPort;
 	}
@@ -225,6 +259,22 @@ public class BBoxDBConfiguration {
 		this.memtableFlushThreadsPerStorage = memtableFlushThreadsPerStorage;
 	}
 
+	public int getCompactionThreadsPerStorage() {
+		return compactionThreadsPerStorage;
+	}
+
+	public void setCompactionThreadsPerStorage(final int compactionThreadsPerStorage) {
+		this.compactionThreadsPerStorage = compactionThreadsPerStorage;
+	}
+
+	public long getCompactionBytesPerSecond() {
+		return compactionBytesPerSecond;
+	}
+
+	public void setCompactionBytesPerSecond(final long compactionBytesPerSecond) {
+		this.compactionBytesPerSecond = compactionBytesPerSecond;
+	}
+
 	public String getStorageSpatialIndexBuilder() {
 		return storageSpatialIndexBuilder;
 	}
@@ -241,6 +291,14 @@ public class BBoxDBConfiguration {
 		this.storageSpatialIndexReader = storageSpatialIndexReader;
 	}
 
+	public int getStorageSpatialIndexPinnedNodes() {
+		return storageSpatialIndexPinnedNodes;
+	}
+
+	public void setStorageSpatialIndexPinnedNodes(final int storageSpatialIndexPinnedNodes) {
+		this.storageSpatialIndexPinnedNodes = storageSpatialIndexPinnedNodes;
+	}
+
 	public int getSstableKeyCacheEntries() {
 		return sstableKeyCacheEntries;
 	}
@@ -265,6 +323,16 @@ public class BBoxDBConfiguration {
 		this.storageWriteAheadLog = storageWriteAheadLog;
 	}
 
+	public String getStorageWriteAheadLogDurability() {
+		return storageWriteAheadLogDurability;
+	}
+
+	public void setStorageWriteAheadLogDurability(final String storageWriteAheadLogDurability) {
+		// Reject unknown modes when the configuration is read
+		WriteAheadLogDurability.fromString(storageWriteAheadLogDurability);
+		this.storageWriteAheadLogDurability = storageWriteAheadLogDurability;
+	}
+
 	public String getContinuousSpatialJoinFetchMode() {
 		return continuousSpatialJoinFetchMode;
 	}
@@ -20,9 +20,10 @@ package org.bboxdb.network;
 public class NetworkConst {
 	
 	/**
-	 * The version of the network protocol
+	 * The version of the network protocol (version 2 extends the
+	 * fixed header of the create table request)
 	 */
-	public static final byte PROTOCOL_VERSION = 0x01;
+	public static final byte PROTOCOL_VERSION = 0x02;
 	
 	/**
 	 * Value of an unused byte
@@ -134,6 +135,11 @@ public class NetworkConst {
 	 */
 	public static final byte REQUEST_QUERY_JOIN = 0x07;
 	
+	/**
+	 * Query type k nearest neighbors
+	 */
+	public static final byte REQUEST_QUERY_KNN = 0x08;
+	
 	/**
 	 * Response type hello
 	 */
@@ -157,6 +157,16 @@ public interface BBoxDB extends Closeable {
 	public TupleListFuture queryRectangle(final String table, final Hyperrectangle boundingBox, 
 			final List<UserDefinedFilterDefinition> udfs) throws BBoxDBException;
 
+	/**
+	 * Execute a k nearest neighbor query on the given table
+	 * @param table - The table to query
+	 * @param queryBox - The point or box to query
+	 * @param k - The number of neighbors
+	 * @return the k nearest tuples, ordered by distance
+	 */
+	public TupleListFuture queryKNearestNeighbors(final String table, final Hyperrectangle queryBox, 
+			final int k) throws BBoxDBException;
+
 	/**
 	 * Execute a continuous query with the given query plan
 	 * @param query plan
@@ -41,6 +41,7 @@ import org.bboxdb.network.client.future.client.OperationFuture;
 import org.bboxdb.network.client.future.client.TupleListFuture;
 import org.bboxdb.network.client.future.network.NetworkOperationFuture;
 import org.bboxdb.network.client.future.network.NetworkOperationFutureImpl;
+import org.bboxdb.network.client.tools.KNearestNeighborResolver;
 import org.bboxdb.network.packets.NetworkRequestPacket;
 import org.bboxdb.network.packets.request.CancelRequest;
 import org.bboxdb.network.packets.request.ContinuousQueryStateRequest;
@@ -57,6 +58,7 @@ import org.bboxdb.network.packets.request.QueryHyperrectangleRequest;
 import org.bboxdb.network.packets.request.QueryHyperrectangleTimeRequest;
 import org.bboxdb.network.packets.request.QueryInsertTimeRequest;
 import org.bboxdb.network.packets.request.QueryJoinRequest;
+import org.bboxdb.network.packets.request.QueryKNearestNeighborRequest;
 import org.bboxdb.network.packets.request.QueryKeyRequest;
 import org.bboxdb.network.packets.request.QueryVersionTimeRequest;
 import org.bboxdb.network.routing.DistributionRegionHandlingFlag;
@@ -426,6 +428,42 @@ public final class BBoxDBClient implements BBoxDB {
 		return () -> Arrays.asList(new NetworkOperationFutureImpl(connection, packageSupplier));
 	}
 
+	/* (non-Javadoc)
+	 * @see org.bboxdb.network.client.BBoxDB#queryKNearestNeighbors
+	 */
+	@Override
+	public TupleListFuture queryKNearestNeighbors(final String table, final Hyperrectangle queryBox, 
+			final int k) {
+		
+		final RoutingHeader routingHeader = RoutingHeaderHelper.getRoutingHeaderForLocalSystemReadNE(
+				table, Hyperrectangle.FULL_SPACE, false, connection.getServerAddress());
+
+		final Supplier<List<NetworkOperationFuture>> future
+			= getQueryKNearestNeighborsFuture(table, queryBox, k, routingHeader);
+
+		return new TupleListFuture(future, new KNearestNeighborResolver(queryBox, k), table);
+	}
+	
+	/**
+	 * @param table
+	 * @param queryBox
+	 * @param k
+	 * @param routingHeader
+	 * @return
+	 */
+	public Supplier<List<NetworkOperationFuture>> getQueryKNearestNeighborsFuture(final String table,
+			final Hyperrectangle queryBox, final int k, final RoutingHeader routingHeader) {
+
+		final Supplier<NetworkRequestPacket> packageSupplier = () -> {
+			final short nextSequenceNumber = connection.getNextSequenceNumber();
+
+			return new QueryKNearestNeighborRequest(nextSequenceNumber,
+					routingHeader, table, queryBox, k);
+		};
+
+		return () -> Arrays.asList(new NetworkOperationFutureImpl(connection, packageSupplier));
+	}
+
 	/**
 	 * Execute a continuous bounding box query
 	 *
@@ -57,6 +57,7 @@ import org.bboxdb.network.client.future.network.NetworkOperationFuture;
 import org.bboxdb.network.client.tools.AbtractClusterFutureBuilder;
 import org.bboxdb.network.client.tools.ClusterOperationType;
 import org.bboxdb.network.client.tools.IndexedTupleUpdateHelper;
+import org.bboxdb.network.client.tools.KNearestNeighborResolver;
 import org.bboxdb.network.routing.DistributionRegionHandlingFlag;
 import org.bboxdb.network.routing.RoutingHeader;
 import org.bboxdb.query.ContinuousQueryPlan;
@@ -410,6 +411,35 @@ public class BBoxDBCluster implements BBoxDB {
 		return new TupleListFuture(builder.getSupplier(), new DoNothingDuplicateResolver(), table);
 	}
 
+	/**
+	 * Execute a k nearest neighbor query. The neighbors can be stored in any region, 
+	 * so all regions are queried. Each node returns its k nearest tuples, the 
+	 * lists are merged by distance on the client.
+	 */
+	@Override
+	public TupleListFuture queryKNearestNeighbors(final String table, final Hyperrectangle queryBox, 
+			final int k) throws BBoxDBException {
+
+		if(logger.isDebugEnabled()) {
+			logger.debug("Query for the {} nearest neighbors of {} in table {}", k, queryBox, table);
+		}
+
+		final AbtractClusterFutureBuilder builder = new AbtractClusterFutureBuilder(
+				ClusterOperationType.READ_FROM_NODES_HA_IF_REPLICATED, table, Hyperrectangle.FULL_SPACE, 
+				EnumSet.noneOf(DistributionRegionHandlingFlag.class)) {
+
+			@Override
+			protected Supplier<List<NetworkOperationFuture>> buildFuture(final BBoxDBConnection connection,
+					final RoutingHeader routingHeader) {
+
+				return connection.getBboxDBClient().getQueryKNearestNeighborsFuture(table, queryBox,
+						k, routingHeader);
+			}
+		};
+
+		return new TupleListFuture(builder.getSupplier(), new KNearestNeighborResolver(queryBox, k), table);
+	}
+
 	/**
 	 * Execute a continuous bounding box query
 	 * @throws BBoxDBException
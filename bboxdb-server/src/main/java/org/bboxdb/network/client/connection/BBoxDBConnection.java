@@ -362,6 +362,12 @@ public class BBoxDBConnection {
 		}
 
 		final HelloResponse helloResponse = helloFuture.get(0);
+
+		if(helloResponse.getProtocolVersion() != NetworkConst.PROTOCOL_VERSION) {
+			throw new Exception("The server uses the unsupported protocol version "
+					+ helloResponse.getProtocolVersion());
+		}
+
 		connectionCapabilities = helloResponse.getPeerCapabilities();
 
 		connectionState.dispatchToRunning();
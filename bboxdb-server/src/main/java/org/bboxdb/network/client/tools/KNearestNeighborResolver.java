@@ -0,0 +1,69 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.network.client.tools;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.bboxdb.commons.DuplicateResolver;
+import org.bboxdb.commons.math.Hyperrectangle;
+import org.bboxdb.commons.math.HyperrectangleHelper;
+import org.bboxdb.storage.entity.Tuple;
+
+/**
+ * Merge the k nearest neighbors of the queried nodes. Each node returns its k 
+ * closest tuples, the tuples that are returned by more than one node (e.g., by 
+ * replicas) are removed, the remaining tuples are ordered by distance and the 
+ * k closest tuples are kept.
+ */
+public class KNearestNeighborResolver implements DuplicateResolver<Tuple> {
+	
+	/**
+	 * The query box
+	 */
+	private final Hyperrectangle queryBox;
+	
+	/**
+	 * The number of neighbors
+	 */
+	private final int k;
+
+	public KNearestNeighborResolver(final Hyperrectangle queryBox, final int k) {
+		this.queryBox = queryBox;
+		this.k = k;
+	}
+
+	@Override
+	public void removeDuplicates(final List<Tuple> unconsumedDuplicates) {
+		final Map<String, Set<Long>> seenVersions = new HashMap<>();
+		
+		unconsumedDuplicates.removeIf(t -> ! seenVersions
+				.computeIfAbsent(t.getKey(), (e) -> new HashSet<>())
+				.add(t.getVersionTimestamp()));
+		
+		unconsumedDuplicates.sort(HyperrectangleHelper.getDistanceComparator(queryBox, Tuple::getBoundingBox));
+		
+		if(unconsumedDuplicates.size() > k) {
+			unconsumedDuplicates.subList(k, unconsumedDuplicates.size()).clear();
+		}
+	}
+
+}
@@ -28,6 +28,9 @@ import org.bboxdb.network.packets.NetworkRequestPacket;
 import org.bboxdb.network.packets.PacketEncodeException;
 import org.bboxdb.storage.entity.TupleStoreConfiguration;
 import org.bboxdb.storage.entity.TupleStoreName;
+import org.bboxdb.storage.memtable.MemtableType;
+import org.bboxdb.storage.sstable.SSTableCompression;
+import org.bboxdb.storage.sstable.compact.MergeStrategyType;
 
 public class CreateTableRequest extends NetworkRequestPacket {
 	
@@ -54,7 +57,7 @@ public class CreateTableRequest extends NetworkRequestPacket {
 
 		try {
 			final byte[] tableBytes = table.getFullnameBytes();
-			final ByteBuffer bb = ByteBuffer.allocate(20);
+			final ByteBuffer bb = ByteBuffer.allocate(28);
 			bb.putShort((short) tableBytes.length);
 			
 			if(ssTableConfiguration.isAllowDuplicates()) {
@@ -63,14 +66,29 @@ public class CreateTableRequest extends NetworkRequestPacket {
 				bb.put((byte) 0x00);
 			}
 			
-			// Unused
-			bb.put((byte) 0x00);
+			// Memtable type
+			final MemtableType memtableType = MemtableType.fromString(ssTableConfiguration.getMemtableType());
+			bb.put(memtableType.getId());
 			
 			// TTL
 			bb.putLong(ssTableConfiguration.getTTL());
 			
 			// Versions
 			bb.putInt(ssTableConfiguration.getVersions());
+			
+			// SSTable compression
+			final SSTableCompression compression = SSTableCompression.fromString(ssTableConfiguration.getSstableCompression());
+			bb.put(compression.getId());
+			
+			// SSTable block size
+			bb.putInt(ssTableConfiguration.getSstableBlockSize());
+			
+			// Merge strategy
+			final MergeStrategyType mergeStrategy = MergeStrategyType.fromString(ssTableConfiguration.getMergeStrategy());
+			bb.put(mergeStrategy.getId());
+			
+			// Spatial partitions
+			bb.putShort((short) ssTableConfiguration.getSpatialPartitions());
 
 			// Spatial index reader
 			final byte[] spatialIndexReaderBytes = ssTableConfiguration.getSpatialIndexReader().getBytes(StandardCharsets.UTF_8);
@@ -123,8 +141,8 @@ public class CreateTableRequest extends NetworkRequestPacket {
 			allowDuplicates = true;
 		}
 		
-		//Unused
-		encodedPackage.get();
+		// Memtable type
+		final MemtableType memtableType = MemtableType.fromId(encodedPackage.get());
 		
 		// TTL
 		final long ttl = encodedPackage.getLong();
@@ -132,6 +150,18 @@ public class CreateTableRequest extends NetworkRequestPacket {
 		// Versions
 		final int versions = encodedPackage.getInt();
 		
+		// SSTable compression
+		final SSTableCompression compression = SSTableCompression.fromId(encodedPackage.get());
+		
+		// SSTable block size
+		final int blockSize = encodedPackage.getInt();
+		
+		// Merge strategy
+		final MergeStrategyType mergeStrategy = MergeStrategyType.fromId(encodedPackage.get());
+		
+		// Spatial partitions
+		final short spatialPartitions = encodedPackage.getShort();
+		
 		// Spatial reader length
 		final short spatialReaderLength = encodedPackage.getShort();
 		
@@ -159,6 +189,11 @@ public class CreateTableRequest extends NetworkRequestPacket {
 		tupleStoreConfiguration.setVersions(versions);
 		tupleStoreConfiguration.setSpatialIndexReader(spatialIndexReader);
 		tupleStoreConfiguration.setSpatialIndexWriter(spatialIndexWriter);
+		tupleStoreConfiguration.setMemtableType(memtableType.getTypeString());
+		tupleStoreConfiguration.setSstableCompression(compression.getCodecString());
+		tupleStoreConfiguration.setSstableBlockSize(blockSize);
+		tupleStoreConfiguration.setMergeStrategy(mergeStrategy.getTypeString());
+		tupleStoreConfiguration.setSpatialPartitions(spatialPartitions);
 		
 		if(encodedPackage.remaining() != 0) {
 			throw new PacketEncodeException("Some bytes are left after decoding: " + encodedPackage.remaining());
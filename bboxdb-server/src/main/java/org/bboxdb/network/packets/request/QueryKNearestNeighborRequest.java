@@ -0,0 +1,171 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.network.packets.request;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.bboxdb.commons.math.Hyperrectangle;
+import org.bboxdb.misc.Const;
+import org.bboxdb.network.NetworkConst;
+import org.bboxdb.network.NetworkPackageDecoder;
+import org.bboxdb.network.packets.NetworkQueryRequestPacket;
+import org.bboxdb.network.packets.PacketEncodeException;
+import org.bboxdb.network.routing.RoutingHeader;
+import org.bboxdb.storage.entity.TupleStoreName;
+
+public class QueryKNearestNeighborRequest extends NetworkQueryRequestPacket {
+
+	/**
+	 * The name of the table
+	 */
+	private final TupleStoreName table;
+
+	/**
+	 * The query box (a point or a box)
+	 */
+	private final Hyperrectangle queryBox;
+	
+	/**
+	 * The number of neighbors
+	 */
+	private final int k;
+
+	public QueryKNearestNeighborRequest(final short sequenceNumber, final RoutingHeader routingHeader,  
+			final String table, final Hyperrectangle queryBox, final int k) {
+		
+		super(sequenceNumber, routingHeader);
+		
+		this.table = new TupleStoreName(table);
+		this.queryBox = queryBox;
+		this.k = k;
+	}
+
+	@Override
+	public long writeToOutputStream(final OutputStream outputStream) throws PacketEncodeException {
+
+		try {
+			final byte[] tableBytes = table.getFullnameBytes();
+			final byte[] bboxBytes = queryBox.toByteArray();
+			
+			final ByteBuffer bb = ByteBuffer.allocate(12);
+			bb.order(Const.APPLICATION_BYTE_ORDER);
+			
+			bb.put(getQueryType());
+			bb.put(NetworkConst.UNUSED_BYTE);
+			bb.putShort((short) tableBytes.length);
+			bb.putInt(k);
+			bb.putInt((int) bboxBytes.length);
+
+			final long bodyLength = bb.capacity() + tableBytes.length + bboxBytes.length;
+			
+			final long headerLength = appendRequestPackageHeader(bodyLength, outputStream);
+
+			// Write body
+			outputStream.write(bb.array());
+			outputStream.write(tableBytes);
+			outputStream.write(bboxBytes);
+			
+			return headerLength + bodyLength;
+		} catch (IOException e) {
+			throw new PacketEncodeException("Got exception while converting package into bytes", e);
+		}	
+	}
+	
+	/**
+	 * Decode the encoded package into a object
+	 * 
+	 * @param encodedPackage
+	 * @return
+	 * @throws PacketEncodeException 
+	 * @throws IOException 
+	 */
+	public static QueryKNearestNeighborRequest decodeTuple(final ByteBuffer encodedPackage) 
+			throws PacketEncodeException, IOException {
+		
+		final short sequenceNumber = NetworkPackageDecoder.getRequestIDFromRequestPackage(encodedPackage);
+		
+		final boolean decodeResult = NetworkPackageDecoder.validateRequestPackageHeader(
+				encodedPackage, NetworkConst.REQUEST_TYPE_QUERY);
+		
+		if(decodeResult == false) {
+			throw new PacketEncodeException("Unable to decode package");
+		}
+		
+	    final byte queryType = encodedPackage.get();
+	    
+	    if(queryType != NetworkConst.REQUEST_QUERY_KNN) {
+	    	throw new PacketEncodeException("Wrong query type: " + queryType 
+	    			+ " required type is: " + NetworkConst.REQUEST_QUERY_KNN);
+	    }
+	    
+	    // 1 unused byte
+	    encodedPackage.get();
+	    
+		final short tableLength = encodedPackage.getShort();
+		final int k = encodedPackage.getInt();
+	    final int bboxLength = encodedPackage.getInt();
+
+		final byte[] tableBytes = new byte[tableLength];
+		encodedPackage.get(tableBytes, 0, tableBytes.length);
+		final String table = new String(tableBytes, StandardCharsets.UTF_8);
+		
+		final byte[] bboxBytes = new byte[bboxLength];
+		encodedPackage.get(bboxBytes, 0, bboxBytes.length);
+		final Hyperrectangle queryBox = Hyperrectangle.fromByteArray(bboxBytes);
+		
+		if(encodedPackage.remaining() != 0) {
+			throw new PacketEncodeException("Some bytes are left after decoding: " 
+					+ encodedPackage.remaining());
+		}
+		
+		final RoutingHeader routingHeader = NetworkPackageDecoder.getRoutingHeaderFromRequestPackage(encodedPackage);
+
+		return new QueryKNearestNeighborRequest(sequenceNumber, routingHeader, table, queryBox, k);
+	}
+
+	@Override
+	public byte getPackageType() {
+		return NetworkConst.REQUEST_TYPE_QUERY;
+	}
+
+	@Override
+	public byte getQueryType() {
+		return NetworkConst.REQUEST_QUERY_KNN;
+	}
+	
+	public TupleStoreName getTable() {
+		return table;
+	}
+
+	public Hyperrectangle getQueryBox() {
+		return queryBox;
+	}
+	
+	public int getK() {
+		return k;
+	}
+
+	@Override
+	public String toString() {
+		return "QueryKNearestNeighborRequest [table=" + table + ", queryBox=" + queryBox + ", k=" + k + "]";
+	}
+
+}
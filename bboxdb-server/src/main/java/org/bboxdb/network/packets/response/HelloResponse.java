@@ -98,6 +98,14 @@ public class HelloResponse extends NetworkResponsePacket {
 		return new HelloResponse(requestId, protocolVersion, peerCapabilities);
 	}
 	
+	/**
+	 * Get the protocol version
+	 * @return
+	 */
+	public int getProtocolVersion() {
+		return protocolVersion;
+	}
+	
 	/**
 	 * Get the capabilities
 	 * @return
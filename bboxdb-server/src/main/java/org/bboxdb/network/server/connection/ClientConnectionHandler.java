@@ -53,6 +53,7 @@ import org.bboxdb.network.server.connection.handler.query.HandleBoundingBoxTimeQ
 import org.bboxdb.network.server.connection.handler.query.HandleContinuousQuery;
 import org.bboxdb.network.server.connection.handler.query.HandleInsertTimeQuery;
 import org.bboxdb.network.server.connection.handler.query.HandleJoinQuery;
+import org.bboxdb.network.server.connection.handler.query.HandleKNearestNeighborQuery;
 import org.bboxdb.network.server.connection.handler.query.HandleKeyQuery;
 import org.bboxdb.network.server.connection.handler.query.HandleVersionTimeQuery;
 import org.bboxdb.network.server.connection.handler.query.QueryHandler;
@@ -627,6 +628,7 @@ public class ClientConnectionHandler extends ExceptionSafeRunnable {
 		queryHandlerList.put(NetworkConst.REQUEST_QUERY_BBOX_AND_TIME, new HandleBoundingBoxTimeQuery());
 		queryHandlerList.put(NetworkConst.REQUEST_QUERY_CONTINUOUS_BBOX, new HandleContinuousQuery());
 		queryHandlerList.put(NetworkConst.REQUEST_QUERY_JOIN, new HandleJoinQuery());
+		queryHandlerList.put(NetworkConst.REQUEST_QUERY_KNN, new HandleKNearestNeighborQuery());
 	}
 
 	/**
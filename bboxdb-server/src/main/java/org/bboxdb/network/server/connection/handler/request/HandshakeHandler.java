@@ -48,6 +48,19 @@ public class HandshakeHandler implements RequestHandler {
 		
 		try {	
 			final HelloRequest heloRequest = HelloRequest.decodeRequest(encodedPackage);
+			
+			// The packages of other protocol versions can not be decoded
+			if(heloRequest.getProtocolVersion() != NetworkConst.PROTOCOL_VERSION) {
+				logger.warn("Client {} uses the unsupported protocol version {}", 
+						clientConnectionHandler.clientSocket.getInetAddress(), 
+						heloRequest.getProtocolVersion());
+				
+				final ErrorResponse responsePackage = new ErrorResponse(packageSequence, 
+						ErrorMessages.ERROR_UNSUPPORTED_PROTOCOL_VERSION);
+				clientConnectionHandler.writeResultPackage(responsePackage);
+				return false;
+			}
+			
 			clientConnectionHandler.setConnectionCapabilities(heloRequest.getPeerCapabilities());
 
 			final HelloResponse responsePackage = new HelloResponse(packageSequence, 
@@ -115,4 +115,9 @@ public class ErrorMessages {
 	 */
 	public final static String ERROR_TUPLE_HAS_WRONG_DIMENSION = "The tuple has the wrong dimension for the group";
 
+	/**
+	 * The protocol version of the peer is not supported
+	 */
+	public final static String ERROR_UNSUPPORTED_PROTOCOL_VERSION = "Unsupported protocol version";
+
 }
@@ -17,12 +17,14 @@
  *******************************************************************************/
 package org.bboxdb.query.queryprocessor.operator;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
 import java.util.Set;
+import java.util.function.Predicate;
 
 import org.bboxdb.storage.StorageManagerException;
 import org.bboxdb.storage.entity.MultiTuple;
@@ -57,6 +59,11 @@ public abstract class AbstractTablescanOperator implements Operator {
 			while(! unprocessedStorages.isEmpty()) {
 				
 				final ReadOnlyTupleStore nextStorage = unprocessedStorages.remove(0);
+				
+				if(! isTupleStoreRelevant(nextStorage)) {
+					continue;
+				}
+				
 				activeIterator = setupNewTuplestore(nextStorage);
 				
 				if(activeIterator == null) {
@@ -174,6 +181,11 @@ public abstract class AbstractTablescanOperator implements Operator {
 	 */
 	protected final Set<String> seenTuples;
 
+	/**
+	 * The filter for the tuple stores
+	 */
+	protected final List<Predicate<ReadOnlyTupleStore>> tupleStoreFilters;
+
 	/**
 	 * Is the iterator ready?
 	 */
@@ -189,6 +201,23 @@ public abstract class AbstractTablescanOperator implements Operator {
 		this.ready = false;
 		this.unprocessedStorages = new LinkedList<ReadOnlyTupleStore>();
 		this.seenTuples = new HashSet<>();
+		this.tupleStoreFilters = new ArrayList<>();
+	}
+	
+	@Override
+	public void addTupleStoreFilter(final Predicate<ReadOnlyTupleStore> filter) {
+		tupleStoreFilters.add(filter);
+	}
+	
+	/**
+	 * Can the tuple store contain a result of the operator. The tuple stores 
+	 * are checked before the first tuple is read.
+	 * 
+	 * @param tupleStore
+	 * @return
+	 */
+	protected boolean isTupleStoreRelevant(final ReadOnlyTupleStore tupleStore) {
+		return tupleStoreFilters.stream().allMatch(f -> f.test(tupleStore));
 	}
 	
 	/**
@@ -0,0 +1,217 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.query.queryprocessor.operator;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.bboxdb.commons.math.Hyperrectangle;
+import org.bboxdb.commons.math.HyperrectangleHelper;
+import org.bboxdb.storage.StorageManagerException;
+import org.bboxdb.storage.entity.MultiTuple;
+import org.bboxdb.storage.entity.Tuple;
+import org.bboxdb.storage.tuplestore.ReadOnlyTupleStore;
+import org.bboxdb.storage.tuplestore.manager.TupleStoreAquirer;
+import org.bboxdb.storage.tuplestore.manager.TupleStoreManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Find the k tuples that are closest to the query box. Each tuple store is searched 
+ * best-first and the searches are merged by distance. A tuple is only returned if it 
+ * is a valid version of the key; outdated versions are skipped, because the valid 
+ * version is found by the search of the store that contains it. So, the tuple stores 
+ * are only read until k tuples are found.
+ */
+@SuppressFBWarnings(value = "CT_CONSTRUCTOR_THROW",
+		justification = "Constructor validates its arguments and may throw; the class defines no finalizer and therefore is not susceptible to a finalizer attack.")
+public class KNearestNeighborOperator implements Operator {
+	
+	/**
+	 * The next tuple of the search of a tuple store
+	 */
+	private static final class SearchHead {
+		
+		/**
+		 * The squared distance of the tuple
+		 */
+		private final double distance;
+		
+		/**
+		 * The tuple
+		 */
+		private final Tuple tuple;
+		
+		/**
+		 * The search of the tuple store
+		 */
+		private final Iterator<Tuple> search;
+
+		SearchHead(final double distance, final Tuple tuple, final Iterator<Tuple> search) {
+			this.distance = distance;
+			this.tuple = tuple;
+			this.search = search;
+		}
+	}
+	
+	/**
+	 * The tuple store manager
+	 */
+	private final TupleStoreManager tupleStoreManager;
+	
+	/**
+	 * The query box
+	 */
+	private final Hyperrectangle queryBox;
+	
+	/**
+	 * The number of tuples to find
+	 */
+	private final int k;
+	
+	/**
+	 * The Logger
+	 */
+	private static final Logger logger = LoggerFactory.getLogger(KNearestNeighborOperator.class);
+
+	public KNearestNeighborOperator(final TupleStoreManager tupleStoreManager, 
+			final Hyperrectangle queryBox, final int k) {
+		
+		if(k <= 0) {
+			throw new IllegalArgumentException("Unable to search for " + k + " neighbors");
+		}
+		
+		this.tupleStoreManager = tupleStoreManager;
+		this.queryBox = queryBox;
+		this.k = k;
+	}
+
+	@Override
+	public Iterator<MultiTuple> iterator() {
+		final String tupleStoreName = tupleStoreManager.getTupleStoreName().getFullnameWithoutPrefix();
+		final List<MultiTuple> result = new ArrayList<>();
+		
+		try {
+			getNearestTuples().forEach(t -> result.add(new MultiTuple(t, tupleStoreName)));
+		} catch (StorageManagerException e) {
+			logger.error("Got an exception while searching the nearest neighbors", e);
+		}
+		
+		return result.iterator();
+	}
+	
+	/**
+	 * Get the k nearest tuples, ordered by distance
+	 * @return
+	 * @throws StorageManagerException
+	 */
+	public List<Tuple> getNearestTuples() throws StorageManagerException {
+		
+		final double[] queryValues = queryBox.toDoubleArray();
+		final PriorityQueue<SearchHead> searchHeads = new PriorityQueue<>(
+				Comparator.comparingDouble((SearchHead h) -> h.distance));
+		
+		final List<Tuple> result = new ArrayList<>();
+		final Map<String, List<Tuple>> validVersions = new HashMap<>();
+		final Map<String, Set<Long>> returnedVersions = new HashMap<>();
+		
+		try (final TupleStoreAquirer tupleStoreAquirer = new TupleStoreAquirer(tupleStoreManager)) {
+			
+			for(final ReadOnlyTupleStore tupleStore : tupleStoreAquirer.getTupleStores()) {
+				advanceSearch(tupleStore.getAllTuplesByDistance(queryBox), queryValues, searchHeads);
+			}
+			
+			while(result.size() < k && ! searchHeads.isEmpty()) {
+				final SearchHead head = searchHeads.poll();
+				advanceSearch(head.search, queryValues, searchHeads);
+				
+				final Tuple tuple = head.tuple;
+				List<Tuple> versions = validVersions.get(tuple.getKey());
+				
+				if(versions == null) {
+					versions = tupleStoreManager.getVersionsForTuple(tuple.getKey());
+					validVersions.put(tuple.getKey(), versions);
+				}
+				
+				final boolean validVersion = versions.stream()
+						.anyMatch(t -> t.getVersionTimestamp() == tuple.getVersionTimestamp());
+				
+				// The same version can be stored in more than one tuple store
+				if(validVersion && returnedVersions.computeIfAbsent(tuple.getKey(), (e) -> new HashSet<>())
+						.add(tuple.getVersionTimestamp())) {
+					
+					result.add(tuple);
+				}
+			}
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Add the next tuple of the search to the search heads
+	 * @param search
+	 * @param queryValues
+	 * @param searchHeads
+	 */
+	private static void advanceSearch(final Iterator<Tuple> search, final double[] queryValues, 
+			final PriorityQueue<SearchHead> searchHeads) {
+		
+		if(! search.hasNext()) {
+			return;
+		}
+		
+		final Tuple tuple = search.next();
+		final Hyperrectangle boundingBox = tuple.getBoundingBox();
+		
+		final double distance = boundingBox == null ? 0 
+				: HyperrectangleHelper.getMinDistanceSquared(boundingBox.toDoubleArray(), queryValues);
+		
+		searchHeads.add(new SearchHead(distance, tuple, search));
+	}
+
+	@Override
+	public void close() {
+		// The tuple stores are only acquired while the tuples are searched
+	}
+	
+	/**
+	 * Get the query box
+	 * @return
+	 */
+	public Hyperrectangle getQueryBox() {
+		return queryBox;
+	}
+	
+	/**
+	 * Get the number of tuples to find
+	 * @return
+	 */
+	public int getK() {
+		return k;
+	}
+}
@@ -40,6 +40,9 @@ public class NewerAsInsertTimeSeclectionOperator implements Operator {
 	public NewerAsInsertTimeSeclectionOperator(final long timestamp, final Operator parentOperator) {
 		this.timestamp = timestamp;
 		this.parentOperator = parentOperator;
+		
+		// Skip the tuple stores that contain only older tuples
+		parentOperator.addTupleStoreFilter(s -> s.getNewestTupleInsertedTimestamp() > timestamp);
 	}
 
 	@Override
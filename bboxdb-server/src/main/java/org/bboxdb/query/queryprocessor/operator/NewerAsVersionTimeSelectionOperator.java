@@ -40,6 +40,9 @@ public class NewerAsVersionTimeSelectionOperator implements Operator {
 	public NewerAsVersionTimeSelectionOperator(final long timestamp, final Operator parentOperator) {
 		this.timestamp = timestamp;
 		this.parentOperator = parentOperator;
+		
+		// Skip the tuple stores that contain only older tuples
+		parentOperator.addTupleStoreFilter(s -> s.getNewestTupleVersionTimestamp() > timestamp);
 	}
 
 	@Override
@@ -19,8 +19,10 @@ package org.bboxdb.query.queryprocessor.operator;
 
 import java.io.Closeable;
 import java.util.Iterator;
+import java.util.function.Predicate;
 
 import org.bboxdb.storage.entity.MultiTuple;
+import org.bboxdb.storage.tuplestore.ReadOnlyTupleStore;
 
 public interface Operator extends Closeable {
 
@@ -30,4 +32,15 @@ public interface Operator extends Closeable {
 	 */
 	public Iterator<MultiTuple> iterator();
 	
+	/**
+	 * Add a filter for the tuple stores. The tuple stores that don't match 
+	 * the filter can't contain a result and are not read. Operators that 
+	 * don't read tuple stores ignore the filter.
+	 * 
+	 * @param filter
+	 */
+	public default void addTupleStoreFilter(final Predicate<ReadOnlyTupleStore> filter) {
+		// Default: ignore the filter
+	}
+	
 }
@@ -17,12 +17,23 @@
  *******************************************************************************/
 package org.bboxdb.query.queryprocessor.operator;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.bboxdb.commons.math.Hyperrectangle;
+import org.bboxdb.commons.math.HyperrectangleHelper;
+import org.bboxdb.storage.StorageManagerException;
 import org.bboxdb.storage.entity.Tuple;
 import org.bboxdb.storage.tuplestore.ReadOnlyTupleStore;
+import org.bboxdb.storage.tuplestore.manager.TupleStoreAquirer;
 import org.bboxdb.storage.tuplestore.manager.TupleStoreManager;
 
 public class SpatialIndexReadOperator extends AbstractTablescanOperator {
@@ -47,6 +58,12 @@ public class SpatialIndexReadOperator extends AbstractTablescanOperator {
 		this.boundingBox = boundingBox;
 	}
 
+	@Override
+	protected boolean isTupleStoreRelevant(final ReadOnlyTupleStore tupleStore) {
+		return tupleStore.getCoveringBox().intersects(boundingBox) 
+				&& super.isTupleStoreRelevant(tupleStore);
+	}
+
 	@Override
 	protected Iterator<Tuple> setupNewTuplestore(final ReadOnlyTupleStore nextStorage) {
 		return nextStorage.getAllTuplesInBoundingBox(boundingBox);
@@ -60,7 +77,72 @@ public class SpatialIndexReadOperator extends AbstractTablescanOperator {
 		 * the key is read from storage. This new tuple can have a bounding 
 		 * box outside of our search range. These tuples needs to be removed.
 		 */
-		tupleVersions.removeIf(t -> isNotCovered(t));
+		tupleVersions.removeIf(t -> isNotCovered(t, boundingBox));
+	}
+	
+	/**
+	 * Read the tuples for a batch of bounding boxes. The tuple stores are acquired once 
+	 * and each tuple store is queried with all boxes at once. The boxes are processed 
+	 * in z-order, so the versions of the tuples of neighboring boxes are read together.
+	 * 
+	 * @param boundingBoxes
+	 * @return the tuples for each bounding box
+	 * @throws StorageManagerException
+	 */
+	public List<List<Tuple>> getTuplesForBoundingBoxes(final List<Hyperrectangle> boundingBoxes) 
+			throws StorageManagerException {
+		
+		final int[] order = HyperrectangleHelper.getZOrder(boundingBoxes);
+		
+		final List<Hyperrectangle> orderedBoxes = Arrays.stream(order)
+				.mapToObj(i -> boundingBoxes.get(i))
+				.collect(Collectors.toList());
+		
+		final List<Set<String>> keys = new ArrayList<>();
+		orderedBoxes.forEach(b -> keys.add(new LinkedHashSet<>()));
+		
+		final List<List<Tuple>> result = new ArrayList<>(Collections.nCopies(order.length, null));
+		final Map<String, List<Tuple>> tupleVersions = new HashMap<>();
+		
+		try (final TupleStoreAquirer aquirer = new TupleStoreAquirer(tupleStoreManager)) {
+			for(final ReadOnlyTupleStore tupleStore : aquirer.getTupleStores()) {
+				
+				final Hyperrectangle coveringBox = tupleStore.getCoveringBox();
+				
+				if(orderedBoxes.stream().noneMatch(b -> coveringBox.intersects(b))) {
+					continue;
+				}
+				
+				final List<List<Tuple>> tuples = tupleStore.getAllTuplesInBoundingBoxes(orderedBoxes);
+				
+				for(int i = 0; i < order.length; i++) {
+					final Set<String> keysForBox = keys.get(i);
+					tuples.get(i).forEach(t -> keysForBox.add(t.getKey()));
+				}
+			}
+			
+			for(int i = 0; i < order.length; i++) {
+				final Hyperrectangle box = orderedBoxes.get(i);
+				final List<Tuple> tuplesForBox = new ArrayList<>();
+				
+				for(final String key : keys.get(i)) {
+					List<Tuple> versions = tupleVersions.get(key);
+					
+					if(versions == null) {
+						versions = tupleStoreManager.getVersionsForTuple(key);
+						tupleVersions.put(key, versions);
+					}
+					
+					versions.stream()
+						.filter(t -> ! isNotCovered(t, box))
+						.forEach(t -> tuplesForBox.add(t));
+				}
+				
+				result.set(order[i], tuplesForBox);
+			}
+		}
+		
+		return result;
 	}
 
 	/**
@@ -68,7 +150,7 @@ public class SpatialIndexReadOperator extends AbstractTablescanOperator {
 	 *
 	 * @return
 	 */
-	private boolean isNotCovered(final Tuple tuple) {
+	private static boolean isNotCovered(final Tuple tuple, final Hyperrectangle boundingBox) {
 		
 		if(tuple.getBoundingBox() == null) {
 			return false;
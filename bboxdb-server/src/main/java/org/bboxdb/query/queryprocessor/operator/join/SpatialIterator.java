@@ -18,17 +18,25 @@
 package org.bboxdb.query.queryprocessor.operator.join;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
-import org.bboxdb.commons.CloseableHelper;
 import org.bboxdb.commons.math.Hyperrectangle;
 import org.bboxdb.query.queryprocessor.operator.SpatialIndexReadOperator;
+import org.bboxdb.storage.StorageManagerException;
 import org.bboxdb.storage.entity.DeletedTuple;
 import org.bboxdb.storage.entity.MultiTuple;
 import org.bboxdb.storage.entity.Tuple;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class SpatialIterator implements Iterator<MultiTuple> {
+	
+	/**
+	 * The number of stream source tuples that are joined with one index probe
+	 */
+	private final static int BATCH_SIZE = 128;
 
 	/**
 	 * The stream source
@@ -48,7 +56,7 @@ public class SpatialIterator implements Iterator<MultiTuple> {
 	/**
 	 * The candidates
 	 */
-	private Iterator<MultiTuple> candidatesForCurrentTuple = null;
+	private Iterator<Tuple> candidatesForCurrentTuple = null;
 
 	/**
 	 * The next tuple 
@@ -64,6 +72,31 @@ public class SpatialIterator implements Iterator<MultiTuple> {
 	 * The query box
 	 */
 	private final Hyperrectangle queryBox;
+	
+	/**
+	 * The stream source tuples of the current batch
+	 */
+	private final List<MultiTuple> batchTuples = new ArrayList<>();
+	
+	/**
+	 * The operation ranges of the current batch
+	 */
+	private final List<Hyperrectangle> batchOperationRanges = new ArrayList<>();
+	
+	/**
+	 * The candidates of the current batch
+	 */
+	private List<List<Tuple>> batchCandidates = new ArrayList<>();
+	
+	/**
+	 * The position in the current batch
+	 */
+	private int batchPosition = 0;
+	
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(SpatialIterator.class);
 
 	public SpatialIterator(final Iterator<MultiTuple> tupleStreamSource, 
 			final SpatialIndexReadOperator indexReader) {
@@ -79,34 +112,19 @@ public class SpatialIterator implements Iterator<MultiTuple> {
 
 		while(nextTuple == null) {					
 			// Join partner exhausted, try next tuple
-			while(candidatesForCurrentTuple == null || ! candidatesForCurrentTuple.hasNext()) {						
-				// Fetch next tuple from stream source
-				if(! tupleStreamSource.hasNext()) { 
+			while(candidatesForCurrentTuple == null || ! candidatesForCurrentTuple.hasNext()) {
+				
+				if(batchPosition == batchTuples.size() && ! readNextBatch()) {
 					return false;
-				} else {
-					// Start a new index scan for the next steam source tuple bounding box
-					tupleFromStreamSource = tupleStreamSource.next();
-					CloseableHelper.closeWithoutException(indexReader);
-					final Hyperrectangle bbox = tupleFromStreamSource.getBoundingBox();
-
-					// Limit the scan operation to the intersection of the query range and the tuple from 
-					// stream. Otherwise intersections in other areas are detected.
-					if(queryBox != Hyperrectangle.FULL_SPACE) {
-						currentOperationRange = bbox.getIntersection(queryBox);
-					} else {
-						currentOperationRange = bbox;
-					}
-					
-					//logger.info("----> Operation box: " + currentOperationRange.toCompactString() 
-					//	+ "(bbox: " + bbox.toCompactString() + " / " + queryBox.toCompactString() + ")");
-					
-					indexReader.setBoundingBox(currentOperationRange);
-					candidatesForCurrentTuple = indexReader.iterator();							
-				} 
+				}
+				
+				tupleFromStreamSource = batchTuples.get(batchPosition);
+				currentOperationRange = batchOperationRanges.get(batchPosition);
+				candidatesForCurrentTuple = batchCandidates.get(batchPosition).iterator();
+				batchPosition++;
 			}
 
-			final MultiTuple nextJoinedTuple = candidatesForCurrentTuple.next();
-			final Tuple nextCandidateTuple = nextJoinedTuple.convertToSingleTupleIfPossible();
+			final Tuple nextCandidateTuple = candidatesForCurrentTuple.next();
 			
 			assert (nextCandidateTuple.getBoundingBox().intersects(currentOperationRange)) : "Wrong join, no overlap";
 			nextTuple = buildNextJoinedTuple(nextCandidateTuple);
@@ -115,6 +133,47 @@ public class SpatialIterator implements Iterator<MultiTuple> {
 		// nextTuple is known to be non-null here (loop terminated)
 		return true;
 	}
+	
+	/**
+	 * Read the next batch of tuples from the stream source and probe the 
+	 * index with the bounding boxes of all tuples at once
+	 * 
+	 * @return false if the stream source is exhausted
+	 */
+	private boolean readNextBatch() {
+		
+		batchTuples.clear();
+		batchOperationRanges.clear();
+		batchPosition = 0;
+		
+		while(batchTuples.size() < BATCH_SIZE && tupleStreamSource.hasNext()) {
+			final MultiTuple tuple = tupleStreamSource.next();
+			final Hyperrectangle bbox = tuple.getBoundingBox();
+			
+			batchTuples.add(tuple);
+			
+			// Limit the scan operation to the intersection of the query range and the tuple from 
+			// stream. Otherwise intersections in other areas are detected.
+			if(queryBox != Hyperrectangle.FULL_SPACE) {
+				batchOperationRanges.add(bbox.getIntersection(queryBox));
+			} else {
+				batchOperationRanges.add(bbox);
+			}
+		}
+		
+		if(batchTuples.isEmpty()) {
+			return false;
+		}
+		
+		try {
+			batchCandidates = indexReader.getTuplesForBoundingBoxes(batchOperationRanges);
+		} catch (StorageManagerException e) {
+			logger.error("Got an exception while reading the join candidates", e);
+			batchCandidates = new ArrayList<>(Collections.nCopies(batchTuples.size(), new ArrayList<>()));
+		}
+		
+		return true;
+	}
 
 	/**
 	 * Build the next joined tuple
@@ -0,0 +1,287 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.entity;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.bboxdb.commons.io.DataEncoderHelper;
+import org.bboxdb.commons.math.Hyperrectangle;
+import org.bboxdb.storage.util.TupleHelper;
+
+/**
+ * A tuple that is backed by its serialized representation. Only the header
+ * is decoded on creation, the key, the bounding box and the data are decoded 
+ * on first access. The backing buffer has to stay valid as long as the 
+ * tuple is in use.
+ */
+public final class LazyTuple extends Tuple {
+
+	/**
+	 * The buffer with the serialized tuple
+	 */
+	private final ByteBuffer buffer;
+	
+	/**
+	 * The offset of the tuple in the buffer
+	 */
+	private final int offset;
+	
+	/**
+	 * The length of the key
+	 */
+	private final int keyLength;
+	
+	/**
+	 * The length of the bounding box
+	 */
+	private final int boxLength;
+	
+	/**
+	 * The length of the data
+	 */
+	private final int dataLength;
+	
+	/**
+	 * Is the bounding box decoded or replaced
+	 */
+	private boolean boundingBoxDecoded;
+	
+	/**
+	 * Was the bounding box replaced
+	 */
+	private boolean boundingBoxChanged;
+
+	public LazyTuple(final ByteBuffer buffer, final int offset) {
+		super(null, null, null, 
+				buffer.getLong(offset + TupleHelper.VERSION_TIMESTAMP_OFFSET), 
+				buffer.getLong(offset + TupleHelper.RECEIVED_TIMESTAMP_OFFSET));
+		
+		assert (buffer.order() == DataEncoderHelper.APPLICATION_BYTE_ORDER);
+
+		this.buffer = buffer;
+		this.offset = offset;
+		this.keyLength = buffer.getShort(offset + TupleHelper.KEY_LENGTH_OFFSET);
+		this.boxLength = buffer.getInt(offset + TupleHelper.BOX_LENGTH_OFFSET);
+		this.dataLength = buffer.getInt(offset + TupleHelper.DATA_LENGTH_OFFSET);
+		this.boundingBoxDecoded = false;
+		this.boundingBoxChanged = false;
+	}
+	
+	@Override
+	public String getKey() {
+		if(key == null) {
+			key = new String(readBytes(getKeyOffset(), keyLength), StandardCharsets.UTF_8);
+		}
+		
+		return key;
+	}
+	
+	@Override
+	public Hyperrectangle getBoundingBox() {
+		if(! boundingBoxDecoded) {
+			boundingBox = Hyperrectangle.fromByteArray(readBytes(getBoxOffset(), boxLength));
+			boundingBoxDecoded = true;
+		}
+		
+		return boundingBox;
+	}
+	
+	@Override
+	public void setBoundingBox(final Hyperrectangle boundingBox) {
+		super.setBoundingBox(boundingBox);
+		boundingBoxDecoded = true;
+		boundingBoxChanged = true;
+	}
+	
+	@Override
+	public byte[] getBoundingBoxBytes() {
+		if(boundingBoxChanged) {
+			return super.getBoundingBoxBytes();
+		}
+		
+		return readBytes(getBoxOffset(), boxLength);
+	}
+	
+	@Override
+	public byte[] getDataBytes() {
+		if(dataBytes == null) {
+			dataBytes = readBytes(getDataOffset(), dataLength);
+		}
+		
+		return dataBytes;
+	}
+	
+	@Override
+	public int getSize() {
+		if(boundingBoxChanged) {
+			return dataLength + (boundingBox == null ? 0 : boundingBox.getSize());
+		}
+		
+		// The decoded bounding box stores a boolean for each double value
+		final int boxValues = boxLength / DataEncoderHelper.DOUBLE_BYTES;
+		return dataLength + boxLength + boxValues * DataEncoderHelper.BOOLEAN_BYTES;
+	}
+	
+	/**
+	 * Can the serialized form be copied instead of encoding the tuple again
+	 * @return
+	 */
+	public boolean isSerializedFormValid() {
+		return ! boundingBoxChanged;
+	}
+	
+	/**
+	 * Get the length of the serialized tuple
+	 * @return
+	 */
+	public int getSerializedLength() {
+		return TupleHelper.TUPLE_HEADER_BYTES + keyLength + boxLength + dataLength;
+	}
+	
+	/**
+	 * Copy the serialized tuple into the output stream
+	 * @param outputStream
+	 * @throws IOException
+	 */
+	public void writeSerializedTuple(final OutputStream outputStream) throws IOException {
+		assert (isSerializedFormValid()) : "Bounding box was changed";
+		
+		if(buffer.hasArray()) {
+			outputStream.write(buffer.array(), buffer.arrayOffset() + offset, getSerializedLength());
+		} else {
+			outputStream.write(readBytes(offset, getSerializedLength()));
+		}
+	}
+	
+	/**
+	 * Get a view of the serialized tuple. The position of the view is the
+	 * begin of the tuple, the limit is the end of the tuple.
+	 * @return
+	 */
+	public ByteBuffer getSerializedTuple() {
+		assert (isSerializedFormValid()) : "Bounding box was changed";
+		
+		final ByteBuffer view = buffer.duplicate();
+		view.order(buffer.order());
+		view.limit(offset + getSerializedLength());
+		view.position(offset);
+		return view;
+	}
+	
+	/**
+	 * Compare the key with the key of the other tuple without decoding the keys.
+	 * 
+	 * The bytes are compared until the first difference. UTF-8 preserves the order 
+	 * of the code points, but String.compareTo compares UTF-16 chars, which order 
+	 * supplementary characters differently. So, the bytes decide only if both 
+	 * differing bytes are ASCII characters, otherwise the decoded keys are compared.
+	 * 
+	 * @param other
+	 * @return
+	 */
+	public int compareKeyTo(final LazyTuple other) {
+		if(key != null && other.key != null) {
+			return key.compareTo(other.key);
+		}
+		
+		final int keyOffset = getKeyOffset();
+		final int otherKeyOffset = other.getKeyOffset();
+		final int length = Math.min(keyLength, other.keyLength);
+		
+		for(int i = 0; i < length; i++) {
+			final byte keyByte = buffer.get(keyOffset + i);
+			final byte otherKeyByte = other.buffer.get(otherKeyOffset + i);
+			
+			if(keyByte == otherKeyByte) {
+				continue;
+			}
+			
+			// Both bytes are ASCII characters (the highest bit is not set)
+			if(keyByte >= 0 && otherKeyByte >= 0) {
+				return keyByte - otherKeyByte;
+			}
+			
+			return getKey().compareTo(other.getKey());
+		}
+		
+		// One key is a prefix of the other key
+		return keyLength - other.keyLength;
+	}
+	
+	@Override
+	public int hashCode() {
+		// The lazy tuple is equal to the decoded tuple
+		return super.hashCode();
+	}
+	
+	@Override
+	public boolean equals(final Object obj) {
+		return super.equals(obj);
+	}
+	
+	@Override
+	protected Class<? extends Tuple> getTupleType() {
+		return Tuple.class;
+	}
+	
+	@Override
+	public String toString() {
+		return "LazyTuple [key=" + getKey() + ", boundingBox=" + getBoundingBox() + ", dataLength=" 
+				+ dataLength + ", versionTimestamp=" + versionTimestamp + ", receivedTimestamp=" 
+				+ receivedTimestamp + "]";
+	}
+	
+	/**
+	 * Read the bytes at the given position
+	 * @param position
+	 * @param length
+	 * @return
+	 */
+	private byte[] readBytes(final int position, final int length) {
+		final byte[] bytes = new byte[length];
+		buffer.get(position, bytes);
+		return bytes;
+	}
+	
+	/**
+	 * Get the offset of the key
+	 * @return
+	 */
+	private int getKeyOffset() {
+		return offset + TupleHelper.TUPLE_HEADER_BYTES;
+	}
+	
+	/**
+	 * Get the offset of the bounding box
+	 * @return
+	 */
+	private int getBoxOffset() {
+		return getKeyOffset() + keyLength;
+	}
+	
+	/**
+	 * Get the offset of the data
+	 * @return
+	 */
+	private int getDataOffset() {
+		return getBoxOffset() + boxLength;
+	}
+}
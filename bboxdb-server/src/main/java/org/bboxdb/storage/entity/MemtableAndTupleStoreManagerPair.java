@@ -19,7 +19,7 @@ package org.bboxdb.storage.entity;
 
 import java.util.Objects;
 
-import org.bboxdb.storage.memtable.Memtable;
+import org.bboxdb.storage.memtable.AbstractMemtable;
 import org.bboxdb.storage.tuplestore.manager.TupleStoreManager;
 
 public final class MemtableAndTupleStoreManagerPair {
@@ -27,14 +27,14 @@ public final class MemtableAndTupleStoreManagerPair {
 	/**
 	 * The memtale
 	 */
-	protected final Memtable memtable;
+	protected final AbstractMemtable memtable;
 	
 	/**
 	 * The sstable manager
 	 */
 	protected final TupleStoreManager tupleStoreManager;
 
-	public MemtableAndTupleStoreManagerPair(final Memtable memtable, final TupleStoreManager tupleStoreManager) {
+	public MemtableAndTupleStoreManagerPair(final AbstractMemtable memtable, final TupleStoreManager tupleStoreManager) {
 		this.memtable = Objects.requireNonNull(memtable);
 		this.tupleStoreManager = Objects.requireNonNull(tupleStoreManager);
 	}
@@ -43,7 +43,7 @@ public final class MemtableAndTupleStoreManagerPair {
 	 * Get the memtable
 	 * @return
 	 */
-	public Memtable getMemtable() {
+	public AbstractMemtable getMemtable() {
 		return memtable;
 	}
 	
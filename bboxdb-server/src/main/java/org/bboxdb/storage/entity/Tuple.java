@@ -164,10 +164,12 @@ public class Tuple implements Comparable<Tuple>, PagedTransferableEntity {
 
 	@Override
 	public int hashCode() {
+		final Hyperrectangle boundingBox = getBoundingBox();
+		final String key = getKey();
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + ((boundingBox == null) ? 0 : boundingBox.hashCode());
-		result = prime * result + Arrays.hashCode(dataBytes);
+		result = prime * result + Arrays.hashCode(getDataBytes());
 		result = prime * result + ((key == null) ? 0 : key.hashCode());
 		result = prime * result + (int) (versionTimestamp ^ (versionTimestamp >>> 32));
 		return result;
@@ -179,29 +181,42 @@ public class Tuple implements Comparable<Tuple>, PagedTransferableEntity {
 			return true;
 		if (obj == null)
 			return false;
-		if (getClass() != obj.getClass())
+		if (! (obj instanceof Tuple))
 			return false;
 		Tuple other = (Tuple) obj;
+		if (getTupleType() != other.getTupleType())
+			return false;
+		final Hyperrectangle boundingBox = getBoundingBox();
 		if (boundingBox == null) {
-			if (other.boundingBox != null)
+			if (other.getBoundingBox() != null)
 				return false;
-		} else if (!boundingBox.equals(other.boundingBox))
+		} else if (!boundingBox.equals(other.getBoundingBox()))
 			return false;
-		if (!Arrays.equals(dataBytes, other.dataBytes))
+		if (!Arrays.equals(getDataBytes(), other.getDataBytes()))
 			return false;
+		final String key = getKey();
 		if (key == null) {
-			if (other.key != null)
+			if (other.getKey() != null)
 				return false;
-		} else if (!key.equals(other.key))
+		} else if (!key.equals(other.getKey()))
 			return false;
 		if (versionTimestamp != other.versionTimestamp)
 			return false;
 		return true;
 	}
+	
+	/**
+	 * The type of the tuple that is used by equals. Tuples that are only
+	 * a different representation of a tuple return the type of the represented tuple.
+	 * @return
+	 */
+	protected Class<? extends Tuple> getTupleType() {
+		return getClass();
+	}
 
 	@Override
 	public int compareTo(final Tuple otherTuple) {
-		int res = key.compareTo(otherTuple.getKey());
+		int res = getKey().compareTo(otherTuple.getKey());
 		
 		if(res == 0) {
 			// The most recent version at top
@@ -236,7 +251,7 @@ public class Tuple implements Comparable<Tuple>, PagedTransferableEntity {
 
 	@Override
 	public EntityIdentifier getEntityIdentifier() {
-		return new TupleEntityIdentifier(key, versionTimestamp);
+		return new TupleEntityIdentifier(getKey(), versionTimestamp);
 	}
 	
 	/**
@@ -53,15 +53,41 @@ public class TupleStoreConfiguration {
 	protected int versions = 0;
 	
 	/**
-	 * The spatial index writer
+	 * The spatial index writer of the SSTables. The SSTables are written at once, 
+	 * so the R-tree is bulk loaded with STR by default.
 	 */
-	protected String spatialIndexWriter = "org.bboxdb.storage.sstable.spatialindex.rtree.RTreeBuilder";
+	protected String spatialIndexWriter = "org.bboxdb.storage.sstable.spatialindex.rtree.STRPackedRTreeBuilder";
 	
 	/**
 	 * The spatial index reader
 	 */
 	protected String spatialIndexReader = "org.bboxdb.storage.sstable.spatialindex.rtree.mmf.RTreeMMFReader";
 
+	/**
+	 * The memtable implementation
+	 */
+	protected String memtableType = "array";
+	
+	/**
+	 * The compression of the SSTables
+	 */
+	protected String sstableCompression = "none";
+	
+	/**
+	 * The uncompressed block size of compressed SSTables
+	 */
+	protected int sstableBlockSize = 65536;
+	
+	/**
+	 * The merge strategy of the SSTables
+	 */
+	protected String mergeStrategy = "basic";
+	
+	/**
+	 * The number of spatial partitions of the compacted SSTables (1 = not partitioned)
+	 */
+	protected int spatialPartitions = 1;
+
 	/**
 	 * The logger
 	 */
@@ -114,6 +140,46 @@ public class TupleStoreConfiguration {
 		this.spatialIndexReader = spatialIndexReader;
 	}
 
+	public String getMemtableType() {
+		return memtableType;
+	}
+
+	public void setMemtableType(final String memtableType) {
+		this.memtableType = memtableType;
+	}
+
+	public String getSstableCompression() {
+		return sstableCompression;
+	}
+
+	public void setSstableCompression(final String sstableCompression) {
+		this.sstableCompression = sstableCompression;
+	}
+
+	public int getSstableBlockSize() {
+		return sstableBlockSize;
+	}
+
+	public void setSstableBlockSize(final int sstableBlockSize) {
+		this.sstableBlockSize = sstableBlockSize;
+	}
+
+	public String getMergeStrategy() {
+		return mergeStrategy;
+	}
+
+	public void setMergeStrategy(final String mergeStrategy) {
+		this.mergeStrategy = mergeStrategy;
+	}
+
+	public int getSpatialPartitions() {
+		return spatialPartitions;
+	}
+
+	public void setSpatialPartitions(final int spatialPartitions) {
+		this.spatialPartitions = spatialPartitions;
+	}
+
 	public boolean isUseBBoxIndex() {
 		return useBBoxIndex;
 	}
@@ -127,7 +193,12 @@ public class TupleStoreConfiguration {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + (allowDuplicates ? 1231 : 1237);
+		result = prime * result + ((memtableType == null) ? 0 : memtableType.hashCode());
+		result = prime * result + ((mergeStrategy == null) ? 0 : mergeStrategy.hashCode());
+		result = prime * result + spatialPartitions;
 		result = prime * result + ((spatialIndexReader == null) ? 0 : spatialIndexReader.hashCode());
+		result = prime * result + sstableBlockSize;
+		result = prime * result + ((sstableCompression == null) ? 0 : sstableCompression.hashCode());
 		result = prime * result + ((spatialIndexWriter == null) ? 0 : spatialIndexWriter.hashCode());
 		result = prime * result + (int) (ttl ^ (ttl >>> 32));
 		result = prime * result + (useBBoxIndex ? 1231 : 1237);
@@ -146,6 +217,18 @@ public class TupleStoreConfiguration {
 		TupleStoreConfiguration other = (TupleStoreConfiguration) obj;
 		if (allowDuplicates != other.allowDuplicates)
 			return false;
+		if (memtableType == null) {
+			if (other.memtableType != null)
+				return false;
+		} else if (!memtableType.equals(other.memtableType))
+			return false;
+		if (mergeStrategy == null) {
+			if (other.mergeStrategy != null)
+				return false;
+		} else if (!mergeStrategy.equals(other.mergeStrategy))
+			return false;
+		if (spatialPartitions != other.spatialPartitions)
+			return false;
 		if (spatialIndexReader == null) {
 			if (other.spatialIndexReader != null)
 				return false;
@@ -156,6 +239,13 @@ public class TupleStoreConfiguration {
 				return false;
 		} else if (!spatialIndexWriter.equals(other.spatialIndexWriter))
 			return false;
+		if (sstableBlockSize != other.sstableBlockSize)
+			return false;
+		if (sstableCompression == null) {
+			if (other.sstableCompression != null)
+				return false;
+		} else if (!sstableCompression.equals(other.sstableCompression))
+			return false;
 		if (ttl != other.ttl)
 			return false;
 		if (useBBoxIndex != other.useBBoxIndex)
@@ -169,7 +259,9 @@ public class TupleStoreConfiguration {
 	public String toString() {
 		return "TupleStoreConfiguration [allowDuplicates=" + allowDuplicates + ", useBBoxIndex=" + useBBoxIndex
 				+ ", ttl=" + ttl + ", versions=" + versions + ", spatialIndexWriter=" + spatialIndexWriter
-				+ ", spatialIndexReader=" + spatialIndexReader + "]";
+				+ ", spatialIndexReader=" + spatialIndexReader + ", memtableType=" + memtableType 
+				+ ", sstableCompression=" + sstableCompression + ", sstableBlockSize=" + sstableBlockSize 
+				+ ", mergeStrategy=" + mergeStrategy + ", spatialPartitions=" + spatialPartitions + "]";
 	}
 
 	/**
@@ -208,6 +300,11 @@ public class TupleStoreConfiguration {
 		data.put("useBBoxIndex", useBBoxIndex);
 	    data.put("spatialIndexReader", spatialIndexReader);
 	    data.put("spatialIndexWriter", spatialIndexWriter);
+	    data.put("memtableType", memtableType);
+	    data.put("sstableCompression", sstableCompression);
+	    data.put("sstableBlockSize", sstableBlockSize);
+	    data.put("mergeStrategy", mergeStrategy);
+	    data.put("spatialPartitions", spatialPartitions);
 	    data.put("ttl", ttl);
 		data.put("versions", versions);
 		return data;
@@ -19,6 +19,10 @@ package org.bboxdb.storage.entity;
 
 import java.util.concurrent.TimeUnit;
 
+import org.bboxdb.storage.memtable.MemtableType;
+import org.bboxdb.storage.sstable.SSTableCompression;
+import org.bboxdb.storage.sstable.compact.MergeStrategyType;
+
 public class TupleStoreConfigurationBuilder {
 
 	protected final TupleStoreConfiguration ssTableConfiguration;
@@ -85,11 +89,69 @@ public class TupleStoreConfigurationBuilder {
 		return this;
 	}
 	
+	/**
+	 * Use the memtable implementation
+	 * @param memtableType
+	 * @return
+	 */
+	public TupleStoreConfigurationBuilder withMemtableType(final MemtableType memtableType) {
+		ssTableConfiguration.setMemtableType(memtableType.getTypeString());
+		return this;
+	}
+	
+	/**
+	 * Use the SSTable compression
+	 * @param compression
+	 * @return
+	 */
+	public TupleStoreConfigurationBuilder withSSTableCompression(final SSTableCompression compression) {
+		ssTableConfiguration.setSstableCompression(compression.getCodecString());
+		return this;
+	}
+	
+	/**
+	 * Use the block size for compressed SSTables
+	 * @param blockSize
+	 * @return
+	 */
+	public TupleStoreConfigurationBuilder withSSTableBlockSize(final int blockSize) {
+		ssTableConfiguration.setSstableBlockSize(blockSize);
+		return this;
+	}
+	
+	/**
+	 * Use the merge strategy for the SSTables
+	 * @param mergeStrategy
+	 * @return
+	 */
+	public TupleStoreConfigurationBuilder withMergeStrategy(final MergeStrategyType mergeStrategy) {
+		ssTableConfiguration.setMergeStrategy(mergeStrategy.getTypeString());
+		return this;
+	}
+	
+	/**
+	 * Partition the compacted SSTables by space
+	 * @param spatialPartitions
+	 * @return
+	 */
+	public TupleStoreConfigurationBuilder withSpatialPartitions(final int spatialPartitions) {
+		ssTableConfiguration.setSpatialPartitions(spatialPartitions);
+		return this;
+	}
+	
 	/**
 	 * Return the resulting configuration object
 	 * @return
 	 */
 	public TupleStoreConfiguration build() {
+		
+		// The levels of the leveled strategy need disjoint key ranges
+		if(ssTableConfiguration.getSpatialPartitions() > 1 && MergeStrategyType.LEVELED 
+				== MergeStrategyType.fromString(ssTableConfiguration.getMergeStrategy())) {
+			throw new IllegalArgumentException("Spatial partitions can not be used with the " 
+				+ MergeStrategyType.LEVELED.getTypeString() + " merge strategy");
+		}
+		
 		return ssTableConfiguration;
 	}
 
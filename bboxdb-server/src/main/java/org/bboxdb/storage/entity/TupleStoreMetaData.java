@@ -63,6 +63,27 @@ public class TupleStoreMetaData {
 	 * The dimensions of the bounding box
 	 */
 	protected int dimensions;
+	
+	/**
+	 * Does the bounding box cover all tuples (false for tuples without 
+	 * a bounding box and for metadata of older versions)
+	 */
+	protected boolean boundingBoxCoversAllTuples = false;
+	
+	/**
+	 * The smallest key
+	 */
+	protected String firstKey;
+	
+	/**
+	 * The largest key
+	 */
+	protected String lastKey;
+	
+	/**
+	 * The level of the SSTable (used by the leveled merge strategy)
+	 */
+	protected int level = 0;
 
 	/**
 	 * The SSTable creator
@@ -139,6 +160,10 @@ public class TupleStoreMetaData {
 	    data.put("newestTupleInsertedTimstamp", newestTupleInsertedTimstamp);
 		data.put("dimensions", dimensions);
 	    data.put("boundingBoxData", boundingBoxData);
+	    data.put("boundingBoxCoversAllTuples", boundingBoxCoversAllTuples);
+	    data.put("firstKey", firstKey);
+	    data.put("lastKey", lastKey);
+	    data.put("level", level);
 	    data.put("sstableCreator", sstableCreator);
 		return data;
 	}
@@ -213,6 +238,38 @@ public class TupleStoreMetaData {
 		this.dimensions = dimensions;
 	}
 
+	public boolean isBoundingBoxCoversAllTuples() {
+		return boundingBoxCoversAllTuples;
+	}
+
+	public void setBoundingBoxCoversAllTuples(final boolean boundingBoxCoversAllTuples) {
+		this.boundingBoxCoversAllTuples = boundingBoxCoversAllTuples;
+	}
+
+	public String getFirstKey() {
+		return firstKey;
+	}
+
+	public void setFirstKey(final String firstKey) {
+		this.firstKey = firstKey;
+	}
+
+	public String getLastKey() {
+		return lastKey;
+	}
+
+	public void setLastKey(final String lastKey) {
+		this.lastKey = lastKey;
+	}
+
+	public int getLevel() {
+		return level;
+	}
+
+	public void setLevel(final int level) {
+		this.level = level;
+	}
+
 	public long getTuples() {
 		return tuples;
 	}
@@ -234,7 +291,11 @@ public class TupleStoreMetaData {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + Arrays.hashCode(boundingBoxData);
+		result = prime * result + (boundingBoxCoversAllTuples ? 1231 : 1237);
 		result = prime * result + dimensions;
+		result = prime * result + ((firstKey == null) ? 0 : firstKey.hashCode());
+		result = prime * result + ((lastKey == null) ? 0 : lastKey.hashCode());
+		result = prime * result + level;
 		result = prime * result + (int) (newestTupleInsertedTimstamp ^ (newestTupleInsertedTimstamp >>> 32));
 		result = prime * result + (int) (newestTupleVersionTimestamp ^ (newestTupleVersionTimestamp >>> 32));
 		result = prime * result + (int) (oldestTupleVersionTimestamp ^ (oldestTupleVersionTimestamp >>> 32));
@@ -254,8 +315,22 @@ public class TupleStoreMetaData {
 		TupleStoreMetaData other = (TupleStoreMetaData) obj;
 		if (!Arrays.equals(boundingBoxData, other.boundingBoxData))
 			return false;
+		if (boundingBoxCoversAllTuples != other.boundingBoxCoversAllTuples)
+			return false;
 		if (dimensions != other.dimensions)
 			return false;
+		if (firstKey == null) {
+			if (other.firstKey != null)
+				return false;
+		} else if (!firstKey.equals(other.firstKey))
+			return false;
+		if (lastKey == null) {
+			if (other.lastKey != null)
+				return false;
+		} else if (!lastKey.equals(other.lastKey))
+			return false;
+		if (level != other.level)
+			return false;
 		if (newestTupleInsertedTimstamp != other.newestTupleInsertedTimstamp)
 			return false;
 		if (newestTupleVersionTimestamp != other.newestTupleVersionTimestamp)
@@ -277,7 +352,9 @@ public class TupleStoreMetaData {
 		return "TupleStoreMetaData [tuples=" + tuples + ", oldestTupleVersionTimestamp=" + oldestTupleVersionTimestamp
 				+ ", newestTupleVersionTimestamp=" + newestTupleVersionTimestamp + ", newestTupleInsertedTimstamp="
 				+ newestTupleInsertedTimstamp + ", boundingBoxData=" + Arrays.toString(boundingBoxData)
-				+ ", dimensions=" + dimensions + ", sstableCreator=" + sstableCreator + "]";
+				+ ", dimensions=" + dimensions + ", boundingBoxCoversAllTuples=" + boundingBoxCoversAllTuples 
+				+ ", firstKey=" + firstKey + ", lastKey=" + lastKey + ", level=" + level 
+				+ ", sstableCreator=" + sstableCreator + "]";
 	}
 	
 }
@@ -0,0 +1,456 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *******************************************************************************/
+package org.bboxdb.storage.memtable;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.bboxdb.misc.BBoxDBService;
+import org.bboxdb.storage.StorageManagerException;
+import org.bboxdb.storage.entity.DeletedTuple;
+import org.bboxdb.storage.entity.Tuple;
+import org.bboxdb.storage.entity.TupleStoreName;
+import org.bboxdb.storage.sstable.SSTableWriter;
+import org.bboxdb.storage.tuplestore.manager.WriteBufferManager;
+import org.bboxdb.storage.tuplestore.ReadWriteTupleStore;
+import org.bboxdb.storage.wal.WriteAheadLogWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public abstract class AbstractMemtable implements BBoxDBService, ReadWriteTupleStore {
+
+	/**
+	 * The name of the corresponding table
+	 */
+	protected final TupleStoreName table;
+
+	/**
+	 * Maximal number of entries keep in memory
+	 */
+	protected final int maxEntries;
+
+	/**
+	 * Maximal size of memtable in bytes
+	 */
+	protected final long maxSizeInMemory;
+
+	/**
+	 * Current memory size in bytes
+	 */
+	protected final AtomicLong sizeInMemory = new AtomicLong();
+
+	/**
+	 * The timestamp when the memtable is created
+	 */
+	protected final long createdTimestamp;
+
+	/**
+	 * The oldest tuple
+	 */
+	protected final AtomicLong oldestTupleTimestamp = new AtomicLong();
+
+	/**
+	 * The newest tuple
+	 */
+	protected final AtomicLong newestTupleTimestamp = new AtomicLong();
+
+	/**
+	 * The reference counter
+	 */
+	protected final AtomicInteger usage = new AtomicInteger();
+
+	/**
+	 * Is a deletion performed after (usage == 0)
+	 */
+	protected final AtomicBoolean pendingDelete = new AtomicBoolean();
+
+	/**
+	 * The write ahead log writer
+	 */
+	protected final WriteAheadLogWriter walWriter;
+
+	/**
+	 * The node-wide write buffer manager (null if the memory is not tracked)
+	 */
+	private final AtomicReference<WriteBufferManager> writeBufferManager = new AtomicReference<>();
+
+	/**
+	 * The bytes that are reported to the write buffer manager
+	 */
+	private final AtomicLong reportedBytes = new AtomicLong();
+
+	/**
+	 * Is the memtable scheduled for flushing
+	 */
+	private final AtomicBoolean immutable = new AtomicBoolean();
+
+	/**
+	 * The callbacks that are executed when the memtable is deleted after the flush
+	 */
+	private final List<Runnable> deleteCallbacks = new CopyOnWriteArrayList<>();
+
+	/**
+	 * The result of tryPut if all slots of the memtable are used
+	 */
+	public final static long MEMTABLE_FULL = -1;
+
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(AbstractMemtable.class);
+
+	public AbstractMemtable(final TupleStoreName table, final int entries, final long maxSizeInMemory,
+			final WriteAheadLogWriter walWriter) {
+
+		this.table = table;
+		this.maxEntries = entries;
+		this.maxSizeInMemory = maxSizeInMemory;
+		this.walWriter = walWriter;
+
+		this.sizeInMemory.set(0);
+		this.createdTimestamp = System.currentTimeMillis();
+		this.oldestTupleTimestamp.set(-1);
+		this.newestTupleTimestamp.set(-1);
+
+		this.usage.set(0);
+		this.pendingDelete.set(false);
+	}
+
+	@Override
+	public abstract void init();
+
+	@Override
+	public void shutdown() {
+
+	}
+
+	/**
+	 * Store the tuple, if a free slot is available
+	 *
+	 * @param tuple
+	 * @return the position after the tuple in the write ahead log (0 without a
+	 * 	write ahead log) or MEMTABLE_FULL if all slots of the memtable are used
+	 * @throws StorageManagerException
+	 */
+	public abstract long tryPut(final Tuple tuple) throws StorageManagerException;
+
+	/**
+	 * Get a sorted list with all recent tuples
+	 * @return
+	 */
+	public abstract List<Tuple> getSortedTupleList();
+
+	/**
+	 * Write all tuples sorted by key and version into the SSTable
+	 * @param ssTableWriter
+	 * @throws StorageManagerException
+	 */
+	public void writeToSSTable(final SSTableWriter ssTableWriter) throws StorageManagerException {
+		ssTableWriter.addTuples(getSortedTupleList());
+	}
+
+	/**
+	 * Clean the whole memtable
+	 */
+	@Override
+	public abstract void clear();
+
+	@Override
+	public void put(final Tuple tuple) throws StorageManagerException {
+		final long walPosition = tryPut(tuple);
+
+		if(walPosition == MEMTABLE_FULL) {
+			throw new StorageManagerException("Unable to store a new tuple, all memtable slots are full");
+		}
+	}
+
+	/**
+	 * Delete a tuple, this is implemented by inserting a DeletedTuple object
+	 *
+	 */
+	@Override
+	public void delete(final String key, final long timestamp) throws StorageManagerException {
+		assert (usage.get() > 0);
+
+		final Tuple deleteTuple = new DeletedTuple(key, timestamp);
+		put(deleteTuple);
+	}
+
+	/**
+	 * Wait until the write ahead log is durable up to the given position
+	 * @param position
+	 * @throws StorageManagerException
+	 */
+	public void awaitWalDurability(final long position) throws StorageManagerException {
+		if(walWriter == null) {
+			return;
+		}
+
+		walWriter.awaitDurable(position);
+	}
+
+	/**
+	 * Update the oldest and the newest version timestamp
+	 * @param tuple
+	 */
+	protected void updateVersionTimestamps(final Tuple tuple) {
+		final long versionTimestamp = tuple.getVersionTimestamp();
+
+		oldestTupleTimestamp.accumulateAndGet(versionTimestamp,
+				(current, value) -> current == -1 ? value : Math.min(current, value));
+
+		newestTupleTimestamp.accumulateAndGet(versionTimestamp,
+				(current, value) -> current == -1 ? value : Math.max(current, value));
+	}
+
+	/**
+	 * Increase the size of the memtable
+	 * @param bytes
+	 */
+	protected void increaseSize(final long bytes) {
+		sizeInMemory.addAndGet(bytes);
+
+		final WriteBufferManager manager = writeBufferManager.get();
+
+		if(manager != null) {
+			reportedBytes.addAndGet(bytes);
+			manager.reserveMemory(bytes);
+		}
+	}
+
+	/**
+	 * Reset the size of the memtable, the memory is returned to
+	 * the write buffer manager
+	 */
+	protected void resetSize() {
+		sizeInMemory.set(0);
+		releaseWriteBufferMemory();
+	}
+
+	/**
+	 * Track the memory of this memtable in the write buffer manager
+	 * @param manager
+	 */
+	public void setWriteBufferManager(final WriteBufferManager manager) {
+		writeBufferManager.set(manager);
+	}
+
+	/**
+	 * Return the memory of the memtable to the write buffer manager, the memtable
+	 * is no longer tracked afterwards
+	 */
+	public void releaseWriteBufferMemory() {
+		final WriteBufferManager manager = writeBufferManager.getAndSet(null);
+
+		if(manager != null) {
+			manager.freeMemory(reportedBytes.getAndSet(0), immutable.get());
+		}
+	}
+
+	/**
+	 * The memtable is no longer written and scheduled for flushing
+	 */
+	public void setImmutable() {
+		if(! immutable.compareAndSet(false, true)) {
+			return;
+		}
+
+		final WriteBufferManager manager = writeBufferManager.get();
+
+		if(manager != null) {
+			manager.markImmutable(reportedBytes.get());
+		}
+	}
+
+	/**
+	 * Is this memtable full and needs to be flushed to disk
+	 *
+	 * @return
+	 */
+	public boolean isFull() {
+
+		// Check size of the table
+		if(sizeInMemory.get() >= maxSizeInMemory) {
+			return true;
+		}
+
+		// Check number of entries
+		if(getNumberOfTuples() + 1 > maxEntries) {
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Is this memtable empty?
+	 */
+	public boolean isEmpty() {
+		if(getNumberOfTuples() <= 0) {
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Get the maximal number of entries in the memtable
+	 * @return
+	 */
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	/**
+	 * The size of the memtable in memory
+	 * @return
+	 */
+	@Override
+	public long getSize() {
+		return sizeInMemory.get();
+	}
+
+	/**
+	 * Get the created timestamp
+	 * @return
+	 */
+	public long getCreatedTimestamp() {
+		return createdTimestamp;
+	}
+
+	@Override
+	public String getServicename() {
+		return "Memtable";
+	}
+
+	/**
+	 * Get the oldest tuple timestamp
+	 * @return
+	 */
+	@Override
+	public long getOldestTupleVersionTimestamp() {
+		return oldestTupleTimestamp.get();
+	}
+
+	/**
+	 * Get the newest tuple timestamp
+	 * @return
+	 */
+	@Override
+	public long getNewestTupleVersionTimestamp() {
+		return newestTupleTimestamp.get();
+	}
+
+	@Override
+	public void deleteOnClose() {
+		logger.debug("deleteOnClose called and we have {} references", usage.get());
+
+		pendingDelete.set(true);
+
+		clearIfUnreferenced();
+	}
+
+	@Override
+	public boolean acquire() {
+		if(pendingDelete.get()) {
+			return false;
+		}
+
+		usage.incrementAndGet();
+		return true;
+	}
+
+	@Override
+	public void release() {
+		assert (usage.get() > 0);
+
+		usage.decrementAndGet();
+
+		if(pendingDelete.get()) {
+			clearIfUnreferenced();
+		}
+	}
+
+	/**
+	 * Clear if no other references are hold
+	 */
+	private void clearIfUnreferenced() {
+		logger.debug("Release called and we have {} references", usage.get());
+
+		if(usage.get() == 0) {
+			clear();
+		}
+
+		try {
+			if(walWriter != null) {
+				walWriter.close();
+				walWriter.deleteFile();
+			}
+		} catch (IOException e) {
+			logger.error("Got exception while closing WAL", e);
+		}
+
+		for(final Runnable callback : deleteCallbacks) {
+
+			// Execute the callback only once
+			if(! deleteCallbacks.remove(callback)) {
+				continue;
+			}
+
+			try {
+				callback.run();
+			} catch(Exception e) {
+				logger.error("Got exception while executing delete callback", e);
+			}
+		}
+	}
+
+	/**
+	 * Register a callback that is executed once, when the memtable 
+	 * is deleted after the flush
+	 * @param callback
+	 */
+	public void registerDeleteCallback(final Runnable callback) {
+		deleteCallbacks.add(callback);
+	}
+
+	@Override
+	public String getInternalName() {
+		return table.getFullname() + " / " + createdTimestamp;
+	}
+
+	@Override
+	public TupleStoreName getTupleStoreName() {
+		return table;
+	}
+
+	@Override
+	public boolean isPersistent() {
+		return false;
+	}
+
+	@Override
+	public boolean isDeletePending() {
+		return pendingDelete.get();
+	}
+}
@@ -0,0 +1,154 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *******************************************************************************/
+package org.bboxdb.storage.memtable;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import io.prometheus.client.Gauge;
+
+/**
+ * A pool of direct byte buffers (arenas) with a fixed size. Allocating
+ * direct memory is expensive, so the arenas of flushed memtables are
+ * reused by the next memtables.
+ *
+ */
+@SuppressFBWarnings(value = "SING_SINGLETON_HAS_NONPRIVATE_CONSTRUCTOR",
+		justification = "The default pool is shared by all memtables, pools with other chunk sizes are created in tests.")
+public class DirectBufferPool {
+
+	/**
+	 * The size of a chunk
+	 */
+	private final int chunkSize;
+
+	/**
+	 * The max number of idle chunks in the pool
+	 */
+	private final int maxPooledChunks;
+
+	/**
+	 * The idle chunks
+	 */
+	private final Queue<ByteBuffer> freeChunks;
+
+	/**
+	 * The number of idle chunks
+	 */
+	private final AtomicInteger pooledChunks;
+
+	/**
+	 * The default chunk size (4 MB)
+	 */
+	public final static int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+	/**
+	 * The default number of idle chunks (256 MB)
+	 */
+	public final static int DEFAULT_MAX_POOLED_CHUNKS = 64;
+
+	/**
+	 * The instance
+	 */
+	private final static DirectBufferPool instance
+		= new DirectBufferPool(DEFAULT_CHUNK_SIZE, DEFAULT_MAX_POOLED_CHUNKS);
+
+	/**
+	 * The allocated direct memory
+	 */
+	private final static Gauge allocatedDirectBytes = Gauge.build()
+			.name("bboxdb_memtable_direct_allocated_bytes")
+			.help("Direct memory allocated by off-heap memtables").register();
+
+	public DirectBufferPool(final int chunkSize, final int maxPooledChunks) {
+		this.chunkSize = chunkSize;
+		this.maxPooledChunks = maxPooledChunks;
+		this.freeChunks = new ConcurrentLinkedQueue<>();
+		this.pooledChunks = new AtomicInteger(0);
+	}
+
+	/**
+	 * Get the default instance
+	 * @return
+	 */
+	public static DirectBufferPool getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Get a buffer that can hold at least the given amount of bytes
+	 * @param minSize
+	 * @return
+	 */
+	public ByteBuffer allocate(final int minSize) {
+
+		// Big tuples get their own (unpooled) buffer
+		if(minSize > chunkSize) {
+			allocatedDirectBytes.inc(minSize);
+			return ByteBuffer.allocateDirect(minSize);
+		}
+
+		final ByteBuffer pooledBuffer = freeChunks.poll();
+
+		if(pooledBuffer != null) {
+			pooledChunks.decrementAndGet();
+			pooledBuffer.clear();
+			return pooledBuffer;
+		}
+
+		allocatedDirectBytes.inc(chunkSize);
+		return ByteBuffer.allocateDirect(chunkSize);
+	}
+
+	/**
+	 * Return the buffer to the pool
+	 * @param buffer
+	 */
+	public void release(final ByteBuffer buffer) {
+		if(buffer.capacity() == chunkSize && pooledChunks.incrementAndGet() <= maxPooledChunks) {
+			freeChunks.offer(buffer);
+			return;
+		}
+
+		if(buffer.capacity() == chunkSize) {
+			pooledChunks.decrementAndGet();
+		}
+
+		// The buffer is freed by the GC
+		allocatedDirectBytes.dec(buffer.capacity());
+	}
+
+	/**
+	 * Get the chunk size
+	 * @return
+	 */
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * Get the number of idle chunks
+	 * @return
+	 */
+	public int getPooledChunks() {
+		return pooledChunks.get();
+	}
+}
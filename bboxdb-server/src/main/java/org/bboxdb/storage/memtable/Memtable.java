@@ -17,7 +17,6 @@
  *******************************************************************************/
 package org.bboxdb.storage.memtable;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -25,31 +24,22 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
 
 import org.bboxdb.commons.math.Hyperrectangle;
-import org.bboxdb.misc.BBoxDBService;
 import org.bboxdb.storage.StorageManagerException;
-import org.bboxdb.storage.entity.DeletedTuple;
 import org.bboxdb.storage.entity.Tuple;
 import org.bboxdb.storage.entity.TupleStoreName;
 import org.bboxdb.storage.sstable.spatialindex.SpatialIndexBuilder;
 import org.bboxdb.storage.sstable.spatialindex.SpatialIndexBuilderFactory;
 import org.bboxdb.storage.sstable.spatialindex.SpatialIndexEntry;
-import org.bboxdb.storage.tuplestore.ReadWriteTupleStore;
+import org.bboxdb.storage.sstable.spatialindex.rtree.RTreeNearestNeighborSearch;
 import org.bboxdb.storage.util.TupleHelper;
 import org.bboxdb.storage.wal.WriteAheadLogWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class Memtable implements BBoxDBService, ReadWriteTupleStore {
-
-	/**
-	 * The name of the corresponding table
-	 */
-	private final TupleStoreName table;
+public class Memtable extends AbstractMemtable {
 
 	/**
 	 * The memtable
@@ -66,51 +56,6 @@ public class Memtable implements BBoxDBService, ReadWriteTupleStore {
 	 */
 	private final AtomicInteger freePos = new AtomicInteger();
 
-	/**
-	 * Maximal number of entries keep in memory
-	 */
-	private final int maxEntries;
-
-	/**
-	 * Maximal size of memtable in bytes
-	 */
-	private final long maxSizeInMemory;
-
-	/**
-	 * Current memory size in bytes
-	 */
-	private final AtomicLong sizeInMemory = new AtomicLong();
-
-	/**
-	 * The timestamp when the memtable is created
-	 */
-	private long createdTimestamp;
-
-	/**
-	 * The oldest tuple
-	 */
-	private final AtomicLong oldestTupleTimestamp = new AtomicLong();
-
-	/**
-	 * The newest tuple
-	 */
-	private final AtomicLong newestTupleTimestamp = new AtomicLong();
-
-	/**
-	 * The reference counter
-	 */
-	private final AtomicInteger usage;
-
-	/**
-	 * Is a deletion performed after (usage == 0)
-	 */
-	private final AtomicBoolean pendingDelete = new AtomicBoolean();
-
-	/**
-	 * The write ahead log writer
-	 */
-	private final WriteAheadLogWriter walWriter;
-
 	/**
 	 * The key position map
 	 */
@@ -124,23 +69,12 @@ public class Memtable implements BBoxDBService, ReadWriteTupleStore {
 	public Memtable(final TupleStoreName table, final int entries, final long maxSizeInMemory,
 			final WriteAheadLogWriter walWriter) {
 
-		this.table = table;
-		this.maxEntries = entries;
-		this.maxSizeInMemory = maxSizeInMemory;
-		this.walWriter = walWriter;
+		super(table, entries, maxSizeInMemory, walWriter);
 
 		this.data = new Tuple[entries];
 		this.freePos.set(-1);
-		this.sizeInMemory.set(0);
 
 		this.spatialIndexBuilder = SpatialIndexBuilderFactory.getInstance();
-
-		this.createdTimestamp = System.currentTimeMillis();
-		this.oldestTupleTimestamp.set(-1);
-		this.newestTupleTimestamp.set(-1);
-
-		this.usage = new AtomicInteger(0);
-		this.pendingDelete.set(false);
 		this.keyPositions = new HashMap<>();
 	}
 
@@ -156,22 +90,15 @@ public class Memtable implements BBoxDBService, ReadWriteTupleStore {
 	}
 
 	@Override
-	public void shutdown() {
-
-	}
-
-	@Override
-	public void put(final Tuple tuple) throws StorageManagerException {
+	public synchronized long tryPut(final Tuple tuple) throws StorageManagerException {
 
 		assert (usage.get() > 0);
 
 		if(freePos.get() >= maxEntries) {
-			throw new StorageManagerException("Unable to store a new tuple, all memtable slots are full");
+			return MEMTABLE_FULL;
 		}
 
-		if(walWriter != null) {
-			walWriter.addTuple(tuple);
-		}
+		final long walPosition = walWriter == null ? 0 : walWriter.addTuple(tuple);
 
 		data[freePos.get()] = tuple;
 		
@@ -183,19 +110,10 @@ public class Memtable implements BBoxDBService, ReadWriteTupleStore {
 		keyPositions.computeIfAbsent(tuple.getKey(), (e) -> ConcurrentHashMap.newKeySet()).add(freePos.get());
 
 		freePos.incrementAndGet();
-		sizeInMemory.addAndGet(tuple.getSize());
+		increaseSize(tuple.getSize());
+		updateVersionTimestamps(tuple);
 
-		if(oldestTupleTimestamp.get() == -1) {
-			oldestTupleTimestamp.set(tuple.getVersionTimestamp());
-		} else {
-			oldestTupleTimestamp.set(Math.min(oldestTupleTimestamp.get(), tuple.getVersionTimestamp()));
-		}
-
-		if(newestTupleTimestamp.get() == -1) {
-			newestTupleTimestamp.set(tuple.getVersionTimestamp());
-		} else {
-			newestTupleTimestamp.set(Math.max(newestTupleTimestamp.get(), tuple.getVersionTimestamp()));
-		}
+		return walPosition;
 	}
 
 	/**
@@ -221,23 +139,12 @@ public class Memtable implements BBoxDBService, ReadWriteTupleStore {
 		return resultList;
 	}
 
-	/**
-	 * Delete a tuple, this is implemented by inserting a DeletedTuple object
-	 *
-	 */
-	@Override
-	public void delete(final String key, final long timestamp) throws StorageManagerException {
-		assert (usage.get() > 0);
-
-		final Tuple deleteTuple = new DeletedTuple(key, timestamp);
-		put(deleteTuple);
-	}
-
 	/**
 	 * Get a sorted list with all recent tuples
 	 * @return
 	 *
 	 */
+	@Override
 	public List<Tuple> getSortedTupleList() {
 		assert (usage.get() > 0);
 
@@ -265,68 +172,7 @@ public class Memtable implements BBoxDBService, ReadWriteTupleStore {
 		}
 
 		this.freePos.set(0);
-		this.sizeInMemory.set(0);
-	}
-
-	/**
-	 * Is this memtable full and needs to be flushed to disk
-	 *
-	 * @return
-	 */
-	public boolean isFull() {
-
-		// Check size of the table
-		if(sizeInMemory.get() >= maxSizeInMemory) {
-			return true;
-		}
-
-		// Check number of entries
-		if(freePos.get() + 1 > maxEntries) {
-			return true;
-		}
-
-		return false;
-	}
-
-	/**
-	 * Is this memtable empty?
-	 */
-	public boolean isEmpty() {
-		if(freePos.get() <= 0) {
-			return true;
-		}
-
-		return false;
-	}
-
-	/**
-	 * Get the maximal number of entries in the memtable
-	 * @return
-	 */
-	public int getMaxEntries() {
-		return maxEntries;
-	}
-
-	/**
-	 * The size of the memtable in memory
-	 * @return
-	 */
-	@Override
-	public long getSize() {
-		return sizeInMemory.get();
-	}
-
-	/**
-	 * Get the created timestamp
-	 * @return
-	 */
-	public long getCreatedTimestamp() {
-		return createdTimestamp;
-	}
-
-	@Override
-	public String getServicename() {
-		return "Memtable";
+		resetSize();
 	}
 
 	@Override
@@ -373,84 +219,6 @@ public class Memtable implements BBoxDBService, ReadWriteTupleStore {
 		return mostRecentTuple.getReceivedTimestamp();
 	}
 
-	/**
-	 * Get the oldest tuple timestamp
-	 * @return
-	 */
-	@Override
-	public long getOldestTupleVersionTimestamp() {
-		return oldestTupleTimestamp.get();
-	}
-
-	/**
-	 * Get the newest tuple timestamp
-	 * @return
-	 */
-	@Override
-	public long getNewestTupleVersionTimestamp() {
-		return newestTupleTimestamp.get();
-	}
-
-	@Override
-	public void deleteOnClose() {
-		logger.debug("deleteOnClose called and we have {} references", usage.get());
-
-		pendingDelete.set(true);
-
-		clearIfUnreferenced();
-	}
-
-	@Override
-	public boolean acquire() {
-		if(pendingDelete.get()) {
-			return false;
-		}
-
-		usage.incrementAndGet();
-		return true;
-	}
-
-	@Override
-	public void release() {
-		assert (usage.get() > 0);
-
-		usage.decrementAndGet();
-
-		if(pendingDelete.get()) {
-			clearIfUnreferenced();
-		}
-	}
-
-	/**
-	 * Clear if no other references are hold
-	 */
-	private void clearIfUnreferenced() {
-		logger.debug("Release called and we have {} references", usage.get());
-
-		if(usage.get() == 0) {
-			clear();
-		}
-
-		try {
-			if(walWriter != null) {
-				walWriter.close();
-				walWriter.deleteFile();
-			}
-		} catch (IOException e) {
-			logger.error("Got exception while closing WAL", e);
-		}
-	}
-
-	@Override
-	public String getInternalName() {
-		return table.getFullname() + " / " + createdTimestamp;
-	}
-
-	@Override
-	public TupleStoreName getTupleStoreName() {
-		return table;
-	}
-
 	@Override
 	public long getNumberOfTuples() {
 		return freePos.get();
@@ -496,14 +264,36 @@ public class Memtable implements BBoxDBService, ReadWriteTupleStore {
 		};
 	}
 
+	/**
+	 * Search the spatial index best-first. The index is changed by concurrent inserts, 
+	 * so the search runs on a snapshot of the index entries, taken while holding the 
+	 * lock of the memtable.
+	 */
 	@Override
-	public boolean isPersistent() {
-		return false;
-	}
+	public Iterator<Tuple> getAllTuplesByDistance(final Hyperrectangle queryBox) {
+		assert (usage.get() > 0);
 
-	@Override
-	public boolean isDeletePending() {
-		return pendingDelete.get();
+		final List<SpatialIndexEntry> indexEntries;
+
+		synchronized (this) {
+			indexEntries = new ArrayList<>(spatialIndexBuilder.getEntriesForRegion(Hyperrectangle.FULL_SPACE));
+		}
+
+		final Iterator<SpatialIndexEntry> entryIterator
+			= RTreeNearestNeighborSearch.forEntries(queryBox, indexEntries);
+
+		return new Iterator<Tuple>() {
+
+			@Override
+			public boolean hasNext() {
+				return entryIterator.hasNext();
+			}
+
+			@Override
+			public Tuple next() {
+				return data[(int) entryIterator.next().getValue()];
+			}
+		};
 	}
 
 	/**
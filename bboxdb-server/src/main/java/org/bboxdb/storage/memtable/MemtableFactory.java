@@ -0,0 +1,55 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.memtable;
+
+import org.bboxdb.storage.entity.TupleStoreConfiguration;
+import org.bboxdb.storage.entity.TupleStoreName;
+import org.bboxdb.storage.wal.WriteAheadLogWriter;
+
+public class MemtableFactory {
+
+	/**
+	 * Create a new memtable of the type that is specified in the tuple store configuration
+	 * 
+	 * @param tupleStoreConfiguration
+	 * @param table
+	 * @param entries
+	 * @param maxSizeInMemory
+	 * @param walWriter
+	 * @return
+	 */
+	public static AbstractMemtable getInstance(final TupleStoreConfiguration tupleStoreConfiguration, 
+			final TupleStoreName table, final int entries, final long maxSizeInMemory, 
+			final WriteAheadLogWriter walWriter) {
+		
+		// The configuration could be unknown, e.g., the metadata file is not readable
+		final MemtableType memtableType = tupleStoreConfiguration == null 
+				? MemtableType.ARRAY : MemtableType.fromString(tupleStoreConfiguration.getMemtableType());
+		
+		switch (memtableType) {
+		case SKIPLIST:
+			return new SkipListMemtable(table, entries, maxSizeInMemory, walWriter);
+		case OFFHEAP:
+			return new OffHeapMemtable(table, entries, maxSizeInMemory, walWriter);
+		case ARRAY:
+		default:
+			return new Memtable(table, entries, maxSizeInMemory, walWriter);
+		}
+	}
+	
+}
@@ -0,0 +1,62 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.memtable;
+
+public enum MemtableType {
+	
+	ARRAY((byte) 0x00, "array"), 
+	SKIPLIST((byte) 0x01, "skiplist"),
+	OFFHEAP((byte) 0x02, "offheap");
+
+	private final byte id;
+	
+	private final String type;
+
+	MemtableType(final byte id, final String type) {
+		this.id = id;
+		this.type = type;
+	}
+
+	public byte getId() {
+		return id;
+	}
+	
+	public String getTypeString() {
+		return type;
+	}
+
+	public static MemtableType fromString(final String value) {
+		for (MemtableType memtableType : MemtableType.values()) {
+			if (memtableType.getTypeString().equalsIgnoreCase(value)) {
+				return memtableType;
+			}
+		}
+
+		return MemtableType.ARRAY;
+	}
+	
+	public static MemtableType fromId(final byte value) {
+		for (MemtableType memtableType : MemtableType.values()) {
+			if (memtableType.getId() == value) {
+				return memtableType;
+			}
+		}
+
+		return MemtableType.ARRAY;
+	}
+}
@@ -24,10 +24,14 @@ import java.util.function.BiConsumer;
 import org.bboxdb.commons.FileSizeHelper;
 import org.bboxdb.commons.concurrent.ExceptionSafeRunnable;
 import org.bboxdb.storage.entity.MemtableAndTupleStoreManagerPair;
+import org.bboxdb.storage.entity.TupleStoreConfiguration;
 import org.bboxdb.storage.entity.TupleStoreName;
+import org.bboxdb.storage.sstable.SSTableCompression;
 import org.bboxdb.storage.sstable.SSTableCreator;
 import org.bboxdb.storage.sstable.SSTableWriter;
+import org.bboxdb.storage.sstable.compact.CompactionMetrics;
 import org.bboxdb.storage.sstable.reader.SSTableFacade;
+import org.bboxdb.storage.sstable.spatialindex.SpatialIndexBuilderFactory;
 import org.bboxdb.storage.tuplestore.DiskStorage;
 import org.bboxdb.storage.tuplestore.manager.TupleStoreManager;
 import org.bboxdb.storage.tuplestore.manager.TupleStoreManagerState;
@@ -77,7 +81,7 @@ public class MemtableWriterRunnable extends ExceptionSafeRunnable {
 		while (! Thread.currentThread().isInterrupted()) {
 			try {
 				final MemtableAndTupleStoreManagerPair memtableAndSSTableManager = storage.takeNextUnflushedMemtable();
-				final Memtable memtable = memtableAndSSTableManager.getMemtable();
+				final AbstractMemtable memtable = memtableAndSSTableManager.getMemtable();
 				final TupleStoreManager sstableManager = memtableAndSSTableManager.getTupleStoreManager();
 				flushMemtableToDisk(memtable, sstableManager);
 			} catch (InterruptedException e) {
@@ -93,7 +97,7 @@ public class MemtableWriterRunnable extends ExceptionSafeRunnable {
 	 * @param sstableManager 
 	 * 
 	 */
-	protected void flushMemtableToDisk(final Memtable memtable, final TupleStoreManager sstableManager) {
+	protected void flushMemtableToDisk(final AbstractMemtable memtable, final TupleStoreManager sstableManager) {
 		
 		final boolean aquired = memtable.acquire();
 		
@@ -166,7 +170,7 @@ public class MemtableWriterRunnable extends ExceptionSafeRunnable {
 	 * @param memtable
 	 * @param sstableManager 
 	 */
-	protected void sendCallbacks(final Memtable memtable, TupleStoreManager sstableManager) {
+	protected void sendCallbacks(final AbstractMemtable memtable, TupleStoreManager sstableManager) {
 		final long timestamp = memtable.getCreatedTimestamp();
 		final List<BiConsumer<TupleStoreName, Long>> callbacks 
 			= storage.getTupleStoreManagerRegistry().getSSTableFlushCallbacks();
@@ -189,7 +193,7 @@ public class MemtableWriterRunnable extends ExceptionSafeRunnable {
 	 * @return
 	 * @throws Exception
 	 */
-	protected int writeMemtable(final String dataDirectory, final Memtable memtable, 
+	protected int writeMemtable(final String dataDirectory, final AbstractMemtable memtable, 
 			final TupleStoreManager sstableManager) throws Exception {
 		
 		final int tableNumber = sstableManager.increaseTableNumber();
@@ -200,11 +204,17 @@ public class MemtableWriterRunnable extends ExceptionSafeRunnable {
 		logger.info("Writing memtable number {} of {} with {} entries and a size of {}", 
 				tableNumber, tupleStoreName, numberOfEntries, sizeString);
 
-		try (final SSTableWriter ssTableWriter = new SSTableWriter(
-				dataDirectory, tupleStoreName, tableNumber, numberOfEntries, SSTableCreator.MEMTABLE)) {
+		final TupleStoreConfiguration configuration = sstableManager.getTupleStoreConfiguration();
+		final SSTableCompression compression = SSTableCompression.fromString(configuration.getSstableCompression());
+
+		try (final SSTableWriter ssTableWriter = new SSTableWriter(dataDirectory, tupleStoreName, 
+				tableNumber, numberOfEntries, SSTableCreator.MEMTABLE, compression, 
+				configuration.getSstableBlockSize(), 
+				SpatialIndexBuilderFactory.getInstance(configuration.getSpatialIndexWriter()))) {
 
 			ssTableWriter.open();
-			ssTableWriter.addTuples(memtable.getSortedTupleList());
+			memtable.writeToSSTable(ssTableWriter);
+			CompactionMetrics.addFlushedBytes(ssTableWriter.getWrittenBytes());
 			return tableNumber;
 		} catch (Exception e) {
 			throw e;
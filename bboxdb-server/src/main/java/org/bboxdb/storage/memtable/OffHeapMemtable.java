@@ -0,0 +1,678 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *******************************************************************************/
+package org.bboxdb.storage.memtable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bboxdb.commons.io.DataEncoderHelper;
+import org.bboxdb.commons.math.Hyperrectangle;
+import org.bboxdb.storage.StorageManagerException;
+import org.bboxdb.storage.entity.Tuple;
+import org.bboxdb.storage.entity.TupleStoreName;
+import org.bboxdb.storage.sstable.SSTableWriter;
+import org.bboxdb.storage.sstable.spatialindex.SpatialIndexEntry;
+import org.bboxdb.storage.util.TupleHelper;
+import org.bboxdb.storage.wal.WriteAheadLogWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+
+/**
+ * A memtable that stores the serialized tuples in direct memory arenas. The
+ * heap only holds the address of the tuples, a hash index for the keys and
+ * the spatial index (box, position), so the memtable puts little pressure on
+ * the GC.
+ *
+ * The tuples are stored in the same format as in the SSTables, so they can
+ * be copied into the SSTable on flush without decoding them.
+ *
+ * The memtable can be written by multiple threads at the same time. The
+ * slots are reserved with a CAS operation and only the allocation of the
+ * arena space is done while holding a lock. A slot is published by setting
+ * the length of its tuple.
+ *
+ */
+public class OffHeapMemtable extends AbstractMemtable {
+
+	/**
+	 * The arenas
+	 */
+	private volatile ByteBuffer[] arenas;
+
+	/**
+	 * The number of used arenas (guarded by this)
+	 */
+	private int usedArenas;
+
+	/**
+	 * The write offset in the last arena (guarded by this)
+	 */
+	private int arenaWriteOffset;
+
+	/**
+	 * The address (arena << 32 | offset) of the tuples
+	 */
+	private final long[] tupleAddresses;
+
+	/**
+	 * The length of the serialized tuples (0 if the tuple is not published)
+	 */
+	private final AtomicIntegerArray tupleLengths;
+
+	/**
+	 * The hash buckets of the key index (the newest position per bucket)
+	 */
+	private final AtomicIntegerArray keyHashBuckets;
+
+	/**
+	 * The next position in the same hash bucket
+	 */
+	private final AtomicIntegerArray keyHashChain;
+
+	/**
+	 * The spatial index
+	 */
+	private final StripedSpatialIndex spatialIndex;
+
+	/**
+	 * The next position that can be reserved
+	 */
+	private final AtomicInteger reservedPos = new AtomicInteger();
+
+	/**
+	 * The number of completely inserted tuples
+	 */
+	private final AtomicInteger insertedTuples = new AtomicInteger();
+
+	/**
+	 * The received timestamp of the newest inserted tuple
+	 */
+	private final AtomicLong newestInsertedTimestamp = new AtomicLong();
+
+	/**
+	 * The buffer pool
+	 */
+	private final DirectBufferPool bufferPool;
+
+	/**
+	 * The end marker of a hash chain
+	 */
+	private final static int CHAIN_END = -1;
+
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(OffHeapMemtable.class);
+
+	public OffHeapMemtable(final TupleStoreName table, final int entries, final long maxSizeInMemory,
+			final WriteAheadLogWriter walWriter) {
+
+		this(table, entries, maxSizeInMemory, walWriter, DirectBufferPool.getInstance());
+	}
+
+	public OffHeapMemtable(final TupleStoreName table, final int entries, final long maxSizeInMemory,
+			final WriteAheadLogWriter walWriter, final DirectBufferPool bufferPool) {
+
+		super(table, entries, maxSizeInMemory, walWriter);
+
+		this.bufferPool = bufferPool;
+		this.tupleAddresses = new long[entries];
+		this.tupleLengths = new AtomicIntegerArray(entries);
+		this.spatialIndex = new StripedSpatialIndex();
+
+		// Use a power of two, so the bucket can be calculated by a mask
+		final int buckets = Integer.highestOneBit(Math.max(1, entries * 2 - 1)) << 1;
+		this.keyHashBuckets = new AtomicIntegerArray(buckets);
+		this.keyHashChain = new AtomicIntegerArray(entries);
+
+		this.arenas = new ByteBuffer[0];
+		this.reservedPos.set(-1);
+		this.newestInsertedTimestamp.set(-1);
+	}
+
+	@Override
+	public void init() {
+		if(reservedPos.get() != -1) {
+			logger.error("init() called on an initalized memtable");
+			return;
+		}
+
+		logger.debug("Initializing a new off-heap memtable for table: {}", table.getFullname());
+
+		for(int i = 0; i < keyHashBuckets.length(); i++) {
+			keyHashBuckets.set(i, CHAIN_END);
+		}
+
+		reservedPos.set(0);
+	}
+
+	@Override
+	public long tryPut(final Tuple tuple) throws StorageManagerException {
+
+		assert (usage.get() > 0);
+
+		final int pos = reservePosition();
+
+		if(pos == -1) {
+			return MEMTABLE_FULL;
+		}
+
+		final long walPosition = walWriter == null ? 0 : walWriter.addTuple(tuple);
+
+		final byte[] keyBytes = tuple.getKey().getBytes(StandardCharsets.UTF_8);
+		final byte[] boxBytes = tuple.getBoundingBoxBytes();
+		final byte[] dataBytes = tuple.getDataBytes();
+
+		final int length = TupleHelper.TUPLE_HEADER_BYTES + keyBytes.length
+				+ boxBytes.length + dataBytes.length;
+
+		final long address = allocate(length);
+		final ByteBuffer arena = arenas[getArena(address)];
+
+		TupleHelper.writeTupleToBuffer(keyBytes, boxBytes, dataBytes, tuple.getVersionTimestamp(),
+				tuple.getReceivedTimestamp(), arena, getOffset(address));
+
+		tupleAddresses[pos] = address;
+
+		// Publish the tuple
+		tupleLengths.set(pos, length);
+
+		final int bucket = Arrays.hashCode(keyBytes) & (keyHashBuckets.length() - 1);
+		int chainHead;
+
+		do {
+			chainHead = keyHashBuckets.get(bucket);
+			keyHashChain.set(pos, chainHead);
+		} while(! keyHashBuckets.compareAndSet(bucket, chainHead, pos));
+
+		if(! TupleHelper.isDeletedTuple(tuple)) {
+			spatialIndex.insert(new SpatialIndexEntry(tuple.getBoundingBox(), pos));
+		}
+
+		increaseSize(length);
+		newestInsertedTimestamp.accumulateAndGet(tuple.getReceivedTimestamp(), Math::max);
+		updateVersionTimestamps(tuple);
+		insertedTuples.incrementAndGet();
+
+		return walPosition;
+	}
+
+	/**
+	 * Reserve the next free slot
+	 * @return the position or -1 if the memtable is full
+	 */
+	private int reservePosition() {
+		while(true) {
+			final int pos = reservedPos.get();
+
+			if(pos < 0 || pos >= maxEntries) {
+				return -1;
+			}
+
+			if(reservedPos.compareAndSet(pos, pos + 1)) {
+				return pos;
+			}
+		}
+	}
+
+	/**
+	 * Allocate the given amount of bytes in the arenas
+	 * @param length
+	 * @return the address of the allocated memory
+	 */
+	private synchronized long allocate(final int length) {
+
+		if(usedArenas == 0 || arenas[usedArenas - 1].capacity() - arenaWriteOffset < length) {
+			final ByteBuffer arena = bufferPool.allocate(length);
+			arena.order(DataEncoderHelper.APPLICATION_BYTE_ORDER);
+
+			ByteBuffer[] newArenas = arenas;
+
+			if(usedArenas == arenas.length) {
+				newArenas = Arrays.copyOf(arenas, Math.max(4, arenas.length * 2));
+			}
+
+			newArenas[usedArenas] = arena;
+			usedArenas++;
+			arenaWriteOffset = 0;
+
+			// Publish the new arena
+			arenas = newArenas;
+		}
+
+		final long address = ((long) (usedArenas - 1) << 32) | arenaWriteOffset;
+		arenaWriteOffset += length;
+
+		return address;
+	}
+
+	/**
+	 * Get the arena of the address
+	 * @param address
+	 * @return
+	 */
+	private static int getArena(final long address) {
+		return (int) (address >>> 32);
+	}
+
+	/**
+	 * Get the offset of the address
+	 * @param address
+	 * @return
+	 */
+	private static int getOffset(final long address) {
+		return (int) address;
+	}
+
+	/**
+	 * Decode the tuple at the given position
+	 * @param pos
+	 * @return
+	 */
+	private Tuple decodeTuple(final int pos) {
+		final long address = tupleAddresses[pos];
+
+		try {
+			return TupleHelper.decodeTuple(arenas[getArena(address)], getOffset(address));
+		} catch (IOException e) {
+			// Should never happen, the data is read from memory
+			throw new IllegalStateException("Unable to decode tuple at position " + pos, e);
+		}
+	}
+
+	/**
+	 * Is the key of the tuple at the given position equal to the key bytes
+	 * @param pos
+	 * @param keyBytes
+	 * @return
+	 */
+	private boolean isKeyEqual(final int pos, final byte[] keyBytes) {
+		final long address = tupleAddresses[pos];
+		final ByteBuffer arena = arenas[getArena(address)];
+		final int offset = getOffset(address);
+
+		if(arena.getShort(offset + TupleHelper.KEY_LENGTH_OFFSET) != keyBytes.length) {
+			return false;
+		}
+
+		final int keyOffset = offset + TupleHelper.TUPLE_HEADER_BYTES;
+
+		for(int i = 0; i < keyBytes.length; i++) {
+			if(arena.get(keyOffset + i) != keyBytes[i]) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Get all versions of the tuple for key
+	 *
+	 */
+	@Override
+	public List<Tuple> get(final String key) {
+
+		assert (usage.get() > 0) : "Usage is 0";
+
+		final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+		final int bucket = Arrays.hashCode(keyBytes) & (keyHashBuckets.length() - 1);
+
+		final List<Tuple> resultList = new ArrayList<>();
+
+		// Only published tuples are added to the chain
+		for(int pos = keyHashBuckets.get(bucket); pos != CHAIN_END; pos = keyHashChain.get(pos)) {
+			if(isKeyEqual(pos, keyBytes)) {
+				resultList.add(decodeTuple(pos));
+			}
+		}
+
+		// The chain is ordered from the newest to the oldest tuple
+		return Lists.reverse(resultList);
+	}
+
+	/**
+	 * Get the positions of the published tuples
+	 * @return
+	 */
+	private int[] getPublishedPositions() {
+		final int reservedPositions = Math.min(reservedPos.get(), maxEntries);
+		final int[] positions = new int[Math.max(0, reservedPositions)];
+		int publishedPositions = 0;
+
+		for(int pos = 0; pos < reservedPositions; pos++) {
+			if(tupleLengths.get(pos) != 0) {
+				positions[publishedPositions] = pos;
+				publishedPositions++;
+			}
+		}
+
+		return Arrays.copyOf(positions, publishedPositions);
+	}
+
+	/**
+	 * Get the positions of the tuples sorted by key and version
+	 * @return
+	 */
+	private int[] getSortedPositions() {
+		final int[] publishedPositions = getPublishedPositions();
+		final int maxPosition = publishedPositions.length == 0 ? 0
+				: publishedPositions[publishedPositions.length - 1] + 1;
+
+		// The keys are decoded only once for sorting
+		final String[] keys = new String[maxPosition];
+		final long[] versions = new long[maxPosition];
+
+		for(final int pos : publishedPositions) {
+			final long address = tupleAddresses[pos];
+			final ByteBuffer arena = arenas[getArena(address)];
+			final int offset = getOffset(address);
+
+			final byte[] keyBytes = new byte[arena.getShort(offset + TupleHelper.KEY_LENGTH_OFFSET)];
+			arena.get(offset + TupleHelper.TUPLE_HEADER_BYTES, keyBytes);
+			keys[pos] = new String(keyBytes, StandardCharsets.UTF_8);
+			versions[pos] = arena.getLong(offset + TupleHelper.VERSION_TIMESTAMP_OFFSET);
+		}
+
+		final Integer[] positions = Arrays.stream(publishedPositions).boxed().toArray(Integer[]::new);
+
+		// Stable sort, tuples with the same key and version keep the insert order
+		Arrays.sort(positions, (p1, p2) -> {
+			final int keyCompare = keys[p1].compareTo(keys[p2]);
+
+			if(keyCompare != 0) {
+				return keyCompare;
+			}
+
+			return Long.compare(versions[p1], versions[p2]);
+		});
+
+		return Arrays.stream(positions).mapToInt(Integer::intValue).toArray();
+	}
+
+	/**
+	 * Get a sorted list with all recent tuples
+	 * @return
+	 *
+	 */
+	@Override
+	public List<Tuple> getSortedTupleList() {
+		assert (usage.get() > 0);
+
+		final int[] sortedPositions = getSortedPositions();
+		final List<Tuple> resultList = new ArrayList<>(sortedPositions.length);
+
+		for(final int pos : sortedPositions) {
+			resultList.add(decodeTuple(pos));
+		}
+
+		return resultList;
+	}
+
+	/**
+	 * Copy the serialized tuples into the SSTable
+	 */
+	@Override
+	public void writeToSSTable(final SSTableWriter ssTableWriter) throws StorageManagerException {
+		assert (usage.get() > 0);
+
+		try {
+			for(final int pos : getSortedPositions()) {
+				final long address = tupleAddresses[pos];
+				ssTableWriter.addSerializedTuple(arenas[getArena(address)],
+						getOffset(address), tupleLengths.get(pos));
+			}
+		} catch(StorageManagerException e) {
+			ssTableWriter.setErrorFlag();
+			throw e;
+		}
+	}
+
+	/**
+	 * Clean the whole memtable, the arenas are returned to the buffer pool
+	 *
+	 */
+	@Override
+	public synchronized void clear() {
+		logger.debug("Clear on memtable {} called", table);
+
+		final ByteBuffer[] oldArenas = arenas;
+		final int oldUsedArenas = usedArenas;
+
+		arenas = new ByteBuffer[0];
+		usedArenas = 0;
+		arenaWriteOffset = 0;
+
+		for(int i = 0; i < keyHashBuckets.length(); i++) {
+			keyHashBuckets.set(i, CHAIN_END);
+		}
+
+		for(int i = 0; i < tupleLengths.length(); i++) {
+			tupleLengths.set(i, 0);
+		}
+
+		spatialIndex.clear();
+
+		for(int i = 0; i < oldUsedArenas; i++) {
+			bufferPool.release(oldArenas[i]);
+		}
+
+		reservedPos.set(0);
+		insertedTuples.set(0);
+		resetSize();
+	}
+
+	@Override
+	public Iterator<Tuple> iterator() {
+
+		assert (usage.get() > 0);
+
+		final int[] sortedPositions = getSortedPositions();
+
+		return new PositionIterator(sortedPositions, sortedPositions.length);
+	}
+
+	@Override
+	public long getNewestTupleInsertedTimestamp() {
+		if(insertedTuples.get() == 0) {
+			return System.currentTimeMillis();
+		}
+
+		return newestInsertedTimestamp.get();
+	}
+
+	@Override
+	public long getNumberOfTuples() {
+		return insertedTuples.get();
+	}
+
+	@Override
+	public boolean isFull() {
+
+		// Slots are reserved before the insert is complete
+		if(reservedPos.get() >= maxEntries) {
+			return true;
+		}
+
+		return super.isFull();
+	}
+
+	@Override
+	public Tuple getTupleAtPosition(final long position) {
+		assert (usage.get() > 0);
+
+		return decodeTuple((int) position);
+	}
+
+	@Override
+	public String toString() {
+		return "OffHeapMemtable [table=" + table.getFullname() + ", reservedPos=" + reservedPos.get()
+				+ ", insertedTuples=" + insertedTuples.get() + ", arenas=" + arenas.length
+				+ ", sizeInMemory=" + sizeInMemory.get()
+				+ ", createdTimestamp=" + createdTimestamp + ", oldestTupleTimestamp="
+				+ oldestTupleTimestamp.get() + ", newestTupleTimestamp="
+				+ newestTupleTimestamp.get() +", pendingDelete=" + pendingDelete.get() + "]";
+	}
+
+	/**
+	 * Get all tuples in the bounding box. The spatial index returns the candidates,
+	 * the open interval ends are checked on the boxes in the arenas.
+	 */
+	@Override
+	public Iterator<Tuple> getAllTuplesInBoundingBox(final Hyperrectangle boundingBox) {
+		assert (usage.get() > 0);
+
+		// Read the arenas in the insert order
+		final int[] matchingPositions = spatialIndex.getEntriesForRegion(boundingBox).stream()
+				.mapToInt(e -> (int) e.getValue())
+				.sorted()
+				.filter(pos -> isTupleInBoundingBox(pos, boundingBox))
+				.toArray();
+
+		return new PositionIterator(matchingPositions, matchingPositions.length);
+	}
+
+	@Override
+	public Iterator<Tuple> getAllTuplesByDistance(final Hyperrectangle queryBox) {
+		assert (usage.get() > 0);
+
+		final Iterator<SpatialIndexEntry> entryIterator = spatialIndex.getEntriesByDistance(queryBox);
+
+		return new Iterator<Tuple>() {
+
+			@Override
+			public boolean hasNext() {
+				return entryIterator.hasNext();
+			}
+
+			@Override
+			public Tuple next() {
+				return decodeTuple((int) entryIterator.next().getValue());
+			}
+		};
+	}
+
+	/**
+	 * Is the tuple at the given position intersecting the bounding box
+	 * @param pos
+	 * @param boundingBox
+	 * @return
+	 */
+	private boolean isTupleInBoundingBox(final int pos, final Hyperrectangle boundingBox) {
+		final long address = tupleAddresses[pos];
+		final ByteBuffer arena = arenas[getArena(address)];
+		final int offset = getOffset(address);
+
+		// Deleted tuples are not part of the spatial index
+		if(TupleHelper.isDeletedTuple(arena, offset)) {
+			return false;
+		}
+
+		final int boxLength = arena.getInt(offset + TupleHelper.BOX_LENGTH_OFFSET);
+		final int dimensions = boxLength / DataEncoderHelper.DOUBLE_BYTES / 2;
+
+		if(dimensions == 0 || boundingBox == Hyperrectangle.FULL_SPACE || boundingBox.getDimension() == 0) {
+			return true;
+		}
+
+		if(dimensions != boundingBox.getDimension()) {
+			return false;
+		}
+
+		final int boxOffset = offset + TupleHelper.TUPLE_HEADER_BYTES
+				+ arena.getShort(offset + TupleHelper.KEY_LENGTH_OFFSET);
+
+		for(int d = 0; d < dimensions; d++) {
+			final int dimensionOffset = boxOffset + d * 2 * DataEncoderHelper.DOUBLE_BYTES;
+			final double low = arena.getDouble(dimensionOffset);
+			final double high = arena.getDouble(dimensionOffset + DataEncoderHelper.DOUBLE_BYTES);
+
+			// The points of the tuple boxes are always included
+			final double queryLow = boundingBox.getCoordinateLow(d);
+			final double queryHigh = boundingBox.getCoordinateHigh(d);
+
+			if(high < queryLow || low > queryHigh) {
+				return false;
+			}
+
+			if(high == queryLow && ! boundingBox.isLowPointIncluded(d)) {
+				return false;
+			}
+
+			if(low == queryHigh && ! boundingBox.isHighPointIncluded(d)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Iterates over the tuples at the given positions
+	 */
+	private class PositionIterator implements Iterator<Tuple> {
+
+		/**
+		 * The positions
+		 */
+		private final int[] positions;
+
+		/**
+		 * The number of valid positions
+		 */
+		private final int length;
+
+		/**
+		 * The next position
+		 */
+		private int next;
+
+		public PositionIterator(final int[] positions, final int length) {
+			this.positions = positions;
+			this.length = length;
+			this.next = 0;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next < length;
+		}
+
+		@Override
+		public Tuple next() {
+			if(! hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			final Tuple tuple = decodeTuple(positions[next]);
+			next++;
+			return tuple;
+		}
+	}
+}
@@ -0,0 +1,391 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *******************************************************************************/
+package org.bboxdb.storage.memtable;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.bboxdb.commons.math.Hyperrectangle;
+import org.bboxdb.storage.StorageManagerException;
+import org.bboxdb.storage.entity.Tuple;
+import org.bboxdb.storage.entity.TupleStoreName;
+import org.bboxdb.storage.sstable.spatialindex.SpatialIndexEntry;
+import org.bboxdb.storage.util.TupleHelper;
+import org.bboxdb.storage.wal.WriteAheadLogWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A memtable that can be written by multiple threads at the same time. The
+ * slots of the tuples are reserved with a CAS operation, the keys are kept
+ * sorted in a concurrent skip list and the spatial index is striped over
+ * multiple index builders.
+ *
+ */
+public class SkipListMemtable extends AbstractMemtable {
+
+	/**
+	 * The memtable
+	 */
+	private final AtomicReferenceArray<Tuple> data;
+
+	/**
+	 * The sorted key index (key, version, position)
+	 */
+	private final NavigableSet<KeyIndexEntry> keyIndex;
+
+	/**
+	 * The striped spatial index
+	 */
+	private final StripedSpatialIndex spatialIndex;
+
+	/**
+	 * The next position that can be reserved
+	 */
+	private final AtomicInteger reservedPos = new AtomicInteger();
+
+	/**
+	 * The number of completely inserted tuples
+	 */
+	private final AtomicInteger insertedTuples = new AtomicInteger();
+
+	/**
+	 * The received timestamp of the newest inserted tuple
+	 */
+	private final AtomicLong newestInsertedTimestamp = new AtomicLong();
+
+	/**
+	 * The default number of spatial index stripes
+	 */
+	public final static int DEFAULT_SPATIAL_INDEX_STRIPES = StripedSpatialIndex.DEFAULT_STRIPES;
+
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(SkipListMemtable.class);
+
+	public SkipListMemtable(final TupleStoreName table, final int entries, final long maxSizeInMemory,
+			final WriteAheadLogWriter walWriter) {
+
+		this(table, entries, maxSizeInMemory, walWriter, DEFAULT_SPATIAL_INDEX_STRIPES);
+	}
+
+	public SkipListMemtable(final TupleStoreName table, final int entries, final long maxSizeInMemory,
+			final WriteAheadLogWriter walWriter, final int spatialIndexStripes) {
+
+		super(table, entries, maxSizeInMemory, walWriter);
+
+		this.data = new AtomicReferenceArray<>(entries);
+		this.keyIndex = new ConcurrentSkipListSet<>();
+		this.spatialIndex = new StripedSpatialIndex(spatialIndexStripes);
+
+		this.reservedPos.set(-1);
+		this.newestInsertedTimestamp.set(-1);
+	}
+
+	@Override
+	public void init() {
+		if(reservedPos.get() != -1) {
+			logger.error("init() called on an initalized memtable");
+			return;
+		}
+
+		logger.debug("Initializing a new skiplist memtable for table: {}", table.getFullname());
+		reservedPos.set(0);
+	}
+
+	@Override
+	public long tryPut(final Tuple tuple) throws StorageManagerException {
+
+		assert (usage.get() > 0);
+
+		final int pos = reservePosition();
+
+		if(pos == -1) {
+			return MEMTABLE_FULL;
+		}
+
+		final long walPosition = walWriter == null ? 0 : walWriter.addTuple(tuple);
+
+		data.set(pos, tuple);
+
+		if(! TupleHelper.isDeletedTuple(tuple)) {
+			spatialIndex.insert(new SpatialIndexEntry(tuple.getBoundingBox(), pos));
+		}
+
+		keyIndex.add(new KeyIndexEntry(tuple.getKey(), tuple.getVersionTimestamp(), pos));
+
+		increaseSize(tuple.getSize());
+		newestInsertedTimestamp.accumulateAndGet(tuple.getReceivedTimestamp(), Math::max);
+		updateVersionTimestamps(tuple);
+		insertedTuples.incrementAndGet();
+
+		return walPosition;
+	}
+
+	/**
+	 * Reserve the next free slot in the data array
+	 * @return the position or -1 if the memtable is full
+	 */
+	private int reservePosition() {
+		while(true) {
+			final int pos = reservedPos.get();
+
+			if(pos < 0 || pos >= maxEntries) {
+				return -1;
+			}
+
+			if(reservedPos.compareAndSet(pos, pos + 1)) {
+				return pos;
+			}
+		}
+	}
+
+	/**
+	 * Get all versions of the tuple for key
+	 *
+	 */
+	@Override
+	public List<Tuple> get(final String key) {
+
+		assert (usage.get() > 0) : "Usage is 0";
+
+		final KeyIndexEntry fromEntry = new KeyIndexEntry(key, Long.MIN_VALUE, Integer.MIN_VALUE);
+		final KeyIndexEntry toEntry = new KeyIndexEntry(key, Long.MAX_VALUE, Integer.MAX_VALUE);
+
+		final List<Tuple> resultList = new ArrayList<>();
+
+		for(final KeyIndexEntry entry : keyIndex.subSet(fromEntry, true, toEntry, true)) {
+			resultList.add(data.get(entry.position));
+		}
+
+		return resultList;
+	}
+
+	/**
+	 * Get a sorted list with all recent tuples. The skip list is already
+	 * sorted by key and version, so no sort is needed.
+	 *
+	 */
+	@Override
+	public List<Tuple> getSortedTupleList() {
+		assert (usage.get() > 0);
+
+		final List<Tuple> resultList = new ArrayList<>(insertedTuples.get());
+
+		for(final KeyIndexEntry entry : keyIndex) {
+			resultList.add(data.get(entry.position));
+		}
+
+		return resultList;
+	}
+
+	/**
+	 * Clean the whole memtable, useful for testing
+	 *
+	 */
+	@Override
+	public void clear() {
+		logger.debug("Clear on memtable {} called", table);
+
+		keyIndex.clear();
+
+		for(int i = 0; i < data.length(); i++) {
+			data.set(i, null);
+		}
+
+		spatialIndex.clear();
+
+		this.reservedPos.set(0);
+		this.insertedTuples.set(0);
+		resetSize();
+	}
+
+	@Override
+	public Iterator<Tuple> iterator() {
+
+		assert (usage.get() > 0);
+
+		final Iterator<KeyIndexEntry> keyIterator = keyIndex.iterator();
+
+		return new Iterator<Tuple>() {
+
+			@Override
+			public boolean hasNext() {
+				return keyIterator.hasNext();
+			}
+
+			@Override
+			public Tuple next() {
+				return data.get(keyIterator.next().position);
+			}
+
+			@Override
+			public void remove() {
+				throw new IllegalStateException("Remove is not supported");
+			}
+		};
+	}
+
+	@Override
+	public long getNewestTupleInsertedTimestamp() {
+		if(insertedTuples.get() == 0) {
+			return System.currentTimeMillis();
+		}
+
+		return newestInsertedTimestamp.get();
+	}
+
+	@Override
+	public long getNumberOfTuples() {
+		return insertedTuples.get();
+	}
+
+	@Override
+	public boolean isFull() {
+
+		// Slots are reserved before the insert is complete
+		if(reservedPos.get() >= maxEntries) {
+			return true;
+		}
+
+		return super.isFull();
+	}
+
+	@Override
+	public Tuple getTupleAtPosition(final long position) {
+		assert (usage.get() > 0);
+
+		return data.get((int) position);
+	}
+
+	@Override
+	public String toString() {
+		return "SkipListMemtable [table=" + table.getFullname() + ", reservedPos=" + reservedPos.get()
+				+ ", insertedTuples=" + insertedTuples.get()
+				+ ", sizeInMemory=" + sizeInMemory.get() + ", createdTimestamp="
+				+ createdTimestamp + ", oldestTupleTimestamp="
+				+ oldestTupleTimestamp.get() + ", newestTupleTimestamp="
+				+ newestTupleTimestamp.get() +", pendingDelete=" + pendingDelete.get() + "]";
+	}
+
+	@Override
+	public Iterator<Tuple> getAllTuplesInBoundingBox(final Hyperrectangle boundingBox) {
+		assert (usage.get() > 0);
+
+		final Iterator<SpatialIndexEntry> keyIterator
+			= spatialIndex.getEntriesForRegion(boundingBox).iterator();
+
+		return getTupleIterator(keyIterator);
+	}
+
+	@Override
+	public Iterator<Tuple> getAllTuplesByDistance(final Hyperrectangle queryBox) {
+		assert (usage.get() > 0);
+
+		return getTupleIterator(spatialIndex.getEntriesByDistance(queryBox));
+	}
+
+	/**
+	 * Get the tuples for the entries of the spatial index
+	 * @param keyIterator
+	 * @return
+	 */
+	private Iterator<Tuple> getTupleIterator(final Iterator<SpatialIndexEntry> keyIterator) {
+		return new Iterator<Tuple>() {
+
+			@Override
+			public boolean hasNext() {
+				return keyIterator.hasNext();
+			}
+
+			@Override
+			public Tuple next() {
+				final SpatialIndexEntry entry = keyIterator.next();
+				return data.get((int) entry.getValue());
+			}
+		};
+	}
+
+	/**
+	 * An entry of the sorted key index
+	 */
+	private final static class KeyIndexEntry implements Comparable<KeyIndexEntry> {
+
+		/**
+		 * The key of the tuple
+		 */
+		private final String key;
+
+		/**
+		 * The version of the tuple
+		 */
+		private final long version;
+
+		/**
+		 * The position in the data array
+		 */
+		private final int position;
+
+		public KeyIndexEntry(final String key, final long version, final int position) {
+			this.key = key;
+			this.version = version;
+			this.position = position;
+		}
+
+		@Override
+		public int compareTo(final KeyIndexEntry other) {
+			final int keyCompare = key.compareTo(other.key);
+
+			if(keyCompare != 0) {
+				return keyCompare;
+			}
+
+			final int versionCompare = Long.compare(version, other.version);
+
+			if(versionCompare != 0) {
+				return versionCompare;
+			}
+
+			return Integer.compare(position, other.position);
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null)
+				return false;
+			if (getClass() != obj.getClass())
+				return false;
+			final KeyIndexEntry other = (KeyIndexEntry) obj;
+			return compareTo(other) == 0;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * key.hashCode() + position;
+		}
+	}
+}
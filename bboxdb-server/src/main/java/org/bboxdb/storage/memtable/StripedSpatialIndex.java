@@ -0,0 +1,141 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *******************************************************************************/
+package org.bboxdb.storage.memtable;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.bboxdb.commons.math.Hyperrectangle;
+import org.bboxdb.storage.sstable.spatialindex.SpatialIndexBuilder;
+import org.bboxdb.storage.sstable.spatialindex.SpatialIndexBuilderFactory;
+import org.bboxdb.storage.sstable.spatialindex.SpatialIndexEntry;
+import org.bboxdb.storage.sstable.spatialindex.rtree.RTreeNearestNeighborSearch;
+
+/**
+ * A spatial index for memtables that are written by multiple threads. The
+ * entries are striped over multiple index builders by their value, each
+ * builder is protected by its own read write lock.
+ *
+ */
+public final class StripedSpatialIndex {
+
+	/**
+	 * The spatial index stripes
+	 */
+	private final SpatialIndexBuilder[] stripes;
+
+	/**
+	 * The locks for the spatial index stripes
+	 */
+	private final ReadWriteLock[] locks;
+
+	/**
+	 * The default number of spatial index stripes
+	 */
+	public final static int DEFAULT_STRIPES
+		= Math.min(16, Runtime.getRuntime().availableProcessors());
+
+	public StripedSpatialIndex() {
+		this(DEFAULT_STRIPES);
+	}
+
+	public StripedSpatialIndex(final int stripes) {
+
+		if(stripes <= 0) {
+			throw new IllegalArgumentException("Unable to create a spatial index with "
+					+ stripes + " stripes");
+		}
+
+		this.stripes = new SpatialIndexBuilder[stripes];
+		this.locks = new ReadWriteLock[stripes];
+
+		for(int i = 0; i < stripes; i++) {
+			this.stripes[i] = SpatialIndexBuilderFactory.getInstance();
+			this.locks[i] = new ReentrantReadWriteLock();
+		}
+	}
+
+	/**
+	 * Insert the entry into the stripe of its value
+	 * @param indexEntry
+	 */
+	public void insert(final SpatialIndexEntry indexEntry) {
+		final int stripe = (int) (indexEntry.getValue() % stripes.length);
+		final Lock writeLock = locks[stripe].writeLock();
+
+		writeLock.lock();
+		try {
+			stripes[stripe].insert(indexEntry);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Get the entries of all stripes for the given region
+	 * @param boundingBox
+	 * @return
+	 */
+	public List<SpatialIndexEntry> getEntriesForRegion(final Hyperrectangle boundingBox) {
+		final List<SpatialIndexEntry> matchingEntries = new ArrayList<>();
+
+		for(int i = 0; i < stripes.length; i++) {
+			final Lock readLock = locks[i].readLock();
+
+			readLock.lock();
+			try {
+				matchingEntries.addAll(stripes[i].getEntriesForRegion(boundingBox));
+			} finally {
+				readLock.unlock();
+			}
+		}
+
+		return matchingEntries;
+	}
+
+	/**
+	 * Get the entries in the order of their distance to the query box. The stripes 
+	 * are changed by concurrent inserts, so the search runs on a snapshot of the entries.
+	 * @param queryBox
+	 * @return
+	 */
+	public Iterator<SpatialIndexEntry> getEntriesByDistance(final Hyperrectangle queryBox) {
+		final List<SpatialIndexEntry> indexEntries = getEntriesForRegion(Hyperrectangle.FULL_SPACE);
+		return RTreeNearestNeighborSearch.forEntries(queryBox, indexEntries);
+	}
+
+	/**
+	 * Remove all entries
+	 */
+	public void clear() {
+		for(int i = 0; i < stripes.length; i++) {
+			final Lock writeLock = locks[i].writeLock();
+
+			writeLock.lock();
+			try {
+				stripes[i] = SpatialIndexBuilderFactory.getInstance();
+			} finally {
+				writeLock.unlock();
+			}
+		}
+	}
+}
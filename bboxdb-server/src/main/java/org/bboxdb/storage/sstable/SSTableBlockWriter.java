@@ -0,0 +1,222 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.sstable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import com.google.common.io.CountingOutputStream;
+
+/**
+ * Groups the serialized tuples of an SSTable into compressed blocks. A tuple 
+ * never spans two blocks. The position of a tuple is the offset in the 
+ * uncompressed tuple data, so the key index and the spatial index contain the 
+ * same positions as for uncompressed SSTables. 
+ * 
+ * Format of the data file:
+ * 
+ * ---------------------------------------------------------------
+ * | Magic | Block 0 | ... | Block n | Block index | Block footer |
+ * ---------------------------------------------------------------
+ * 
+ * Format of a block index entry:
+ * 
+ * -----------------------------------------------------------------------------------------
+ * | Uncompressed start | File position | Compressed | Uncompressed | First  | Key    | Key |
+ * |                    |               |   length   |    length    | entry  | length |     |
+ * |       8 Byte       |     8 Byte    |   4 Byte   |    4 Byte    | 4 Byte | 2 Byte |  n  |
+ * -----------------------------------------------------------------------------------------
+ */
+public class SSTableBlockWriter {
+	
+	/**
+	 * The compression of the blocks
+	 */
+	private final SSTableCompression compression;
+	
+	/**
+	 * The uncompressed size of a block
+	 */
+	private final int blockSize;
+	
+	/**
+	 * The data file
+	 */
+	private final CountingOutputStream outputStream;
+	
+	/**
+	 * The uncompressed data of the active block
+	 */
+	private final ExposedByteArrayOutputStream blockBuffer;
+	
+	/**
+	 * The block index
+	 */
+	private final ByteArrayOutputStream blockIndexBytes;
+	
+	/**
+	 * The block index stream
+	 */
+	private final DataOutputStream blockIndexStream;
+	
+	/**
+	 * The uncompressed position of the active block
+	 */
+	private long blockStart;
+	
+	/**
+	 * The first key of the active block
+	 */
+	private String blockFirstKey;
+	
+	/**
+	 * The first index entry of the active block
+	 */
+	private int blockFirstEntry;
+	
+	/**
+	 * The number of written blocks
+	 */
+	private int blocks;
+	
+	/**
+	 * A byte array output stream that provides access to the internal buffer
+	 */
+	private static class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+		
+		public ExposedByteArrayOutputStream(final int size) {
+			super(size);
+		}
+		
+		public byte[] getBuffer() {
+			return buf;
+		}
+	}
+
+	public SSTableBlockWriter(final CountingOutputStream outputStream, 
+			final SSTableCompression compression, final int blockSize) {
+		
+		this.outputStream = outputStream;
+		this.compression = compression;
+		this.blockSize = blockSize;
+		this.blockBuffer = new ExposedByteArrayOutputStream(blockSize);
+		this.blockIndexBytes = new ByteArrayOutputStream();
+		this.blockIndexStream = new DataOutputStream(blockIndexBytes);
+		this.blockStart = 0;
+		this.blocks = 0;
+	}
+	
+	/**
+	 * A new tuple is written, a new block is started if the active block is full
+	 * @param key
+	 * @param entry - the number of the tuple in the key index
+	 * @throws IOException 
+	 */
+	public void startTuple(final String key, final int entry) throws IOException {
+		if(blockBuffer.size() >= blockSize) {
+			finishBlock();
+		}
+		
+		if(blockBuffer.size() == 0) {
+			blockFirstKey = key;
+			blockFirstEntry = entry;
+		}
+	}
+	
+	/**
+	 * Get the stream for the tuple data 
+	 * @return
+	 */
+	public OutputStream getTupleOutputStream() {
+		return blockBuffer;
+	}
+	
+	/**
+	 * Get the uncompressed position of the next tuple
+	 * @return
+	 */
+	public long getPosition() {
+		return blockStart + blockBuffer.size();
+	}
+	
+	/**
+	 * Compress and write the active block
+	 * @throws IOException
+	 */
+	private void finishBlock() throws IOException {
+		final int uncompressedLength = blockBuffer.size();
+		
+		if(uncompressedLength == 0) {
+			return;
+		}
+		
+		final byte[] compressedBlock = compression.compress(blockBuffer.getBuffer(), uncompressedLength);
+		final long filePosition = outputStream.getCount();
+		outputStream.write(compressedBlock);
+		
+		final byte[] keyBytes = blockFirstKey.getBytes(StandardCharsets.UTF_8);
+		blockIndexStream.writeLong(blockStart);
+		blockIndexStream.writeLong(filePosition);
+		blockIndexStream.writeInt(compressedBlock.length);
+		blockIndexStream.writeInt(uncompressedLength);
+		blockIndexStream.writeInt(blockFirstEntry);
+		blockIndexStream.writeShort(keyBytes.length);
+		blockIndexStream.write(keyBytes);
+		
+		blockStart += uncompressedLength;
+		blocks++;
+		blockBuffer.reset();
+	}
+	
+	/**
+	 * Write the last block, the block index and the footer
+	 * @throws IOException
+	 */
+	public void finish() throws IOException {
+		finishBlock();
+		
+		final long blockIndexPosition = outputStream.getCount();
+		blockIndexStream.flush();
+		blockIndexBytes.writeTo(outputStream);
+		
+		final DataOutputStream footerStream = new DataOutputStream(outputStream);
+		footerStream.writeLong(blockIndexPosition);
+		footerStream.writeInt(blocks);
+		footerStream.writeByte(compression.getId());
+		footerStream.flush();
+	}
+	
+	/**
+	 * Get the uncompressed bytes of the active block
+	 * @return
+	 */
+	public int getPendingBytes() {
+		return blockBuffer.size();
+	}
+	
+	/**
+	 * Get the number of written blocks
+	 * @return
+	 */
+	public int getBlocks() {
+		return blocks;
+	}
+}
@@ -0,0 +1,160 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.sstable;
+
+import java.io.IOException;
+
+import org.xerial.snappy.Snappy;
+
+import com.github.luben.zstd.Zstd;
+
+public enum SSTableCompression {
+	
+	/**
+	 * Uncompressed SSTables (the tuples are stored without blocks)
+	 */
+	NONE((byte) 0x00, "none"), 
+	
+	/**
+	 * Snappy compressed blocks
+	 */
+	SNAPPY((byte) 0x01, "snappy"), 
+	
+	/**
+	 * Zstandard compressed blocks
+	 */
+	ZSTD((byte) 0x02, "zstd");
+
+	private final byte id;
+	
+	private final String codec;
+	
+	/**
+	 * The zstd compression level
+	 */
+	private final static int ZSTD_LEVEL = 3;
+
+	SSTableCompression(final byte id, final String codec) {
+		this.id = id;
+		this.codec = codec;
+	}
+
+	public byte getId() {
+		return id;
+	}
+	
+	public String getCodecString() {
+		return codec;
+	}
+	
+	/**
+	 * Compress the given data
+	 * @param data
+	 * @param length
+	 * @return the compressed data
+	 * @throws IOException
+	 */
+	public byte[] compress(final byte[] data, final int length) throws IOException {
+		switch (this) {
+		case SNAPPY:
+			final byte[] snappyBuffer = new byte[Snappy.maxCompressedLength(length)];
+			final int snappyLength = Snappy.compress(data, 0, length, snappyBuffer, 0);
+			return copyOf(snappyBuffer, snappyLength);
+		case ZSTD:
+			final byte[] zstdBuffer = new byte[(int) Zstd.compressBound(length)];
+			final long zstdLength = Zstd.compressByteArray(zstdBuffer, 0, zstdBuffer.length, 
+					data, 0, length, ZSTD_LEVEL);
+			checkZstdResult(zstdLength);
+			return copyOf(zstdBuffer, (int) zstdLength);
+		case NONE:
+		default:
+			return copyOf(data, length);
+		}
+	}
+	
+	/**
+	 * Decompress the given data
+	 * @param compressed
+	 * @param uncompressedLength
+	 * @return the uncompressed data
+	 * @throws IOException
+	 */
+	public byte[] decompress(final byte[] compressed, final int uncompressedLength) throws IOException {
+		final byte[] result = new byte[uncompressedLength];
+		
+		switch (this) {
+		case SNAPPY:
+			Snappy.uncompress(compressed, 0, compressed.length, result, 0);
+			break;
+		case ZSTD:
+			final long zstdLength = Zstd.decompressByteArray(result, 0, uncompressedLength, 
+					compressed, 0, compressed.length);
+			checkZstdResult(zstdLength);
+			break;
+		case NONE:
+		default:
+			System.arraycopy(compressed, 0, result, 0, uncompressedLength);
+			break;
+		}
+		
+		return result;
+	}
+
+	/**
+	 * Check the result of a zstd call
+	 * @param result
+	 * @throws IOException
+	 */
+	private static void checkZstdResult(final long result) throws IOException {
+		if(Zstd.isError(result)) {
+			throw new IOException("Zstd error: " + Zstd.getErrorName(result));
+		}
+	}
+	
+	/**
+	 * Copy the first bytes of the array
+	 * @param data
+	 * @param length
+	 * @return
+	 */
+	private static byte[] copyOf(final byte[] data, final int length) {
+		final byte[] result = new byte[length];
+		System.arraycopy(data, 0, result, 0, length);
+		return result;
+	}
+
+	public static SSTableCompression fromString(final String value) {
+		for (SSTableCompression compression : SSTableCompression.values()) {
+			if (compression.getCodecString().equalsIgnoreCase(value)) {
+				return compression;
+			}
+		}
+
+		return SSTableCompression.NONE;
+	}
+	
+	public static SSTableCompression fromId(final byte value) {
+		for (SSTableCompression compression : SSTableCompression.values()) {
+			if (compression.getId() == value) {
+				return compression;
+			}
+		}
+
+		return SSTableCompression.NONE;
+	}
+}
@@ -27,25 +27,60 @@ public class SSTableConst {
 	 */
 	public final static byte[] MAGIC_BYTES_SSTABLE = "bboxdb".getBytes(StandardCharsets.UTF_8);
 	
+	/**
+	 * The magic bytes at the beginning of every block based (compressed) SSTable file
+	 */
+	public final static byte[] MAGIC_BYTES_SSTABLE_BLOCK = "bbxblk".getBytes(StandardCharsets.UTF_8);
+	
 	/**
 	 * The magic bytes at the beginning of every write ahead log file
 	 */
 	public final static byte[] MAGIC_BYTES_WAL = "bboxdb-wal".getBytes(StandardCharsets.UTF_8);
 	
+	/**
+	 * The magic bytes at the beginning of every segmented (checksummed) write ahead log file
+	 */
+	public final static byte[] MAGIC_BYTES_WAL_SEGMENTED = "bboxdb-wl2".getBytes(StandardCharsets.UTF_8);
+	
 	/**
 	 * The magic bytes at the beginning of every SSTable index file
 	 */
 	public final static byte[] MAGIC_BYTES_INDEX = "bboxdb-idx".getBytes(StandardCharsets.UTF_8);
 	
+	/**
+	 * The magic bytes at the beginning of every SSTable index file with 64 bit positions
+	 */
+	public final static byte[] MAGIC_BYTES_INDEX_V2 = "bboxdb-id2".getBytes(StandardCharsets.UTF_8);
+	
+	/**
+	 * The magic bytes at the beginning of every sorted key index file
+	 */
+	public final static byte[] MAGIC_BYTES_KEY_INDEX = "bboxdb-kix".getBytes(StandardCharsets.UTF_8);
+	
 	/**
 	 * The magic bytes at the beginning of every spatial index file
 	 */
 	public final static byte[] MAGIC_BYTES_SPATIAL_RTREE_INDEX = "bboxdb-sidx".getBytes(StandardCharsets.UTF_8);
 	
+	/**
+	 * The magic bytes at the beginning of every spatial index file with 64 bit positions
+	 */
+	public final static byte[] MAGIC_BYTES_SPATIAL_RTREE_INDEX_V2 = "bboxdb-sid2".getBytes(StandardCharsets.UTF_8);
+	
+	/**
+	 * The magic bytes at the beginning of every spatial index file with fixed size nodes
+	 */
+	public final static byte[] MAGIC_BYTES_SPATIAL_RTREE_INDEX_V3 = "bboxdb-sid3".getBytes(StandardCharsets.UTF_8);
+	
+	/**
+	 * The magic bytes at the beginning of every spatial grid index file
+	 */
+	public final static byte[] MAGIC_BYTES_SPATIAL_GRID_INDEX = "bboxdb-sgrd".getBytes(StandardCharsets.UTF_8);
+	
 	/**
 	 * The current version of the SSTable layout format
 	 */
-	public final static short SST_VERSION = 1;
+	public final static short SST_VERSION = 2;
 	
 	/**
 	 * The prefix for every SSTable file
@@ -62,6 +97,11 @@ public class SSTableConst {
 	 */
 	public final static String SST_INDEX_SUFFIX = ".idx";
 	
+	/**
+	 * The suffix for every sorted key index file
+	 */
+	public final static String SST_KEY_INDEX_SUFFIX = ".kidx";
+	
 	/**
 	 * The suffix for every spatial index file
 	 */
@@ -102,6 +142,53 @@ public class SSTableConst {
 	 */
 	public final static int INDEX_ENTRY_BYTES = 4;
 	
+	/**
+	 * Format of the index file (version 2):
+	 * 
+	 * -------------------------------------------------
+	 * | Tuple-Position | Tuple-Position |  .........  |
+	 * |     8 Byte     |     8 Byte     |  .........  |
+	 * -------------------------------------------------
+	 */
+	public final static int INDEX_ENTRY_BYTES_V2 = 8;
+	
+	/**
+	 * Format of the footer of a block based SSTable:
+	 * 
+	 * ---------------------------------------------------------
+	 * | Block index position | Number of blocks | Compression |
+	 * |        8 Byte        |      4 Byte      |    1 Byte   |
+	 * ---------------------------------------------------------
+	 */
+	public final static int BLOCK_FOOTER_BYTES = 13;
+	
+	/**
+	 * The default size of an uncompressed block (64 KB)
+	 */
+	public final static int DEFAULT_BLOCK_SIZE = 64 * 1024;
+	
+	/**
+	 * The number of uncompressed blocks that are cached per SSTable
+	 */
+	public final static int BLOCK_CACHE_ELEMENTS = 16;
+	
+	/**
+	 * Format of the footer of the sorted key index:
+	 * 
+	 * -------------------------------------------------------
+	 * | Top level position | Number of blocks | Number of   |
+	 * |                    |                  | entries     |
+	 * |       8 Byte       |      4 Byte      |   4 Byte    |
+	 * -------------------------------------------------------
+	 */
+	public final static int KEY_INDEX_FOOTER_BYTES = 16;
+	
+	/**
+	 * The number of entries of a sorted key index block (all versions 
+	 * of a key are stored in the same block, so a block can be larger)
+	 */
+	public final static int KEY_INDEX_BLOCK_ENTRIES = 32;
+	
 	/**
 	 * Marker for deleted tuples
 	 */
@@ -158,10 +245,11 @@ public class SSTableConst {
 	
 	
 	/**
-	 * The maximal size for one SSTable. SStables are mapped into memory, the JVM can only
-	 * map files up to 2 GB. Therefore the limit is set to 1.9 GB.
+	 * The maximal size for one SSTable (16 GB). SSTables are mapped into memory 
+	 * as a list of segments, so the size is not limited by the 2 GB limit of a 
+	 * single mapping.
 	 */
-	public final static int MAX_SSTABLE_SIZE = 2040109465;
+	public final static long MAX_SSTABLE_SIZE = 16L * 1024 * 1024 * 1024;
 	
 	/**
 	 * The maximal amount of unflushed memtables per SSTable
@@ -156,6 +156,19 @@ public class SSTableHelper {
 				+ SSTableConst.SST_INDEX_SUFFIX;
 	}
 	
+	/**
+	 * The full name of the sorted key index file for a given relation
+	 * 
+	 * @param directory
+	 * @param name
+	 * 
+	 * @return e.g. /tmp/bboxdb/data/relation1/sstable_relation1_2.kidx
+	 */
+	public static String getSSTableKeyIndexFilename(final String directory, final TupleStoreName name, final int tablenumber) {
+		return getSSTableBase(directory, name, tablenumber)
+				+ SSTableConst.SST_KEY_INDEX_SUFFIX;
+	}
+	
 	/**
 	 * The full name of the SSTable bloom filter file for a given relation
 	 * 
@@ -217,6 +230,17 @@ public class SSTableHelper {
 				&& filename.endsWith(SSTableConst.SST_INDEX_SUFFIX);
 	}
 	
+	/**
+	 * Belongs the given filename to a sorted key index?
+	 * 
+	 * @param filename
+	 * @return
+	 */
+	public static boolean isFileNameSSTableKeyIndex(final String filename) {
+		return filename.startsWith(SSTableConst.SST_FILE_PREFIX) 
+				&& filename.endsWith(SSTableConst.SST_KEY_INDEX_SUFFIX);
+	}
+	
 	/**
 	 * Belongs the given filename to a SSTable bloom filter file?
 	 * @param filename
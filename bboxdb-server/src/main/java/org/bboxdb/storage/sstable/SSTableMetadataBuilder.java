@@ -20,6 +20,7 @@ package org.bboxdb.storage.sstable;
 import org.bboxdb.commons.math.Hyperrectangle;
 import org.bboxdb.storage.entity.Tuple;
 import org.bboxdb.storage.entity.TupleStoreMetaData;
+import org.bboxdb.storage.util.TupleHelper;
 
 public class SSTableMetadataBuilder {
 	
@@ -48,6 +49,26 @@ public class SSTableMetadataBuilder {
 	 */
 	private Hyperrectangle boundingBox;
 	
+	/**
+	 * Was a tuple without a bounding box seen (the covering box ignores the full space)
+	 */
+	private boolean fullSpaceTupleSeen = false;
+	
+	/**
+	 * The smallest key
+	 */
+	private String firstKey;
+	
+	/**
+	 * The largest key
+	 */
+	private String lastKey;
+	
+	/**
+	 * The level of the SSTable
+	 */
+	private int level = 0;
+	
 	/**
 	 * The creator of the SSTable
 	 */
@@ -61,20 +82,57 @@ public class SSTableMetadataBuilder {
 	 * Update the metadata 
 	 */
 	public void updateWithTuple(final Tuple tuple) {
+		updateWithTuple(tuple.getKey(), tuple.getBoundingBox(), tuple.getVersionTimestamp(), 
+				tuple.getReceivedTimestamp(), TupleHelper.isDeletedTuple(tuple));
+	}
+	
+	/**
+	 * Update the metadata (e.g., for already serialized tuples)
+	 * @param key
+	 * @param tupleBoundingBox
+	 * @param versionTimestamp
+	 * @param receivedTimestamp
+	 * @param deletedTuple
+	 */
+	public void updateWithTuple(final String key, final Hyperrectangle tupleBoundingBox, 
+			final long versionTimestamp, final long receivedTimestamp, final boolean deletedTuple) {
+		
 		tuples++;
 		
+		if(firstKey == null || key.compareTo(firstKey) < 0) {
+			firstKey = key;
+		}
+		
+		if(lastKey == null || key.compareTo(lastKey) > 0) {
+			lastKey = key;
+		}
+		
+		// Deleted tuples have no bounding box, they are only needed to invalidate 
+		// tuples that are found in other tuple stores
+		if(! deletedTuple && tupleBoundingBox.getDimension() == 0) {
+			fullSpaceTupleSeen = true;
+		}
+		
 		if(boundingBox == null) {
-			boundingBox = tuple.getBoundingBox();
+			boundingBox = tupleBoundingBox;
 		} else {
 			// Calculate the bounding box of the current bounding box and
 			// the bounding box of the tuple
-			boundingBox = Hyperrectangle.getCoveringBox(boundingBox, tuple.getBoundingBox());
+			boundingBox = Hyperrectangle.getCoveringBox(boundingBox, tupleBoundingBox);
 		}
 				
 		// Update the newest and the oldest tuple
-		newestTupleVersionTimstamp = Math.max(newestTupleVersionTimstamp, tuple.getVersionTimestamp());
-		oldestTupleVersionTimestamp = Math.min(oldestTupleVersionTimestamp, tuple.getVersionTimestamp());
-		newestTupleInsertedTimstamp = Math.max(newestTupleInsertedTimstamp, tuple.getReceivedTimestamp());
+		newestTupleVersionTimstamp = Math.max(newestTupleVersionTimstamp, versionTimestamp);
+		oldestTupleVersionTimestamp = Math.min(oldestTupleVersionTimestamp, versionTimestamp);
+		newestTupleInsertedTimstamp = Math.max(newestTupleInsertedTimstamp, receivedTimestamp);
+	}
+	
+	/**
+	 * Set the level of the SSTable
+	 * @param level
+	 */
+	public void setLevel(final int level) {
+		this.level = level;
 	}
 	
 	/**
@@ -88,7 +146,15 @@ public class SSTableMetadataBuilder {
 			boundingBoxArray = boundingBox.toDoubleArray();
 		}
 		
-		return new TupleStoreMetaData(creator.getCreatorString(), tuples, oldestTupleVersionTimestamp, 
-				newestTupleVersionTimstamp, newestTupleInsertedTimstamp, boundingBoxArray);
+		final TupleStoreMetaData metaData = new TupleStoreMetaData(creator.getCreatorString(), tuples, 
+				oldestTupleVersionTimestamp, newestTupleVersionTimstamp, newestTupleInsertedTimstamp, 
+				boundingBoxArray);
+		
+		metaData.setBoundingBoxCoversAllTuples(! fullSpaceTupleSeen);
+		metaData.setFirstKey(firstKey);
+		metaData.setLastKey(lastKey);
+		metaData.setLevel(level);
+		
+		return metaData;
 	}
 }
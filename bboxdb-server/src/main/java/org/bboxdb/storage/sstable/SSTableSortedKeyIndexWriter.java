@@ -0,0 +1,196 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.sstable;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.google.common.io.CountingOutputStream;
+
+/**
+ * Writes the sorted key index of an SSTable. The index contains the keys and 
+ * the positions of the tuples. The keys are prefix compressed within a block. 
+ * The first key of every block is stored in the top level at the end of the 
+ * file, which is kept in memory by the reader. All versions of a key are 
+ * stored in the same block, so a point lookup reads exactly one block.
+ * 
+ * Format of the file:
+ * 
+ * -------------------------------------------------------------
+ * | Magic | Block 0 | ... | Block n | Top level | Footer      |
+ * -------------------------------------------------------------
+ * 
+ * Format of a block entry:
+ * 
+ * ----------------------------------------------------------
+ * | Shared prefix | Suffix length | Suffix | Tuple-Position |
+ * |     2 Byte    |     2 Byte    |   n    |     8 Byte     |
+ * ----------------------------------------------------------
+ * 
+ * Format of a top level entry:
+ * 
+ * ------------------------------------------------------
+ * | Block position | First entry | Key length | Key    |
+ * |     8 Byte     |    4 Byte   |   2 Byte   |   n    |
+ * ------------------------------------------------------
+ */
+public final class SSTableSortedKeyIndexWriter implements Closeable {
+	
+	/**
+	 * The output stream
+	 */
+	private final CountingOutputStream countingOutputStream;
+	
+	/**
+	 * The data output stream
+	 */
+	private final DataOutputStream outputStream;
+	
+	/**
+	 * The top level
+	 */
+	private final ByteArrayOutputStream topLevelBytes;
+	
+	/**
+	 * The top level stream
+	 */
+	private final DataOutputStream topLevelStream;
+	
+	/**
+	 * The previous key
+	 */
+	private byte[] lastKey;
+	
+	/**
+	 * The entries of the active block
+	 */
+	private int blockEntries;
+	
+	/**
+	 * The number of written blocks
+	 */
+	private int blocks;
+	
+	/**
+	 * The number of written entries
+	 */
+	private int entries;
+	
+	public SSTableSortedKeyIndexWriter(final File file) throws IOException {
+		this.countingOutputStream = new CountingOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file)));
+		this.outputStream = new DataOutputStream(countingOutputStream);
+		this.topLevelBytes = new ByteArrayOutputStream();
+		this.topLevelStream = new DataOutputStream(topLevelBytes);
+		this.lastKey = null;
+		this.blockEntries = 0;
+		this.blocks = 0;
+		this.entries = 0;
+		
+		outputStream.write(SSTableConst.MAGIC_BYTES_KEY_INDEX);
+	}
+	
+	/**
+	 * Add the next entry, the keys need to be added in sorted order
+	 * @param key
+	 * @param tuplePosition
+	 * @throws IOException
+	 */
+	public void addEntry(final String key, final long tuplePosition) throws IOException {
+		final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+		final boolean sameKey = lastKey != null && Arrays.equals(lastKey, keyBytes);
+		
+		// Start a new block, all versions of a key are written into the same block
+		if(lastKey == null || (blockEntries >= SSTableConst.KEY_INDEX_BLOCK_ENTRIES && ! sameKey)) {
+			topLevelStream.writeLong(countingOutputStream.getCount());
+			topLevelStream.writeInt(entries);
+			topLevelStream.writeShort(keyBytes.length);
+			topLevelStream.write(keyBytes);
+			blockEntries = 0;
+			blocks++;
+			lastKey = null;
+		}
+		
+		final int sharedPrefix = getSharedPrefix(lastKey, keyBytes);
+		outputStream.writeShort(sharedPrefix);
+		outputStream.writeShort(keyBytes.length - sharedPrefix);
+		outputStream.write(keyBytes, sharedPrefix, keyBytes.length - sharedPrefix);
+		outputStream.writeLong(tuplePosition);
+		
+		lastKey = keyBytes;
+		blockEntries++;
+		entries++;
+	}
+	
+	/**
+	 * Get the length of the shared prefix
+	 * @param lastKey
+	 * @param key
+	 * @return
+	 */
+	private static int getSharedPrefix(final byte[] lastKey, final byte[] key) {
+		if(lastKey == null) {
+			return 0;
+		}
+		
+		final int maxLength = Math.min(lastKey.length, key.length);
+		
+		for(int i = 0; i < maxLength; i++) {
+			if(lastKey[i] != key[i]) {
+				return i;
+			}
+		}
+		
+		return maxLength;
+	}
+	
+	/**
+	 * Write the top level and the footer
+	 * @throws IOException
+	 */
+	public void finish() throws IOException {
+		final long topLevelPosition = countingOutputStream.getCount();
+		topLevelStream.flush();
+		topLevelBytes.writeTo(outputStream);
+		
+		outputStream.writeLong(topLevelPosition);
+		outputStream.writeInt(blocks);
+		outputStream.writeInt(entries);
+		outputStream.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		outputStream.close();
+	}
+	
+	/**
+	 * Get the number of written blocks
+	 * @return
+	 */
+	public int getBlocks() {
+		return blocks;
+	}
+}
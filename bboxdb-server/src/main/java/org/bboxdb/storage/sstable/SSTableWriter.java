@@ -25,14 +25,17 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 
 import org.bboxdb.commons.io.DataEncoderHelper;
+import org.bboxdb.commons.math.Hyperrectangle;
 import org.bboxdb.storage.BloomFilterBuilder;
 import org.bboxdb.storage.StorageManagerException;
 import org.bboxdb.storage.entity.DeletedTuple;
+import org.bboxdb.storage.entity.LazyTuple;
 import org.bboxdb.storage.entity.Tuple;
 import org.bboxdb.storage.entity.TupleStoreMetaData;
 import org.bboxdb.storage.entity.TupleStoreName;
@@ -76,6 +79,11 @@ public class SSTableWriter implements AutoCloseable {
 	 */
 	private OutputStream sstableIndexOutputStream;
 	
+	/**
+	 * The sorted key index
+	 */
+	private SSTableSortedKeyIndexWriter sortedKeyIndexWriter;
+	
 	/**
 	 * The SSTable file object
 	 */
@@ -86,6 +94,11 @@ public class SSTableWriter implements AutoCloseable {
 	 */
 	private File sstableIndexFile;
 	
+	/**
+	 * The sorted key index file
+	 */
+	private File sortedKeyIndexFile;
+	
 	/**
 	 * The bloom filter file
 	 */
@@ -120,6 +133,36 @@ public class SSTableWriter implements AutoCloseable {
 	 * The error flag
 	 */
 	private boolean exceptionDuringWrite;
+	
+	/**
+	 * The buffer for copying serialized tuples
+	 */
+	private byte[] transferBuffer;
+	
+	/**
+	 * The compression of the SSTable
+	 */
+	private final SSTableCompression compression;
+	
+	/**
+	 * The uncompressed size of a block
+	 */
+	private final int blockSize;
+	
+	/**
+	 * The block writer (only for compressed SSTables)
+	 */
+	private SSTableBlockWriter blockWriter;
+	
+	/**
+	 * The number of written index entries
+	 */
+	private int writtenEntries;
+	
+	/**
+	 * The size of the transfer buffer
+	 */
+	private final static int TRANSFER_BUFFER_SIZE = 64 * 1024;
 
 	/**
 	 * The amount of written tuple bytes
@@ -146,11 +189,31 @@ public class SSTableWriter implements AutoCloseable {
 	public SSTableWriter(final String directory, final TupleStoreName name, 
 			final int tablenumber, final long estimatedNumberOfTuples, final SSTableCreator creator) {
 		
+		this(directory, name, tablenumber, estimatedNumberOfTuples, creator, 
+				SSTableCompression.NONE, SSTableConst.DEFAULT_BLOCK_SIZE);
+	}
+	
+	public SSTableWriter(final String directory, final TupleStoreName name, 
+			final int tablenumber, final long estimatedNumberOfTuples, final SSTableCreator creator,
+			final SSTableCompression compression, final int blockSize) {
+		
+		this(directory, name, tablenumber, estimatedNumberOfTuples, creator, compression, 
+				blockSize, SpatialIndexBuilderFactory.getInstance());
+	}
+	
+	public SSTableWriter(final String directory, final TupleStoreName name, 
+			final int tablenumber, final long estimatedNumberOfTuples, final SSTableCreator creator,
+			final SSTableCompression compression, final int blockSize, 
+			final SpatialIndexBuilder spatialIndexBuilder) {
+		
 		this.directory = directory;
 		this.name = name;
 		this.tablenumber = tablenumber;
 		this.metadataBuilder = new SSTableMetadataBuilder(creator);
 		this.exceptionDuringWrite = false;
+		this.compression = compression;
+		this.blockSize = blockSize;
+		this.writtenEntries = 0;
 		
 		// Bloom Filter
 		final String sstableBloomFilterFilename = SSTableHelper.getSSTableBloomFilterFilename(directory, name, tablenumber);
@@ -160,7 +223,7 @@ public class SSTableWriter implements AutoCloseable {
 		// Spatial index
 		final String spatialIndexFilename =  SSTableHelper.getSSTableSpatialIndexFilename(directory, name, tablenumber);
 		this.spatialIndexFile = new File(spatialIndexFilename);
-		this.spatialIndex = SpatialIndexBuilderFactory.getInstance();
+		this.spatialIndex = spatialIndexBuilder;
 		
 		// Metadata
 		final String ssTableMetadataFilename = SSTableHelper.getSSTableMetadataFilename(directory, name, tablenumber);
@@ -187,6 +250,9 @@ public class SSTableWriter implements AutoCloseable {
 		final String outputIndexFileName = SSTableHelper.getSSTableIndexFilename(directory, name, tablenumber);
 		sstableIndexFile = new File(outputIndexFileName);
 		
+		final String sortedKeyIndexFileName = SSTableHelper.getSSTableKeyIndexFilename(directory, name, tablenumber);
+		sortedKeyIndexFile = new File(sortedKeyIndexFileName);
+		
 		// Don't overwrite old data
 		if(sstableFile.exists()) {
 			throw new StorageManagerException("Table file already exists: " + sstableOutputFileName);
@@ -196,6 +262,10 @@ public class SSTableWriter implements AutoCloseable {
 			throw new StorageManagerException("Table file already exists: " + sstableIndexFile);
 		}
 		
+		if(sortedKeyIndexFile.exists()) {
+			throw new StorageManagerException("Key index file already exists: " + sortedKeyIndexFile);
+		}
+		
 		if(sstableBloomFilterFile.exists()) {
 			throw new StorageManagerException("Bloom filter file already exists: " + sstableBloomFilterFile);
 		}
@@ -204,10 +274,18 @@ public class SSTableWriter implements AutoCloseable {
 			logger.debug("Writing new SSTable for relation: {} file: {}", name.getFullname(), sstableOutputFileName);
 			final BufferedOutputStream sstableFileOutputStream = new BufferedOutputStream(new FileOutputStream(sstableFile));
 			sstableOutputStream = new CountingOutputStream(sstableFileOutputStream);
-			sstableOutputStream.write(SSTableConst.MAGIC_BYTES_SSTABLE);
+			
+			if(compression == SSTableCompression.NONE) {
+				sstableOutputStream.write(SSTableConst.MAGIC_BYTES_SSTABLE);
+			} else {
+				sstableOutputStream.write(SSTableConst.MAGIC_BYTES_SSTABLE_BLOCK);
+				blockWriter = new SSTableBlockWriter(sstableOutputStream, compression, blockSize);
+			}
 			
 			sstableIndexOutputStream = new BufferedOutputStream(new FileOutputStream(sstableIndexFile));
-			sstableIndexOutputStream.write(SSTableConst.MAGIC_BYTES_INDEX);
+			sstableIndexOutputStream.write(SSTableConst.MAGIC_BYTES_INDEX_V2);
+			
+			sortedKeyIndexWriter = new SSTableSortedKeyIndexWriter(sortedKeyIndexFile);
 		} catch (FileNotFoundException e) {
 			exceptionDuringWrite = true;
 			throw new StorageManagerException("Unable to open output file", e);
@@ -226,6 +304,10 @@ public class SSTableWriter implements AutoCloseable {
 					name.getFullname(), tablenumber, sstableFile.getName());
 
 			if(sstableOutputStream != null) {
+				if(blockWriter != null && ! exceptionDuringWrite) {
+					blockWriter.finish();
+				}
+				
 				sstableOutputStream.close();
 				sstableOutputStream = null;
 			}
@@ -235,6 +317,15 @@ public class SSTableWriter implements AutoCloseable {
 				sstableIndexOutputStream = null;
 			}
 			
+			if(sortedKeyIndexWriter != null) {
+				if(! exceptionDuringWrite) {
+					sortedKeyIndexWriter.finish();
+				}
+				
+				sortedKeyIndexWriter.close();
+				sortedKeyIndexWriter = null;
+			}
+			
 			writeSpatialIndex();
 			writeBloomFilter();
 			writeMetadata();
@@ -261,8 +352,8 @@ public class SSTableWriter implements AutoCloseable {
 	 * Delete written data from disk
 	 */
 	public void deleteFromDisk() {
-		final File filesArray[] = {sstableFile, sstableIndexFile, sstableBloomFilterFile, 
-				spatialIndexFile, metadataFile};
+		final File filesArray[] = {sstableFile, sstableIndexFile, sortedKeyIndexFile, 
+				sstableBloomFilterFile, spatialIndexFile, metadataFile};
 		
 		final List<File> filesToDelete = Arrays.asList(filesArray);
 		
@@ -313,6 +404,14 @@ public class SSTableWriter implements AutoCloseable {
 		metadata.exportToYamlFile(metadataFile);
 	}
 	
+	/**
+	 * Set the level of the SSTable (stored in the metadata)
+	 * @param level
+	 */
+	public void setLevel(final int level) {
+		metadataBuilder.setLevel(level);
+	}
+	
 	/**
 	 * Set the error flag
 	 */
@@ -328,7 +427,7 @@ public class SSTableWriter implements AutoCloseable {
 	 * @throws StorageManagerException 
 	 */
 	public void addTuple(final Tuple tuple) throws StorageManagerException {
-		final int tuplePosition = addTupleWithoutSpatialIndex(tuple);
+		final long tuplePosition = addTupleWithoutSpatialIndex(tuple);
 		
 		// Don't add deleted tuples to the index
 		if(tuple instanceof DeletedTuple) {
@@ -369,17 +468,17 @@ public class SSTableWriter implements AutoCloseable {
 	 * @return
 	 * @throws StorageManagerException
 	 */
-	public int addTupleWithoutSpatialIndex(final Tuple tuple) throws StorageManagerException {
+	public long addTupleWithoutSpatialIndex(final Tuple tuple) throws StorageManagerException {
 		try {
+			final OutputStream tupleOutputStream = getTupleOutputStream(tuple.getKey());
+
 			// Add Tuple to the index
-			final int tuplePosition = (int) sstableOutputStream.getCount();
-			writeIndexEntry(tuplePosition);
-			
-			final int newPosition = (int) sstableOutputStream.getCount();
-			final int writtenBytes = newPosition - tuplePosition;
+			final long tuplePosition = getTuplePosition();
+			writeIndexEntry(tuple.getKey(), tuplePosition);
 			
 			// Add Tuple to the SSTable file
-			TupleHelper.writeTupleToStream(tuple, sstableOutputStream);
+			writeTupleToStream(tuple, tupleOutputStream);
+			final long writtenBytes = getTuplePosition() - tuplePosition;
 			metadataBuilder.updateWithTuple(tuple);
 			
 			// Add tuple to the bloom filter
@@ -395,6 +494,145 @@ public class SSTableWriter implements AutoCloseable {
 		}
 	}
 
+	/**
+	 * Write an already serialized tuple (e.g., from an off-heap memtable). The bytes
+	 * are copied into the SSTable without decoding and encoding the tuple data. 
+	 * 
+	 * @param buffer
+	 * @param offset
+	 * @param length
+	 * @throws StorageManagerException
+	 */
+	public void addSerializedTuple(final ByteBuffer buffer, final int offset, final int length) 
+			throws StorageManagerException {
+		
+		try {
+			final short keyLength = buffer.getShort(offset + TupleHelper.KEY_LENGTH_OFFSET);
+			final int boxLength = buffer.getInt(offset + TupleHelper.BOX_LENGTH_OFFSET);
+			final long versionTimestamp = buffer.getLong(offset + TupleHelper.VERSION_TIMESTAMP_OFFSET);
+			final long receivedTimestamp = buffer.getLong(offset + TupleHelper.RECEIVED_TIMESTAMP_OFFSET);
+			
+			final byte[] keyBytes = new byte[keyLength];
+			buffer.get(offset + TupleHelper.TUPLE_HEADER_BYTES, keyBytes);
+			final String key = new String(keyBytes, StandardCharsets.UTF_8);
+			
+			final OutputStream tupleOutputStream = getTupleOutputStream(key);
+			final long tuplePosition = getTuplePosition();
+			writeIndexEntry(key, tuplePosition);
+			
+			final boolean deletedTuple = TupleHelper.isDeletedTuple(buffer, offset);
+			Hyperrectangle boundingBox = Hyperrectangle.FULL_SPACE;
+			
+			if(! deletedTuple) {
+				final byte[] boxBytes = new byte[boxLength];
+				buffer.get(offset + TupleHelper.TUPLE_HEADER_BYTES + keyLength, boxBytes);
+				boundingBox = Hyperrectangle.fromByteArray(boxBytes);
+			}
+			
+			// Add Tuple to the SSTable file
+			copyBufferToStream(buffer, offset, length, tupleOutputStream);
+			metadataBuilder.updateWithTuple(key, boundingBox, versionTimestamp, receivedTimestamp, deletedTuple);
+			
+			// Add tuple to the bloom filter
+			bloomFilter.put(key);
+			
+			writtenTuplesTotal.inc();
+			writtenTuplesBytes.inc(length);
+			
+			// Don't add deleted tuples to the index
+			if(! deletedTuple) {
+				spatialIndex.insert(new SpatialIndexEntry(boundingBox, tuplePosition));
+			}
+		} catch (IOException e) {
+			exceptionDuringWrite = true;
+			throw new StorageManagerException("Unable to write tuple to SSTable", e);
+		}
+	}
+
+	/**
+	 * Write the tuple into the stream. The serialized form of lazy tuples 
+	 * (e.g., read by a compaction) is copied without encoding the tuple again.
+	 * 
+	 * @param tuple
+	 * @param outputStream
+	 * @throws IOException
+	 */
+	private void writeTupleToStream(final Tuple tuple, final OutputStream outputStream) throws IOException {
+		if(tuple instanceof LazyTuple) {
+			final LazyTuple lazyTuple = (LazyTuple) tuple;
+			
+			if(lazyTuple.isSerializedFormValid()) {
+				final ByteBuffer serializedTuple = lazyTuple.getSerializedTuple();
+				copyBufferToStream(serializedTuple, serializedTuple.position(), 
+						serializedTuple.remaining(), outputStream);
+				return;
+			}
+		}
+		
+		TupleHelper.writeTupleToStream(tuple, outputStream);
+	}
+
+	/**
+	 * Copy the content of the (direct) buffer into the SSTable output stream
+	 * @param buffer
+	 * @param offset
+	 * @param length
+	 * @param outputStream
+	 * @throws IOException
+	 */
+	private void copyBufferToStream(final ByteBuffer buffer, final int offset, final int length, 
+			final OutputStream outputStream) throws IOException {
+		
+		if(buffer.hasArray()) {
+			outputStream.write(buffer.array(), buffer.arrayOffset() + offset, length);
+			return;
+		}
+		
+		if(transferBuffer == null) {
+			transferBuffer = new byte[TRANSFER_BUFFER_SIZE];
+		}
+		
+		int copied = 0;
+		
+		while(copied < length) {
+			final int chunk = Math.min(transferBuffer.length, length - copied);
+			buffer.get(offset + copied, transferBuffer, 0, chunk);
+			outputStream.write(transferBuffer, 0, chunk);
+			copied += chunk;
+		}
+	}
+
+	/**
+	 * Get the stream for the next tuple. For compressed SSTables, a new 
+	 * block is started if needed.
+	 * 
+	 * @param key
+	 * @return
+	 * @throws IOException
+	 */
+	private OutputStream getTupleOutputStream(final String key) throws IOException {
+		if(blockWriter == null) {
+			return sstableOutputStream;
+		}
+		
+		blockWriter.startTuple(key, writtenEntries);
+		return blockWriter.getTupleOutputStream();
+	}
+	
+	/**
+	 * Get the position of the next tuple. For compressed SSTables, the 
+	 * position in the uncompressed data is returned.
+	 * 
+	 * @return
+	 */
+	private long getTuplePosition() {
+		if(blockWriter == null) {
+			return sstableOutputStream.getCount();
+		}
+		
+		return blockWriter.getPosition();
+	}
+
 	/** 
 	 * Append an entry to the index file.
 	 * 
@@ -402,16 +640,20 @@ public class SSTableWriter implements AutoCloseable {
 	 * 
 	 * -------------------------------------------------
 	 * | Tuple-Position | Tuple-Position |  .........  |
- 	 * |     4 Byte     |     4 Byte     |  .........  |
+ 	 * |     8 Byte     |     8 Byte     |  .........  |
 	 * -------------------------------------------------
 	 * 
-	 * @param keyLengthBytes
-	 * @param keyPosition
+	 * The key and the position are also added to the sorted key index.
+	 * 
+	 * @param key
+	 * @param tuplePosition
 	 * @throws IOException
 	 */
-	private void writeIndexEntry(final int tuplePosition) throws IOException {
-		final ByteBuffer tuplePositionBytes = DataEncoderHelper.intToByteBuffer(tuplePosition);
+	private void writeIndexEntry(final String key, final long tuplePosition) throws IOException {
+		final ByteBuffer tuplePositionBytes = DataEncoderHelper.longToByteBuffer(tuplePosition);
 		sstableIndexOutputStream.write(tuplePositionBytes.array());
+		sortedKeyIndexWriter.addEntry(key, tuplePosition);
+		writtenEntries++;
 	}
 
 	/**
@@ -430,6 +672,14 @@ public class SSTableWriter implements AutoCloseable {
 		return sstableIndexFile;
 	}
 	
+	/**
+	 * Get the sorted key index file
+	 * @return
+	 */
+	public File getSortedKeyIndexFile() {
+		return sortedKeyIndexFile;
+	}
+	
 	/**
 	 * Get the metadata file
 	 * @return
@@ -451,7 +701,11 @@ public class SSTableWriter implements AutoCloseable {
 	 * @return
 	 */
 	public long getWrittenBytes() {
-		return sstableOutputStream.getCount();
+		if(blockWriter == null) {
+			return sstableOutputStream.getCount();
+		}
+		
+		return sstableOutputStream.getCount() + blockWriter.getPendingBytes();
 	}
 	
 	/**
@@ -0,0 +1,173 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.sstable.compact;
+
+import org.bboxdb.storage.entity.TupleStoreName;
+
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+
+public class CompactionMetrics {
+
+	/**
+	 * The bytes written by memtable flushes
+	 */
+	private final static Counter flushedBytes = Counter.build()
+			.name("bboxdb_flushed_sstable_bytes")
+			.help("SSTable bytes written by memtable flushes")
+			.register();
+	
+	/**
+	 * The bytes written by compactions
+	 */
+	private final static Counter compactedBytes = Counter.build()
+			.name("bboxdb_compacted_sstable_bytes")
+			.help("SSTable bytes written by compactions")
+			.register();
+	
+	/**
+	 * The bytes written by compactions that were delayed by the rate limiter
+	 */
+	private final static Counter throttledBytes = Counter.build()
+			.name("bboxdb_compaction_throttled_bytes")
+			.help("Compaction bytes that were delayed by the rate limiter")
+			.register();
+	
+	/**
+	 * The SSTables that were removed after the TTL
+	 */
+	private final static Counter expiredSSTables = Counter.build()
+			.name("bboxdb_expired_sstables_total")
+			.help("SSTables that were deleted without rewriting after the TTL")
+			.register();
+	
+	/**
+	 * The bytes of the SSTables that were removed after the TTL
+	 */
+	private final static Counter expiredBytes = Counter.build()
+			.name("bboxdb_expired_sstable_bytes")
+			.help("SSTable bytes that were deleted without rewriting after the TTL")
+			.register();
+	
+	/**
+	 * The write amplification
+	 */
+	private final static Gauge writeAmplification = Gauge.build()
+			.name("bboxdb_write_amplification")
+			.help("Written SSTable bytes per flushed byte")
+			.register();
+	
+	/**
+	 * The read amplification
+	 */
+	private final static Gauge readAmplification = Gauge.build()
+			.name("bboxdb_read_amplification")
+			.help("Number of SSTables per tuple store")
+			.labelNames("table")
+			.register();
+	
+	/**
+	 * Account the bytes of a flushed memtable
+	 * @param bytes
+	 */
+	public static void addFlushedBytes(final long bytes) {
+		flushedBytes.inc(bytes);
+		updateWriteAmplification();
+	}
+	
+	/**
+	 * Account the bytes written by a compaction
+	 * @param bytes
+	 */
+	public static void addCompactedBytes(final long bytes) {
+		compactedBytes.inc(bytes);
+		updateWriteAmplification();
+	}
+	
+	/**
+	 * Account the bytes of a compaction that were delayed by the rate limiter
+	 * @param bytes
+	 */
+	public static void addThrottledBytes(final long bytes) {
+		throttledBytes.inc(bytes);
+	}
+	
+	/**
+	 * Get the bytes of the compactions that were delayed by the rate limiter
+	 * @return
+	 */
+	public static double getThrottledBytes() {
+		return throttledBytes.get();
+	}
+	
+	/**
+	 * Account the expired SSTables
+	 * @param sstables
+	 * @param bytes
+	 */
+	public static void addExpiredSSTables(final int sstables, final long bytes) {
+		expiredSSTables.inc(sstables);
+		expiredBytes.inc(bytes);
+	}
+	
+	/**
+	 * Get the number of expired SSTables
+	 * @return
+	 */
+	public static double getExpiredSSTables() {
+		return expiredSSTables.get();
+	}
+	
+	/**
+	 * Update the write amplification. Each flushed byte is written once by 
+	 * the flush and once for each compaction it is part of.
+	 */
+	private static void updateWriteAmplification() {
+		final double flushed = flushedBytes.get();
+		
+		if(flushed > 0) {
+			writeAmplification.set((flushed + compactedBytes.get()) / flushed);
+		}
+	}
+	
+	/**
+	 * Get the write amplification
+	 * @return
+	 */
+	public static double getWriteAmplification() {
+		return writeAmplification.get();
+	}
+	
+	/**
+	 * Set the number of SSTables of the tuple store
+	 * @param tupleStoreName
+	 * @param sstables
+	 */
+	public static void updateReadAmplification(final TupleStoreName tupleStoreName, final int sstables) {
+		readAmplification.labels(tupleStoreName.getFullname()).set(sstables);
+	}
+	
+	/**
+	 * Get the number of SSTables of the tuple store
+	 * @param tupleStoreName
+	 * @return
+	 */
+	public static double getReadAmplification(final TupleStoreName tupleStoreName) {
+		return readAmplification.labels(tupleStoreName.getFullname()).get();
+	}
+}
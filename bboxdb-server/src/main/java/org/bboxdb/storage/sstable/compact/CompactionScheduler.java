@@ -0,0 +1,270 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.sstable.compact;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bboxdb.storage.entity.TupleStoreName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.RateLimiter;
+
+import io.prometheus.client.Gauge;
+
+/**
+ * Executes the compactions of a storage with a pool of workers. The tasks of the 
+ * tuple stores with the most SSTables are executed first, only one task per tuple 
+ * store is pending or running at the same time and the written bytes of all 
+ * workers are limited by a token bucket.
+ */
+public final class CompactionScheduler {
+
+	/**
+	 * The workers
+	 */
+	private final ThreadPoolExecutor executor;
+	
+	/**
+	 * The tuple stores with a pending or running task
+	 */
+	private final Set<TupleStoreName> scheduledTupleStores;
+	
+	/**
+	 * The rate limiter for the written bytes (null = unlimited)
+	 */
+	private final RateLimiter rateLimiter;
+	
+	/**
+	 * The sequence number of the tasks, tasks with the same priority are executed in order
+	 */
+	private final AtomicLong sequenceNumber;
+	
+	/**
+	 * The performance counter label
+	 */
+	private final String performanceCounterLabel;
+	
+	/**
+	 * The pending tasks
+	 */
+	private final static Gauge pendingTasksTotal = Gauge.build()
+			.name("bboxdb_compaction_pending_tasks_total")
+			.help("Number of pending compaction tasks")
+			.labelNames("storage").register();
+	
+	/**
+	 * The running tasks
+	 */
+	private final static Gauge runningTasksTotal = Gauge.build()
+			.name("bboxdb_compaction_running_tasks_total")
+			.help("Number of running compaction tasks")
+			.labelNames("storage").register();
+	
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(CompactionScheduler.class);
+
+	public CompactionScheduler(final String storageName, final int threads, final long bytesPerSecond) {
+		
+		if(threads <= 0) {
+			throw new IllegalArgumentException("Unable to create a scheduler with " + threads + " threads");
+		}
+		
+		this.performanceCounterLabel = storageName;
+		this.scheduledTupleStores = ConcurrentHashMap.newKeySet();
+		this.sequenceNumber = new AtomicLong();
+		this.rateLimiter = bytesPerSecond > 0 ? RateLimiter.create(bytesPerSecond) : null;
+		
+		// The queue contains only compaction tasks, they are ordered by their priority
+		final PriorityBlockingQueue<Runnable> queue = new PriorityBlockingQueue<>();
+		
+		this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, 
+				queue, getThreadFactory(storageName));
+	}
+
+	/**
+	 * Get the thread factory for the workers
+	 * @param storageName
+	 * @return
+	 */
+	private static ThreadFactory getThreadFactory(final String storageName) {
+		final AtomicInteger threadNumber = new AtomicInteger();
+		
+		return (r) -> {
+			final Thread thread = new Thread(r);
+			thread.setName(threadNumber.incrementAndGet() + ". Compact thread for: " + storageName);
+			return thread;
+		};
+	}
+	
+	/**
+	 * Schedule the task for the tuple store
+	 * @param tupleStoreName
+	 * @param priority - tasks with a higher priority are executed first
+	 * @param task
+	 * @return false if a task for the tuple store is pending or running
+	 */
+	public boolean schedule(final TupleStoreName tupleStoreName, final int priority, 
+			final Runnable task) {
+		
+		if(! scheduledTupleStores.add(tupleStoreName)) {
+			logger.debug("Compact task for {} is already scheduled", tupleStoreName);
+			return false;
+		}
+		
+		pendingTasksTotal.labels(performanceCounterLabel).inc();
+		
+		final CompactionTask compactionTask = new CompactionTask(tupleStoreName, priority, 
+				sequenceNumber.getAndIncrement(), task);
+		
+		try {
+			executor.execute(compactionTask);
+		} catch(RuntimeException e) {
+			pendingTasksTotal.labels(performanceCounterLabel).dec();
+			scheduledTupleStores.remove(tupleStoreName);
+			throw e;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Is a task for the tuple store pending or running
+	 * @param tupleStoreName
+	 * @return
+	 */
+	public boolean isScheduled(final TupleStoreName tupleStoreName) {
+		return scheduledTupleStores.contains(tupleStoreName);
+	}
+	
+	/**
+	 * Get the number of pending tasks
+	 * @return
+	 */
+	public int getPendingTasks() {
+		return executor.getQueue().size();
+	}
+	
+	/**
+	 * Get the number of running tasks
+	 * @return
+	 */
+	public int getRunningTasks() {
+		return executor.getActiveCount();
+	}
+	
+	/**
+	 * Get the rate limiter for the written bytes (null = unlimited)
+	 * @return
+	 */
+	public RateLimiter getRateLimiter() {
+		return rateLimiter;
+	}
+	
+	/**
+	 * Stop the workers, running tasks are interrupted
+	 * @throws InterruptedException 
+	 */
+	public void shutdown() throws InterruptedException {
+		final int pendingTasks = executor.shutdownNow().size();
+		pendingTasksTotal.labels(performanceCounterLabel).dec(pendingTasks);
+		executor.awaitTermination(1, TimeUnit.MINUTES);
+	}
+	
+	private class CompactionTask implements Runnable, Comparable<CompactionTask> {
+		
+		/**
+		 * The tuple store
+		 */
+		private final TupleStoreName tupleStoreName;
+		
+		/**
+		 * The priority
+		 */
+		private final int priority;
+		
+		/**
+		 * The sequence number
+		 */
+		private final long sequenceNumber;
+		
+		/**
+		 * The task
+		 */
+		private final Runnable task;
+
+		public CompactionTask(final TupleStoreName tupleStoreName, final int priority, 
+				final long sequenceNumber, final Runnable task) {
+			
+			this.tupleStoreName = tupleStoreName;
+			this.priority = priority;
+			this.sequenceNumber = sequenceNumber;
+			this.task = task;
+		}
+
+		@Override
+		public void run() {
+			pendingTasksTotal.labels(performanceCounterLabel).dec();
+			runningTasksTotal.labels(performanceCounterLabel).inc();
+			
+			try {
+				task.run();
+			} catch(Throwable e) {
+				logger.error("Got exception during compact of " + tupleStoreName, e);
+			} finally {
+				runningTasksTotal.labels(performanceCounterLabel).dec();
+				scheduledTupleStores.remove(tupleStoreName);
+			}
+		}
+
+		@Override
+		public int compareTo(final CompactionTask other) {
+			if(priority != other.priority) {
+				return Integer.compare(other.priority, priority);
+			}
+			
+			return Long.compare(sequenceNumber, other.sequenceNumber);
+		}
+
+		@Override
+		public int hashCode() {
+			return Long.hashCode(sequenceNumber);
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null)
+				return false;
+			if (getClass() != obj.getClass())
+				return false;
+			final CompactionTask other = (CompactionTask) obj;
+			return sequenceNumber == other.sequenceNumber;
+		}
+	}
+}
@@ -0,0 +1,254 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.sstable.compact;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.bboxdb.storage.entity.TupleStoreMetaData;
+import org.bboxdb.storage.sstable.SSTableConst;
+import org.bboxdb.storage.sstable.reader.SSTableFacade;
+
+/**
+ * Leveled merge strategy. Flushed tables are placed into level 0. The tables of 
+ * the levels >= 1 have disjoint key ranges and each level is levelMultiplier times 
+ * larger than the previous level. When a level is full, a table is merged with the 
+ * overlapping tables of the next level. So, a key lookup reads at most one table 
+ * per level >= 1.
+ */
+public final class LeveledMergeStrategy implements MergeStrategy {
+
+	/**
+	 * The number of level 0 tables that trigger a merge into level 1
+	 */
+	private final int level0Trigger;
+	
+	/**
+	 * The max number of level 0 tables per merge
+	 */
+	private final int maxLevel0Tables;
+	
+	/**
+	 * The size of the tables in the levels >= 1
+	 */
+	private final long targetSSTableSize;
+	
+	/**
+	 * The size ratio between two levels
+	 */
+	private final int levelMultiplier;
+	
+	/**
+	 * The highest level
+	 */
+	private final int maxLevel;
+	
+	/**
+	 * The default level 0 trigger
+	 */
+	public final static int DEFAULT_LEVEL0_TRIGGER = 4;
+	
+	/**
+	 * The default max number of level 0 tables per merge
+	 */
+	public final static int DEFAULT_MAX_LEVEL0_TABLES = 32;
+	
+	/**
+	 * The default table size (64 MB)
+	 */
+	public final static long DEFAULT_TARGET_SSTABLE_SIZE = 64 * 1024 * 1024;
+	
+	/**
+	 * The default level multiplier
+	 */
+	public final static int DEFAULT_LEVEL_MULTIPLIER = 10;
+	
+	/**
+	 * The default highest level
+	 */
+	public final static int DEFAULT_MAX_LEVEL = 7;
+	
+	public LeveledMergeStrategy() {
+		this(DEFAULT_LEVEL0_TRIGGER, DEFAULT_MAX_LEVEL0_TABLES, DEFAULT_TARGET_SSTABLE_SIZE, 
+				DEFAULT_LEVEL_MULTIPLIER, DEFAULT_MAX_LEVEL);
+	}
+	
+	public LeveledMergeStrategy(final int level0Trigger, final int maxLevel0Tables, 
+			final long targetSSTableSize, final int levelMultiplier, final int maxLevel) {
+		
+		if(level0Trigger < 1 || maxLevel0Tables < level0Trigger) {
+			throw new IllegalArgumentException("Invalid level 0 limits: " + level0Trigger 
+					+ " / " + maxLevel0Tables);
+		}
+		
+		if(targetSSTableSize <= 0 || levelMultiplier < 2 || maxLevel < 1) {
+			throw new IllegalArgumentException("Invalid level layout: " + targetSSTableSize 
+					+ " / " + levelMultiplier + " / " + maxLevel);
+		}
+		
+		this.level0Trigger = level0Trigger;
+		this.maxLevel0Tables = maxLevel0Tables;
+		this.targetSSTableSize = targetSSTableSize;
+		this.levelMultiplier = levelMultiplier;
+		this.maxLevel = maxLevel;
+	}
+	
+	@Override
+	public MergeTask getMergeTask(final List<SSTableFacade> sstables) {
+		final MergeTask mergeTask = new MergeTask();
+		
+		final List<SSTableFacade> level0Tables = getTablesOfLevel(sstables, 0);
+		
+		// Merge the level 0 tables into level 1
+		if(level0Tables.size() >= level0Trigger) {
+			final List<SSTableFacade> inputTables = level0Tables
+				.stream()
+				.sorted(Comparator.comparingInt(SSTableFacade::getTablebumber))
+				.limit(maxLevel0Tables)
+				.collect(Collectors.toList());
+			
+			fillMergeTask(mergeTask, sstables, inputTables, 1);
+			return mergeTask;
+		}
+		
+		// Push the oldest table of the first full level into the next level
+		for(int level = 1; level < maxLevel; level++) {
+			final List<SSTableFacade> levelTables = getTablesOfLevel(sstables, level);
+			
+			final long levelSize = levelTables
+				.stream()
+				.mapToLong(SSTableFacade::getSize)
+				.sum();
+			
+			if(levelSize <= getMaxLevelSize(level)) {
+				continue;
+			}
+			
+			final SSTableFacade oldestTable = levelTables
+				.stream()
+				.min(Comparator.comparingInt(SSTableFacade::getTablebumber))
+				.get();
+			
+			final List<SSTableFacade> inputTables = new ArrayList<>();
+			inputTables.add(oldestTable);
+			
+			fillMergeTask(mergeTask, sstables, inputTables, level + 1);
+			return mergeTask;
+		}
+		
+		return mergeTask;
+	}
+
+	/**
+	 * Merge the input tables and the overlapping tables of the target level
+	 * @param mergeTask
+	 * @param sstables
+	 * @param inputTables
+	 * @param targetLevel
+	 */
+	private void fillMergeTask(final MergeTask mergeTask, final List<SSTableFacade> sstables, 
+			final List<SSTableFacade> inputTables, final int targetLevel) {
+		
+		final List<SSTableFacade> compactTables = new ArrayList<>(inputTables);
+		
+		getTablesOfLevel(sstables, targetLevel)
+			.stream()
+			.filter(f -> isOverlapping(f, inputTables))
+			.forEach(compactTables::add);
+		
+		// Deletion markers can only be removed when all tables are included
+		if(compactTables.size() == sstables.size()) {
+			mergeTask.setTaskType(MergeTaskType.MAJOR);
+		} else {
+			mergeTask.setTaskType(MergeTaskType.MINOR);
+		}
+		
+		mergeTask.setCompactTables(compactTables);
+		mergeTask.setTargetLevel(targetLevel);
+		mergeTask.setMaxSSTableSize(targetSSTableSize);
+	}
+
+	/**
+	 * Get the tables of the level
+	 * @param sstables
+	 * @param level
+	 * @return
+	 */
+	private List<SSTableFacade> getTablesOfLevel(final List<SSTableFacade> sstables, final int level) {
+		return sstables
+			.stream()
+			.filter(f -> Math.min(f.getSsTableMetadata().getLevel(), maxLevel) == level)
+			.collect(Collectors.toList());
+	}
+	
+	/**
+	 * Get the max size of the level
+	 * @param level
+	 * @return
+	 */
+	public long getMaxLevelSize(final int level) {
+		long maxSize = targetSSTableSize;
+		
+		for(int i = 0; i < level; i++) {
+			maxSize = maxSize * levelMultiplier;
+		}
+		
+		return maxSize;
+	}
+	
+	/**
+	 * Is the key range of the table overlapping with the key range of the tables
+	 * @param facade
+	 * @param tables
+	 * @return
+	 */
+	private static boolean isOverlapping(final SSTableFacade facade, final List<SSTableFacade> tables) {
+		final TupleStoreMetaData metadata = facade.getSsTableMetadata();
+		
+		return tables
+			.stream()
+			.map(f -> f.getSsTableMetadata())
+			.anyMatch(m -> isOverlapping(metadata, m));
+	}
+	
+	/**
+	 * Are the key ranges overlapping, a table without a key range overlaps all tables
+	 * @param metadata1
+	 * @param metadata2
+	 * @return
+	 */
+	public static boolean isOverlapping(final TupleStoreMetaData metadata1, 
+			final TupleStoreMetaData metadata2) {
+		
+		if(metadata1.getFirstKey() == null || metadata1.getLastKey() == null 
+				|| metadata2.getFirstKey() == null || metadata2.getLastKey() == null) {
+			return true;
+		}
+		
+		return metadata1.getFirstKey().compareTo(metadata2.getLastKey()) <= 0 
+				&& metadata2.getFirstKey().compareTo(metadata1.getLastKey()) <= 0;
+	}
+	
+	@Override
+	public long getCompactorDelay() {
+		return SSTableConst.COMPACT_THREAD_DELAY;
+	}
+
+}
@@ -0,0 +1,52 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.sstable.compact;
+
+import java.util.concurrent.TimeUnit;
+
+import org.bboxdb.storage.entity.TupleStoreConfiguration;
+
+public class MergeStrategyFactory {
+
+	/**
+	 * Get the merge strategy that is specified in the tuple store configuration
+	 * 
+	 * @param tupleStoreConfiguration
+	 * @return
+	 */
+	public static MergeStrategy getInstance(final TupleStoreConfiguration tupleStoreConfiguration) {
+		
+		// The configuration could be unknown, e.g., the metadata file is not readable
+		final MergeStrategyType mergeStrategyType = tupleStoreConfiguration == null 
+				? MergeStrategyType.BASIC : MergeStrategyType.fromString(tupleStoreConfiguration.getMergeStrategy());
+		
+		switch (mergeStrategyType) {
+		case SIZE_TIERED:
+			return new SizeTieredMergeStrategy();
+		case LEVELED:
+			return new LeveledMergeStrategy();
+		case TIME_WINDOW:
+			final long windowSize = TimeWindowMergeStrategy.getWindowSizeInMillis(tupleStoreConfiguration.getTTL());
+			return new TimeWindowMergeStrategy(windowSize, TimeUnit.MILLISECONDS);
+		case BASIC:
+		default:
+			return new BasicMergeStrategy();
+		}
+	}
+	
+}
@@ -0,0 +1,78 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.sstable.compact;
+
+public enum MergeStrategyType {
+	
+	/**
+	 * Merge small tables and all tables from time to time
+	 */
+	BASIC((byte) 0x00, "basic"), 
+	
+	/**
+	 * Merge tables of a similar size
+	 */
+	SIZE_TIERED((byte) 0x01, "sizetiered"),
+	
+	/**
+	 * Merge the tables into levels with non-overlapping key ranges
+	 */
+	LEVELED((byte) 0x02, "leveled"),
+	
+	/**
+	 * Merge only the tables of the same time window
+	 */
+	TIME_WINDOW((byte) 0x03, "timewindow");
+
+	private final byte id;
+	
+	private final String type;
+
+	MergeStrategyType(final byte id, final String type) {
+		this.id = id;
+		this.type = type;
+	}
+
+	public byte getId() {
+		return id;
+	}
+	
+	public String getTypeString() {
+		return type;
+	}
+
+	public static MergeStrategyType fromString(final String value) {
+		for (MergeStrategyType mergeStrategyType : MergeStrategyType.values()) {
+			if (mergeStrategyType.getTypeString().equalsIgnoreCase(value)) {
+				return mergeStrategyType;
+			}
+		}
+
+		return MergeStrategyType.BASIC;
+	}
+	
+	public static MergeStrategyType fromId(final byte value) {
+		for (MergeStrategyType mergeStrategyType : MergeStrategyType.values()) {
+			if (mergeStrategyType.getId() == value) {
+				return mergeStrategyType;
+			}
+		}
+
+		return MergeStrategyType.BASIC;
+	}
+}
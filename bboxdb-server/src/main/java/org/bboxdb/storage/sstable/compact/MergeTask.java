@@ -20,6 +20,7 @@ package org.bboxdb.storage.sstable.compact;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.bboxdb.storage.sstable.SSTableConst;
 import org.bboxdb.storage.sstable.reader.SSTableFacade;
 
 public class MergeTask {
@@ -32,6 +33,16 @@ public class MergeTask {
 
 	public MergeTaskType taskType = MergeTaskType.UNKNOWN;
 	
+	/**
+	 * The level of the resulting tables
+	 */
+	protected int targetLevel = 0;
+	
+	/**
+	 * The max size of the resulting tables
+	 */
+	protected long maxSSTableSize = SSTableConst.MAX_SSTABLE_SIZE;
+	
 	public List<SSTableFacade> getCompactTables() {
 		return compactTables;
 	}
@@ -48,8 +59,25 @@ public class MergeTask {
 		this.taskType = taskType;
 	}
 
+	public int getTargetLevel() {
+		return targetLevel;
+	}
+	
+	public void setTargetLevel(final int targetLevel) {
+		this.targetLevel = targetLevel;
+	}
+	
+	public long getMaxSSTableSize() {
+		return maxSSTableSize;
+	}
+	
+	public void setMaxSSTableSize(final long maxSSTableSize) {
+		this.maxSSTableSize = maxSSTableSize;
+	}
+
 	@Override
 	public String toString() {
-		return "MergeTask [compactTables=" + compactTables + ", taskType=" + taskType + "]";
+		return "MergeTask [compactTables=" + compactTables + ", taskType=" + taskType 
+				+ ", targetLevel=" + targetLevel + ", maxSSTableSize=" + maxSSTableSize + "]";
 	}
 }
@@ -17,6 +17,7 @@
  *******************************************************************************/
 package org.bboxdb.storage.sstable.compact;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -24,20 +25,27 @@ import java.util.stream.Collectors;
 
 import org.bboxdb.commons.DuplicateResolver;
 import org.bboxdb.commons.SortedIteratorMerger;
+import org.bboxdb.commons.math.Hyperrectangle;
 import org.bboxdb.storage.StorageManagerException;
 import org.bboxdb.storage.entity.DeletedTuple;
 import org.bboxdb.storage.entity.Tuple;
+import org.bboxdb.storage.entity.TupleStoreConfiguration;
 import org.bboxdb.storage.entity.TupleStoreName;
 import org.bboxdb.storage.sstable.SSTableConst;
+import org.bboxdb.storage.sstable.SSTableCompression;
 import org.bboxdb.storage.sstable.SSTableCreator;
 import org.bboxdb.storage.sstable.SSTableWriter;
 import org.bboxdb.storage.sstable.duplicateresolver.TupleDuplicateResolverFactory;
 import org.bboxdb.storage.sstable.reader.SSTableKeyIndexReader;
+import org.bboxdb.storage.sstable.reader.SSTableReader;
+import org.bboxdb.storage.sstable.spatialindex.SpatialIndexBuilderFactory;
 import org.bboxdb.storage.tuplestore.manager.TupleStoreManager;
 import org.bboxdb.storage.util.TupleHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.util.concurrent.RateLimiter;
+
 public class SSTableCompactor {
 
 	/**
@@ -56,15 +64,50 @@ public class SSTableCompactor {
 	 */
 	private int writtenTuples;
 
+	/**
+	 * The amount of written bytes
+	 */
+	private long writtenBytes;
+	
+	/**
+	 * The level of the written tables
+	 */
+	private int targetLevel = 0;
+	
+	/**
+	 * The max size of the written tables
+	 */
+	private long maxSSTableSize = SSTableConst.MAX_SSTABLE_SIZE;
+	
+	/**
+	 * The rate limiter for the written bytes (null = unlimited)
+	 */
+	private RateLimiter rateLimiter = null;
+	
+	/**
+	 * The key of the last written tuple per output
+	 */
+	private String[] lastWrittenKey = new String[1];
+	
+	/**
+	 * The spatial partitioner of the output (null = not partitioned)
+	 */
+	private SpatialPartitioner spatialPartitioner = null;
+	
+	/**
+	 * The number of sampled tuples to partition the output by space
+	 */
+	private final static int PARTITION_SAMPLES = 10_000;
+
 	/**
 	 * The list of sstables to compact
 	 */
 	private final List<SSTableKeyIndexReader> sstableIndexReader;
 
 	/**
-	 * The current SStable writer
+	 * The current SStable writer per output
 	 */
-	private SSTableWriter sstableWriter;
+	private SSTableWriter[] sstableWriter = new SSTableWriter[1];
 
 	/**
 	 * The SStable manager
@@ -93,6 +136,7 @@ public class SSTableCompactor {
 		this.sstableIndexReader = sstableIndexReader;
 		this.readTuples = 0;
 		this.writtenTuples = 0;
+		this.writtenBytes = 0;
 	}
 
 	/**
@@ -114,11 +158,27 @@ public class SSTableCompactor {
 	 */
 	public void executeCompactation() throws StorageManagerException {
 
+		final List<SSTableReader> acquiredReader = new ArrayList<>();
+		
 		try {
+			// The scanned tuples are views of the mapped files, so the files 
+			// are kept mapped until the compaction is done
+			for(final SSTableKeyIndexReader reader : sstableIndexReader) {
+				final SSTableReader sstableReader = reader.getSstableReader();
+				
+				if(! sstableReader.acquire()) {
+					throw new StorageManagerException("Unable to acquire reader: " + sstableReader);
+				}
+				
+				acquiredReader.add(sstableReader);
+			}
+			
+			createSpatialPartitioner();
+			
 			// The iterators
-			final List<Iterator<Tuple>> iterators = sstableIndexReader
+			final List<Iterator<Tuple>> iterators = acquiredReader
 					.stream()
-					.map(r -> r.iterator())
+					.map(r -> r.scanIterator())
 					.collect(Collectors.toList());
 
 			final DuplicateResolver<Tuple> newestKeyResolver = TupleDuplicateResolverFactory.build(
@@ -139,10 +199,99 @@ public class SSTableCompactor {
 			handleErrorDuringCompact(e);
 		} finally {
 			closeSSTableWriter();
+			acquiredReader.forEach(r -> r.release());
 		}
 	}
 
 
+	/**
+	 * Partition the output by space, when the tuple store is configured for 
+	 * spatial partitions. The outputs are created by a k-d split of sampled tuples. 
+	 * Tuples without a bounding box are written into an additional output. Leveled 
+	 * stores are never partitioned, the tables of a level need disjoint key ranges.
+	 * @throws StorageManagerException
+	 */
+	private void createSpatialPartitioner() throws StorageManagerException {
+		final TupleStoreConfiguration configuration = tupleStoreManager.getTupleStoreConfiguration();
+		final int spatialPartitions = configuration.getSpatialPartitions();
+		
+		if(spatialPartitions <= 1) {
+			return;
+		}
+		
+		if(MergeStrategyType.fromString(configuration.getMergeStrategy()) == MergeStrategyType.LEVELED) {
+			logger.warn("Ignoring {} spatial partitions for the leveled store {}", 
+					spatialPartitions, tupleStoreManager.getTupleStoreName().getFullname());
+			return;
+		}
+		
+		final List<Hyperrectangle> samples = getSamples();
+		final SpatialPartitioner partitioner = new SpatialPartitioner(samples, spatialPartitions);
+		
+		if(partitioner.getPartitions() <= 1) {
+			logger.info("Unable to partition the output by space, using one output");
+			return;
+		}
+		
+		logger.info("Partitioning the output into {} spatial partitions ({} samples)", 
+				partitioner.getPartitions(), samples.size());
+		
+		spatialPartitioner = partitioner;
+		sstableWriter = new SSTableWriter[partitioner.getPartitions() + 1];
+		lastWrittenKey = new String[partitioner.getPartitions() + 1];
+	}
+	
+	/**
+	 * Read the bounding boxes of evenly distributed tuples of the input tables
+	 * @return
+	 * @throws StorageManagerException
+	 */
+	private List<Hyperrectangle> getSamples() throws StorageManagerException {
+		final List<Hyperrectangle> samples = new ArrayList<>();
+		final int samplesPerTable = Math.max(1, PARTITION_SAMPLES / sstableIndexReader.size());
+		
+		try {
+			for(final SSTableKeyIndexReader reader : sstableIndexReader) {
+				final int numberOfEntries = reader.getNumberOfEntries();
+				final int sampleOffset = Math.max(1, numberOfEntries / samplesPerTable);
+				
+				for(int entry = 0; entry < numberOfEntries; entry = entry + sampleOffset) {
+					final Tuple tuple = reader.getTupleForIndexEntry(entry);
+					
+					// Ignore tuples with an empty box (e.g. deleted tuples)
+					if(tuple.getBoundingBox() == null || tuple.getBoundingBox().getDimension() == 0) {
+						continue;
+					}
+					
+					samples.add(tuple.getBoundingBox());
+				}
+			}
+		} catch (IOException e) {
+			throw new StorageManagerException(e);
+		}
+		
+		return samples;
+	}
+	
+	/**
+	 * Get the output for the tuple
+	 * @param tuple
+	 * @return
+	 */
+	private int getOutput(final Tuple tuple) {
+		if(spatialPartitioner == null) {
+			return 0;
+		}
+		
+		final int partition = spatialPartitioner.getPartition(tuple.getBoundingBox());
+		
+		if(partition == SpatialPartitioner.NO_PARTITION) {
+			return spatialPartitioner.getPartitions();
+		}
+		
+		return partition;
+	}
+
 	/**
 	 * Check for the thread termination
 	 * @param tuple
@@ -188,11 +337,32 @@ public class SSTableCompactor {
 			return;
 		}
 
-		openNewWriterIfNeeded(tuple);
-		sstableWriter.addTuple(tuple);
+		final int output = getOutput(tuple);
+		
+		throttleWrite(tuple);
+		openNewWriterIfNeeded(output, tuple);
+		sstableWriter[output].addTuple(tuple);
+		lastWrittenKey[output] = tuple.getKey();
 		writtenTuples++;
 	}
 
+	/**
+	 * Wait until the rate limiter permits to write the tuple
+	 * @param tuple
+	 */
+	private void throttleWrite(final Tuple tuple) {
+		if(rateLimiter == null) {
+			return;
+		}
+		
+		final int tupleSize = tuple.getSize();
+		final double waitTime = rateLimiter.acquire(Math.max(1, tupleSize));
+		
+		if(waitTime > 0) {
+			CompactionMetrics.addThrottledBytes(tupleSize);
+		}
+	}
+
 	/**
 	 * Handle the error during compact
 	 * @param e
@@ -225,37 +395,43 @@ public class SSTableCompactor {
 	 * Close the open sstable writer
 	 */
 	private void closeSSTableWriter() {
-		// Close open writer
-		if(sstableWriter == null) {
-			return;
-		}
-
-		try {
-			sstableWriter.close();
-			sstableWriter = null;
-		} catch (StorageManagerException e) {
-			logger.error("Got an exception while closing writer in error handler", e);
+		for(int output = 0; output < sstableWriter.length; output++) {
+			// Close open writer
+			if(sstableWriter[output] == null) {
+				continue;
+			}
+	
+			try {
+				writtenBytes += sstableWriter[output].getWrittenBytes();
+				sstableWriter[output].close();
+				sstableWriter[output] = null;
+			} catch (StorageManagerException e) {
+				logger.error("Got an exception while closing writer in error handler", e);
+			}
 		}
 	}
 
 	/**
 	 * Create a new table if the size of the open table hits the threshold
-	 * @param resultList
+	 * @param output
 	 * @param tuple
 	 * @throws StorageManagerException
 	 */
-	private void openNewWriterIfNeeded(final Tuple tuple)
+	private void openNewWriterIfNeeded(final int output, final Tuple tuple)
 			throws StorageManagerException {
 
-		if(sstableWriter == null) {
-			sstableWriter = openNewSSTableWriter();
+		if(sstableWriter[output] == null) {
+			sstableWriter[output] = openNewSSTableWriter();
 			return;
 		}
 
-		// Check max table size limit
-		if(sstableWriter.getWrittenBytes() + tuple.getSize() > SSTableConst.MAX_SSTABLE_SIZE) {
-			sstableWriter.close();
-			sstableWriter = openNewSSTableWriter();
+		// Check max table size limit, the versions of a key are written into the same table
+		// to keep the key ranges of the written tables of an output disjoint
+		if(sstableWriter[output].getWrittenBytes() + tuple.getSize() > maxSSTableSize 
+				&& ! tuple.getKey().equals(lastWrittenKey[output])) {
+			writtenBytes += sstableWriter[output].getWrittenBytes();
+			sstableWriter[output].close();
+			sstableWriter[output] = openNewSSTableWriter();
 		}
 	}
 
@@ -268,16 +444,28 @@ public class SSTableCompactor {
 	private SSTableWriter openNewSSTableWriter()
 			throws StorageManagerException {
 
-		final long estimatedMaxNumberOfEntries = calculateNumberOfEntries(sstableIndexReader);
+		long estimatedMaxNumberOfEntries = calculateNumberOfEntries(sstableIndexReader);
+
+		// The partitions contain a similar number of tuples, leave room for skewed samples
+		if(spatialPartitioner != null) {
+			estimatedMaxNumberOfEntries = Math.min(estimatedMaxNumberOfEntries,
+					2 * estimatedMaxNumberOfEntries / spatialPartitioner.getPartitions());
+		}
 
 		final String directory = sstableIndexReader.get(0).getDirectory();
 		final int tablenumber = tupleStoreManager.increaseTableNumber();
 		final TupleStoreName tupleStoreName = tupleStoreManager.getTupleStoreName();
 		final SSTableCreator creatorType = getCreatorType();
 		
+		final TupleStoreConfiguration configuration = tupleStoreManager.getTupleStoreConfiguration();
+		final SSTableCompression compression = SSTableCompression.fromString(configuration.getSstableCompression());
+		
 		final SSTableWriter sstableWriter = new SSTableWriter(directory, tupleStoreName,
-				tablenumber, estimatedMaxNumberOfEntries, creatorType);
+				tablenumber, estimatedMaxNumberOfEntries, creatorType, compression, 
+				configuration.getSstableBlockSize(), 
+				SpatialIndexBuilderFactory.getInstance(configuration.getSpatialIndexWriter()));
 
+		sstableWriter.setLevel(targetLevel);
 		sstableWriter.open();
 		resultList.add(sstableWriter);
 		logger.info("Output file for compact: {}", sstableWriter.getSstableFile());
@@ -313,6 +501,46 @@ public class SSTableCompactor {
 		this.majorCompaction = majorCompaction;
 	}
 
+	/**
+	 * Get the level of the written tables
+	 * @return
+	 */
+	public int getTargetLevel() {
+		return targetLevel;
+	}
+
+	/**
+	 * Set the level of the written tables
+	 * @param targetLevel
+	 */
+	public void setTargetLevel(final int targetLevel) {
+		this.targetLevel = targetLevel;
+	}
+
+	/**
+	 * Get the max size of the written tables
+	 * @return
+	 */
+	public long getMaxSSTableSize() {
+		return maxSSTableSize;
+	}
+
+	/**
+	 * Set the max size of the written tables
+	 * @param maxSSTableSize
+	 */
+	public void setMaxSSTableSize(final long maxSSTableSize) {
+		this.maxSSTableSize = maxSSTableSize;
+	}
+	
+	/**
+	 * Set the rate limiter for the written bytes (null = unlimited)
+	 * @param rateLimiter
+	 */
+	public void setRateLimiter(final RateLimiter rateLimiter) {
+		this.rateLimiter = rateLimiter;
+	}
+
 	/**
 	 * Get the amount of read tuples
 	 * @return
@@ -329,6 +557,22 @@ public class SSTableCompactor {
 		return writtenTuples;
 	}
 
+	/**
+	 * Get the amount of written bytes
+	 * @return
+	 */
+	public long getWrittenBytes() {
+		return writtenBytes;
+	}
+
+	/**
+	 * Get the spatial partitioner of the output (null = not partitioned)
+	 * @return
+	 */
+	public SpatialPartitioner getSpatialPartitioner() {
+		return spatialPartitioner;
+	}
+
 	/**
 	 * Get the writer result list
 	 * @return
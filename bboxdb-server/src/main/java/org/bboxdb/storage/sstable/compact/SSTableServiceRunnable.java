@@ -55,7 +55,7 @@ import com.google.common.annotations.VisibleForTesting;
 public class SSTableServiceRunnable extends ExceptionSafeRunnable {
 	
 	/**
-	 * The merge strategy
+	 * The default merge strategy
 	 */
 	protected final MergeStrategy mergeStrategy;
 
@@ -64,6 +64,11 @@ public class SSTableServiceRunnable extends ExceptionSafeRunnable {
 	 */
 	protected final DiskStorage storage;
 	
+	/**
+	 * The scheduler for the compact tasks
+	 */
+	protected final CompactionScheduler compactionScheduler;
+	
 	/**
 	 * The logger
 	 */
@@ -72,6 +77,11 @@ public class SSTableServiceRunnable extends ExceptionSafeRunnable {
 	public SSTableServiceRunnable(final DiskStorage storage) {
 		this.storage = storage;
 		this.mergeStrategy = new BasicMergeStrategy();
+		
+		final BBoxDBConfiguration configuration = storage.getTupleStoreManagerRegistry().getConfiguration();
+		
+		this.compactionScheduler = new CompactionScheduler(storage.getBasedir().toString(), 
+				configuration.getCompactionThreadsPerStorage(), configuration.getCompactionBytesPerSecond());
 	}
 
 	@Override
@@ -81,9 +91,26 @@ public class SSTableServiceRunnable extends ExceptionSafeRunnable {
 	
 	@Override
 	protected void endHook() {
+		stopCompactionScheduler();
 		logger.info("SSTable service thread for {} is DONE", storage.getBasedir());
 	}
 	
+	@Override
+	protected void afterExceptionHook() {
+		stopCompactionScheduler();
+	}
+
+	/**
+	 * Stop the compaction scheduler
+	 */
+	private void stopCompactionScheduler() {
+		try {
+			compactionScheduler.shutdown();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
 	/**
 	 * Execute the compactor thread
 	 */
@@ -101,7 +128,7 @@ public class SSTableServiceRunnable extends ExceptionSafeRunnable {
 	}
 
 	/**
-	 * Execute a new compaction
+	 * Schedule the compactions of the tuple stores and test for region merges
 	 * @throws InterruptedException 
 	 */
 	public synchronized void execute() throws InterruptedException {
@@ -115,7 +142,7 @@ public class SSTableServiceRunnable extends ExceptionSafeRunnable {
 	}
 
 	/**
-	 * Process the tuple stores
+	 * Schedule the compact tasks for the tuple stores
 	 * 
 	 * @param storageRegistry
 	 * @param tupleStores
@@ -139,15 +166,134 @@ public class SSTableServiceRunnable extends ExceptionSafeRunnable {
 					continue;
 				}
 			
-				final List<SSTableFacade> facades = getAllTupleStores(tupleStoreManager);
-				final MergeTask mergeTask = mergeStrategy.getMergeTask(facades);
+				if(compactionScheduler.isScheduled(tupleStoreName)) {
+					logger.debug("Skipping compact run, because a task is already scheduled {}", tupleStoreName);
+					continue;
+				}
+				
+				expireSSTables(tupleStoreManager);
+				scheduleCompactTask(tupleStoreManager);
+			} catch (StorageManagerException e) {
+				logger.error("Error while merging tables", e);	
+			} 
+		}		
+	}
+	
+	/**
+	 * Delete the SSTables that contain only tuples older than the TTL of the 
+	 * tuple store. The tables are removed as a whole, without rewriting them.
+	 * 
+	 * @param tupleStoreManager
+	 * @return the number of deleted tables
+	 * @throws StorageManagerException
+	 */
+	@VisibleForTesting
+	public int expireSSTables(final TupleStoreManager tupleStoreManager) 
+			throws StorageManagerException {
+		
+		final long ttl = tupleStoreManager.getTupleStoreConfiguration().getTTL();
+		
+		if(ttl <= 0) {
+			return 0;
+		}
+		
+		// Tuple timestamps are in microseconds
+		final long removalTimestamp = (System.currentTimeMillis() - ttl) * 1000;
+		
+		final List<SSTableFacade> expiredFacades = getAllTupleStores(tupleStoreManager)
+				.stream()
+				.filter(f -> f.getNewestTupleVersionTimestamp() < removalTimestamp)
+				.collect(Collectors.toList());
+		
+		if(expiredFacades.isEmpty()) {
+			return 0;
+		}
+		
+		final String formatedFacades = expiredFacades
+				.stream()
+				.mapToInt(SSTableFacade::getTablebumber)
+				.mapToObj(Integer::toString)
+				.collect(Collectors.joining(",", "[", "]"));
+		
+		logger.info("Deleting expired tables (table: {}) {}", 
+				tupleStoreManager.getTupleStoreName().getFullname(), formatedFacades);
+		
+		try {
+			tupleStoreManager.replaceCompactedSStables(new ArrayList<>(), expiredFacades);
+		} catch (RejectedException e) {
+			throw new StorageManagerException(e);
+		}
+		
+		final long expiredBytes = expiredFacades.stream()
+				.mapToLong(SSTableFacade::getSize)
+				.sum();
+		
+		expiredFacades.forEach(f -> f.deleteOnClose());
+		CompactionMetrics.addExpiredSSTables(expiredFacades.size(), expiredBytes);
+		
+		return expiredFacades.size();
+	}
+	
+	/**
+	 * Schedule the next merge task of the tuple store. The tuple stores with the 
+	 * most SSTables are compacted first.
+	 * 
+	 * @param tupleStoreManager
+	 */
+	private void scheduleCompactTask(final TupleStoreManager tupleStoreManager) {
+		final TupleStoreName tupleStoreName = tupleStoreManager.getTupleStoreName();
+		
+		final MergeStrategy tupleStoreMergeStrategy 
+			= MergeStrategyFactory.getInstance(tupleStoreManager.getTupleStoreConfiguration());
+		
+		final List<SSTableFacade> facades = getAllTupleStores(tupleStoreManager);
+		final MergeTask mergeTask = tupleStoreMergeStrategy.getMergeTask(facades);
+		
+		CompactionMetrics.updateReadAmplification(tupleStoreName, facades.size());
+		
+		// Distributed tables are tested for a region split after the compaction
+		if(mergeTask.getTaskType() == MergeTaskType.UNKNOWN && ! tupleStoreName.isDistributedTable()) {
+			return;
+		}
+		
+		compactionScheduler.schedule(tupleStoreName, facades.size(), () -> {
+			try {
 				executeCompactTask(tupleStoreName.getFullname(), mergeTask, tupleStoreManager);
 				testForRegionOverflow(tupleStoreManager);
 				
+				final int sstables = tupleStoreManager.getSstableFacades().size();
+				CompactionMetrics.updateReadAmplification(tupleStoreName, sstables);
 			} catch (StorageManagerException | BBoxDBException e) {
 				logger.error("Error while merging tables", e);	
-			} 
-		}		
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+	}
+	
+	/**
+	 * Execute the next merge task of the merge strategy
+	 * @param tupleStoreManager
+	 * @param tupleStoreMergeStrategy
+	 * @return was a merge task executed
+	 * @throws StorageManagerException
+	 * @throws BBoxDBException
+	 * @throws InterruptedException
+	 */
+	@VisibleForTesting
+	public boolean compactTupleStore(final TupleStoreManager tupleStoreManager, 
+			final MergeStrategy tupleStoreMergeStrategy) 
+			throws StorageManagerException, BBoxDBException, InterruptedException {
+		
+		final TupleStoreName tupleStoreName = tupleStoreManager.getTupleStoreName();
+		final List<SSTableFacade> facades = getAllTupleStores(tupleStoreManager);
+		final MergeTask mergeTask = tupleStoreMergeStrategy.getMergeTask(facades);
+		final boolean executed = executeCompactTask(tupleStoreName.getFullname(), mergeTask, tupleStoreManager);
+		
+		final int sstables = tupleStoreManager.getSstableFacades().size();
+		CompactionMetrics.updateReadAmplification(tupleStoreName, sstables);
+		
+		return executed;
 	}
 	
 	/**
@@ -237,19 +383,20 @@ public class SSTableServiceRunnable extends ExceptionSafeRunnable {
 	 * @throws InterruptedException 
 	 * @throws ZookeeperException 
 	 * @throws BBoxDBException 
+	 * @return was the task executed
 	 */
-	private void executeCompactTask(final String fullname, final MergeTask mergeTask, 
+	private boolean executeCompactTask(final String fullname, final MergeTask mergeTask, 
 			final TupleStoreManager sstableManager) throws StorageManagerException, 
 			BBoxDBException, InterruptedException {
 		
 		if(mergeTask.getTaskType() == MergeTaskType.UNKNOWN) {
-			return;
+			return false;
 		}
 		
 		final List<SSTableFacade> facades = mergeTask.getCompactTables();
 	
 		if(facades == null || facades.isEmpty()) {
-			return;
+			return false;
 		}
 		
 		final List<SSTableKeyIndexReader> reader = mergeTask.getCompactTables()
@@ -267,8 +414,13 @@ public class SSTableServiceRunnable extends ExceptionSafeRunnable {
 		// Run the compact process
 		final SSTableCompactor ssTableCompactor = new SSTableCompactor(sstableManager, reader);
 		ssTableCompactor.setMajorCompaction(majorCompaction);
+		ssTableCompactor.setTargetLevel(mergeTask.getTargetLevel());
+		ssTableCompactor.setMaxSSTableSize(mergeTask.getMaxSSTableSize());
+		ssTableCompactor.setRateLimiter(compactionScheduler.getRateLimiter());
 		ssTableCompactor.executeCompactation();
 		final List<SSTableWriter> newTables = ssTableCompactor.getResultList();
+		
+		CompactionMetrics.addCompactedBytes(ssTableCompactor.getWrittenBytes());
 
 		final float mergeFactor = (float) ssTableCompactor.getWrittenTuples() / (float) ssTableCompactor.getReadTuples();
 		
@@ -276,7 +428,9 @@ public class SSTableServiceRunnable extends ExceptionSafeRunnable {
 				fullname, ssTableCompactor.getReadTuples(), ssTableCompactor.getWrittenTuples(), 
 				mergeFactor);
 		
-		registerNewFacadeAndDeleteOldInstances(sstableManager, facades, newTables);		
+		registerNewFacadeAndDeleteOldInstances(sstableManager, facades, newTables);
+		
+		return true;
 	}
 
 	/**
@@ -0,0 +1,199 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.sstable.compact;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.bboxdb.storage.sstable.SSTableConst;
+import org.bboxdb.storage.sstable.reader.SSTableFacade;
+
+/**
+ * Size tiered merge strategy. The tables are grouped into buckets of a similar 
+ * size and the bucket with the smallest tables is merged, as soon as it contains
+ * enough tables. So, each tuple is rewritten once per tier.
+ */
+public final class SizeTieredMergeStrategy implements MergeStrategy {
+
+	/**
+	 * The min number of tables in a bucket to merge the bucket
+	 */
+	private final int minThreshold;
+	
+	/**
+	 * The max number of tables to merge per task
+	 */
+	private final int maxThreshold;
+	
+	/**
+	 * Tables are added to a bucket, when they are larger than 
+	 * bucketLow * average size of the bucket
+	 */
+	private final double bucketLow;
+	
+	/**
+	 * Tables are added to a bucket, when they are smaller than 
+	 * bucketHigh * average size of the bucket
+	 */
+	private final double bucketHigh;
+	
+	/**
+	 * Tables smaller than this size are placed into one bucket
+	 */
+	private final long minSSTableSize;
+	
+	/**
+	 * The default min threshold
+	 */
+	public final static int DEFAULT_MIN_THRESHOLD = 4;
+	
+	/**
+	 * The default max threshold
+	 */
+	public final static int DEFAULT_MAX_THRESHOLD = 32;
+	
+	/**
+	 * The default lower bucket bound
+	 */
+	public final static double DEFAULT_BUCKET_LOW = 0.5;
+	
+	/**
+	 * The default upper bucket bound
+	 */
+	public final static double DEFAULT_BUCKET_HIGH = 1.5;
+	
+	/**
+	 * The default size of the small tables (50 MB)
+	 */
+	public final static long DEFAULT_MIN_SSTABLE_SIZE = 50 * 1024 * 1024;
+	
+	public SizeTieredMergeStrategy() {
+		this(DEFAULT_MIN_THRESHOLD, DEFAULT_MAX_THRESHOLD, DEFAULT_BUCKET_LOW, 
+				DEFAULT_BUCKET_HIGH, DEFAULT_MIN_SSTABLE_SIZE);
+	}
+	
+	public SizeTieredMergeStrategy(final int minThreshold, final int maxThreshold, 
+			final double bucketLow, final double bucketHigh, final long minSSTableSize) {
+		
+		if(minThreshold < 2 || maxThreshold < minThreshold) {
+			throw new IllegalArgumentException("Invalid thresholds: " + minThreshold 
+					+ " / " + maxThreshold);
+		}
+		
+		if(bucketLow > 1 || bucketHigh < 1) {
+			throw new IllegalArgumentException("Invalid bucket bounds: " + bucketLow 
+					+ " / " + bucketHigh);
+		}
+		
+		this.minThreshold = minThreshold;
+		this.maxThreshold = maxThreshold;
+		this.bucketLow = bucketLow;
+		this.bucketHigh = bucketHigh;
+		this.minSSTableSize = minSSTableSize;
+	}
+	
+	@Override
+	public MergeTask getMergeTask(final List<SSTableFacade> sstables) {
+		final MergeTask mergeTask = new MergeTask();
+		
+		final List<List<SSTableFacade>> buckets = getBuckets(sstables);
+		
+		final List<SSTableFacade> mergeTables = buckets
+			.stream()
+			.filter(b -> b.size() >= minThreshold)
+			.min(Comparator.comparingDouble(b -> getAverageSize(b)))
+			.orElse(new ArrayList<>());
+		
+		if(mergeTables.size() < minThreshold) {
+			return mergeTask;
+		}
+		
+		final List<SSTableFacade> compactTables = mergeTables
+			.stream()
+			.limit(maxThreshold)
+			.collect(Collectors.toList());
+		
+		// Deletion markers can only be removed when all tables are included
+		if(compactTables.size() == sstables.size()) {
+			mergeTask.setTaskType(MergeTaskType.MAJOR);
+		} else {
+			mergeTask.setTaskType(MergeTaskType.MINOR);
+		}
+		
+		mergeTask.setCompactTables(compactTables);
+
+		return mergeTask;
+	}
+
+	/**
+	 * Group the tables into buckets of a similar size
+	 * @param sstables
+	 * @return
+	 */
+	public List<List<SSTableFacade>> getBuckets(final List<SSTableFacade> sstables) {
+		final List<SSTableFacade> sortedTables = new ArrayList<>(sstables);
+		sortedTables.sort(Comparator.comparingLong(SSTableFacade::getSize));
+		
+		final List<List<SSTableFacade>> buckets = new ArrayList<>();
+		List<SSTableFacade> bucket = new ArrayList<>();
+		double averageSize = 0;
+		
+		for(final SSTableFacade facade : sortedTables) {
+			final long size = facade.getSize();
+			
+			final boolean addToBucket = bucket.isEmpty() 
+					|| (size > averageSize * bucketLow && size < averageSize * bucketHigh)
+					|| (size < minSSTableSize && averageSize < minSSTableSize);
+			
+			if(! addToBucket) {
+				buckets.add(bucket);
+				bucket = new ArrayList<>();
+			}
+			
+			bucket.add(facade);
+			averageSize = getAverageSize(bucket);
+		}
+		
+		if(! bucket.isEmpty()) {
+			buckets.add(bucket);
+		}
+		
+		return buckets;
+	}
+
+	/**
+	 * Get the average size of the tables
+	 * @param sstables
+	 * @return
+	 */
+	private static double getAverageSize(final List<SSTableFacade> sstables) {
+		return sstables
+			.stream()
+			.mapToLong(SSTableFacade::getSize)
+			.average()
+			.orElse(0);
+	}
+	
+	@Override
+	public long getCompactorDelay() {
+		return SSTableConst.COMPACT_THREAD_DELAY;
+	}
+
+}
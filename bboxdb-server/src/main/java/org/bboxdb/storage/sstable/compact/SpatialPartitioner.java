@@ -0,0 +1,256 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.sstable.compact;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.bboxdb.commons.math.Hyperrectangle;
+
+/**
+ * Partitions the space into regions with a similar number of tuples. The 
+ * regions are created by a k-d split of the centers of sampled bounding boxes.
+ * The leaf with the most samples is split at the median of the dimension 
+ * with the largest extent, until the requested number of partitions is reached.
+ */
+public final class SpatialPartitioner {
+	
+	/**
+	 * The partition of tuples that can not be assigned to a region
+	 * (e.g., tuples without a bounding box)
+	 */
+	public final static int NO_PARTITION = -1;
+
+	private final static class Node {
+		
+		/**
+		 * The split dimension (-1 for leaf nodes)
+		 */
+		private int splitDimension = -1;
+		
+		/**
+		 * The split value, points lower than this value belong to the left child 
+		 */
+		private double splitValue;
+		
+		/**
+		 * The children
+		 */
+		private Node left;
+		private Node right;
+		
+		/**
+		 * The partition of a leaf node
+		 */
+		private int partition;
+		
+		/**
+		 * The samples of the node (only used during the construction)
+		 */
+		private List<double[]> points;
+		
+		public Node(final List<double[]> points) {
+			this.points = points;
+		}
+	}
+	
+	/**
+	 * The root node
+	 */
+	private final Node root;
+	
+	/**
+	 * The dimension of the partitioned space
+	 */
+	private final int dimension;
+	
+	/**
+	 * The number of partitions
+	 */
+	private final int partitions;
+
+	public SpatialPartitioner(final List<Hyperrectangle> samples, final int maxPartitions) {
+		
+		final List<double[]> points = new ArrayList<>();
+		
+		// Samples without a bounding box or with a different dimension are ignored
+		final int sampleDimension = samples.stream()
+				.mapToInt(s -> s.getDimension())
+				.filter(d -> d > 0)
+				.findFirst()
+				.orElse(0);
+		
+		for(final Hyperrectangle sample : samples) {
+			if(sample.getDimension() == sampleDimension && sampleDimension > 0) {
+				points.add(getCenter(sample));
+			}
+		}
+		
+		this.dimension = sampleDimension;
+		this.root = new Node(points);
+		
+		final List<Node> leafs = new ArrayList<>();
+		leafs.add(root);
+		
+		while(leafs.size() < maxPartitions) {
+			final Node leafToSplit = leafs.stream()
+					.filter(n -> getSplitDimension(n.points) != -1)
+					.max(Comparator.comparingInt(n -> n.points.size()))
+					.orElse(null);
+			
+			// All remaining samples are equal
+			if(leafToSplit == null) {
+				break;
+			}
+			
+			splitNode(leafToSplit);
+			leafs.remove(leafToSplit);
+			leafs.add(leafToSplit.left);
+			leafs.add(leafToSplit.right);
+		}
+		
+		for(int i = 0; i < leafs.size(); i++) {
+			final Node leaf = leafs.get(i);
+			leaf.partition = i;
+			leaf.points = null;
+		}
+		
+		this.partitions = leafs.size();
+	}
+
+	/**
+	 * Split the node at the median of the dimension with the largest extent
+	 * @param node
+	 */
+	private void splitNode(final Node node) {
+		final int splitDimension = getSplitDimension(node.points);
+		final List<double[]> points = node.points;
+		points.sort((p1, p2) -> Double.compare(p1[splitDimension], p2[splitDimension]));
+		
+		double splitValue = points.get(points.size() / 2)[splitDimension];
+		
+		// The lower half consists only of the min value, split behind it
+		if(splitValue == points.get(0)[splitDimension]) {
+			splitValue = points.stream()
+				.mapToDouble(p -> p[splitDimension])
+				.filter(v -> v > points.get(0)[splitDimension])
+				.min()
+				.getAsDouble();
+		}
+		
+		final List<double[]> leftPoints = new ArrayList<>();
+		final List<double[]> rightPoints = new ArrayList<>();
+		
+		for(final double[] point : points) {
+			if(point[splitDimension] < splitValue) {
+				leftPoints.add(point);
+			} else {
+				rightPoints.add(point);
+			}
+		}
+		
+		node.splitDimension = splitDimension;
+		node.splitValue = splitValue;
+		node.left = new Node(leftPoints);
+		node.right = new Node(rightPoints);
+		node.points = null;
+	}
+	
+	/**
+	 * Get the dimension with the largest extent of the points
+	 * @param points
+	 * @return the dimension or -1 if the points can not be split
+	 */
+	private int getSplitDimension(final List<double[]> points) {
+		int splitDimension = -1;
+		double maxExtent = 0;
+		
+		for(int d = 0; d < dimension; d++) {
+			double min = Double.MAX_VALUE;
+			double max = -Double.MAX_VALUE;
+			
+			for(final double[] point : points) {
+				min = Math.min(min, point[d]);
+				max = Math.max(max, point[d]);
+			}
+			
+			if(max - min > maxExtent) {
+				maxExtent = max - min;
+				splitDimension = d;
+			}
+		}
+		
+		return splitDimension;
+	}
+	
+	/**
+	 * Get the center of the bounding box
+	 * @param boundingBox
+	 * @return
+	 */
+	private static double[] getCenter(final Hyperrectangle boundingBox) {
+		final double[] center = new double[boundingBox.getDimension()];
+		
+		for(int d = 0; d < center.length; d++) {
+			center[d] = boundingBox.getCoordinateLow(d) + (boundingBox.getExtent(d) / 2.0);
+		}
+		
+		return center;
+	}
+	
+	/**
+	 * Get the partition for the bounding box
+	 * @param boundingBox
+	 * @return the partition or NO_PARTITION
+	 */
+	public int getPartition(final Hyperrectangle boundingBox) {
+		if(boundingBox == null || boundingBox.getDimension() != dimension || dimension == 0) {
+			return NO_PARTITION;
+		}
+		
+		final double[] center = getCenter(boundingBox);
+		Node node = root;
+		
+		while(node.splitDimension != -1) {
+			if(center[node.splitDimension] < node.splitValue) {
+				node = node.left;
+			} else {
+				node = node.right;
+			}
+		}
+		
+		return node.partition;
+	}
+	
+	/**
+	 * Get the number of partitions
+	 * @return
+	 */
+	public int getPartitions() {
+		return partitions;
+	}
+	
+	/**
+	 * Get the dimension of the partitioned space
+	 * @return
+	 */
+	public int getDimension() {
+		return dimension;
+	}
+}
@@ -0,0 +1,197 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.sstable.compact;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.bboxdb.storage.sstable.SSTableConst;
+import org.bboxdb.storage.sstable.reader.SSTableFacade;
+
+/**
+ * Time window merge strategy. The tables are assigned to time windows by the 
+ * newest tuple version timestamp. Only tables of the same window are merged, 
+ * so the tables of a window age out together and can be removed as a whole 
+ * after the TTL is reached. The tables of the current window are merged by 
+ * size, the tables of older windows are merged into one table.
+ */
+public final class TimeWindowMergeStrategy implements MergeStrategy {
+	
+	/**
+	 * The number of windows per TTL
+	 */
+	public final static int WINDOWS_PER_TTL = 24;
+	
+	/**
+	 * The default window size (tables without TTL)
+	 */
+	public final static long DEFAULT_WINDOW_SIZE_IN_MILLIS = TimeUnit.DAYS.toMillis(1);
+	
+	/**
+	 * The max number of tables to merge per task
+	 */
+	private final static int MAX_THRESHOLD = SizeTieredMergeStrategy.DEFAULT_MAX_THRESHOLD;
+
+	/**
+	 * The size of a window
+	 */
+	private final long windowSizeInMicroseconds;
+	
+	/**
+	 * The merge strategy for the current window
+	 */
+	private final SizeTieredMergeStrategy currentWindowStrategy;
+	
+	public TimeWindowMergeStrategy(final long windowSize, final TimeUnit timeUnit) {
+		this(windowSize, timeUnit, new SizeTieredMergeStrategy());
+	}
+	
+	public TimeWindowMergeStrategy(final long windowSize, final TimeUnit timeUnit, 
+			final SizeTieredMergeStrategy currentWindowStrategy) {
+		
+		if(windowSize <= 0) {
+			throw new IllegalArgumentException("Invalid window size: " + windowSize);
+		}
+		
+		this.windowSizeInMicroseconds = timeUnit.toMicros(windowSize);
+		this.currentWindowStrategy = currentWindowStrategy;
+	}
+	
+	/**
+	 * Get the window size for the TTL of a tuple store
+	 * @param ttlInMillis
+	 * @return
+	 */
+	public static long getWindowSizeInMillis(final long ttlInMillis) {
+		if(ttlInMillis <= 0) {
+			return DEFAULT_WINDOW_SIZE_IN_MILLIS;
+		}
+		
+		return Math.max(1, ttlInMillis / WINDOWS_PER_TTL);
+	}
+	
+	@Override
+	public MergeTask getMergeTask(final List<SSTableFacade> sstables) {
+		// Tuple timestamps are in microseconds
+		return getMergeTask(sstables, System.currentTimeMillis() * 1000);
+	}
+	
+	/**
+	 * Get the merge task for the given time
+	 * @param sstables
+	 * @param baseTime
+	 * @return
+	 */
+	public MergeTask getMergeTask(final List<SSTableFacade> sstables, final long baseTime) {
+		final long currentWindow = getWindow(baseTime);
+		final TreeMap<Long, List<SSTableFacade>> windows = getWindows(sstables);
+		
+		// Tables of the current window (and tables with timestamps in the future)
+		final List<SSTableFacade> currentTables = windows.tailMap(currentWindow, true)
+			.values()
+			.stream()
+			.flatMap(List::stream)
+			.collect(Collectors.toList());
+		
+		final MergeTask currentWindowTask = currentWindowStrategy.getMergeTask(currentTables);
+		
+		if(currentWindowTask.getTaskType() != MergeTaskType.UNKNOWN) {
+			return createMergeTask(currentWindowTask.getCompactTables(), sstables);
+		}
+		
+		// The tables of the newest old window are merged first
+		for(final List<SSTableFacade> windowTables : windows.headMap(currentWindow, false)
+				.descendingMap().values()) {
+			
+			if(windowTables.size() >= 2) {
+				final List<SSTableFacade> compactTables = windowTables
+					.stream()
+					.limit(MAX_THRESHOLD)
+					.collect(Collectors.toList());
+				
+				return createMergeTask(compactTables, sstables);
+			}
+		}
+		
+		return new MergeTask();
+	}
+
+	/**
+	 * Create the merge task for the tables
+	 * @param compactTables
+	 * @param sstables
+	 * @return
+	 */
+	private MergeTask createMergeTask(final List<SSTableFacade> compactTables, 
+			final List<SSTableFacade> sstables) {
+		
+		final MergeTask mergeTask = new MergeTask();
+		
+		// Deletion markers can only be removed when all tables are included
+		if(compactTables.size() == sstables.size()) {
+			mergeTask.setTaskType(MergeTaskType.MAJOR);
+		} else {
+			mergeTask.setTaskType(MergeTaskType.MINOR);
+		}
+		
+		mergeTask.setCompactTables(compactTables);
+		
+		return mergeTask;
+	}
+	
+	/**
+	 * Group the tables by the time window
+	 * @param sstables
+	 * @return
+	 */
+	public TreeMap<Long, List<SSTableFacade>> getWindows(final List<SSTableFacade> sstables) {
+		final TreeMap<Long, List<SSTableFacade>> windows = new TreeMap<>();
+		
+		for(final SSTableFacade facade : sstables) {
+			final long window = getWindow(facade.getNewestTupleVersionTimestamp());
+			windows.computeIfAbsent(window, w -> new ArrayList<>()).add(facade);
+		}
+		
+		return windows;
+	}
+	
+	/**
+	 * Get the window for the timestamp
+	 * @param timestamp
+	 * @return
+	 */
+	public long getWindow(final long timestamp) {
+		return Math.floorDiv(timestamp, windowSizeInMicroseconds);
+	}
+	
+	/**
+	 * Get the window size
+	 * @return
+	 */
+	public long getWindowSizeInMicroseconds() {
+		return windowSizeInMicroseconds;
+	}
+
+	@Override
+	public long getCompactorDelay() {
+		return SSTableConst.COMPACT_THREAD_DELAY;
+	}
+}
@@ -20,20 +20,21 @@ package org.bboxdb.storage.sstable.reader;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
-import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.Arrays;
 
 import org.bboxdb.commons.concurrent.AcquirableResource;
-import org.bboxdb.commons.io.UnsafeMemoryHelper;
 import org.bboxdb.commons.service.AcquirableService;
 import org.bboxdb.misc.BBoxDBService;
 import org.bboxdb.misc.Const;
 import org.bboxdb.storage.StorageManagerException;
 import org.bboxdb.storage.entity.TupleStoreName;
+import org.bboxdb.storage.util.MappedFileSegments;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.annotations.VisibleForTesting;
+
 public abstract class AbstractFileReader implements BBoxDBService, AcquirableResource {
 
 	/**
@@ -57,9 +58,15 @@ public abstract class AbstractFileReader implements BBoxDBService, AcquirableRes
 	protected final String directory;
 
 	/**
-	 * The memory region
+	 * The memory region (the file is mapped as a list of segments, 
+	 * so files larger than 2 GB can be read)
+	 */
+	protected MappedFileSegments memory;
+	
+	/**
+	 * The size of the mapped segments
 	 */
-	protected MappedByteBuffer memory;
+	protected volatile int segmentSize = MappedFileSegments.DEFAULT_SEGMENT_SIZE;
 
 	/**
 	 * The file to read
@@ -121,7 +128,7 @@ public abstract class AbstractFileReader implements BBoxDBService, AcquirableRes
 		// Validate file - read the magic from the beginning
 		final byte[] magicBytes = new byte[expectedMagicBytes.length];
 
-		memory.get(magicBytes, 0, expectedMagicBytes.length);
+		memory.get(0, magicBytes);
 
 		if(! Arrays.equals(magicBytes, expectedMagicBytes)) {
 			throw new StorageManagerException("File " + file + " does not contain the magic bytes");
@@ -135,11 +142,13 @@ public abstract class AbstractFileReader implements BBoxDBService, AcquirableRes
 	protected abstract byte[] getMagicBytes();
 
 	/**
-	 * Reset the position to the first element
+	 * Set the size of the mapped segments, needs to be called before the 
+	 * reader is initialized
+	 * @param segmentSize
 	 */
-	protected void resetPosition() {
-		final byte[] magicBytes = getMagicBytes();
-		memory.position(magicBytes.length);
+	@VisibleForTesting
+	public void setSegmentSize(final int segmentSize) {
+		this.segmentSize = segmentSize;
 	}
 
 	/**
@@ -156,8 +165,7 @@ public abstract class AbstractFileReader implements BBoxDBService, AcquirableRes
 
 			randomAccessFile = new RandomAccessFile(file, "r");
 			fileChannel = randomAccessFile.getChannel();
-			memory = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size());
-			memory.order(Const.APPLICATION_BYTE_ORDER);
+			memory = new MappedFileSegments(fileChannel, segmentSize, Const.APPLICATION_BYTE_ORDER);
 			validateFile();
 
 			serviceState.dispatchToRunning();
@@ -198,7 +206,7 @@ public abstract class AbstractFileReader implements BBoxDBService, AcquirableRes
 			return;
 		}
 
-		UnsafeMemoryHelper.unmapMemory(memory);
+		memory.unmap();
 	}
 
 	/**
@@ -308,10 +316,10 @@ public abstract class AbstractFileReader implements BBoxDBService, AcquirableRes
 	}
 
 	/**
-	 * Get the memory buffer
+	 * Get the mapped memory
 	 * @return
 	 */
-	public MappedByteBuffer getMemory() {
+	public MappedFileSegments getMemory() {
 		return memory;
 	}
 
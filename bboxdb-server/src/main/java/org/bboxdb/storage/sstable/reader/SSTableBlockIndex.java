@@ -0,0 +1,261 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.sstable.reader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.bboxdb.storage.sstable.SSTableCompression;
+import org.bboxdb.storage.sstable.SSTableConst;
+import org.bboxdb.storage.util.MappedFileSegments;
+
+/**
+ * The block index of a block based (compressed) SSTable. The index is 
+ * read from the end of the data file and kept in memory.
+ */
+public class SSTableBlockIndex {
+	
+	/**
+	 * The compression of the blocks
+	 */
+	private final SSTableCompression compression;
+	
+	/**
+	 * The uncompressed start positions of the blocks
+	 */
+	private final long[] uncompressedStart;
+	
+	/**
+	 * The positions of the blocks in the file
+	 */
+	private final long[] filePosition;
+	
+	/**
+	 * The compressed length of the blocks
+	 */
+	private final int[] compressedLength;
+	
+	/**
+	 * The uncompressed length of the blocks
+	 */
+	private final int[] uncompressedLength;
+	
+	/**
+	 * The first index entry of the blocks
+	 */
+	private final int[] firstEntry;
+	
+	/**
+	 * The first key of the blocks
+	 */
+	private final String[] firstKey;
+	
+	private SSTableBlockIndex(final SSTableCompression compression, final int blocks) {
+		this.compression = compression;
+		this.uncompressedStart = new long[blocks];
+		this.filePosition = new long[blocks];
+		this.compressedLength = new int[blocks];
+		this.uncompressedLength = new int[blocks];
+		this.firstEntry = new int[blocks];
+		this.firstKey = new String[blocks];
+	}
+	
+	/**
+	 * Read the block index from the end of the data file
+	 * @param memory
+	 * @return
+	 * @throws IOException
+	 */
+	public static SSTableBlockIndex readFromFile(final MappedFileSegments memory) throws IOException {
+		final long footerPosition = memory.size() - SSTableConst.BLOCK_FOOTER_BYTES;
+		
+		if(footerPosition < SSTableConst.MAGIC_BYTES_SSTABLE_BLOCK.length) {
+			throw new IOException("File is too small for a block footer");
+		}
+		
+		final long indexPosition = memory.getLong(footerPosition);
+		final int blocks = memory.getInt(footerPosition + 8);
+		final SSTableCompression compression = SSTableCompression.fromId(memory.get(footerPosition + 12));
+		
+		if(indexPosition < 0 || indexPosition > footerPosition || blocks < 0) {
+			throw new IOException("Invalid block footer: index position " 
+					+ indexPosition + " blocks " + blocks);
+		}
+		
+		final SSTableBlockIndex blockIndex = new SSTableBlockIndex(compression, blocks);
+		
+		final ByteBuffer indexBuffer = memory.getBuffer(indexPosition, (int) (footerPosition - indexPosition));
+		
+		for(int i = 0; i < blocks; i++) {
+			blockIndex.uncompressedStart[i] = indexBuffer.getLong();
+			blockIndex.filePosition[i] = indexBuffer.getLong();
+			blockIndex.compressedLength[i] = indexBuffer.getInt();
+			blockIndex.uncompressedLength[i] = indexBuffer.getInt();
+			blockIndex.firstEntry[i] = indexBuffer.getInt();
+			
+			final byte[] keyBytes = new byte[indexBuffer.getShort()];
+			indexBuffer.get(keyBytes);
+			blockIndex.firstKey[i] = new String(keyBytes, StandardCharsets.UTF_8);
+		}
+		
+		return blockIndex;
+	}
+	
+	/**
+	 * Get the block that contains the given uncompressed position
+	 * @param position
+	 * @return the block number or -1
+	 */
+	public int getBlockForPosition(final long position) {
+		int low = 0;
+		int high = uncompressedStart.length - 1;
+		
+		while(low <= high) {
+			final int mid = (low + high) >>> 1;
+			
+			if(uncompressedStart[mid] > position) {
+				high = mid - 1;
+			} else if(uncompressedStart[mid] + uncompressedLength[mid] <= position) {
+				low = mid + 1;
+			} else {
+				return mid;
+			}
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * Get the last block whose first key is less or equal to the given key
+	 * @param key
+	 * @return the block number or -1 if the key is smaller than all keys
+	 */
+	public int getLastBlockStartingBeforeOrAt(final String key) {
+		int low = 0;
+		int high = firstKey.length - 1;
+		int result = -1;
+		
+		while(low <= high) {
+			final int mid = (low + high) >>> 1;
+			
+			if(firstKey[mid].compareTo(key) <= 0) {
+				result = mid;
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Get the last block whose first key is less than the given key
+	 * @param key
+	 * @return the block number or -1 
+	 */
+	public int getLastBlockStartingBefore(final String key) {
+		int low = 0;
+		int high = firstKey.length - 1;
+		int result = -1;
+		
+		while(low <= high) {
+			final int mid = (low + high) >>> 1;
+			
+			if(firstKey[mid].compareTo(key) < 0) {
+				result = mid;
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Get the number of blocks
+	 * @return
+	 */
+	public int getBlocks() {
+		return uncompressedStart.length;
+	}
+	
+	/**
+	 * Get the compression
+	 * @return
+	 */
+	public SSTableCompression getCompression() {
+		return compression;
+	}
+	
+	/**
+	 * Get the uncompressed start position of the block
+	 * @param block
+	 * @return
+	 */
+	public long getUncompressedStart(final int block) {
+		return uncompressedStart[block];
+	}
+	
+	/**
+	 * Get the file position of the block
+	 * @param block
+	 * @return
+	 */
+	public long getFilePosition(final int block) {
+		return filePosition[block];
+	}
+	
+	/**
+	 * Get the compressed length of the block
+	 * @param block
+	 * @return
+	 */
+	public int getCompressedLength(final int block) {
+		return compressedLength[block];
+	}
+	
+	/**
+	 * Get the uncompressed length of the block
+	 * @param block
+	 * @return
+	 */
+	public int getUncompressedLength(final int block) {
+		return uncompressedLength[block];
+	}
+	
+	/**
+	 * Get the first index entry of the block
+	 * @param block
+	 * @return
+	 */
+	public int getFirstEntry(final int block) {
+		return firstEntry[block];
+	}
+	
+	/**
+	 * Get the first key of the block
+	 * @param block
+	 * @return
+	 */
+	public String getFirstKey(final int block) {
+		return firstKey[block];
+	}
+}
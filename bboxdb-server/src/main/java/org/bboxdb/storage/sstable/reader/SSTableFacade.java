@@ -21,6 +21,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -70,6 +71,11 @@ public final class SSTableFacade implements BBoxDBService, ReadOnlyTupleStore {
 	 */
 	protected final TupleStoreMetaData ssTableMetadata;
 	
+	/**
+	 * The covering box of the tuples
+	 */
+	protected final Hyperrectangle coveringBox;
+	
 	/**
 	 * The spatial index
 	 */
@@ -119,12 +125,31 @@ public final class SSTableFacade implements BBoxDBService, ReadOnlyTupleStore {
 		// Meta data
 		final File metadataFile = getMetadataFile(directory, tablename, tablenumber);
 		this.ssTableMetadata = TupleStoreMetaData.importFromYamlFile(metadataFile);
+		this.coveringBox = calculateCoveringBox(ssTableMetadata);
 		
 		this.usage = new AtomicInteger(0);
 		this.deleteOnClose = false;
 		this.keyCacheElements = keyCacheElements;
 	}
 
+	/**
+	 * Get the covering box of the tuples from the metadata. The full space is returned 
+	 * if the metadata does not contain a box that covers all tuples.
+	 * @param metadata
+	 * @return
+	 */
+	protected static Hyperrectangle calculateCoveringBox(final TupleStoreMetaData metadata) {
+		final double[] boundingBoxData = metadata.getBoundingBoxData();
+		
+		if(! metadata.isBoundingBoxCoversAllTuples() || boundingBoxData == null 
+				|| boundingBoxData.length == 0) {
+			
+			return Hyperrectangle.FULL_SPACE;
+		}
+		
+		return new Hyperrectangle(boundingBoxData);
+	}
+
 	/**
 	 * Get the spatial index file
 	 * @param directory
@@ -163,7 +188,7 @@ public final class SSTableFacade implements BBoxDBService, ReadOnlyTupleStore {
 		try (   final RandomAccessFile randomAccessFile = new RandomAccessFile(spatialIndexFile, "r") 
 			) {
 			
-			spatialIndex = SpatialIndexReaderFactory.getInstance();
+			spatialIndex = SpatialIndexReaderFactory.getInstance(randomAccessFile);
 			spatialIndex.readFromFile(randomAccessFile);
 			
 		} catch (Exception e) {
@@ -387,13 +412,35 @@ public final class SSTableFacade implements BBoxDBService, ReadOnlyTupleStore {
 	public long getNewestTupleInsertedTimestamp() {
 		return ssTableMetadata.getNewestTupleInsertedTimstamp();
 	}
+	
+	@Override
+	public Hyperrectangle getCoveringBox() {
+		return coveringBox;
+	}
+	
+	@Override
+	public boolean isKeyInRange(final String key) {
+		final String firstKey = ssTableMetadata.getFirstKey();
+		final String lastKey = ssTableMetadata.getLastKey();
+		
+		// Metadata of older versions contains no key range
+		if(firstKey == null || lastKey == null) {
+			return true;
+		}
+		
+		return key.compareTo(firstKey) >= 0 && key.compareTo(lastKey) <= 0;
+	}
 
 	@Override
 	public List<Tuple> get(final String key) throws StorageManagerException {
 		
 		assert (usage.get() > 0);
 
-		// Check bloom filter first
+		if(! isKeyInRange(key)) {
+			return new ArrayList<>();
+		}
+		
+		// Check the bloom filter
 		if(bloomfilter == null) {
 			logger.warn("File {} does not have a bloom filter", tablename);
 		} else {
@@ -404,9 +451,9 @@ public final class SSTableFacade implements BBoxDBService, ReadOnlyTupleStore {
 		}
 		
 		final List<Tuple> resultList = new ArrayList<>();
-		final List<Integer> positions = ssTableKeyIndexReader.getPositionsForTuple(key);
+		final List<Long> positions = ssTableKeyIndexReader.getPositionsForTuple(key);
 		
-		for(final Integer position : positions) {
+		for(final Long position : positions) {
 			resultList.add(ssTableReader.getTupleAtPosition(position));
 		}
 		
@@ -453,15 +500,54 @@ public final class SSTableFacade implements BBoxDBService, ReadOnlyTupleStore {
 	public Iterator<Tuple> getAllTuplesInBoundingBox(final Hyperrectangle boundingBox) {
 		assert (usage.get() > 0);
 
-		List<SpatialIndexEntry> entries;
+		final long[] positions;
 		
 		try {
-			entries = spatialIndex.getEntriesForRegion(boundingBox);
+			positions = spatialIndex.getPositionsForRegion(boundingBox);
 		} catch (StorageManagerException e) {
 			throw new RuntimeException(e);
 		}
 		
-		final Iterator<SpatialIndexEntry> entryIterator = entries.iterator();
+		return new Iterator<Tuple>() {
+			
+			/**
+			 * The next position
+			 */
+			private int index = 0;
+
+			@Override
+			public boolean hasNext() {
+				return index < positions.length;
+			}
+
+			@Override
+			public Tuple next() {
+				final long tuplePosition = positions[index++];
+				
+				try {
+					return ssTableReader.getTupleAtPosition(tuplePosition);
+				} catch (StorageManagerException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Search the spatial index best-first, the tuples are read when the iterator 
+	 * is advanced.
+	 */
+	@Override
+	public Iterator<Tuple> getAllTuplesByDistance(final Hyperrectangle queryBox) {
+		assert (usage.get() > 0);
+		
+		final Iterator<SpatialIndexEntry> entryIterator;
+		
+		try {
+			entryIterator = spatialIndex.getEntriesByDistance(queryBox);
+		} catch (StorageManagerException e) {
+			throw new RuntimeException(e);
+		}
 		
 		return new Iterator<Tuple>() {
 
@@ -472,8 +558,7 @@ public final class SSTableFacade implements BBoxDBService, ReadOnlyTupleStore {
 
 			@Override
 			public Tuple next() {
-				final SpatialIndexEntry entry = entryIterator.next();
-				final int tuplePosition = entry.getValue();
+				final long tuplePosition = entryIterator.next().getValue();
 				
 				try {
 					return ssTableReader.getTupleAtPosition(tuplePosition);
@@ -484,6 +569,47 @@ public final class SSTableFacade implements BBoxDBService, ReadOnlyTupleStore {
 		};
 	}
 
+	/**
+	 * Query the spatial index with all bounding boxes at once. Each tuple is read 
+	 * once, in the order of the positions in the SSTable.
+	 */
+	@Override
+	public List<List<Tuple>> getAllTuplesInBoundingBoxes(final List<Hyperrectangle> boundingBoxes) {
+		assert (usage.get() > 0);
+		
+		try {
+			final long[][] positions = spatialIndex.getPositionsForRegions(boundingBoxes);
+			
+			final long[] tuplePositions = Arrays.stream(positions)
+					.flatMapToLong(Arrays::stream)
+					.sorted()
+					.distinct()
+					.toArray();
+			
+			final Tuple[] tuples = new Tuple[tuplePositions.length];
+			
+			for(int i = 0; i < tuplePositions.length; i++) {
+				tuples[i] = ssTableReader.getTupleAtPosition(tuplePositions[i]);
+			}
+			
+			final List<List<Tuple>> result = new ArrayList<>(positions.length);
+			
+			for(final long[] positionsForBox : positions) {
+				final List<Tuple> tuplesForBox = new ArrayList<>(positionsForBox.length);
+				
+				for(final long position : positionsForBox) {
+					tuplesForBox.add(tuples[Arrays.binarySearch(tuplePositions, position)]);
+				}
+				
+				result.add(tuplesForBox);
+			}
+			
+			return result;
+		} catch (StorageManagerException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
 	@Override
 	public boolean isPersistent() {
 		return true;
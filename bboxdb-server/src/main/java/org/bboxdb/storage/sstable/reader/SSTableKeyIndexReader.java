@@ -20,6 +20,7 @@ package org.bboxdb.storage.sstable.reader;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
@@ -46,6 +47,16 @@ public class SSTableKeyIndexReader extends AbstractFileReader implements Iterabl
 	 * The key cache <Tuple Number, Key>
 	 */
 	protected LoadingCache<Long, String> keyCache;
+	
+	/**
+	 * The size of an index entry (depends on the version of the index)
+	 */
+	protected volatile int indexEntryBytes = SSTableConst.INDEX_ENTRY_BYTES_V2;
+	
+	/**
+	 * The sorted key index (null for SSTables without a sorted key index)
+	 */
+	protected volatile SSTableSortedKeyIndexReader sortedKeyIndexReader;
 
 	/**
 	 * The Logger
@@ -61,6 +72,59 @@ public class SSTableKeyIndexReader extends AbstractFileReader implements Iterabl
 	public void init() throws InterruptedException {
 		super.init();
 		logger.debug("Opened index for relation: {} with {} entries", name.getFullname(), getNumberOfEntries());
+		
+		initSortedKeyIndex();
+	}
+	
+	/**
+	 * Open the sorted key index if the SSTable contains one, otherwise
+	 * the keys are read from the data file
+	 * @throws InterruptedException
+	 */
+	private void initSortedKeyIndex() throws InterruptedException {
+		final String filename = SSTableHelper.getSSTableKeyIndexFilename(directory, name, tablenumber);
+		
+		if(! new File(filename).exists()) {
+			logger.debug("SSTable {} has no sorted key index", filename);
+			return;
+		}
+		
+		try {
+			final SSTableSortedKeyIndexReader reader = new SSTableSortedKeyIndexReader(sstableReader);
+			reader.init();
+			
+			if(reader.isReady()) {
+				sortedKeyIndexReader = reader;
+			}
+		} catch (StorageManagerException e) {
+			logger.error("Unable to open the sorted key index " + filename, e);
+		}
+	}
+	
+	@Override
+	public void shutdown() throws InterruptedException {
+		if(sortedKeyIndexReader != null) {
+			sortedKeyIndexReader.shutdown();
+		}
+		
+		super.shutdown();
+	}
+	
+	@Override
+	public void delete() {
+		super.delete();
+		
+		if(sortedKeyIndexReader != null) {
+			sortedKeyIndexReader.delete();
+			sortedKeyIndexReader = null;
+		} else {
+			final String filename = SSTableHelper.getSSTableKeyIndexFilename(directory, name, tablenumber);
+			final File keyIndexFile = new File(filename);
+			
+			if(! keyIndexFile.delete() && keyIndexFile.exists()) {
+				throw new RuntimeException("Unable to delete file: " + keyIndexFile);
+			}
+		}
 	}
 
 	/**
@@ -91,16 +155,52 @@ public class SSTableKeyIndexReader extends AbstractFileReader implements Iterabl
 	}
 
 	/**
-	 * Scan the index file for the tuple position
+	 * Get the positions of all versions of the tuple. The sorted key index is used 
+	 * if available, otherwise the keys are read from the data file.
+	 * @param key
+	 * @return
+	 * @throws StorageManagerException
+	 */
+	public List<Long> getPositionsForTuple(final String key) throws StorageManagerException {
+		final SSTableSortedKeyIndexReader keyIndex = sortedKeyIndexReader;
+		
+		if(keyIndex != null && keyIndex.isReady()) {
+			return keyIndex.getPositionsForTuple(key);
+		}
+		
+		return getPositionsForTupleWithBinarySearch(key);
+	}
+
+	/**
+	 * Scan the index file for the tuple position, the keys are read from the data file
 	 * @param key
 	 * @return
 	 * @throws StorageManagerException
 	 */
-	public List<Integer> getPositionsForTuple(final String key) throws StorageManagerException {
+	public List<Long> getPositionsForTupleWithBinarySearch(final String key) throws StorageManagerException {
 
 		try {
 			int firstEntry = 0;
 			int lastEntry = getNumberOfEntries() - 1;
+			
+			// Use the first keys of the blocks to narrow the search range
+			final SSTableBlockIndex blockIndex = sstableReader.getBlockIndex();
+			
+			if(blockIndex != null && blockIndex.getBlocks() > 0) {
+				final int lastBlock = blockIndex.getLastBlockStartingBeforeOrAt(key);
+				
+				// Not found
+				if(lastBlock < 0) {
+					return new ArrayList<>();
+				}
+				
+				final int firstBlock = Math.max(0, blockIndex.getLastBlockStartingBefore(key));
+				firstEntry = blockIndex.getFirstEntry(firstBlock);
+				
+				if(lastBlock + 1 < blockIndex.getBlocks()) {
+					lastEntry = blockIndex.getFirstEntry(lastBlock + 1) - 1;
+				}
+			}
 
 			// Check key is > then first value
 			final String firstValue = getKeyForIndexEntry(firstEntry);
@@ -162,7 +262,7 @@ public class SSTableKeyIndexReader extends AbstractFileReader implements Iterabl
 	 * @throws StorageManagerException
 	 * @throws IOException
 	 */
-	protected List<Integer> fillKeyPositionArrayFromIndexEntry(final String key, final int indexEntry)
+	protected List<Long> fillKeyPositionArrayFromIndexEntry(final String key, final int indexEntry)
 			throws IOException, StorageManagerException {
 
 		final List<Integer> resultList = new ArrayList<>();
@@ -200,7 +300,7 @@ public class SSTableKeyIndexReader extends AbstractFileReader implements Iterabl
 		}
 
 		// Convert index positions
-		final List<Integer> positions = new ArrayList<>();
+		final List<Long> positions = new ArrayList<>();
 		for(final int pos : resultList) {
 			positions.add(convertEntryToPosition(pos));
 		}
@@ -235,7 +335,7 @@ public class SSTableKeyIndexReader extends AbstractFileReader implements Iterabl
 	 * @throws IOException
 	 */
 	protected String readKeyFromBytePos(final long entry) throws IOException {
-		final int position = convertEntryToPosition(entry);
+		final long position = convertEntryToPosition(entry);
 		return sstableReader.decodeOnlyKeyFromTupleAtPosition(position);
 	}
 
@@ -247,7 +347,7 @@ public class SSTableKeyIndexReader extends AbstractFileReader implements Iterabl
 	 * @throws StorageManagerException
 	 */
 	public Tuple getTupleForIndexEntry(final long entry) throws IOException, StorageManagerException {
-		final int position = convertEntryToPosition(entry);
+		final long position = convertEntryToPosition(entry);
 		return sstableReader.getTupleAtPosition(position);
 	}
 
@@ -257,24 +357,24 @@ public class SSTableKeyIndexReader extends AbstractFileReader implements Iterabl
 	 * @return
 	 * @throws IOException
 	 */
-	protected synchronized int convertEntryToPosition(final long entry) throws IOException {
+	protected long convertEntryToPosition(final long entry) throws IOException {
+		
+		// Memory was unmapped
 		if(! acquire()) {
 			throw new IOException("Unable to aquire");
 		}
 
-		// Memory was unmapped
-		if(! serviceState.isInRunningState()) {
-			throw new IOException("Not in running state");
+		try {
+			final long indexPosition = (entry * indexEntryBytes) + getMagicBytes().length;
+			
+			if(indexEntryBytes == SSTableConst.INDEX_ENTRY_BYTES) {
+				return memory.getInt(indexPosition);
+			} else {
+				return memory.getLong(indexPosition);
+			}
+		} finally {
+			release();
 		}
-
-		final byte[] magicBytes = getMagicBytes();
-
-		memory.position((int) ((entry * SSTableConst.INDEX_ENTRY_BYTES) + magicBytes.length));
-		final int position = memory.getInt();
-
-		release();
-
-		return position;
 	}
 
 	/**
@@ -290,7 +390,7 @@ public class SSTableKeyIndexReader extends AbstractFileReader implements Iterabl
 
 			final byte[] magicBytes = getMagicBytes();
 
-			return (int) ((fileChannel.size() - magicBytes.length) / SSTableConst.INDEX_ENTRY_BYTES);
+			return (int) ((fileChannel.size() - magicBytes.length) / indexEntryBytes);
 		} catch (IOException e) {
 			logger.error("IO Exception while reading from index", e);
 		}
@@ -305,6 +405,14 @@ public class SSTableKeyIndexReader extends AbstractFileReader implements Iterabl
 	public SSTableReader getSstableReader() {
 		return sstableReader;
 	}
+	
+	/**
+	 * Get the sorted key index reader
+	 * @return the reader or null
+	 */
+	public SSTableSortedKeyIndexReader getSortedKeyIndexReader() {
+		return sortedKeyIndexReader;
+	}
 
 	/**
 	 * Iterate over the tuples in the sstable
@@ -367,8 +475,25 @@ public class SSTableKeyIndexReader extends AbstractFileReader implements Iterabl
 		return new File(filename);
 	}
 
+	/**
+	 * Accept the magic bytes of both index versions
+	 */
+	@Override
+	protected void validateFile() throws StorageManagerException {
+		final byte[] magicBytes = new byte[SSTableConst.MAGIC_BYTES_INDEX_V2.length];
+		memory.get(0, magicBytes);
+
+		if(Arrays.equals(magicBytes, SSTableConst.MAGIC_BYTES_INDEX_V2)) {
+			indexEntryBytes = SSTableConst.INDEX_ENTRY_BYTES_V2;
+		} else if(Arrays.equals(magicBytes, SSTableConst.MAGIC_BYTES_INDEX)) {
+			indexEntryBytes = SSTableConst.INDEX_ENTRY_BYTES;
+		} else {
+			throw new StorageManagerException("File " + file + " does not contain the magic bytes");
+		}
+	}
+
 	@Override
 	protected byte[] getMagicBytes() {
-		return SSTableConst.MAGIC_BYTES_INDEX;
+		return SSTableConst.MAGIC_BYTES_INDEX_V2;
 	}
 }
\ No newline at end of file
@@ -17,11 +17,17 @@
  *******************************************************************************/
 package org.bboxdb.storage.sstable.reader;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
 import java.io.File;
 import java.io.IOException;
 
 import org.bboxdb.commons.io.DataEncoderHelper;
+import org.bboxdb.misc.Const;
 import org.bboxdb.storage.StorageManagerException;
 import org.bboxdb.storage.entity.Tuple;
 import org.bboxdb.storage.entity.TupleStoreName;
@@ -31,6 +37,10 @@ import org.bboxdb.storage.util.TupleHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
 import io.prometheus.client.Counter;
 
 public class SSTableReader extends AbstractFileReader {
@@ -56,6 +66,23 @@ public class SSTableReader extends AbstractFileReader {
 			.name("bboxdb_read_tuple_bytes")
 			.help("Total read tuple bytes").register();
 	
+	/**
+	 * The total decompressed blocks counter
+	 */
+	protected final static Counter decompressedBlocksTotal = Counter.build()
+			.name("bboxdb_sstable_decompressed_blocks_total")
+			.help("Total decompressed SSTable blocks").register();
+	
+	/**
+	 * The block index (only for block based SSTables)
+	 */
+	protected SSTableBlockIndex blockIndex;
+	
+	/**
+	 * The cache for the uncompressed blocks <Block number, Block>
+	 */
+	protected LoadingCache<Integer, ByteBuffer> blockCache;
+	
 	/**
 	 * The Logger
 	 */
@@ -72,18 +99,24 @@ public class SSTableReader extends AbstractFileReader {
 	 * @return the tuple or null	
 	 * @throws StorageManagerException 
 	 */
-	public synchronized Tuple scanForTuple(final String key) throws StorageManagerException {
+	public Tuple scanForTuple(final String key) throws StorageManagerException {
 		logger.info("Scanning table " + tablenumber + " for " + key);
 
+		if(! acquire()) {
+			throw new StorageManagerException("Unable to aquire");
+		}
+		
 		try {
-			if(! acquire()) {
-				throw new IOException("Unable to aquire");
+			if(blockIndex != null) {
+				return scanBlocksForTuple(key);
 			}
 			
-			resetPosition();
+			long position = getMagicBytes().length;
 			
-			while(memory.hasRemaining()) {
-				final Tuple tuple = TupleHelper.decodeTuple(memory);
+			while(position < memory.size()) {
+				final int tupleLength = getTupleLength(position);
+				final Tuple tuple = TupleHelper.decodeLazyTuple(memory.getBuffer(position, tupleLength));
+				position += tupleLength;
 
 				// The keys are stored in lexicographical order. If the
 				// next key of the sstable is greater then our search key,
@@ -107,30 +140,54 @@ public class SSTableReader extends AbstractFileReader {
 	}
 	
 	/**
-	 * Get tuple at the given position
+	 * Scan the blocks of a block based SSTable for the tuple
+	 * @param key
+	 * @return the tuple or null
+	 * @throws IOException
+	 */
+	private Tuple scanBlocksForTuple(final String key) throws IOException {
+		for(int block = 0; block < blockIndex.getBlocks(); block++) {
+			final ByteBuffer blockBuffer = getBlock(block).duplicate();
+			
+			while(blockBuffer.hasRemaining()) {
+				final Tuple tuple = TupleHelper.decodeLazyTuple(blockBuffer);
+
+				if(tuple.getKey().compareTo(key) > 0) {
+					return null;
+				}
+				
+				if(tuple.getKey().equals(key)) {
+					return tuple;
+				}
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Get tuple at the given position. All reads use absolute positions or 
+	 * own views of the memory, so the method can be called concurrently.
 	 * 
 	 * @param position
 	 * @return The tuple
 	 * @throws StorageManagerException
 	 */
-	public synchronized Tuple getTupleAtPosition(final int position) throws StorageManagerException {
+	public Tuple getTupleAtPosition(final long position) throws StorageManagerException {
+		
+		// The memory was unmapped
+		if(! acquire()) {
+			logger.warn("Read request to unmapped memory for relation: " + name);
+			return null;
+		}
 		
 		try {
-			// The memory was unmapped
-			if(! serviceState.isInRunningState()) {
-				logger.warn("Read request to unmapped memory for relation: " + name);
-				return null;
-			}
-			
-			acquire();
-			memory.position(position);
-			
-			final Tuple tuple = TupleHelper.decodeTuple(memory);
-			final int newPosition = memory.position();
-			final int readBytes = newPosition - position;
+			final ByteBuffer buffer = getTupleBuffer(position);
+			final int tupleOffset = buffer.position();
+			final Tuple tuple = TupleHelper.decodeLazyTuple(buffer);
 
 			readTuplesTotal.inc();
-			readTuplesBytes.inc(readBytes);
+			readTuplesBytes.inc(buffer.position() - tupleOffset);
 			
 			return tuple;
 		} catch (Exception e) {
@@ -149,26 +206,26 @@ public class SSTableReader extends AbstractFileReader {
 	 * @return
 	 * @throws IOException 
 	 */
-	public synchronized String decodeOnlyKeyFromTupleAtPosition(final int position) throws IOException {
+	public String decodeOnlyKeyFromTupleAtPosition(final long position) throws IOException {
 		
 		if(! acquire()) {
 			throw new IOException("Unable to aquire");
 		}
 		
 		try {
-			memory.position(position);
+			final ByteBuffer buffer = getTupleBuffer(position);
 			
-			final short keyLength = memory.getShort();
+			final short keyLength = buffer.getShort();
 	
 			final int sizeToSkip = DataEncoderHelper.INT_BYTES			// BBOX-Length
 					+ DataEncoderHelper.INT_BYTES 						// Data-Length
 					+ DataEncoderHelper.LONG_BYTES						// Version Timestamp
 					+ DataEncoderHelper.LONG_BYTES;						// Received Timetamp		
 			
-			memory.position(memory.position() + sizeToSkip);
+			buffer.position(buffer.position() + sizeToSkip);
 			
 			final byte[] keyBytes = new byte[keyLength];
-			memory.get(keyBytes, 0, keyBytes.length);
+			buffer.get(keyBytes, 0, keyBytes.length);
 			
 			readTupleKeysTotal.inc();
 			
@@ -180,6 +237,232 @@ public class SSTableReader extends AbstractFileReader {
 		}
 	}
 	
+	/**
+	 * Get a buffer that contains the tuple at the given position. The position 
+	 * of the buffer is set to the beginning of the tuple.
+	 * 
+	 * @param position
+	 * @return
+	 * @throws IOException
+	 */
+	private ByteBuffer getTupleBuffer(final long position) throws IOException {
+		if(blockIndex != null) {
+			return getBlockForPosition(position);
+		}
+		
+		return memory.getBuffer(position, getTupleLength(position));
+	}
+	
+	/**
+	 * Get the length of the serialized tuple at the given position
+	 * @param position
+	 * @return
+	 */
+	private int getTupleLength(final long position) {
+		final short keyLength = memory.getShort(position + TupleHelper.KEY_LENGTH_OFFSET);
+		final int boxLength = memory.getInt(position + TupleHelper.BOX_LENGTH_OFFSET);
+		final int dataLength = memory.getInt(position + TupleHelper.DATA_LENGTH_OFFSET);
+		
+		return TupleHelper.TUPLE_HEADER_BYTES + keyLength + boxLength + dataLength;
+	}
+	
+	/**
+	 * Get a buffer of the uncompressed block that contains the position. The 
+	 * position of the buffer is set to the given position.
+	 * 
+	 * @param position
+	 * @return
+	 * @throws IOException
+	 */
+	private ByteBuffer getBlockForPosition(final long position) throws IOException {
+		final int block = blockIndex.getBlockForPosition(position);
+		
+		if(block < 0) {
+			throw new IOException("Unable to find block for position " + position + " in " + file);
+		}
+		
+		final ByteBuffer blockBuffer = getBlock(block).duplicate();
+		blockBuffer.position((int) (position - blockIndex.getUncompressedStart(block)));
+		return blockBuffer;
+	}
+	
+	/**
+	 * Get the uncompressed block
+	 * @param block
+	 * @return
+	 * @throws IOException
+	 */
+	private ByteBuffer getBlock(final int block) throws IOException {
+		try {
+			return blockCache.get(block);
+		} catch (ExecutionException e) {
+			throw new IOException(e);
+		}
+	}
+	
+	/**
+	 * Read and decompress the block
+	 * @param block
+	 * @return
+	 * @throws IOException
+	 */
+	private ByteBuffer readBlock(final int block) throws IOException {
+		return decompressBlock(block).asReadOnlyBuffer();
+	}
+	
+	/**
+	 * Decompress the block into a new buffer
+	 * @param block
+	 * @return
+	 * @throws IOException
+	 */
+	private ByteBuffer decompressBlock(final int block) throws IOException {
+		final byte[] compressedBlock = new byte[blockIndex.getCompressedLength(block)];
+		memory.get(blockIndex.getFilePosition(block), compressedBlock);
+		
+		final byte[] uncompressedBlock = blockIndex.getCompression().decompress(compressedBlock, 
+				blockIndex.getUncompressedLength(block));
+		
+		decompressedBlocksTotal.inc();
+		
+		return ByteBuffer.wrap(uncompressedBlock).order(Const.APPLICATION_BYTE_ORDER);
+	}
+	
+	/**
+	 * Iterate sequentially over the tuples of the SSTable (e.g., for a compaction). 
+	 * The tuples are not copied, they are views of the mapped memory or of the 
+	 * decompressed blocks. So, the reader has to be acquired as long as the iterator 
+	 * and the tuples are in use. The decompressed blocks are not added to the block 
+	 * cache.
+	 * 
+	 * @return
+	 */
+	public Iterator<Tuple> scanIterator() {
+		return new Iterator<Tuple>() {
+			
+			/**
+			 * The position of the next tuple (SSTables without blocks)
+			 */
+			private long position = getMagicBytes().length;
+			
+			/**
+			 * The current block (block based SSTables)
+			 */
+			private ByteBuffer blockBuffer = null;
+			
+			/**
+			 * The next block (block based SSTables)
+			 */
+			private int nextBlock = 0;
+
+			@Override
+			public boolean hasNext() {
+				if(blockIndex == null) {
+					return position < memory.size();
+				}
+				
+				if(blockBuffer != null && blockBuffer.hasRemaining()) {
+					return true;
+				}
+				
+				return nextBlock < blockIndex.getBlocks();
+			}
+
+			@Override
+			public Tuple next() {
+				if(! hasNext()) {
+					throw new NoSuchElementException("No tuples left in " + file);
+				}
+				
+				// Stop the iteration, the memory will be unmapped
+				if(! isReady()) {
+					logger.debug("Stop scan of non ready reader {}", file);
+					return null;
+				}
+				
+				try {
+					final ByteBuffer buffer = getBufferForNextTuple();
+					final int tupleOffset = buffer.position();
+					final Tuple tuple = TupleHelper.decodeLazyTupleView(buffer);
+					
+					readTuplesTotal.inc();
+					readTuplesBytes.inc(buffer.position() - tupleOffset);
+					
+					return tuple;
+				} catch (IOException e) {
+					logger.error("Got exception while scanning " + file, e);
+				}
+				
+				return null;
+			}
+
+			/**
+			 * Get the buffer with the next tuple at the current position
+			 * @return
+			 * @throws IOException
+			 */
+			private ByteBuffer getBufferForNextTuple() throws IOException {
+				if(blockIndex == null) {
+					final int tupleLength = getTupleLength(position);
+					final ByteBuffer buffer = memory.getBuffer(position, tupleLength);
+					position += tupleLength;
+					return buffer;
+				}
+				
+				if(blockBuffer == null || ! blockBuffer.hasRemaining()) {
+					blockBuffer = decompressBlock(nextBlock);
+					nextBlock++;
+				}
+				
+				return blockBuffer;
+			}
+		};
+	}
+	
+	/**
+	 * Accept the magic bytes of both SSTable formats and read the 
+	 * block index of block based SSTables
+	 */
+	@Override
+	protected void validateFile() throws StorageManagerException {
+		final byte[] magicBytes = new byte[SSTableConst.MAGIC_BYTES_SSTABLE.length];
+		memory.get(0, magicBytes);
+		
+		if(Arrays.equals(magicBytes, SSTableConst.MAGIC_BYTES_SSTABLE)) {
+			blockIndex = null;
+			blockCache = null;
+			return;
+		}
+		
+		if(! Arrays.equals(magicBytes, SSTableConst.MAGIC_BYTES_SSTABLE_BLOCK)) {
+			throw new StorageManagerException("File " + file + " does not contain the magic bytes");
+		}
+		
+		try {
+			blockIndex = SSTableBlockIndex.readFromFile(memory);
+		} catch (IOException e) {
+			throw new StorageManagerException("Unable to read block index of " + file, e);
+		}
+		
+		blockCache = CacheBuilder.newBuilder()
+				.maximumSize(SSTableConst.BLOCK_CACHE_ELEMENTS)
+				.build(new CacheLoader<Integer, ByteBuffer>() {
+
+			@Override
+			public ByteBuffer load(final Integer block) throws Exception {
+				return readBlock(block);
+			}
+		});
+	}
+	
+	/**
+	 * Get the block index
+	 * @return the block index or null for SSTables without blocks
+	 */
+	public SSTableBlockIndex getBlockIndex() {
+		return blockIndex;
+	}
+	
 	/**
 	 * Convert to string
 	 */
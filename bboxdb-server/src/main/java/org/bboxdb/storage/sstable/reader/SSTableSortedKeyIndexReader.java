@@ -0,0 +1,255 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.sstable.reader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.bboxdb.storage.StorageManagerException;
+import org.bboxdb.storage.sstable.SSTableConst;
+import org.bboxdb.storage.sstable.SSTableHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.prometheus.client.Counter;
+
+/**
+ * Reader for the sorted key index of an SSTable. The top level (the first 
+ * key of every block) is kept in memory, so a point lookup reads one block 
+ * of the index and does not touch the data file.
+ */
+public class SSTableSortedKeyIndexReader extends AbstractFileReader {
+	
+	/**
+	 * The file positions of the blocks
+	 */
+	private long[] blockPosition;
+	
+	/**
+	 * The first entry of the blocks
+	 */
+	private int[] firstEntry;
+	
+	/**
+	 * The first key of the blocks
+	 */
+	private String[] firstKey;
+	
+	/**
+	 * The position of the top level (the end of the last block)
+	 */
+	private long topLevelPosition;
+	
+	/**
+	 * The number of entries
+	 */
+	private int entries;
+	
+	/**
+	 * The read blocks
+	 */
+	private final static Counter readKeyIndexBlocks = Counter.build()
+			.name("bboxdb_key_index_block_reads_total")
+			.help("Read blocks of the sorted key index").register();
+	
+	/**
+	 * The Logger
+	 */
+	private static final Logger logger = LoggerFactory.getLogger(SSTableSortedKeyIndexReader.class);
+	
+	public SSTableSortedKeyIndexReader(final SSTableReader sstableReader) throws StorageManagerException {
+		super(sstableReader.getDirectory(), sstableReader.getName(), sstableReader.getTablebumber());
+	}
+	
+	@Override
+	public void init() throws InterruptedException {
+		super.init();
+		
+		if(! serviceState.isInRunningState()) {
+			return;
+		}
+		
+		try {
+			readTopLevel();
+			logger.debug("Opened key index for relation: {} with {} blocks", 
+					name.getFullname(), firstKey.length);
+		} catch (IOException e) {
+			logger.error("Unable to read the key index " + file, e);
+			serviceState.dispatchToFailed(e);
+			shutdown();
+		}
+	}
+	
+	/**
+	 * Read the top level from the end of the file
+	 * @throws IOException 
+	 */
+	private void readTopLevel() throws IOException {
+		final long footerPosition = memory.size() - SSTableConst.KEY_INDEX_FOOTER_BYTES;
+		
+		if(footerPosition < SSTableConst.MAGIC_BYTES_KEY_INDEX.length) {
+			throw new IOException("File is too small for a key index footer");
+		}
+		
+		topLevelPosition = memory.getLong(footerPosition);
+		final int blocks = memory.getInt(footerPosition + 8);
+		entries = memory.getInt(footerPosition + 12);
+		
+		if(topLevelPosition < 0 || topLevelPosition > footerPosition || blocks < 0) {
+			throw new IOException("Invalid key index footer: top level position " 
+					+ topLevelPosition + " blocks " + blocks);
+		}
+		
+		blockPosition = new long[blocks];
+		firstEntry = new int[blocks];
+		firstKey = new String[blocks];
+		
+		final ByteBuffer topLevel = memory.getBuffer(topLevelPosition, (int) (footerPosition - topLevelPosition));
+		
+		for(int i = 0; i < blocks; i++) {
+			blockPosition[i] = topLevel.getLong();
+			firstEntry[i] = topLevel.getInt();
+			
+			final byte[] keyBytes = new byte[topLevel.getShort() & 0xFFFF];
+			topLevel.get(keyBytes);
+			firstKey[i] = new String(keyBytes, StandardCharsets.UTF_8);
+		}
+	}
+	
+	/**
+	 * Get the positions of all versions of the key
+	 * @param key
+	 * @return
+	 * @throws StorageManagerException
+	 */
+	public List<Long> getPositionsForTuple(final String key) throws StorageManagerException {
+		final List<Long> positions = new ArrayList<>();
+		final int block = getBlockForKey(key);
+		
+		if(block < 0) {
+			return positions;
+		}
+		
+		if(! acquire()) {
+			throw new StorageManagerException("Unable to acquire key index " + file);
+		}
+		
+		try {
+			final long blockEnd = (block + 1 < blockPosition.length) ? blockPosition[block + 1] : topLevelPosition;
+			final ByteBuffer blockBuffer = memory.getBuffer(blockPosition[block], (int) (blockEnd - blockPosition[block]));
+			readKeyIndexBlocks.inc();
+			
+			final byte[] searchKey = key.getBytes(StandardCharsets.UTF_8);
+			byte[] currentKey = new byte[0];
+			
+			while(blockBuffer.hasRemaining()) {
+				final int sharedPrefix = blockBuffer.getShort() & 0xFFFF;
+				final int suffixLength = blockBuffer.getShort() & 0xFFFF;
+				
+				final byte[] entryKey = Arrays.copyOf(currentKey, sharedPrefix + suffixLength);
+				blockBuffer.get(entryKey, sharedPrefix, suffixLength);
+				final long tuplePosition = blockBuffer.getLong();
+				
+				if(Arrays.equals(entryKey, searchKey)) {
+					positions.add(tuplePosition);
+				} else if(! positions.isEmpty()) {
+					// All versions of the key are stored next to each other
+					break;
+				}
+				
+				currentKey = entryKey;
+			}
+		} catch (IndexOutOfBoundsException e) {
+			throw new StorageManagerException("Unable to read block " + block + " of " + file, e);
+		} finally {
+			release();
+		}
+		
+		return positions;
+	}
+	
+	/**
+	 * Get the last block with a first key that is smaller or equal than the key
+	 * @param key
+	 * @return the block or -1
+	 */
+	private int getBlockForKey(final String key) {
+		int low = 0;
+		int high = firstKey.length - 1;
+		int result = -1;
+		
+		while(low <= high) {
+			final int mid = (low + high) >>> 1;
+			
+			if(firstKey[mid].compareTo(key) <= 0) {
+				result = mid;
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Get the number of blocks
+	 * @return
+	 */
+	public int getBlocks() {
+		return firstKey.length;
+	}
+	
+	/**
+	 * Get the number of entries
+	 * @return
+	 */
+	public int getNumberOfEntries() {
+		return entries;
+	}
+	
+	/**
+	 * Get the first entry of the block
+	 * @param block
+	 * @return
+	 */
+	public int getFirstEntry(final int block) {
+		return firstEntry[block];
+	}
+
+	@Override
+	public String getServicename() {
+		return "SSTable sorted key index reader";
+	}
+
+	@Override
+	protected File constructFileToRead() {
+		final String filename = SSTableHelper.getSSTableKeyIndexFilename(directory, name, tablenumber);
+		return new File(filename);
+	}
+
+	@Override
+	protected byte[] getMagicBytes() {
+		return SSTableConst.MAGIC_BYTES_KEY_INDEX;
+	}
+}
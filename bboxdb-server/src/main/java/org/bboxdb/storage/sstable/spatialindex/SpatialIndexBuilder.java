@@ -18,9 +18,12 @@
 package org.bboxdb.storage.sstable.spatialindex;
 
 import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 import org.bboxdb.commons.math.Hyperrectangle;
+import org.bboxdb.commons.math.HyperrectangleHelper;
 import org.bboxdb.storage.StorageManagerException;
 
 
@@ -56,5 +59,18 @@ public interface SpatialIndexBuilder {
 	 * @return
 	 */
 	public List<? extends SpatialIndexEntry> getEntriesForRegion(final Hyperrectangle boundingBox);
+	
+	/**
+	 * Get the entries in the order of their distance to the query box. The default 
+	 * implementation sorts all entries, the R-tree builders use a best-first search.
+	 * 
+	 * @param queryBox
+	 * @return
+	 */
+	public default Iterator<SpatialIndexEntry> getEntriesByDistance(final Hyperrectangle queryBox) {
+		final List<SpatialIndexEntry> entries = new ArrayList<>(getEntriesForRegion(Hyperrectangle.FULL_SPACE));
+		entries.sort(HyperrectangleHelper.getDistanceComparator(queryBox, SpatialIndexEntry::getBoundingBox));
+		return entries.iterator();
+	}
 
 }
@@ -34,9 +34,16 @@ public class SpatialIndexBuilderFactory {
 	 * @return
 	 */
 	public static SpatialIndexBuilder getInstance() {
-
 		final BBoxDBConfiguration configuration = BBoxDBConfigurationManager.getConfiguration();
-		final String factoryClass = configuration.getStorageSpatialIndexBuilder();
+		return getInstance(configuration.getStorageSpatialIndexBuilder());
+	}
+	
+	/**
+	 * Get an instance of the given builder class
+	 * @param factoryClass
+	 * @return
+	 */
+	public static SpatialIndexBuilder getInstance(final String factoryClass) {
 		
 		// Instance the classname
 		try {
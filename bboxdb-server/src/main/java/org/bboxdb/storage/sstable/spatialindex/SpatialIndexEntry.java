@@ -29,14 +29,14 @@ public class SpatialIndexEntry implements BoundingBoxEntity {
 	/**
 	 * The key
 	 */
-	protected final int value;
+	protected final long value;
 	
 	/**
 	 * The bounding box
 	 */
 	protected final Hyperrectangle boundingBox;
 
-	public SpatialIndexEntry(final Hyperrectangle boundingBox, final int value) {
+	public SpatialIndexEntry(final Hyperrectangle boundingBox, final long value) {
 		this.value = value;
 		this.boundingBox = boundingBox;
 	}
@@ -45,7 +45,7 @@ public class SpatialIndexEntry implements BoundingBoxEntity {
 	 * Get the value
 	 * @return
 	 */
-	public int getValue() {
+	public long getValue() {
 		return value;
 	}
 	
@@ -62,7 +62,7 @@ public class SpatialIndexEntry implements BoundingBoxEntity {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + ((boundingBox == null) ? 0 : boundingBox.hashCode());
-		result = prime * result + value;
+		result = prime * result + (int) (value ^ (value >>> 32));
 		return result;
 	}
 
@@ -96,7 +96,7 @@ public class SpatialIndexEntry implements BoundingBoxEntity {
 	 * @throws IOException
 	 */
 	public void writeToFile(final RandomAccessFile randomAccessFile) throws IOException {
-		final ByteBuffer keyBytes = DataEncoderHelper.intToByteBuffer(value);
+		final ByteBuffer keyBytes = DataEncoderHelper.longToByteBuffer(value);
 		randomAccessFile.write(keyBytes.array());
 
 		final byte[] boundingBoxBytes = boundingBox.toByteArray();		
@@ -109,18 +109,20 @@ public class SpatialIndexEntry implements BoundingBoxEntity {
 	/**
 	 * Read the node from a stream
 	 * @param inputStream
+	 * @param longValue - the value is stored with 8 bytes (version 2 of the index) 
 	 * @return
 	 * @throws IOException 
 	 */
-	public static SpatialIndexEntry readFromFile(final RandomAccessFile randomAccessFile) throws IOException {
+	public static SpatialIndexEntry readFromFile(final RandomAccessFile randomAccessFile, 
+			final boolean longValue) throws IOException {
 
-		final byte[] keyBytes = new byte[DataEncoderHelper.INT_BYTES];
+		final byte[] keyBytes = new byte[getValueBytes(longValue)];
 		final byte[] boxLengthBytes = new byte[DataEncoderHelper.INT_BYTES];
 		
 		randomAccessFile.readFully(keyBytes, 0, keyBytes.length);
 		randomAccessFile.readFully(boxLengthBytes, 0, boxLengthBytes.length);
 
-		final int key = DataEncoderHelper.readIntFromByte(keyBytes);
+		final long key = decodeValue(keyBytes);
 		final int bboxLength = DataEncoderHelper.readIntFromByte(boxLengthBytes);
 
 		final byte[] bboxBytes = new byte[bboxLength];		
@@ -134,17 +136,20 @@ public class SpatialIndexEntry implements BoundingBoxEntity {
 	/**
 	 * Read the node from a byte buffer
 	 * @param inputStream
+	 * @param longValue - the value is stored with 8 bytes (version 2 of the index) 
 	 * @return
 	 * @throws IOException 
 	 */
-	public static SpatialIndexEntry readFromByteBuffer(final ByteBuffer buffer) throws IOException {
-		final byte[] keyBytes = new byte[DataEncoderHelper.INT_BYTES];
+	public static SpatialIndexEntry readFromByteBuffer(final ByteBuffer buffer, 
+			final boolean longValue) throws IOException {
+		
+		final byte[] keyBytes = new byte[getValueBytes(longValue)];
 		final byte[] boxLengthBytes = new byte[DataEncoderHelper.INT_BYTES];
 		
 		buffer.get(keyBytes, 0, keyBytes.length);
 		buffer.get(boxLengthBytes, 0, boxLengthBytes.length);
 
-		final int key = DataEncoderHelper.readIntFromByte(keyBytes);
+		final long key = decodeValue(keyBytes);
 		final int bboxLength = DataEncoderHelper.readIntFromByte(boxLengthBytes);
 
 		final byte[] bboxBytes = new byte[bboxLength];		
@@ -155,4 +160,25 @@ public class SpatialIndexEntry implements BoundingBoxEntity {
 		return new SpatialIndexEntry(boundingBox, key);
 	}
 
+	/**
+	 * Get the size of the encoded value
+	 * @param longValue
+	 * @return
+	 */
+	private static int getValueBytes(final boolean longValue) {
+		return longValue ? DataEncoderHelper.LONG_BYTES : DataEncoderHelper.INT_BYTES;
+	}
+	
+	/**
+	 * Decode the value (4 or 8 bytes)
+	 * @param valueBytes
+	 * @return
+	 */
+	private static long decodeValue(final byte[] valueBytes) {
+		if(valueBytes.length == DataEncoderHelper.LONG_BYTES) {
+			return DataEncoderHelper.readLongFromByte(valueBytes);
+		}
+		
+		return DataEncoderHelper.readIntFromByte(valueBytes);
+	}
 }
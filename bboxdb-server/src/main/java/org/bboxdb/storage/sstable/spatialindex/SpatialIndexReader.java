@@ -19,9 +19,11 @@ package org.bboxdb.storage.sstable.spatialindex;
 
 import java.io.Closeable;
 import java.io.RandomAccessFile;
+import java.util.Iterator;
 import java.util.List;
 
 import org.bboxdb.commons.math.Hyperrectangle;
+import org.bboxdb.commons.math.HyperrectangleHelper;
 import org.bboxdb.storage.StorageManagerException;
 
 public interface SpatialIndexReader extends Closeable {
@@ -44,4 +46,51 @@ public interface SpatialIndexReader extends Closeable {
 	 * @return
 	 */
 	public List<SpatialIndexEntry> getEntriesForRegion(final Hyperrectangle boundingBox) throws StorageManagerException;
+	
+	/**
+	 * Find the values (the positions of the tuples) for the given region
+	 * @param boundingBox
+	 * @return
+	 * @throws StorageManagerException
+	 */
+	public default long[] getPositionsForRegion(final Hyperrectangle boundingBox) throws StorageManagerException {
+		return getEntriesForRegion(boundingBox)
+				.stream()
+				.mapToLong(SpatialIndexEntry::getValue)
+				.toArray();
+	}
+	
+	/**
+	 * Find the values (the positions of the tuples) for a batch of regions
+	 * @param boundingBoxes
+	 * @return the values for each bounding box
+	 * @throws StorageManagerException
+	 */
+	public default long[][] getPositionsForRegions(final List<Hyperrectangle> boundingBoxes) 
+			throws StorageManagerException {
+		
+		final long[][] positions = new long[boundingBoxes.size()][];
+		
+		for(int i = 0; i < positions.length; i++) {
+			positions[i] = getPositionsForRegion(boundingBoxes.get(i));
+		}
+		
+		return positions;
+	}
+	
+	/**
+	 * Get the entries in the order of their distance to the query box. The default 
+	 * implementation sorts all entries, the R-tree readers use a best-first search.
+	 * 
+	 * @param queryBox
+	 * @return
+	 * @throws StorageManagerException
+	 */
+	public default Iterator<SpatialIndexEntry> getEntriesByDistance(final Hyperrectangle queryBox) 
+			throws StorageManagerException {
+		
+		final List<SpatialIndexEntry> entries = getEntriesForRegion(Hyperrectangle.FULL_SPACE);
+		entries.sort(HyperrectangleHelper.getDistanceComparator(queryBox, SpatialIndexEntry::getBoundingBox));
+		return entries.iterator();
+	}
 }
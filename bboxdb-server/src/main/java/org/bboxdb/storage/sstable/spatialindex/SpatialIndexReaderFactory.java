@@ -17,8 +17,14 @@
  *******************************************************************************/
 package org.bboxdb.storage.sstable.spatialindex;
 
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
 import org.bboxdb.misc.BBoxDBConfiguration;
 import org.bboxdb.misc.BBoxDBConfigurationManager;
+import org.bboxdb.storage.sstable.SSTableConst;
+import org.bboxdb.storage.sstable.spatialindex.grid.GridIndexMMFReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,6 +35,31 @@ public class SpatialIndexReaderFactory {
 	 */
 	private final static Logger logger = LoggerFactory.getLogger(SpatialIndexReaderFactory.class);
 
+	/**
+	 * Get a reader for the given index file. Grid indices are read by the grid 
+	 * reader, R-tree indices by the configured reader.
+	 * 
+	 * @param randomAccessFile
+	 * @return
+	 * @throws IOException
+	 */
+	public static SpatialIndexReader getInstance(final RandomAccessFile randomAccessFile) throws IOException {
+		
+		final byte[] magicBytes = new byte[SSTableConst.MAGIC_BYTES_SPATIAL_GRID_INDEX.length];
+		
+		if(randomAccessFile.length() >= magicBytes.length) {
+			randomAccessFile.seek(0);
+			randomAccessFile.readFully(magicBytes);
+			randomAccessFile.seek(0);
+		}
+		
+		if(Arrays.equals(magicBytes, SSTableConst.MAGIC_BYTES_SPATIAL_GRID_INDEX)) {
+			return new GridIndexMMFReader();
+		}
+		
+		return getInstance();
+	}
+	
 	/**
 	 * Get an instance of the configured factory
 	 * @return
@@ -0,0 +1,88 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *******************************************************************************/
+package org.bboxdb.storage.sstable.spatialindex.grid;
+
+import java.util.Arrays;
+
+/**
+ * The ranges of consecutive cell ids, adjacent ranges are merged
+ */
+final class GridCellRanges {
+
+	/**
+	 * The first and the last id of the ranges
+	 */
+	private long[] values;
+
+	/**
+	 * The number of ranges
+	 */
+	private int size;
+
+	GridCellRanges() {
+		this.values = new long[32];
+		this.size = 0;
+	}
+
+	/**
+	 * Add a range, the ranges have to be added in ascending order
+	 * @param first
+	 * @param last
+	 */
+	void add(final long first, final long last) {
+
+		if(size > 0 && values[2 * size - 1] + 1 == first) {
+			values[2 * size - 1] = last;
+			return;
+		}
+
+		if(2 * size == values.length) {
+			values = Arrays.copyOf(values, values.length * 2);
+		}
+
+		values[2 * size] = first;
+		values[2 * size + 1] = last;
+		size++;
+	}
+
+	/**
+	 * Get the first id of the range
+	 * @param range
+	 * @return
+	 */
+	long getFirst(final int range) {
+		return values[2 * range];
+	}
+
+	/**
+	 * Get the last id of the range
+	 * @param range
+	 * @return
+	 */
+	long getLast(final int range) {
+		return values[2 * range + 1];
+	}
+
+	/**
+	 * Get the number of ranges
+	 * @return
+	 */
+	int size() {
+		return size;
+	}
+}
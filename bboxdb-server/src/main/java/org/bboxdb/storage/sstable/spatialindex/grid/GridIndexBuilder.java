@@ -0,0 +1,319 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *******************************************************************************/
+package org.bboxdb.storage.sstable.spatialindex.grid;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.bboxdb.commons.io.DataEncoderHelper;
+import org.bboxdb.commons.math.Hyperrectangle;
+import org.bboxdb.storage.StorageManagerException;
+import org.bboxdb.storage.sstable.spatialindex.SpatialIndexBuilder;
+import org.bboxdb.storage.sstable.spatialindex.SpatialIndexEntry;
+
+/**
+ * A grid index (linear quadtree) for point data (see GridIndexLayout). The entries
+ * are collected and the size of the cells is chosen from the extent of the entries
+ * when the index is written, so a cell contains a few entries on average.
+ *
+ * Boxes are also supported. They are stored in the cell of the lower corner and the
+ * queries are extended by the max extent of the boxes. So, the index works best for
+ * points and small boxes.
+ */
+public final class GridIndexBuilder implements SpatialIndexBuilder {
+
+	/**
+	 * The average number of entries per cell
+	 */
+	private final int entriesPerCell;
+
+	/**
+	 * The collected entries
+	 */
+	private final List<SpatialIndexEntry> entries;
+
+	/**
+	 * The entries without a bounding box (the full space)
+	 */
+	private final List<SpatialIndexEntry> fullSpaceEntries;
+
+	/**
+	 * The dimensions of the entries (0 = unknown)
+	 */
+	private int dimensions;
+
+	/**
+	 * The encoded index (null if the index needs to be encoded)
+	 */
+	private ByteBuffer indexBuffer;
+
+	/**
+	 * The layout of the encoded index
+	 */
+	private GridIndexLayout layout;
+
+	/**
+	 * The default number of entries per cell
+	 */
+	public final static int DEFAULT_ENTRIES_PER_CELL = 16;
+
+	/**
+	 * The max number of bits for a cell coordinate
+	 */
+	private final static int MAX_BITS_PER_DIMENSION = 30;
+
+	public GridIndexBuilder() {
+		this(DEFAULT_ENTRIES_PER_CELL);
+	}
+
+	public GridIndexBuilder(final int entriesPerCell) {
+
+		if(entriesPerCell <= 0) {
+			throw new IllegalArgumentException("Unable to construct an index with "
+					+ entriesPerCell + " entries per cell");
+		}
+
+		this.entriesPerCell = entriesPerCell;
+		this.entries = new ArrayList<>();
+		this.fullSpaceEntries = new ArrayList<>();
+		this.dimensions = 0;
+		this.indexBuffer = null;
+		this.layout = null;
+	}
+
+	@Override
+	public boolean bulkInsert(final List<SpatialIndexEntry> elements) {
+		boolean result = true;
+
+		for(final SpatialIndexEntry entry : elements) {
+			final boolean insertResult = insert(entry);
+
+			if(! insertResult) {
+				result = false;
+			}
+		}
+
+		return result;
+	}
+
+	@Override
+	public boolean insert(final SpatialIndexEntry element) {
+
+		final Hyperrectangle boundingBox = element.getBoundingBox();
+
+		if(boundingBox == null) {
+			return false;
+		}
+
+		indexBuffer = null;
+
+		if(boundingBox.getDimension() == 0) {
+			fullSpaceEntries.add(element);
+			return true;
+		}
+
+		if(dimensions == 0) {
+			dimensions = boundingBox.getDimension();
+		} else if(dimensions != boundingBox.getDimension()) {
+			throw new IllegalArgumentException("Unable to insert a box with " + boundingBox.getDimension()
+				+ " dimensions into an index with " + dimensions + " dimensions");
+		}
+
+		entries.add(element);
+
+		return true;
+	}
+
+	@Override
+	public void writeToFile(final RandomAccessFile randomAccessFile) throws StorageManagerException {
+		final ByteBuffer buffer = getIndexBuffer();
+
+		try {
+			randomAccessFile.write(buffer.array(), 0, buffer.limit());
+		} catch (IOException e) {
+			throw new StorageManagerException(e);
+		}
+	}
+
+	@Override
+	public List<? extends SpatialIndexEntry> getEntriesForRegion(final Hyperrectangle boundingBox) {
+		final ByteBuffer buffer = getIndexBuffer();
+		final List<SpatialIndexEntry> result = new ArrayList<>();
+		layout.queryIndex(buffer, boundingBox, result);
+		return result;
+	}
+
+	/**
+	 * Get the layout of the index
+	 * @return
+	 */
+	public GridIndexLayout getLayout() {
+		getIndexBuffer();
+		return layout;
+	}
+
+	/**
+	 * Get the encoded index, encode the index if needed
+	 * @return
+	 */
+	private ByteBuffer getIndexBuffer() {
+		if(indexBuffer == null) {
+			indexBuffer = encodeIndex();
+		}
+
+		return indexBuffer;
+	}
+
+	/**
+	 * Encode the entries
+	 * @return
+	 */
+	private ByteBuffer encodeIndex() {
+		final double[] origin = new double[dimensions];
+		final double[] cellSize = new double[dimensions];
+		final double[] maxExtent = new double[dimensions];
+		final boolean pointsOnly = calculateExtent(origin, cellSize, maxExtent);
+
+		// Choose the grid resolution from the number of entries, the entries
+		// are stored in one cell if the extent of the entries is not finite
+		final boolean finiteExtent = Arrays.stream(origin).allMatch(Double::isFinite) 
+				&& Arrays.stream(cellSize).allMatch(Double::isFinite);
+		
+		final int maxBits = (dimensions == 0 || ! finiteExtent) ? 0 
+				: Math.min(MAX_BITS_PER_DIMENSION, 62 / dimensions);
+		final long targetCells = Math.max(1, entries.size() / entriesPerCell);
+		int bits = 0;
+
+		while(bits < maxBits && (1L << (bits * dimensions)) < targetCells) {
+			bits++;
+		}
+
+		for(int d = 0; d < dimensions; d++) {
+			cellSize[d] = (cellSize[d] > 0 && finiteExtent) ? cellSize[d] / (1 << bits) : 1;
+		}
+
+		// Calculate the cells and order the entries by cell and value
+		final GridIndexLayout cellLayout = new GridIndexLayout(dimensions, bits, pointsOnly, 0, 0, 0,
+				origin, cellSize, maxExtent);
+
+		final long[] cellIds = new long[entries.size()];
+		final Integer[] order = new Integer[entries.size()];
+
+		for(int i = 0; i < entries.size(); i++) {
+			cellIds[i] = cellLayout.getCellId(entries.get(i).getBoundingBox().toDoubleArray(), 2);
+			order[i] = i;
+		}
+
+		Arrays.sort(order, Comparator.comparingLong((Integer i) -> cellIds[i])
+				.thenComparingLong(i -> entries.get(i).getValue()));
+
+		int cells = 0;
+
+		for(int i = 0; i < order.length; i++) {
+			if(i == 0 || cellIds[order[i]] != cellIds[order[i - 1]]) {
+				cells++;
+			}
+		}
+
+		layout = new GridIndexLayout(dimensions, bits, pointsOnly, cells, entries.size(),
+				fullSpaceEntries.size(), origin, cellSize, maxExtent);
+
+		final ByteBuffer buffer = ByteBuffer.allocate(layout.getIndexBytes());
+		buffer.order(DataEncoderHelper.APPLICATION_BYTE_ORDER);
+		layout.writeHeader(buffer);
+
+		// Cell table
+		for(int i = 0; i < order.length; i++) {
+			if(i == 0 || cellIds[order[i]] != cellIds[order[i - 1]]) {
+				buffer.putLong(cellIds[order[i]]);
+				buffer.putInt(i);
+			}
+		}
+
+		// Entries
+		for(final Integer entryPos : order) {
+			final SpatialIndexEntry entry = entries.get(entryPos);
+			final double[] box = entry.getBoundingBox().toDoubleArray();
+
+			for(int d = 0; d < dimensions; d++) {
+				buffer.putDouble(box[2 * d]);
+
+				if(! pointsOnly) {
+					buffer.putDouble(box[2 * d + 1]);
+				}
+			}
+
+			buffer.putLong(entry.getValue());
+		}
+
+		for(final SpatialIndexEntry entry : fullSpaceEntries) {
+			buffer.putLong(entry.getValue());
+		}
+
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Calculate the origin, the extent of the lower corners and the max extent of the entries
+	 * @param origin
+	 * @param extent
+	 * @param maxExtent
+	 * @return are all entries points
+	 */
+	private boolean calculateExtent(final double[] origin, final double[] extent, final double[] maxExtent) {
+		final double[] maxLow = new double[dimensions];
+		Arrays.fill(origin, Double.MAX_VALUE);
+		Arrays.fill(maxLow, -Double.MAX_VALUE);
+
+		boolean pointsOnly = true;
+
+		for(final SpatialIndexEntry entry : entries) {
+			final double[] box = entry.getBoundingBox().toDoubleArray();
+
+			for(int d = 0; d < dimensions; d++) {
+				origin[d] = Math.min(origin[d], box[2 * d]);
+				maxLow[d] = Math.max(maxLow[d], box[2 * d]);
+				maxExtent[d] = Math.max(maxExtent[d], box[2 * d + 1] - box[2 * d]);
+
+				if(box[2 * d] != box[2 * d + 1]) {
+					pointsOnly = false;
+				}
+			}
+		}
+
+		for(int d = 0; d < dimensions; d++) {
+			extent[d] = maxLow[d] - origin[d];
+		}
+
+		return pointsOnly;
+	}
+
+	/**
+	 * Get the number of entries per cell
+	 * @return
+	 */
+	public int getEntriesPerCell() {
+		return entriesPerCell;
+	}
+}
@@ -0,0 +1,588 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *******************************************************************************/
+package org.bboxdb.storage.sstable.spatialindex.grid;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import org.bboxdb.commons.io.DataEncoderHelper;
+import org.bboxdb.commons.math.Hyperrectangle;
+import org.bboxdb.storage.StorageManagerException;
+import org.bboxdb.storage.sstable.SSTableConst;
+import org.bboxdb.storage.sstable.spatialindex.SpatialIndexEntry;
+import org.bboxdb.storage.sstable.spatialindex.rtree.RTreeQueryResult;
+
+/**
+ * The layout of the grid index (a linear quadtree). The space covered by the
+ * entries is divided into 2^bits cells per dimension. The cells are numbered
+ * along the z-order curve, so a query window consists of a few ranges of
+ * consecutive cells and their entries are stored consecutively.
+ *
+ * File:
+ * +-------+------------+--------+-------------+--------+---------+------------+
+ * | Magic | Dimensions |  Bits  | Points only | Cells  | Entries | Full space |
+ * |       |   4 Byte   | 4 Byte |   4 Byte    | 4 Byte | 4 Byte  |   4 Byte   |
+ * +-------+------------+--------+-------------+--------+---------+------------+
+ * +--------------+----------------+------------------+------------+---------+------------+
+ * | Origin       | Cell size      | Max extent       | Cell table | Entries | Full space |
+ * | (d x double) | (d x double)   | (d x double)     |            |         | values     |
+ * +--------------+----------------+------------------+------------+---------+------------+
+ *
+ * Cell table (one row per non empty cell, ordered by the cell id):
+ * +---------+-------------+
+ * | Cell id | First entry |
+ * | 8 Byte  |   4 Byte    |
+ * +---------+-------------+
+ *
+ * Entry (ordered by the cell id and the value):
+ * +-------------------------------------------------+--------+
+ * | Point (d x double) or box (d x low/high double) | Value  |
+ * |                                                 | 8 Byte |
+ * +-------------------------------------------------+--------+
+ *
+ * An entry is stored in the cell of its lower corner. For boxes, the query window
+ * is extended by the max extent of the entries, so all intersecting boxes are found.
+ */
+public final class GridIndexLayout {
+
+	/**
+	 * The size of the fixed part of the header
+	 */
+	public final static int FIXED_HEADER_BYTES = SSTableConst.MAGIC_BYTES_SPATIAL_GRID_INDEX.length
+			+ 6 * DataEncoderHelper.INT_BYTES;
+
+	/**
+	 * The size of a row in the cell table
+	 */
+	public final static int CELL_BYTES = DataEncoderHelper.LONG_BYTES + DataEncoderHelper.INT_BYTES;
+
+	/**
+	 * The dimensions of the entries
+	 */
+	private final int dimensions;
+
+	/**
+	 * The bits of the cell number per dimension
+	 */
+	private final int bits;
+
+	/**
+	 * Are all entries points
+	 */
+	private final boolean pointsOnly;
+
+	/**
+	 * The number of non empty cells
+	 */
+	private final int cells;
+
+	/**
+	 * The number of entries in the cells
+	 */
+	private final int entries;
+
+	/**
+	 * The number of entries without a bounding box
+	 */
+	private final int fullSpaceEntries;
+
+	/**
+	 * The lower corner of the grid
+	 */
+	private final double[] origin;
+
+	/**
+	 * The size of a cell per dimension
+	 */
+	private final double[] cellSize;
+
+	/**
+	 * The max extent of the entries per dimension
+	 */
+	private final double[] maxExtent;
+
+	/**
+	 * The size of an entry
+	 */
+	private final int entryBytes;
+
+	/**
+	 * The offset of the cell table
+	 */
+	private final int cellTableOffset;
+
+	/**
+	 * The offset of the entries
+	 */
+	private final int entriesOffset;
+
+	/**
+	 * The offset of the full space values
+	 */
+	private final int fullSpaceOffset;
+
+	public GridIndexLayout(final int dimensions, final int bits, final boolean pointsOnly,
+			final int cells, final int entries, final int fullSpaceEntries,
+			final double[] origin, final double[] cellSize, final double[] maxExtent) {
+
+		this.dimensions = dimensions;
+		this.bits = bits;
+		this.pointsOnly = pointsOnly;
+		this.cells = cells;
+		this.entries = entries;
+		this.fullSpaceEntries = fullSpaceEntries;
+		this.origin = origin;
+		this.cellSize = cellSize;
+		this.maxExtent = maxExtent;
+
+		final int coordinates = pointsOnly ? dimensions : 2 * dimensions;
+		this.entryBytes = coordinates * DataEncoderHelper.DOUBLE_BYTES + DataEncoderHelper.LONG_BYTES;
+		this.cellTableOffset = FIXED_HEADER_BYTES + 3 * dimensions * DataEncoderHelper.DOUBLE_BYTES;
+		this.entriesOffset = cellTableOffset + cells * CELL_BYTES;
+		this.fullSpaceOffset = entriesOffset + entries * entryBytes;
+	}
+
+	/**
+	 * Read the layout from the header of the index in the buffer
+	 * @param memory
+	 * @return
+	 * @throws StorageManagerException
+	 */
+	public static GridIndexLayout fromBuffer(final ByteBuffer memory) throws StorageManagerException {
+
+		final byte[] magicBytes = new byte[SSTableConst.MAGIC_BYTES_SPATIAL_GRID_INDEX.length];
+
+		if(memory.limit() < FIXED_HEADER_BYTES) {
+			throw new StorageManagerException("Spatial index is truncated, got " + memory.limit() + " bytes");
+		}
+
+		for(int i = 0; i < magicBytes.length; i++) {
+			magicBytes[i] = memory.get(i);
+		}
+
+		if(! Arrays.equals(magicBytes, SSTableConst.MAGIC_BYTES_SPATIAL_GRID_INDEX)) {
+			throw new StorageManagerException("Spatial index file does not contain the magic bytes");
+		}
+
+		int pos = magicBytes.length;
+		final int dimensions = memory.getInt(pos);
+		pos += DataEncoderHelper.INT_BYTES;
+		final int bits = memory.getInt(pos);
+		pos += DataEncoderHelper.INT_BYTES;
+		final boolean pointsOnly = memory.getInt(pos) != 0;
+		pos += DataEncoderHelper.INT_BYTES;
+		final int cells = memory.getInt(pos);
+		pos += DataEncoderHelper.INT_BYTES;
+		final int entries = memory.getInt(pos);
+		pos += DataEncoderHelper.INT_BYTES;
+		final int fullSpaceEntries = memory.getInt(pos);
+		pos += DataEncoderHelper.INT_BYTES;
+
+		final double[] origin = new double[dimensions];
+		final double[] cellSize = new double[dimensions];
+		final double[] maxExtent = new double[dimensions];
+
+		for(final double[] values : List.of(origin, cellSize, maxExtent)) {
+			for(int d = 0; d < dimensions; d++) {
+				values[d] = memory.getDouble(pos);
+				pos += DataEncoderHelper.DOUBLE_BYTES;
+			}
+		}
+
+		final GridIndexLayout layout = new GridIndexLayout(dimensions, bits, pointsOnly, cells,
+				entries, fullSpaceEntries, origin, cellSize, maxExtent);
+
+		if(memory.limit() < layout.getIndexBytes()) {
+			throw new StorageManagerException("Spatial index is truncated, expected "
+					+ layout.getIndexBytes() + " bytes, got " + memory.limit());
+		}
+
+		return layout;
+	}
+
+	/**
+	 * Write the header into the buffer
+	 * @param memory
+	 */
+	public void writeHeader(final ByteBuffer memory) {
+		memory.put(SSTableConst.MAGIC_BYTES_SPATIAL_GRID_INDEX);
+		memory.putInt(dimensions);
+		memory.putInt(bits);
+		memory.putInt(pointsOnly ? 1 : 0);
+		memory.putInt(cells);
+		memory.putInt(entries);
+		memory.putInt(fullSpaceEntries);
+
+		for(final double[] values : List.of(origin, cellSize, maxExtent)) {
+			for(int d = 0; d < dimensions; d++) {
+				memory.putDouble(values[d]);
+			}
+		}
+	}
+
+	/**
+	 * Query the index
+	 * @param memory
+	 * @param boundingBox
+	 * @param entryList - the list for the decoded entries or null
+	 * @return the values of the matching entries
+	 */
+	public long[] queryIndex(final ByteBuffer memory, final Hyperrectangle boundingBox,
+			final List<SpatialIndexEntry> entryList) {
+
+		final RTreeQueryResult result = new RTreeQueryResult(entryList);
+
+		// The entries without a bounding box are part of every result
+		for(int i = 0; i < fullSpaceEntries; i++) {
+			final long value = memory.getLong(fullSpaceOffset + i * DataEncoderHelper.LONG_BYTES);
+
+			if(result.isCollectingEntries()) {
+				result.addEntry(Hyperrectangle.FULL_SPACE, value);
+			} else {
+				result.add(value);
+			}
+		}
+
+		if(boundingBox.getDimension() == 0) {
+			readEntries(memory, 0, entries, null, result);
+			return result.toArray();
+		}
+
+		// Boxes with other dimensions don't intersect
+		if(boundingBox.getDimension() != dimensions || entries == 0) {
+			return result.toArray();
+		}
+
+		final double[] queryBox = boundingBox.toDoubleArray();
+		final int[] lowCell = new int[dimensions];
+		final int[] highCell = new int[dimensions];
+
+		if(! getCellWindow(queryBox, lowCell, highCell)) {
+			return result.toArray();
+		}
+
+		final GridCellRanges ranges = new GridCellRanges();
+		collectRanges(0, bits, new int[dimensions], lowCell, highCell, ranges);
+
+		for(int i = 0; i < ranges.size(); i++) {
+			final int firstCell = findCell(memory, ranges.getFirst(i));
+			final int endCell = findCell(memory, ranges.getLast(i) + 1);
+
+			if(firstCell == endCell) {
+				continue;
+			}
+
+			// The entries of the cells are stored consecutively
+			readEntries(memory, getFirstEntry(memory, firstCell), getFirstEntry(memory, endCell),
+					queryBox, result);
+		}
+
+		return result.toArray();
+	}
+
+	/**
+	 * Read the entries and add the entries that intersect the query box
+	 * @param memory
+	 * @param firstEntry
+	 * @param endEntry
+	 * @param queryBox - the query box or null for all entries
+	 * @param result
+	 */
+	private void readEntries(final ByteBuffer memory, final int firstEntry, final int endEntry,
+			final double[] queryBox, final RTreeQueryResult result) {
+
+		for(int entry = firstEntry; entry < endEntry; entry++) {
+			final int entryPos = entriesOffset + entry * entryBytes;
+
+			if(queryBox != null && ! intersects(memory, entryPos, queryBox)) {
+				continue;
+			}
+
+			final int coordinates = pointsOnly ? dimensions : 2 * dimensions;
+			final long value = memory.getLong(entryPos + coordinates * DataEncoderHelper.DOUBLE_BYTES);
+
+			if(result.isCollectingEntries()) {
+				result.addEntry(readBoundingBox(memory, entryPos), value);
+			} else {
+				result.add(value);
+			}
+		}
+	}
+
+	/**
+	 * Does the entry intersect the query box
+	 * @param memory
+	 * @param entryPos
+	 * @param queryBox
+	 * @return
+	 */
+	private boolean intersects(final ByteBuffer memory, final int entryPos, final double[] queryBox) {
+		for(int d = 0; d < dimensions; d++) {
+			final double low;
+			final double high;
+
+			if(pointsOnly) {
+				low = memory.getDouble(entryPos + d * DataEncoderHelper.DOUBLE_BYTES);
+				high = low;
+			} else {
+				low = memory.getDouble(entryPos + 2 * d * DataEncoderHelper.DOUBLE_BYTES);
+				high = memory.getDouble(entryPos + (2 * d + 1) * DataEncoderHelper.DOUBLE_BYTES);
+			}
+
+			if(low > queryBox[2 * d + 1] || high < queryBox[2 * d]) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Read the bounding box of the entry
+	 * @param memory
+	 * @param entryPos
+	 * @return
+	 */
+	private Hyperrectangle readBoundingBox(final ByteBuffer memory, final int entryPos) {
+		final double[] box = new double[2 * dimensions];
+
+		for(int d = 0; d < dimensions; d++) {
+			if(pointsOnly) {
+				box[2 * d] = memory.getDouble(entryPos + d * DataEncoderHelper.DOUBLE_BYTES);
+				box[2 * d + 1] = box[2 * d];
+			} else {
+				box[2 * d] = memory.getDouble(entryPos + 2 * d * DataEncoderHelper.DOUBLE_BYTES);
+				box[2 * d + 1] = memory.getDouble(entryPos + (2 * d + 1) * DataEncoderHelper.DOUBLE_BYTES);
+			}
+		}
+
+		return new Hyperrectangle(box);
+	}
+
+	/**
+	 * Get the cells that can contain entries of the query box
+	 * @param queryBox
+	 * @param lowCell
+	 * @param highCell
+	 * @return false if no cell can contain an entry
+	 */
+	private boolean getCellWindow(final double[] queryBox, final int[] lowCell, final int[] highCell) {
+		final double maxCell = (1 << bits) - 1;
+
+		// All entries are stored in one cell
+		if(bits == 0) {
+			return true;
+		}
+
+		for(int d = 0; d < dimensions; d++) {
+			final double queryLow = pointsOnly ? queryBox[2 * d] : queryBox[2 * d] - maxExtent[d];
+			final double low = Math.floor((queryLow - origin[d]) / cellSize[d]);
+			final double high = Math.floor((queryBox[2 * d + 1] - origin[d]) / cellSize[d]);
+
+			// The entries on the upper border of the grid are stored in the last cell
+			if(low > maxCell + 1 || high < 0) {
+				return false;
+			}
+
+			lowCell[d] = (int) Math.min(maxCell, Math.max(0, low));
+			highCell[d] = (int) Math.min(maxCell, high);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Collect the ranges of the cell ids that are covered by the cell window. The
+	 * cells of a quadtree node are numbered consecutively, so the nodes that are
+	 * completely covered by the window form one range.
+	 *
+	 * @param prefix - the id of the quadtree node
+	 * @param level - the remaining bits per dimension
+	 * @param nodeLow - the first cell of the quadtree node
+	 * @param lowCell
+	 * @param highCell
+	 * @param ranges
+	 */
+	private void collectRanges(final long prefix, final int level, final int[] nodeLow,
+			final int[] lowCell, final int[] highCell, final GridCellRanges ranges) {
+
+		final int nodeSize = 1 << level;
+		boolean covered = true;
+
+		for(int d = 0; d < dimensions; d++) {
+			final int nodeHigh = nodeLow[d] + nodeSize - 1;
+
+			if(nodeHigh < lowCell[d] || nodeLow[d] > highCell[d]) {
+				return;
+			}
+
+			if(nodeLow[d] < lowCell[d] || nodeHigh > highCell[d]) {
+				covered = false;
+			}
+		}
+
+		if(covered || level == 0) {
+			final int shift = level * dimensions;
+			ranges.add(prefix << shift, ((prefix + 1) << shift) - 1);
+			return;
+		}
+
+		final int childSize = nodeSize >> 1;
+		final int[] childLow = new int[dimensions];
+
+		for(int child = 0; child < (1 << dimensions); child++) {
+			for(int d = 0; d < dimensions; d++) {
+				final int bit = (child >> (dimensions - 1 - d)) & 1;
+				childLow[d] = nodeLow[d] + bit * childSize;
+			}
+
+			collectRanges((prefix << dimensions) | child, level - 1, childLow, lowCell, highCell, ranges);
+		}
+	}
+
+	/**
+	 * Find the first cell with an id >= the given id
+	 * @param memory
+	 * @param cellId
+	 * @return the position in the cell table
+	 */
+	private int findCell(final ByteBuffer memory, final long cellId) {
+		int low = 0;
+		int high = cells;
+
+		while(low < high) {
+			final int middle = (low + high) >>> 1;
+
+			if(getCellId(memory, middle) < cellId) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+
+		return low;
+	}
+
+	/**
+	 * Get the id of the cell at the position of the cell table
+	 * @param memory
+	 * @param cell
+	 * @return
+	 */
+	private long getCellId(final ByteBuffer memory, final int cell) {
+		return memory.getLong(cellTableOffset + cell * CELL_BYTES);
+	}
+
+	/**
+	 * Get the first entry of the cell at the position of the cell table
+	 * @param memory
+	 * @param cell
+	 * @return
+	 */
+	private int getFirstEntry(final ByteBuffer memory, final int cell) {
+		if(cell == cells) {
+			return entries;
+		}
+
+		return memory.getInt(cellTableOffset + cell * CELL_BYTES + DataEncoderHelper.LONG_BYTES);
+	}
+
+	/**
+	 * Get the id of the cell that contains the point
+	 * @param point - the coordinates (or the low / high pairs of a box)
+	 * @param step - the distance of the coordinates in the array
+	 * @return
+	 */
+	public long getCellId(final double[] point, final int step) {
+		final int maxCell = (1 << bits) - 1;
+		final int[] cell = new int[dimensions];
+
+		for(int d = 0; d < dimensions; d++) {
+			final double position = Math.floor((point[d * step] - origin[d]) / cellSize[d]);
+			cell[d] = (int) Math.max(0, Math.min(maxCell, position));
+		}
+
+		// Interleave the bits of the cell coordinates (z-order)
+		long cellId = 0;
+
+		for(int bit = bits - 1; bit >= 0; bit--) {
+			for(int d = 0; d < dimensions; d++) {
+				cellId = (cellId << 1) | ((cell[d] >> bit) & 1);
+			}
+		}
+
+		return cellId;
+	}
+
+	/**
+	 * Get the offset of the cell table
+	 * @return
+	 */
+	public int getCellTableOffset() {
+		return cellTableOffset;
+	}
+
+	/**
+	 * Get the offset of the entries
+	 * @return
+	 */
+	public int getEntriesOffset() {
+		return entriesOffset;
+	}
+
+	/**
+	 * Get the offset of the full space values
+	 * @return
+	 */
+	public int getFullSpaceOffset() {
+		return fullSpaceOffset;
+	}
+
+	/**
+	 * Get the size of the index
+	 * @return
+	 */
+	public int getIndexBytes() {
+		return fullSpaceOffset + fullSpaceEntries * DataEncoderHelper.LONG_BYTES;
+	}
+
+	/**
+	 * Get the bits of the cell number per dimension
+	 * @return
+	 */
+	public int getBits() {
+		return bits;
+	}
+
+	/**
+	 * Get the number of non empty cells
+	 * @return
+	 */
+	public int getCells() {
+		return cells;
+	}
+
+	/**
+	 * Are all entries points
+	 * @return
+	 */
+	public boolean isPointsOnly() {
+		return pointsOnly;
+	}
+}
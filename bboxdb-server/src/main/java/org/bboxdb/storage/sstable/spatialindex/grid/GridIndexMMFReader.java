@@ -0,0 +1,140 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *******************************************************************************/
+package org.bboxdb.storage.sstable.spatialindex.grid;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bboxdb.commons.io.UnsafeMemoryHelper;
+import org.bboxdb.commons.math.Hyperrectangle;
+import org.bboxdb.misc.Const;
+import org.bboxdb.storage.StorageManagerException;
+import org.bboxdb.storage.sstable.spatialindex.SpatialIndexEntry;
+import org.bboxdb.storage.sstable.spatialindex.SpatialIndexReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Read the grid index from a memory mapped file
+ */
+public class GridIndexMMFReader implements SpatialIndexReader {
+
+	/**
+	 * The mapped memory
+	 */
+	private volatile MappedByteBuffer memory;
+	
+	/**
+	 * The file channel
+	 */
+	private FileChannel fileChannel;
+	
+	/**
+	 * The layout of the index
+	 */
+	private volatile GridIndexLayout layout;
+	
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(GridIndexMMFReader.class);
+
+	@Override
+	public void readFromFile(final RandomAccessFile randomAccessFile) 
+			throws StorageManagerException, InterruptedException {
+		
+		try {
+			fileChannel = randomAccessFile.getChannel();
+			final long size = fileChannel.size();
+			memory = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			memory.order(Const.APPLICATION_BYTE_ORDER);
+			layout = GridIndexLayout.fromBuffer(memory);
+		} catch (IOException e) {
+			throw new StorageManagerException(e);
+		}
+	}
+
+	@Override
+	public void close() {
+		
+		final MappedByteBuffer mappedMemory = memory;
+		
+		if(mappedMemory != null) {
+			memory = null;
+			UnsafeMemoryHelper.unmapMemory(mappedMemory);
+		}
+		
+		if(fileChannel != null) {
+			try {
+				fileChannel.close();
+			} catch (IOException e) {
+				logger.error("Got IO exception while closing file channel", e);
+			}
+			fileChannel = null;
+		}
+	}
+
+	@Override
+	public List<SpatialIndexEntry> getEntriesForRegion(final Hyperrectangle boundingBox) 
+			throws StorageManagerException {
+		
+		final List<SpatialIndexEntry> resultList = new ArrayList<>();
+		queryIndex(boundingBox, resultList);
+		return resultList;
+	}
+	
+	@Override
+	public long[] getPositionsForRegion(final Hyperrectangle boundingBox) throws StorageManagerException {
+		return queryIndex(boundingBox, null);
+	}
+	
+	/**
+	 * Query the index
+	 * @param boundingBox
+	 * @param entryList - the list for the decoded entries or null
+	 * @return the values of the matching entries
+	 * @throws StorageManagerException
+	 */
+	private long[] queryIndex(final Hyperrectangle boundingBox, final List<SpatialIndexEntry> entryList) 
+			throws StorageManagerException {
+		
+		final MappedByteBuffer mappedMemory = memory;
+		
+		if(mappedMemory == null) {
+			throw new StorageManagerException("The spatial index is closed");
+		}
+		
+		try {
+			return layout.queryIndex(mappedMemory, boundingBox, entryList);
+		} catch (IndexOutOfBoundsException e) {
+			throw new StorageManagerException("Unable to read spatial index", e);
+		}
+	}
+	
+	/**
+	 * Get the layout of the index (null if the index is not read)
+	 * @return
+	 */
+	public GridIndexLayout getLayout() {
+		return layout;
+	}
+}
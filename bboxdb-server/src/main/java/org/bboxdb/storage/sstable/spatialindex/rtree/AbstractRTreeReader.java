@@ -32,6 +32,16 @@ public abstract class AbstractRTreeReader implements SpatialIndexReader {
 	 */
 	protected int maxNodeSize;
 	
+	/**
+	 * The values of the entries are stored with 8 bytes (version 2 of the index)
+	 */
+	protected boolean longEntryValues = true;
+	
+	/**
+	 * The index is stored with fixed size nodes (version 3 of the index)
+	 */
+	protected boolean compactFormat = false;
+	
 	/**
 	 * Get the max node size for the index
 	 * @return
@@ -50,10 +60,17 @@ public abstract class AbstractRTreeReader implements SpatialIndexReader {
 	protected void validateStream(final RandomAccessFile randomAccessFile) throws IOException, StorageManagerException {
 		
 		// Validate file - read the magic from the beginning
-		final byte[] magicBytes = new byte[SSTableConst.MAGIC_BYTES_SPATIAL_RTREE_INDEX.length];
-		randomAccessFile.readFully(magicBytes, 0, SSTableConst.MAGIC_BYTES_SPATIAL_RTREE_INDEX.length);
+		final byte[] magicBytes = new byte[SSTableConst.MAGIC_BYTES_SPATIAL_RTREE_INDEX_V2.length];
+		randomAccessFile.readFully(magicBytes, 0, SSTableConst.MAGIC_BYTES_SPATIAL_RTREE_INDEX_V2.length);
 
-		if(! Arrays.equals(magicBytes, SSTableConst.MAGIC_BYTES_SPATIAL_RTREE_INDEX)) {
+		if(Arrays.equals(magicBytes, SSTableConst.MAGIC_BYTES_SPATIAL_RTREE_INDEX_V3)) {
+			longEntryValues = true;
+			compactFormat = true;
+		} else if(Arrays.equals(magicBytes, SSTableConst.MAGIC_BYTES_SPATIAL_RTREE_INDEX_V2)) {
+			longEntryValues = true;
+		} else if(Arrays.equals(magicBytes, SSTableConst.MAGIC_BYTES_SPATIAL_RTREE_INDEX)) {
+			longEntryValues = false;
+		} else {
 			throw new StorageManagerException("Spatial index file does not contain the magic bytes");
 		}
 	}
@@ -0,0 +1,917 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *******************************************************************************/
+package org.bboxdb.storage.sstable.spatialindex.rtree;
+
+import java.io.RandomAccessFile;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+import org.bboxdb.commons.math.Hyperrectangle;
+import org.bboxdb.storage.StorageManagerException;
+import org.bboxdb.storage.sstable.spatialindex.SpatialIndexBuilder;
+import org.bboxdb.storage.sstable.spatialindex.SpatialIndexEntry;
+
+/**
+ * A dynamic R*-tree (Beckmann et al.). The subtree for an insert is chosen by the
+ * overlap enlargement on the leaf level and by the area enlargement above. Overflowing
+ * nodes first reinsert 30% of their entries (once per level and insert), afterwards
+ * they are split along the axis with the minimal margin into the distribution with
+ * the minimal overlap.
+ *
+ * The tree is built for the memtables, which insert their entries one by one. SSTables
+ * are written at once and should use a bulk loaded index (e.g., STRPackedRTreeBuilder).
+ */
+public final class RStarTreeBuilder implements SpatialIndexBuilder {
+
+	/**
+	 * The node factory
+	 */
+	private final RTreeNodeFactory nodeFactory;
+
+	/**
+	 * The max size of a node
+	 */
+	private final int maxNodeSize;
+
+	/**
+	 * The min size of a node after a split
+	 */
+	private final int minNodeSize;
+
+	/**
+	 * The amount of entries that are reinserted on an overflow
+	 */
+	private final int reinsertSize;
+
+	/**
+	 * The entries without a bounding box (the full space)
+	 */
+	private final List<SpatialIndexEntry> fullSpaceEntries;
+
+	/**
+	 * The levels that have performed a reinsert during the current insert
+	 */
+	private final BitSet reinsertedLevels;
+
+	/**
+	 * The items that are waiting for the reinsert
+	 */
+	private final Deque<Item> pendingReinserts;
+
+	/**
+	 * The root node
+	 */
+	private Node rootNode;
+
+	/**
+	 * The dimensions of the entries (0 = unknown)
+	 */
+	private int dimensions;
+
+	/**
+	 * The converted tree (null if the tree was changed)
+	 */
+	private RTreeDirectoryNode directoryNode;
+
+	/**
+	 * The min fill factor of a node after a split
+	 */
+	private final static double MIN_FILL_FACTOR = 0.4;
+
+	/**
+	 * The amount of entries that are reinserted
+	 */
+	private final static double REINSERT_FACTOR = 0.3;
+
+	/**
+	 * The amount of candidates that are checked for the overlap enlargement
+	 */
+	private final static int OVERLAP_CANDIDATES = 32;
+
+	public RStarTreeBuilder() {
+		this(RTreeBuilder.DEFAULT_NODE_SIZE);
+	}
+
+	public RStarTreeBuilder(final int maxNodeSize) {
+
+		if(maxNodeSize <= 2) {
+			throw new IllegalArgumentException("Unable to construct an index with max node size: "
+					+ maxNodeSize);
+		}
+
+		this.maxNodeSize = maxNodeSize;
+		this.minNodeSize = Math.max(1, (int) (maxNodeSize * MIN_FILL_FACTOR));
+		this.reinsertSize = Math.max(1, (int) (maxNodeSize * REINSERT_FACTOR));
+		this.nodeFactory = new RTreeNodeFactory();
+		this.fullSpaceEntries = new ArrayList<>();
+		this.reinsertedLevels = new BitSet();
+		this.pendingReinserts = new ArrayDeque<>();
+		this.rootNode = null;
+		this.dimensions = 0;
+		this.directoryNode = null;
+	}
+
+	@Override
+	public boolean bulkInsert(final List<SpatialIndexEntry> elements) {
+		boolean result = true;
+
+		for(final SpatialIndexEntry entry : elements) {
+			final boolean insertResult = insert(entry);
+
+			if(! insertResult) {
+				result = false;
+			}
+		}
+
+		return result;
+	}
+
+	@Override
+	public boolean insert(final SpatialIndexEntry entry) {
+
+		final Hyperrectangle boundingBox = entry.getBoundingBox();
+
+		if(boundingBox == null) {
+			return false;
+		}
+
+		directoryNode = null;
+
+		if(boundingBox.getDimension() == 0) {
+			fullSpaceEntries.add(entry);
+			return true;
+		}
+
+		if(dimensions == 0) {
+			dimensions = boundingBox.getDimension();
+		} else if(dimensions != boundingBox.getDimension()) {
+			throw new IllegalArgumentException("Unable to insert a box with " + boundingBox.getDimension()
+				+ " dimensions into an index with " + dimensions + " dimensions");
+		}
+
+		final Item item = new Item(boundingBox.toDoubleArray(), entry);
+
+		if(rootNode == null) {
+			rootNode = new Node(0, item.box.clone());
+		}
+
+		reinsertedLevels.clear();
+		insertItem(item, 0);
+
+		while(! pendingReinserts.isEmpty()) {
+			final Item reinsertItem = pendingReinserts.pop();
+			insertItem(reinsertItem, reinsertItem.getLevel());
+		}
+
+		return true;
+	}
+
+	/**
+	 * Insert the item into a node of the given level, grow the tree if the root was split
+	 * @param item
+	 * @param level
+	 */
+	private void insertItem(final Item item, final int level) {
+		final Node splitNode = insertItem(rootNode, item, level);
+
+		if(splitNode == null) {
+			return;
+		}
+
+		final Node newRoot = new Node(rootNode.level + 1, rootNode.box.clone());
+		newRoot.add(rootNode);
+		newRoot.add(splitNode);
+		rootNode = newRoot;
+	}
+
+	/**
+	 * Insert the item into the subtree
+	 * @param node
+	 * @param item
+	 * @param level
+	 * @return the new sibling if the node was split, null otherwise
+	 */
+	private Node insertItem(final Node node, final Item item, final int level) {
+
+		if(node.level == level) {
+			node.add(item);
+		} else {
+			final Node childNode = chooseSubtree(node, item.box);
+			final Node splitNode = insertItem(childNode, item, level);
+
+			if(splitNode != null) {
+				node.add(splitNode);
+			}
+
+			// The child can be shrunken by a reinsert
+			node.updateBoundingBox();
+		}
+
+		if(node.items.size() <= maxNodeSize) {
+			return null;
+		}
+
+		if(node != rootNode && ! reinsertedLevels.get(node.level)) {
+			reinsertedLevels.set(node.level);
+			reinsert(node);
+			return null;
+		}
+
+		return split(node);
+	}
+
+	/**
+	 * Choose the child node for the insert
+	 * @param node
+	 * @param box
+	 * @return
+	 */
+	private Node chooseSubtree(final Node node, final double[] box) {
+
+		final List<Item> childs = node.items;
+
+		if(node.level > 1) {
+			return (Node) childs.get(getMinEnlargement(childs, box));
+		}
+
+		// Childs are leaves: minimize the overlap enlargement of the candidates with
+		// the least area enlargement
+		final int childCount = childs.size();
+		final double[] enlargements = new double[childCount];
+		final double[] areas = new double[childCount];
+		final Integer[] candidates = new Integer[childCount];
+
+		for(int i = 0; i < childCount; i++) {
+			final double[] childBox = childs.get(i).box;
+			areas[i] = getArea(childBox);
+			enlargements[i] = getEnlargement(childBox, box);
+			candidates[i] = i;
+		}
+
+		Arrays.sort(candidates, (c1, c2) -> {
+			final int result = Double.compare(enlargements[c1], enlargements[c2]);
+			return result != 0 ? result : Double.compare(areas[c1], areas[c2]);
+		});
+
+		final double[] enlargedBox = new double[box.length];
+		int bestChild = candidates[0];
+		double bestOverlap = Double.MAX_VALUE;
+
+		for(int i = 0; i < Math.min(OVERLAP_CANDIDATES, childCount); i++) {
+			final int candidate = candidates[i];
+			final double[] candidateBox = childs.get(candidate).box;
+			cover(candidateBox, box, enlargedBox);
+
+			double overlap = 0;
+
+			for(int j = 0; j < childCount; j++) {
+				if(j != candidate) {
+					final double[] childBox = childs.get(j).box;
+					overlap += getOverlap(enlargedBox, childBox) - getOverlap(candidateBox, childBox);
+				}
+			}
+
+			// The candidates are ordered by the enlargement, no better candidate can follow
+			if(overlap <= 0) {
+				return (Node) childs.get(candidate);
+			}
+
+			if(overlap < bestOverlap) {
+				bestChild = candidate;
+				bestOverlap = overlap;
+			}
+		}
+
+		return (Node) childs.get(bestChild);
+	}
+
+	/**
+	 * Get the position of the item with the min area enlargement (ties: min area)
+	 * @param items
+	 * @param box
+	 * @return
+	 */
+	private static int getMinEnlargement(final List<Item> items, final double[] box) {
+		int bestPos = 0;
+		double bestEnlargement = Double.MAX_VALUE;
+		double bestArea = Double.MAX_VALUE;
+
+		for(int i = 0; i < items.size(); i++) {
+			final double[] itemBox = items.get(i).box;
+			final double area = getArea(itemBox);
+			final double enlargement = getEnlargement(itemBox, box);
+
+			if(enlargement < bestEnlargement || (enlargement == bestEnlargement && area < bestArea)) {
+				bestPos = i;
+				bestEnlargement = enlargement;
+				bestArea = area;
+			}
+		}
+
+		return bestPos;
+	}
+
+	/**
+	 * Remove the items with the largest center distance from the node and
+	 * queue them for the reinsert (closest first)
+	 * @param node
+	 */
+	private void reinsert(final Node node) {
+		final double[] center = getCenter(node.box);
+
+		node.items.sort(Comparator.comparingDouble(i -> getDistance(center, getCenter(i.box))));
+
+		final List<Item> farItems = node.items.subList(node.items.size() - reinsertSize, node.items.size());
+
+		for(final Item item : farItems) {
+			pendingReinserts.addLast(item);
+		}
+
+		farItems.clear();
+		node.updateBoundingBox();
+	}
+
+	/**
+	 * Split the node
+	 * @param node
+	 * @return the new sibling
+	 */
+	private Node split(final Node node) {
+		final List<Item> items = node.items;
+
+		final Comparator<Item> bestOrder = chooseSplitAxis(items);
+		items.sort(bestOrder);
+		final int splitPos = chooseSplitPosition(items);
+
+		final List<Item> movedItems = items.subList(splitPos, items.size());
+		final Node newNode = new Node(node.level, movedItems.get(0).box.clone());
+
+		for(final Item item : movedItems) {
+			newNode.add(item);
+		}
+
+		movedItems.clear();
+		node.updateBoundingBox();
+		newNode.updateBoundingBox();
+
+		return newNode;
+	}
+
+	/**
+	 * Choose the split axis with the min margin sum, return the better ordering
+	 * (by the lower or upper coordinate) of the axis
+	 * @param items
+	 * @return
+	 */
+	private Comparator<Item> chooseSplitAxis(final List<Item> items) {
+		Comparator<Item> bestOrder = null;
+		double bestMargin = Double.MAX_VALUE;
+
+		for(int d = 0; d < dimensions; d++) {
+			final int lowPos = 2 * d;
+			final int highPos = 2 * d + 1;
+
+			final Comparator<Item> lowOrder = Comparator.comparingDouble((Item i) -> i.box[lowPos])
+					.thenComparingDouble(i -> i.box[highPos]);
+
+			final Comparator<Item> highOrder = Comparator.comparingDouble((Item i) -> i.box[highPos])
+					.thenComparingDouble(i -> i.box[lowPos]);
+
+			for(final Comparator<Item> order : List.of(lowOrder, highOrder)) {
+				items.sort(order);
+				final double margin = getMarginSum(items);
+
+				if(margin < bestMargin) {
+					bestMargin = margin;
+					bestOrder = order;
+				}
+			}
+		}
+
+		return bestOrder;
+	}
+
+	/**
+	 * Get the sum of the margins of all distributions
+	 * @param items
+	 * @return
+	 */
+	private double getMarginSum(final List<Item> items) {
+		final double[][] prefixBoxes = getPrefixBoxes(items);
+		final double[][] suffixBoxes = getSuffixBoxes(items);
+
+		double margin = 0;
+
+		for(int splitPos = minNodeSize; splitPos <= items.size() - minNodeSize; splitPos++) {
+			margin += getMargin(prefixBoxes[splitPos - 1]) + getMargin(suffixBoxes[splitPos]);
+		}
+
+		return margin;
+	}
+
+	/**
+	 * Choose the split position with the min overlap (ties: min area)
+	 * @param items
+	 * @return the position of the first item of the second group
+	 */
+	private int chooseSplitPosition(final List<Item> items) {
+		final double[][] prefixBoxes = getPrefixBoxes(items);
+		final double[][] suffixBoxes = getSuffixBoxes(items);
+
+		int bestPos = minNodeSize;
+		double bestOverlap = Double.MAX_VALUE;
+		double bestArea = Double.MAX_VALUE;
+
+		for(int splitPos = minNodeSize; splitPos <= items.size() - minNodeSize; splitPos++) {
+			final double[] box1 = prefixBoxes[splitPos - 1];
+			final double[] box2 = suffixBoxes[splitPos];
+			final double overlap = getOverlap(box1, box2);
+			final double area = getArea(box1) + getArea(box2);
+
+			if(overlap < bestOverlap || (overlap == bestOverlap && area < bestArea)) {
+				bestPos = splitPos;
+				bestOverlap = overlap;
+				bestArea = area;
+			}
+		}
+
+		return bestPos;
+	}
+
+	/**
+	 * Get the covering boxes of the items 0..i
+	 * @param items
+	 * @return
+	 */
+	private static double[][] getPrefixBoxes(final List<Item> items) {
+		final double[][] result = new double[items.size()][];
+		result[0] = items.get(0).box.clone();
+
+		for(int i = 1; i < items.size(); i++) {
+			result[i] = new double[result[0].length];
+			cover(result[i - 1], items.get(i).box, result[i]);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Get the covering boxes of the items i..n
+	 * @param items
+	 * @return
+	 */
+	private static double[][] getSuffixBoxes(final List<Item> items) {
+		final int last = items.size() - 1;
+		final double[][] result = new double[items.size()][];
+		result[last] = items.get(last).box.clone();
+
+		for(int i = last - 1; i >= 0; i--) {
+			result[i] = new double[result[last].length];
+			cover(result[i + 1], items.get(i).box, result[i]);
+		}
+
+		return result;
+	}
+
+	@Override
+	public List<? extends SpatialIndexEntry> getEntriesForRegion(final Hyperrectangle boundingBox) {
+		final List<SpatialIndexEntry> result = new ArrayList<>(fullSpaceEntries);
+
+		if(rootNode == null) {
+			return result;
+		}
+
+		if(boundingBox.getDimension() == 0) {
+			addAllEntries(rootNode, result);
+			return result;
+		}
+
+		// Boxes with other dimensions don't intersect
+		if(boundingBox.getDimension() != dimensions) {
+			return result;
+		}
+
+		final double[] queryBox = boundingBox.toDoubleArray();
+
+		final Deque<Node> nodesToVisit = new ArrayDeque<>();
+		nodesToVisit.push(rootNode);
+
+		while(! nodesToVisit.isEmpty()) {
+			final Node node = nodesToVisit.pop();
+
+			for(final Item item : node.items) {
+				if(! intersects(item.box, queryBox)) {
+					continue;
+				}
+
+				if(node.level == 0) {
+					result.add(item.entry);
+				} else {
+					nodesToVisit.push((Node) item);
+				}
+			}
+		}
+
+		return result;
+	}
+
+	@Override
+	public Iterator<SpatialIndexEntry> getEntriesByDistance(final Hyperrectangle queryBox) {
+		final RTreeNearestNeighborSearch<Node> search = new RTreeNearestNeighborSearch<>(queryBox, (n, v) -> {
+			for(final Item item : n.items) {
+				if(n.level == 0) {
+					v.visitEntry(item.box, item.entry.getValue());
+				} else {
+					v.visitChild(item.box, (Node) item);
+				}
+			}
+		});
+		
+		fullSpaceEntries.forEach(e -> search.addEntry(new double[0], e.getValue()));
+		
+		if(rootNode != null) {
+			search.addNode(rootNode.box, rootNode);
+		}
+		
+		return search;
+	}
+
+	/**
+	 * Add all entries of the subtree to the result
+	 * @param node
+	 * @param result
+	 */
+	private static void addAllEntries(final Node node, final List<SpatialIndexEntry> result) {
+		for(final Item item : node.items) {
+			if(node.level == 0) {
+				result.add(item.entry);
+			} else {
+				addAllEntries((Node) item, result);
+			}
+		}
+	}
+
+	@Override
+	public void writeToFile(final RandomAccessFile randomAccessFile) throws StorageManagerException {
+		final RTreeCompactSerializer rTreeSerializer = new RTreeCompactSerializer(getRootNode(), maxNodeSize);
+		rTreeSerializer.writeToStream(randomAccessFile);
+	}
+
+	/**
+	 * Get the tree as directory nodes (e.g., for the serializer)
+	 * @return
+	 */
+	public RTreeDirectoryNode getRootNode() {
+		if(directoryNode == null) {
+			directoryNode = buildDirectoryNodes();
+		}
+
+		return directoryNode;
+	}
+
+	/**
+	 * Convert the tree into directory nodes. The entries without a bounding box
+	 * are placed in leaves that cover the full space.
+	 * @return
+	 */
+	private RTreeDirectoryNode buildDirectoryNodes() {
+
+		final List<RTreeDirectoryNode> leafNodes = new ArrayList<>();
+
+		if(rootNode != null) {
+			final RTreeDirectoryNode treeRoot = convertNode(rootNode);
+
+			if(fullSpaceEntries.isEmpty()) {
+				return treeRoot;
+			}
+
+			if(treeRoot.isLeafNode() && treeRoot.getSize() + fullSpaceEntries.size() <= maxNodeSize) {
+				treeRoot.getIndexEntries().addAll(fullSpaceEntries);
+				treeRoot.setBoundingBox(Hyperrectangle.createFullCoveringDimensionBoundingBox(dimensions));
+				return treeRoot;
+			}
+
+			leafNodes.add(treeRoot);
+		}
+
+		for(int i = 0; i < fullSpaceEntries.size(); i += maxNodeSize) {
+			final int end = Math.min(i + maxNodeSize, fullSpaceEntries.size());
+			final RTreeDirectoryNode leafNode = nodeFactory.buildDirectoryNode();
+			leafNode.getIndexEntries().addAll(fullSpaceEntries.subList(i, end));
+
+			if(dimensions == 0) {
+				leafNode.updateBoundingBox();
+			} else {
+				leafNode.setBoundingBox(Hyperrectangle.createFullCoveringDimensionBoundingBox(dimensions));
+			}
+
+			leafNodes.add(leafNode);
+		}
+
+		// Empty tree
+		if(leafNodes.isEmpty()) {
+			final RTreeDirectoryNode leafNode = nodeFactory.buildDirectoryNode();
+			leafNode.updateBoundingBox();
+			return leafNode;
+		}
+
+		List<RTreeDirectoryNode> level = leafNodes;
+
+		while(level.size() > 1) {
+			final List<RTreeDirectoryNode> nextLevel = new ArrayList<>();
+
+			for(int i = 0; i < level.size(); i += maxNodeSize) {
+				final RTreeDirectoryNode parentNode = nodeFactory.buildDirectoryNode();
+
+				for(final RTreeDirectoryNode child : level.subList(i, Math.min(i + maxNodeSize, level.size()))) {
+					parentNode.addDirectoryNodeChild(child);
+					child.setParentNode(parentNode);
+				}
+
+				parentNode.updateBoundingBox();
+				nextLevel.add(parentNode);
+			}
+
+			level = nextLevel;
+		}
+
+		return level.get(0);
+	}
+
+	/**
+	 * Convert the subtree into directory nodes
+	 * @param node
+	 * @return
+	 */
+	private RTreeDirectoryNode convertNode(final Node node) {
+		final RTreeDirectoryNode result = nodeFactory.buildDirectoryNode();
+		result.setBoundingBox(new Hyperrectangle(node.box.clone()));
+
+		for(final Item item : node.items) {
+			if(node.level == 0) {
+				result.getIndexEntries().add(item.entry);
+			} else {
+				final RTreeDirectoryNode child = convertNode((Node) item);
+				result.addDirectoryNodeChild(child);
+				child.setParentNode(result);
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Get the height of the tree (0 = empty tree, 1 = only the root leaf)
+	 * @return
+	 */
+	public int getHeight() {
+		if(rootNode == null) {
+			return 0;
+		}
+
+		return rootNode.level + 1;
+	}
+
+	/**
+	 * Get the maximal node size
+	 * @return
+	 */
+	public int getMaxNodeSize() {
+		return maxNodeSize;
+	}
+
+	/**
+	 * Test the covering of the child nodes
+	 */
+	public void testCovering() {
+		getRootNode().testCovering();
+	}
+
+	/**
+	 * Do the boxes intersect (the coordinates are stored as low / high pairs)
+	 * @param box1
+	 * @param box2
+	 * @return
+	 */
+	private static boolean intersects(final double[] box1, final double[] box2) {
+		for(int i = 0; i < box1.length; i += 2) {
+			if(box1[i] > box2[i + 1] || box2[i] > box1[i + 1]) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Store the covering box of both boxes in the result
+	 * @param box1
+	 * @param box2
+	 * @param result
+	 */
+	private static void cover(final double[] box1, final double[] box2, final double[] result) {
+		for(int i = 0; i < box1.length; i += 2) {
+			result[i] = Math.min(box1[i], box2[i]);
+			result[i + 1] = Math.max(box1[i + 1], box2[i + 1]);
+		}
+	}
+
+	/**
+	 * Get the area of the box
+	 * @param box
+	 * @return
+	 */
+	private static double getArea(final double[] box) {
+		double area = 1;
+
+		for(int i = 0; i < box.length; i += 2) {
+			area *= box[i + 1] - box[i];
+		}
+
+		return area;
+	}
+
+	/**
+	 * Get the margin (sum of the edge lengths) of the box
+	 * @param box
+	 * @return
+	 */
+	private static double getMargin(final double[] box) {
+		double margin = 0;
+
+		for(int i = 0; i < box.length; i += 2) {
+			margin += box[i + 1] - box[i];
+		}
+
+		return margin;
+	}
+
+	/**
+	 * Get the area enlargement of the box to cover the other box
+	 * @param box
+	 * @param otherBox
+	 * @return
+	 */
+	private static double getEnlargement(final double[] box, final double[] otherBox) {
+		double area = 1;
+		double enlargedArea = 1;
+
+		for(int i = 0; i < box.length; i += 2) {
+			area *= box[i + 1] - box[i];
+			enlargedArea *= Math.max(box[i + 1], otherBox[i + 1]) - Math.min(box[i], otherBox[i]);
+		}
+
+		return enlargedArea - area;
+	}
+
+	/**
+	 * Get the area of the intersection of both boxes
+	 * @param box1
+	 * @param box2
+	 * @return
+	 */
+	private static double getOverlap(final double[] box1, final double[] box2) {
+		double overlap = 1;
+
+		for(int i = 0; i < box1.length; i += 2) {
+			final double extent = Math.min(box1[i + 1], box2[i + 1]) - Math.max(box1[i], box2[i]);
+
+			if(extent <= 0) {
+				return 0;
+			}
+
+			overlap *= extent;
+		}
+
+		return overlap;
+	}
+
+	/**
+	 * Get the center of the box
+	 * @param box
+	 * @return
+	 */
+	private static double[] getCenter(final double[] box) {
+		final double[] center = new double[box.length / 2];
+
+		for(int i = 0; i < center.length; i++) {
+			center[i] = (box[2 * i] + box[2 * i + 1]) / 2.0;
+		}
+
+		return center;
+	}
+
+	/**
+	 * Get the squared distance of both points
+	 * @param point1
+	 * @param point2
+	 * @return
+	 */
+	private static double getDistance(final double[] point1, final double[] point2) {
+		double distance = 0;
+
+		for(int i = 0; i < point1.length; i++) {
+			final double delta = point1[i] - point2[i];
+			distance += delta * delta;
+		}
+
+		return distance;
+	}
+
+	/**
+	 * An entry or a child node of a node
+	 */
+	private static class Item {
+
+		/**
+		 * The bounding box (low / high pairs)
+		 */
+		protected final double[] box;
+
+		/**
+		 * The index entry (null for nodes)
+		 */
+		protected final SpatialIndexEntry entry;
+
+		Item(final double[] box, final SpatialIndexEntry entry) {
+			this.box = box;
+			this.entry = entry;
+		}
+
+		/**
+		 * Get the level of the node that stores this item
+		 * @return
+		 */
+		int getLevel() {
+			return 0;
+		}
+	}
+
+	/**
+	 * A node of the tree
+	 */
+	private static final class Node extends Item {
+
+		/**
+		 * The level of the node (0 = leaf)
+		 */
+		private final int level;
+
+		/**
+		 * The entries or child nodes
+		 */
+		private final List<Item> items;
+
+		Node(final int level, final double[] box) {
+			super(box, null);
+			this.level = level;
+			this.items = new ArrayList<>();
+		}
+
+		@Override
+		int getLevel() {
+			return level + 1;
+		}
+
+		/**
+		 * Add the item and enlarge the bounding box
+		 * @param item
+		 */
+		void add(final Item item) {
+			items.add(item);
+			cover(box, item.box, box);
+		}
+
+		/**
+		 * Recalculate the bounding box of the items
+		 */
+		void updateBoundingBox() {
+			System.arraycopy(items.get(0).box, 0, box, 0, box.length);
+
+			for(final Item item : items) {
+				cover(box, item.box, box);
+			}
+		}
+	}
+}
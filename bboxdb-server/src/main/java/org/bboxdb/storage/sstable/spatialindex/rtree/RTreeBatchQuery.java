@@ -0,0 +1,211 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.sstable.spatialindex.rtree;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+import org.bboxdb.commons.math.Hyperrectangle;
+
+/**
+ * A batch of R-tree queries that is evaluated in one traversal of the tree. Each 
+ * node is visited once, together with the queries (probes) that intersect the node.
+ */
+public final class RTreeBatchQuery {
+	
+	/**
+	 * The query boxes
+	 */
+	private final RTreeQueryBox[] queryBoxes;
+	
+	/**
+	 * The results of the queries
+	 */
+	private final RTreeQueryResult[] results;
+	
+	/**
+	 * The nodes that needs to be visited
+	 */
+	private final Deque<Frame> stack = new ArrayDeque<>();
+	
+	/**
+	 * The buffer for the intersecting probes of a box
+	 */
+	private final int[] matchingProbes;
+	
+	/**
+	 * The number of probes in the buffer
+	 */
+	private int matchingProbesSize;
+	
+	/**
+	 * The node of the last pop() call
+	 */
+	private int currentNode;
+
+	public RTreeBatchQuery(final List<Hyperrectangle> boundingBoxes) {
+		final int probes = boundingBoxes.size();
+		
+		this.queryBoxes = new RTreeQueryBox[probes];
+		this.results = new RTreeQueryResult[probes];
+		this.matchingProbes = new int[probes];
+		
+		for(int i = 0; i < probes; i++) {
+			queryBoxes[i] = new RTreeQueryBox(boundingBoxes.get(i));
+			results[i] = new RTreeQueryResult(null);
+		}
+	}
+	
+	/**
+	 * Push the node with all probes to the stack
+	 * @param node
+	 */
+	public void pushRootNode(final int node) {
+		final int[] probes = new int[queryBoxes.length];
+		
+		for(int i = 0; i < probes.length; i++) {
+			probes[i] = i;
+		}
+		
+		if(probes.length > 0) {
+			pushNode(node, probes);
+		}
+	}
+	
+	/**
+	 * Push the node with the given probes to the stack
+	 * @param node
+	 * @param probes
+	 */
+	public void pushNode(final int node, final int[] probes) {
+		stack.push(new Frame(node, probes));
+	}
+	
+	/**
+	 * Is the stack empty
+	 * @return
+	 */
+	public boolean isEmpty() {
+		return stack.isEmpty();
+	}
+	
+	/**
+	 * Remove the next node from the stack 
+	 * @return the probes of the node, the node is returned by getCurrentNode()
+	 */
+	public int[] pop() {
+		final Frame frame = stack.pop();
+		currentNode = frame.node;
+		return frame.probes;
+	}
+	
+	/**
+	 * Get the node of the last pop() call
+	 * @return
+	 */
+	public int getCurrentNode() {
+		return currentNode;
+	}
+	
+	/**
+	 * Get the query box of the probe
+	 * @param probe
+	 * @return
+	 */
+	public RTreeQueryBox getQueryBox(final int probe) {
+		return queryBoxes[probe];
+	}
+	
+	/**
+	 * Reset the matching probes
+	 */
+	public void clearMatchingProbes() {
+		matchingProbesSize = 0;
+	}
+	
+	/**
+	 * Add a matching probe of the current box
+	 * @param probe
+	 */
+	public void addMatchingProbe(final int probe) {
+		matchingProbes[matchingProbesSize++] = probe;
+	}
+	
+	/**
+	 * Is at least one probe matching
+	 * @return
+	 */
+	public boolean hasMatchingProbes() {
+		return matchingProbesSize > 0;
+	}
+	
+	/**
+	 * Get the matching probes of the current box
+	 * @return
+	 */
+	public int[] getMatchingProbes() {
+		return Arrays.copyOf(matchingProbes, matchingProbesSize);
+	}
+	
+	/**
+	 * Add the value to the results of the matching probes
+	 * @param value
+	 */
+	public void addValueForMatchingProbes(final long value) {
+		for(int i = 0; i < matchingProbesSize; i++) {
+			results[matchingProbes[i]].add(value);
+		}
+	}
+	
+	/**
+	 * Get the results, one array of values per query box
+	 * @return
+	 */
+	public long[][] getResults() {
+		final long[][] values = new long[results.length][];
+		
+		for(int i = 0; i < results.length; i++) {
+			values[i] = results[i].toArray();
+		}
+		
+		return values;
+	}
+	
+	/**
+	 * A node with the probes that intersect the node
+	 */
+	private final static class Frame {
+		
+		/**
+		 * The node reference
+		 */
+		private final int node;
+		
+		/**
+		 * The probes
+		 */
+		private final int[] probes;
+		
+		public Frame(final int node, final int[] probes) {
+			this.node = node;
+			this.probes = probes;
+		}
+	}
+}
@@ -20,6 +20,7 @@ package org.bboxdb.storage.sstable.spatialindex.rtree;
 import java.io.RandomAccessFile;
 import java.util.ArrayDeque;
 import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
 
 import org.bboxdb.commons.Pair;
@@ -84,6 +85,7 @@ public final class RTreeBuilder implements SpatialIndexBuilder {
 
 	@Override
 	public void writeToFile(final RandomAccessFile randomAccessFile) throws StorageManagerException {
+		// The nodes of the dynamic tree are sparsely filled, fixed size nodes would enlarge the index
 		final RTreeSerializer rTreeSerializer = new RTreeSerializer(rootNode, maxNodeSize);
 		rTreeSerializer.writeToStream(randomAccessFile);
 	}
@@ -232,6 +234,19 @@ public final class RTreeBuilder implements SpatialIndexBuilder {
 		return rootNode.getEntriesForRegion(boundingBox);
 	}
 
+	@Override
+	public Iterator<SpatialIndexEntry> getEntriesByDistance(final Hyperrectangle queryBox) {
+		return RTreeNearestNeighborSearch.forDirectoryNode(queryBox, rootNode);
+	}
+
+	/**
+	 * Get the root node of the tree
+	 * @return
+	 */
+	public RTreeDirectoryNode getRootNode() {
+		return rootNode;
+	}
+
 	/**
 	 * Distribute the leaf data
 	 * @param nodeToSplit
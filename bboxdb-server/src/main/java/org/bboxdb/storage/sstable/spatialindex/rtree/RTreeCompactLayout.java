@@ -0,0 +1,355 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.sstable.spatialindex.rtree;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.bboxdb.commons.io.DataEncoderHelper;
+import org.bboxdb.commons.math.Hyperrectangle;
+import org.bboxdb.storage.StorageManagerException;
+import org.bboxdb.storage.sstable.SSTableConst;
+import org.bboxdb.storage.sstable.spatialindex.SpatialIndexEntry;
+
+/**
+ * The layout of an R-tree with fixed size nodes
+ * 
+ * File:
+ * +-------+---------------+------------+---------+--------+--------+-----+
+ * | Magic | Max node size | Dimensions |  Nodes  | Node 0 | Node 1 | ... |
+ * |       |    4 Byte     |   4 Byte   | 4 Byte  |        |        |     |
+ * +-------+---------------+------------+---------+--------+--------+-----+
+ * 
+ * Node (all nodes have the same size, node 0 is the root node):
+ * +-----------+--------+----------------------------------+-----------------------------+
+ * | Leaf flag | Count  | Boxes (max node size x low/high  | Pointer (max node size x    |
+ * |  4 Byte   | 4 Byte |        doubles per dimension)    |  8 Byte node or tuple pos)  |
+ * +-----------+--------+----------------------------------+-----------------------------+
+ * 
+ * The boxes of the directory nodes are stored in the parent node. Entries 
+ * without a bounding box are stored with an infinite extent.
+ */
+public final class RTreeCompactLayout {
+	
+	/**
+	 * The offset of the leaf flag in a node
+	 */
+	public final static int LEAF_FLAG_OFFSET = 0;
+	
+	/**
+	 * The offset of the entry count in a node
+	 */
+	public final static int COUNT_OFFSET = LEAF_FLAG_OFFSET + DataEncoderHelper.INT_BYTES;
+	
+	/**
+	 * The offset of the boxes in a node
+	 */
+	public final static int BOXES_OFFSET = COUNT_OFFSET + DataEncoderHelper.INT_BYTES;
+	
+	/**
+	 * The size of the file header
+	 */
+	public final static int FILE_HEADER_BYTES = SSTableConst.MAGIC_BYTES_SPATIAL_RTREE_INDEX_V3.length
+			+ 3 * DataEncoderHelper.INT_BYTES;
+	
+	/**
+	 * The max node size
+	 */
+	private final int maxNodeSize;
+	
+	/**
+	 * The dimensions of the boxes
+	 */
+	private final int dimensions;
+	
+	/**
+	 * The number of nodes
+	 */
+	private final int nodes;
+	
+	/**
+	 * The size of one box
+	 */
+	private final int boxBytes;
+	
+	/**
+	 * The offset of the pointers in a node
+	 */
+	private final int pointerOffset;
+	
+	/**
+	 * The size of one node
+	 */
+	private final int pageBytes;
+
+	public RTreeCompactLayout(final int maxNodeSize, final int dimensions, final int nodes) {
+		this.maxNodeSize = maxNodeSize;
+		this.dimensions = dimensions;
+		this.nodes = nodes;
+		this.boxBytes = dimensions * RTreeQueryBox.DIMENSION_BYTES;
+		this.pointerOffset = BOXES_OFFSET + maxNodeSize * boxBytes;
+		this.pageBytes = pointerOffset + maxNodeSize * DataEncoderHelper.LONG_BYTES;
+	}
+	
+	/**
+	 * Read the layout from the header of the file in the buffer
+	 * @param memory
+	 * @return
+	 * @throws StorageManagerException 
+	 */
+	public static RTreeCompactLayout fromBuffer(final ByteBuffer memory) throws StorageManagerException {
+		int pos = SSTableConst.MAGIC_BYTES_SPATIAL_RTREE_INDEX_V3.length;
+		final int maxNodeSize = memory.getInt(pos);
+		pos += DataEncoderHelper.INT_BYTES;
+		final int dimensions = memory.getInt(pos);
+		pos += DataEncoderHelper.INT_BYTES;
+		final int nodes = memory.getInt(pos);
+		
+		final RTreeCompactLayout layout = new RTreeCompactLayout(maxNodeSize, dimensions, nodes);
+		final long expectedSize = FILE_HEADER_BYTES + (long) nodes * layout.getPageBytes();
+		
+		if(memory.limit() < expectedSize) {
+			throw new StorageManagerException("Spatial index is truncated, expected " 
+					+ expectedSize + " bytes, got " + memory.limit());
+		}
+		
+		return layout;
+	}
+	
+	/**
+	 * Query the index 
+	 * @param memory
+	 * @param boundingBox
+	 * @param entryList - the list for the decoded entries or null
+	 * @return the values of the matching entries
+	 */
+	public long[] queryIndex(final ByteBuffer memory, final Hyperrectangle boundingBox, 
+			final List<SpatialIndexEntry> entryList) {
+		
+		final RTreeNodeStack stack = new RTreeNodeStack();
+		final RTreeQueryResult result = new RTreeQueryResult(entryList);
+		
+		if(nodes > 0) {
+			stack.push(0);
+		}
+		
+		queryNodes(memory, new RTreeQueryBox(boundingBox), stack, result);
+		
+		return result.toArray();
+	}
+	
+	/**
+	 * Query the nodes on the stack and their children 
+	 * @param memory
+	 * @param queryBox
+	 * @param stack
+	 * @param result
+	 */
+	public void queryNodes(final ByteBuffer memory, final RTreeQueryBox queryBox, 
+			final RTreeNodeStack stack, final RTreeQueryResult result) {
+		
+		while(! stack.isEmpty()) {
+			final int nodeStart = getNodeStart(stack.pop());
+			final boolean leaf = memory.getInt(nodeStart + LEAF_FLAG_OFFSET) != 0;
+			final int count = memory.getInt(nodeStart + COUNT_OFFSET);
+			
+			for(int i = 0; i < count; i++) {
+				final int boxPos = getBoxOffset(nodeStart, i);
+				
+				if(! queryBox.intersectsFixed(memory, boxPos, dimensions)) {
+					continue;
+				}
+				
+				final long pointer = memory.getLong(getPointerOffset(nodeStart, i));
+				
+				if(! leaf) {
+					stack.push((int) pointer);
+				} else if(result.isCollectingEntries()) {
+					result.addEntry(readBoundingBox(memory, boxPos), pointer);
+				} else {
+					result.add(pointer);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Query the index with a batch of boxes in one traversal
+	 * @param memory
+	 * @param batchQuery
+	 */
+	public void queryBatch(final ByteBuffer memory, final RTreeBatchQuery batchQuery) {
+		
+		batchQuery.pushRootNode(0);
+		
+		while(! batchQuery.isEmpty()) {
+			final int[] probes = batchQuery.pop();
+			final int nodeStart = getNodeStart(batchQuery.getCurrentNode());
+			final boolean leaf = memory.getInt(nodeStart + LEAF_FLAG_OFFSET) != 0;
+			final int count = memory.getInt(nodeStart + COUNT_OFFSET);
+			
+			for(int i = 0; i < count; i++) {
+				final int boxPos = getBoxOffset(nodeStart, i);
+				
+				batchQuery.clearMatchingProbes();
+				
+				for(final int probe : probes) {
+					if(batchQuery.getQueryBox(probe).intersectsFixed(memory, boxPos, dimensions)) {
+						batchQuery.addMatchingProbe(probe);
+					}
+				}
+				
+				if(! batchQuery.hasMatchingProbes()) {
+					continue;
+				}
+				
+				final long pointer = memory.getLong(getPointerOffset(nodeStart, i));
+				
+				if(leaf) {
+					batchQuery.addValueForMatchingProbes(pointer);
+				} else {
+					batchQuery.pushNode((int) pointer, batchQuery.getMatchingProbes());
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Decode the node for the pinned upper levels of the tree
+	 * @param memory
+	 * @param node
+	 * @param visitor
+	 */
+	public void decodeNode(final ByteBuffer memory, final int node, 
+			final RTreePinnedNodes.NodeVisitor visitor) {
+		
+		final int nodeStart = getNodeStart(node);
+		final boolean leaf = memory.getInt(nodeStart + LEAF_FLAG_OFFSET) != 0;
+		final int count = memory.getInt(nodeStart + COUNT_OFFSET);
+		
+		for(int i = 0; i < count; i++) {
+			final int boxPos = getBoxOffset(nodeStart, i);
+			final long pointer = memory.getLong(getPointerOffset(nodeStart, i));
+			final double[] box = readCoordinates(memory, boxPos);
+			
+			if(leaf) {
+				visitor.visitEntry(box, pointer);
+			} else {
+				visitor.visitChild(box, (int) pointer);
+			}
+		}
+	}
+	
+	/**
+	 * Read the coordinates of the box, the full space has no coordinates
+	 * @param memory
+	 * @param boxPos
+	 * @return
+	 */
+	private double[] readCoordinates(final ByteBuffer memory, final int boxPos) {
+		
+		if(dimensions == 0 || RTreeQueryBox.isFullSpace(memory, boxPos)) {
+			return new double[0];
+		}
+		
+		final double[] values = new double[2 * dimensions];
+		
+		for(int i = 0; i < values.length; i++) {
+			values[i] = memory.getDouble(boxPos + i * DataEncoderHelper.DOUBLE_BYTES);
+		}
+		
+		return values;
+	}
+	
+	/**
+	 * Decode the bounding box at the given position
+	 * @param memory
+	 * @param boxPos
+	 * @return
+	 */
+	private Hyperrectangle readBoundingBox(final ByteBuffer memory, final int boxPos) {
+		final double[] values = readCoordinates(memory, boxPos);
+		
+		if(values.length == 0) {
+			return Hyperrectangle.FULL_SPACE;
+		}
+		
+		return new Hyperrectangle(values);
+	}
+	
+	/**
+	 * Get the start position of the node
+	 * @param node
+	 * @return
+	 */
+	public int getNodeStart(final int node) {
+		return FILE_HEADER_BYTES + node * pageBytes;
+	}
+	
+	/**
+	 * Get the position of the box of the slot
+	 * @param nodeStart
+	 * @param slot
+	 * @return
+	 */
+	public int getBoxOffset(final int nodeStart, final int slot) {
+		return nodeStart + BOXES_OFFSET + slot * boxBytes;
+	}
+	
+	/**
+	 * Get the position of the pointer of the slot
+	 * @param nodeStart
+	 * @param slot
+	 * @return
+	 */
+	public int getPointerOffset(final int nodeStart, final int slot) {
+		return nodeStart + pointerOffset + slot * DataEncoderHelper.LONG_BYTES;
+	}
+	
+	/**
+	 * Get the size of a node
+	 * @return
+	 */
+	public int getPageBytes() {
+		return pageBytes;
+	}
+	
+	/**
+	 * Get the dimensions
+	 * @return
+	 */
+	public int getDimensions() {
+		return dimensions;
+	}
+	
+	/**
+	 * Get the number of nodes
+	 * @return
+	 */
+	public int getNodes() {
+		return nodes;
+	}
+	
+	/**
+	 * Get the max node size
+	 * @return
+	 */
+	public int getMaxNodeSize() {
+		return maxNodeSize;
+	}
+}
@@ -0,0 +1,268 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.sstable.spatialindex.rtree;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bboxdb.commons.io.DataEncoderHelper;
+import org.bboxdb.commons.math.Hyperrectangle;
+import org.bboxdb.storage.StorageManagerException;
+import org.bboxdb.storage.sstable.SSTableConst;
+import org.bboxdb.storage.sstable.spatialindex.SpatialIndexEntry;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Write the R-tree with fixed size nodes (see RTreeCompactLayout). The nodes 
+ * are numbered in breadth first order, so the root node is the first node and 
+ * the children of a node are stored consecutively. All node references are 
+ * known before the first byte is written, so the file is written sequentially 
+ * in one pass.
+ */
+public class RTreeCompactSerializer {
+
+	/**
+	 * The maximal node size
+	 */
+	private final int maxNodeSize;
+	
+	/**
+	 * The root node
+	 */
+	private final RTreeDirectoryNode rootNode;
+
+	public RTreeCompactSerializer(final RTreeDirectoryNode rootNode, final int maxNodeSize) {
+		this.rootNode = rootNode;
+		this.maxNodeSize = maxNodeSize;
+	}
+	
+	/**
+	 * Serialize the tree to the file
+	 * @param randomAccessFile
+	 * @throws StorageManagerException
+	 */
+	@SuppressFBWarnings(value="OS_OPEN_STREAM", justification="The file is closed by the caller")
+	public void writeToStream(final RandomAccessFile randomAccessFile) throws StorageManagerException {
+		
+		final List<RTreeDirectoryNode> nodes = getNodesInBreadthFirstOrder();
+		final int dimensions = getDimensions(nodes);
+		
+		final Map<RTreeDirectoryNode, Integer> nodeNumbers = new IdentityHashMap<>();
+		for(int i = 0; i < nodes.size(); i++) {
+			nodeNumbers.put(nodes.get(i), i);
+		}
+		
+		final double[][] nodeBoxes = calculateNodeBoxes(nodes, nodeNumbers, dimensions);
+		final RTreeCompactLayout layout = new RTreeCompactLayout(maxNodeSize, dimensions, nodes.size());
+		
+		// The stream is not closed, the file is closed by the caller
+		final OutputStream outputStream = new BufferedOutputStream(
+				Channels.newOutputStream(randomAccessFile.getChannel()));
+
+		try {
+			outputStream.write(SSTableConst.MAGIC_BYTES_SPATIAL_RTREE_INDEX_V3);
+			outputStream.write(DataEncoderHelper.intToByteBuffer(maxNodeSize).array());
+			outputStream.write(DataEncoderHelper.intToByteBuffer(dimensions).array());
+			outputStream.write(DataEncoderHelper.intToByteBuffer(nodes.size()).array());
+
+			final ByteBuffer page = ByteBuffer.allocate(layout.getPageBytes());
+			page.order(DataEncoderHelper.APPLICATION_BYTE_ORDER);
+			
+			for(final RTreeDirectoryNode node : nodes) {
+				Arrays.fill(page.array(), (byte) 0);
+				writeNode(page, layout, node, nodeNumbers, nodeBoxes);
+				outputStream.write(page.array());
+			}
+			
+			outputStream.flush();
+		} catch (IOException e) {
+			throw new StorageManagerException(e);
+		}
+	}
+
+	/**
+	 * Write the node into the page
+	 * @param page
+	 * @param layout
+	 * @param node
+	 * @param nodeNumbers
+	 * @param nodeBoxes
+	 * @throws StorageManagerException 
+	 */
+	private void writeNode(final ByteBuffer page, final RTreeCompactLayout layout, 
+			final RTreeDirectoryNode node, final Map<RTreeDirectoryNode, Integer> nodeNumbers, 
+			final double[][] nodeBoxes) throws StorageManagerException {
+		
+		final boolean leaf = node.isLeafNode();
+		final int entries = leaf ? node.getIndexEntries().size() : node.getDirectoryNodeChilds().size();
+		
+		if(entries > maxNodeSize) {
+			throw new StorageManagerException("Node " + node.getNodeId() + " contains " 
+					+ entries + " entries, max is " + maxNodeSize);
+		}
+		
+		page.putInt(RTreeCompactLayout.LEAF_FLAG_OFFSET, leaf ? 1 : 0);
+		page.putInt(RTreeCompactLayout.COUNT_OFFSET, entries);
+		
+		for(int i = 0; i < entries; i++) {
+			final double[] box;
+			final long pointer;
+			
+			if(leaf) {
+				final SpatialIndexEntry entry = node.getIndexEntries().get(i);
+				box = getEntryBox(entry.getBoundingBox(), layout.getDimensions());
+				pointer = entry.getValue();
+			} else {
+				final int childNumber = nodeNumbers.get(node.getDirectoryNodeChilds().get(i));
+				box = nodeBoxes[childNumber];
+				pointer = childNumber;
+			}
+			
+			final int boxPos = layout.getBoxOffset(0, i);
+			for(int d = 0; d < box.length; d++) {
+				page.putDouble(boxPos + d * DataEncoderHelper.DOUBLE_BYTES, box[d]);
+			}
+			
+			page.putLong(layout.getPointerOffset(0, i), pointer);
+		}
+	}
+	
+	/**
+	 * Get the nodes in breadth first order
+	 * @return
+	 */
+	private List<RTreeDirectoryNode> getNodesInBreadthFirstOrder() {
+		final List<RTreeDirectoryNode> nodes = new ArrayList<>();
+		nodes.add(rootNode);
+		
+		for(int i = 0; i < nodes.size(); i++) {
+			nodes.addAll(nodes.get(i).getDirectoryNodeChilds());
+		}
+		
+		return nodes;
+	}
+	
+	/**
+	 * Get the dimensions of the entries
+	 * @param nodes
+	 * @return
+	 * @throws StorageManagerException 
+	 */
+	private int getDimensions(final List<RTreeDirectoryNode> nodes) throws StorageManagerException {
+		int dimensions = 0;
+		
+		for(final RTreeDirectoryNode node : nodes) {
+			for(final SpatialIndexEntry entry : node.getIndexEntries()) {
+				final int entryDimensions = entry.getBoundingBox().getDimension();
+				
+				if(entryDimensions == 0) {
+					continue;
+				}
+				
+				if(dimensions != 0 && dimensions != entryDimensions) {
+					throw new StorageManagerException("Unable to store entries with " 
+							+ dimensions + " and " + entryDimensions + " dimensions");
+				}
+				
+				dimensions = entryDimensions;
+			}
+		}
+		
+		return dimensions;
+	}
+	
+	/**
+	 * Calculate the bounding boxes of the nodes from the stored entry boxes
+	 * @param nodes
+	 * @param nodeNumbers
+	 * @param dimensions
+	 * @return
+	 */
+	private double[][] calculateNodeBoxes(final List<RTreeDirectoryNode> nodes, 
+			final Map<RTreeDirectoryNode, Integer> nodeNumbers, final int dimensions) {
+		
+		final double[][] nodeBoxes = new double[nodes.size()][];
+		
+		// The children are stored behind their parent node
+		for(int i = nodes.size() - 1; i >= 0; i--) {
+			final RTreeDirectoryNode node = nodes.get(i);
+			final double[] box = new double[2 * dimensions];
+			
+			for(int d = 0; d < dimensions; d++) {
+				box[2 * d] = Double.POSITIVE_INFINITY;
+				box[2 * d + 1] = Double.NEGATIVE_INFINITY;
+			}
+			
+			for(final SpatialIndexEntry entry : node.getIndexEntries()) {
+				extendBox(box, getEntryBox(entry.getBoundingBox(), dimensions));
+			}
+			
+			for(final RTreeDirectoryNode child : node.getDirectoryNodeChilds()) {
+				extendBox(box, nodeBoxes[nodeNumbers.get(child)]);
+			}
+			
+			nodeBoxes[i] = box;
+		}
+		
+		return nodeBoxes;
+	}
+	
+	/**
+	 * Extend the box by the other box
+	 * @param box
+	 * @param otherBox
+	 */
+	private static void extendBox(final double[] box, final double[] otherBox) {
+		for(int i = 0; i < box.length; i += 2) {
+			box[i] = Math.min(box[i], otherBox[i]);
+			box[i + 1] = Math.max(box[i + 1], otherBox[i + 1]);
+		}
+	}
+	
+	/**
+	 * Get the coordinates of the entry, the full space is stored as infinite box
+	 * @param boundingBox
+	 * @param dimensions
+	 * @return
+	 */
+	private static double[] getEntryBox(final Hyperrectangle boundingBox, final int dimensions) {
+		
+		if(boundingBox.getDimension() != 0) {
+			return boundingBox.toDoubleArray();
+		}
+		
+		final double[] box = new double[2 * dimensions];
+		
+		for(int d = 0; d < dimensions; d++) {
+			box[2 * d] = Double.NEGATIVE_INFINITY;
+			box[2 * d + 1] = Double.POSITIVE_INFINITY;
+		}
+		
+		return box;
+	}
+}
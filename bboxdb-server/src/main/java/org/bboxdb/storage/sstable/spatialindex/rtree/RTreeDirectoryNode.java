@@ -46,6 +46,11 @@ public class RTreeDirectoryNode implements BoundingBoxEntity {
 	 */
 	protected Hyperrectangle boundingBox;
 
+	/**
+	 * Contains the subtree an entry for the full space
+	 */
+	protected boolean containsFullSpace;
+
 	/**
 	 * The parent node
 	 */
@@ -143,6 +148,20 @@ public class RTreeDirectoryNode implements BoundingBoxEntity {
 
 		// Calculate bounding box
 		this.boundingBox = Hyperrectangle.getCoveringBox(boundingBoxes);
+
+		// The covering box ignores the full space, so it has to be tracked separately
+		this.containsFullSpace = directoryNodeChilds.stream().anyMatch(n -> n.containsFullSpace)
+				|| boundingBoxes.stream().anyMatch(b -> b.getDimension() == 0);
+	}
+
+	/**
+	 * Get the bounding box for queries. The full space is returned if the subtree 
+	 * contains an entry for the full space, since the bounding box does not cover
+	 * these entries.
+	 * @return
+	 */
+	public Hyperrectangle getQueryBoundingBox() {
+		return containsFullSpace ? Hyperrectangle.FULL_SPACE : boundingBox;
 	}
 
 	/**
@@ -236,7 +255,7 @@ public class RTreeDirectoryNode implements BoundingBoxEntity {
 		}
 
 		for(final RTreeDirectoryNode entry : directoryNodeChilds) {
-			if(entry.getBoundingBox().intersects(boundingBox)) {
+			if(entry.getQueryBoundingBox().intersects(boundingBox)) {
 				entry.getEntriesForRegion(boundingBox, result);
 			}
 		}
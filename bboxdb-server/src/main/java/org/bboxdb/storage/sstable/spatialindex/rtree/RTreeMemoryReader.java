@@ -19,8 +19,11 @@ package org.bboxdb.storage.sstable.spatialindex.rtree;
 
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Queue;
@@ -45,6 +48,16 @@ public class RTreeMemoryReader extends AbstractRTreeReader {
 	 */
 	protected Queue<Entry<RTreeDirectoryNode, Integer>> childToReadQueue = new LinkedTransferQueue<>();
 	
+	/**
+	 * The index data (only used for indices with fixed size nodes)
+	 */
+	protected ByteBuffer compactIndex;
+	
+	/**
+	 * The layout of the index data
+	 */
+	protected RTreeCompactLayout compactLayout;
+	
 	
 	public RTreeMemoryReader() {
 		
@@ -65,6 +78,12 @@ public class RTreeMemoryReader extends AbstractRTreeReader {
 			// Validate the magic bytes
 			validateStream(randomAccessFile);
 			maxNodeSize = DataEncoderHelper.readIntFromDataInput(randomAccessFile);
+			
+			if(compactFormat) {
+				readCompactIndex(randomAccessFile);
+				return;
+			}
+			
 			readDirectoryNode(randomAccessFile, null);
 						
 			while(! childToReadQueue.isEmpty()) {
@@ -77,6 +96,30 @@ public class RTreeMemoryReader extends AbstractRTreeReader {
 		}
 	}
 
+	/**
+	 * Read the index with fixed size nodes into memory
+	 * @param randomAccessFile
+	 * @throws IOException
+	 * @throws StorageManagerException 
+	 */
+	protected void readCompactIndex(final RandomAccessFile randomAccessFile) 
+			throws IOException, StorageManagerException {
+		
+		final long size = randomAccessFile.length();
+		
+		if(size > Integer.MAX_VALUE) {
+			throw new StorageManagerException("Spatial index is too large: " + size);
+		}
+		
+		final byte[] indexBytes = new byte[(int) size];
+		randomAccessFile.seek(0);
+		randomAccessFile.readFully(indexBytes);
+		
+		compactIndex = ByteBuffer.wrap(indexBytes);
+		compactIndex.order(DataEncoderHelper.APPLICATION_BYTE_ORDER);
+		compactLayout = RTreeCompactLayout.fromBuffer(compactIndex);
+	}
+
 	/**
 	 * Read the directory node
 	 * @param randomAccessFile
@@ -155,7 +198,7 @@ public class RTreeMemoryReader extends AbstractRTreeReader {
 			randomAccessFile.readFully(followingByte, 0, followingByte.length);
 			
 			if(Arrays.equals(followingByte, RTreeBuilder.MAGIC_CHILD_NODE_FOLLOWING)) {
-				final SpatialIndexEntry spatialIndexEntry = SpatialIndexEntry.readFromFile(randomAccessFile);
+				final SpatialIndexEntry spatialIndexEntry = SpatialIndexEntry.readFromFile(randomAccessFile, longEntryValues);
 				rootNode.indexEntries.add(spatialIndexEntry);
 			} else if(! Arrays.equals(followingByte, RTreeBuilder.MAGIC_CHILD_NODE_NOT_EXISTING)) {
 				throw new IllegalArgumentException("Unknown node type following: " + Arrays.toString(followingByte));
@@ -165,14 +208,35 @@ public class RTreeMemoryReader extends AbstractRTreeReader {
 
 	@Override
 	public List<SpatialIndexEntry> getEntriesForRegion(final Hyperrectangle boundingBox) {
+		
+		if(compactLayout != null) {
+			final List<SpatialIndexEntry> resultList = new ArrayList<>();
+			compactLayout.queryIndex(compactIndex, boundingBox, resultList);
+			return resultList;
+		}
+		
 		return rootNode.getEntriesForRegion(boundingBox);
 	}
 	
+	@Override
+	public Iterator<SpatialIndexEntry> getEntriesByDistance(final Hyperrectangle queryBox) {
+		
+		if(compactLayout != null) {
+			final ByteBuffer index = compactIndex;
+			return RTreeNearestNeighborSearch.forIndexFile(queryBox, 0, 
+					(n, v) -> compactLayout.decodeNode(index, n, v));
+		}
+		
+		return RTreeNearestNeighborSearch.forDirectoryNode(queryBox, rootNode);
+	}
+	
 
 	@Override
 	public void close() {
 		maxNodeSize = -1;
 		rootNode = null;
+		compactIndex = null;
+		compactLayout = null;
 		childToReadQueue.clear();
 	}
 }
@@ -0,0 +1,292 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.sstable.spatialindex.rtree;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import org.bboxdb.commons.math.Hyperrectangle;
+import org.bboxdb.commons.math.HyperrectangleHelper;
+import org.bboxdb.storage.sstable.spatialindex.SpatialIndexEntry;
+
+/**
+ * Incremental best-first nearest neighbor search on a R-tree (Hjaltason and Samet). 
+ * The nodes and the entries share one priority queue, ordered by the min distance 
+ * of their box to the query box. A node is only decoded when it is the head of the 
+ * queue, so the entries are returned in the order of their distance and only the 
+ * nodes closer than the last returned entry are read.
+ *
+ * @param <N> - the reference to a node
+ */
+public final class RTreeNearestNeighborSearch<N> implements Iterator<SpatialIndexEntry> {
+	
+	/**
+	 * The visitor for the content of a node
+	 */
+	public interface NodeVisitor<N> {
+		
+		/**
+		 * An entry of a leaf node, the full space has no coordinates
+		 * @param box
+		 * @param value
+		 */
+		public void visitEntry(final double[] box, final long value);
+		
+		/**
+		 * A child node, the full space has no coordinates
+		 * @param box
+		 * @param node
+		 */
+		public void visitChild(final double[] box, final N node);
+	}
+	
+	/**
+	 * The decoder for the nodes
+	 */
+	public interface NodeDecoder<N> {
+		
+		/**
+		 * Decode the given node
+		 * @param node
+		 * @param visitor
+		 */
+		public void decodeNode(final N node, final NodeVisitor<N> visitor);
+	}
+	
+	/**
+	 * A node or an entry in the queue
+	 */
+	private static final class QueueElement<N> {
+		
+		/**
+		 * The squared distance to the query box
+		 */
+		private final double distance;
+		
+		/**
+		 * The box of the element
+		 */
+		private final double[] box;
+		
+		/**
+		 * The value of the entry
+		 */
+		private final long value;
+		
+		/**
+		 * The node (null for entries)
+		 */
+		private final N node;
+
+		QueueElement(final double distance, final double[] box, final long value, final N node) {
+			this.distance = distance;
+			this.box = box;
+			this.value = value;
+			this.node = node;
+		}
+	}
+	
+	/**
+	 * The order of the queue, entries before nodes with the same distance
+	 */
+	@SuppressWarnings("rawtypes")
+	private final static Comparator<QueueElement> QUEUE_ORDER = Comparator
+			.comparingDouble((QueueElement e) -> e.distance)
+			.thenComparing(e -> e.node != null);
+
+	/**
+	 * The query box
+	 */
+	private final double[] queryBox;
+	
+	/**
+	 * The decoder for the nodes
+	 */
+	private final NodeDecoder<N> nodeDecoder;
+	
+	/**
+	 * The nodes and entries ordered by distance
+	 */
+	private final PriorityQueue<QueueElement<N>> queue;
+	
+	/**
+	 * The visitor that adds the content of the decoded nodes to the queue
+	 */
+	private final NodeVisitor<N> queueVisitor;
+	
+	/**
+	 * The number of decoded nodes
+	 */
+	private long decodedNodes;
+
+	public RTreeNearestNeighborSearch(final Hyperrectangle queryBox, final NodeDecoder<N> nodeDecoder) {
+		this.queryBox = queryBox.toDoubleArray();
+		this.nodeDecoder = nodeDecoder;
+		this.queue = new PriorityQueue<>(QUEUE_ORDER);
+		this.decodedNodes = 0;
+		
+		this.queueVisitor = new NodeVisitor<N>() {
+
+			@Override
+			public void visitEntry(final double[] box, final long value) {
+				addEntry(box, value);
+			}
+
+			@Override
+			public void visitChild(final double[] box, final N node) {
+				addNode(box, node);
+			}
+		};
+	}
+	
+	/**
+	 * Search the nodes of an index file, the nodes are referenced by their position
+	 * @param queryBox
+	 * @param rootNode
+	 * @param nodeDecoder
+	 * @return
+	 */
+	public static RTreeNearestNeighborSearch<Integer> forIndexFile(final Hyperrectangle queryBox, 
+			final int rootNode, final RTreePinnedNodes.NodeDecoder nodeDecoder) {
+		
+		final RTreeNearestNeighborSearch<Integer> search = new RTreeNearestNeighborSearch<>(queryBox, 
+				(n, v) -> nodeDecoder.decodeNode(n, new RTreePinnedNodes.NodeVisitor() {
+					
+					@Override
+					public void visitEntry(final double[] box, final long value) {
+						v.visitEntry(box, value);
+					}
+					
+					@Override
+					public void visitChild(final double[] box, final int node) {
+						v.visitChild(box, node);
+					}
+				}));
+		
+		search.addNode(new double[0], rootNode);
+		return search;
+	}
+	
+	/**
+	 * Search a tree of directory nodes
+	 * @param queryBox
+	 * @param rootNode
+	 * @return
+	 */
+	public static RTreeNearestNeighborSearch<RTreeDirectoryNode> forDirectoryNode(
+			final Hyperrectangle queryBox, final RTreeDirectoryNode rootNode) {
+		
+		final RTreeNearestNeighborSearch<RTreeDirectoryNode> search 
+			= new RTreeNearestNeighborSearch<>(queryBox, (n, v) -> {
+			
+				for(final SpatialIndexEntry entry : n.getIndexEntries()) {
+					v.visitEntry(entry.getBoundingBox().toDoubleArray(), entry.getValue());
+				}
+				
+				for(final RTreeDirectoryNode child : n.getDirectoryNodeChilds()) {
+					v.visitChild(child.getQueryBoundingBox().toDoubleArray(), child);
+				}
+			});
+		
+		if(rootNode != null) {
+			search.addNode(new double[0], rootNode);
+		}
+		
+		return search;
+	}
+	
+	/**
+	 * Search a snapshot of index entries, all entries are added to the queue
+	 * @param queryBox
+	 * @param entries
+	 * @return
+	 */
+	public static RTreeNearestNeighborSearch<Void> forEntries(final Hyperrectangle queryBox,
+			final Collection<? extends SpatialIndexEntry> entries) {
+
+		final RTreeNearestNeighborSearch<Void> search = new RTreeNearestNeighborSearch<>(queryBox,
+				(n, v) -> {
+					throw new IllegalStateException("The search contains no nodes");
+				});
+
+		for(final SpatialIndexEntry entry : entries) {
+			search.addEntry(entry.getBoundingBox().toDoubleArray(), entry.getValue());
+		}
+
+		return search;
+	}
+	
+	/**
+	 * Add a node to the queue
+	 * @param box
+	 * @param node
+	 */
+	public void addNode(final double[] box, final N node) {
+		queue.add(new QueueElement<>(HyperrectangleHelper.getMinDistanceSquared(box, queryBox), 
+				box, 0, node));
+	}
+	
+	/**
+	 * Add an entry to the queue
+	 * @param box
+	 * @param value
+	 */
+	public void addEntry(final double[] box, final long value) {
+		queue.add(new QueueElement<>(HyperrectangleHelper.getMinDistanceSquared(box, queryBox), 
+				box, value, null));
+	}
+
+	@Override
+	public boolean hasNext() {
+		
+		// Expand the nodes until an entry is the closest element
+		while(! queue.isEmpty() && queue.peek().node != null) {
+			final QueueElement<N> element = queue.poll();
+			nodeDecoder.decodeNode(element.node, queueVisitor);
+			decodedNodes++;
+		}
+		
+		return ! queue.isEmpty();
+	}
+
+	@Override
+	public SpatialIndexEntry next() {
+		
+		if(! hasNext()) {
+			throw new NoSuchElementException("The search is exhausted");
+		}
+		
+		final QueueElement<N> element = queue.poll();
+		
+		final Hyperrectangle boundingBox = element.box.length == 0 
+				? Hyperrectangle.FULL_SPACE : new Hyperrectangle(element.box);
+		
+		return new SpatialIndexEntry(boundingBox, element.value);
+	}
+	
+	/**
+	 * Get the number of decoded nodes
+	 * @return
+	 */
+	public long getDecodedNodes() {
+		return decodedNodes;
+	}
+}
@@ -0,0 +1,69 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.sstable.spatialindex.rtree;
+
+import java.util.Arrays;
+
+/**
+ * The nodes of a R-tree query that needs to be visited
+ */
+public final class RTreeNodeStack {
+	
+	/**
+	 * The initial size of the stack
+	 */
+	private final static int INITIAL_SIZE = 64;
+	
+	/**
+	 * The node references
+	 */
+	private int[] nodes = new int[INITIAL_SIZE];
+	
+	/**
+	 * The number of nodes on the stack
+	 */
+	private int size = 0;
+	
+	/**
+	 * Push a node to the stack
+	 * @param node
+	 */
+	public void push(final int node) {
+		if(size == nodes.length) {
+			nodes = Arrays.copyOf(nodes, nodes.length * 2);
+		}
+		
+		nodes[size++] = node;
+	}
+	
+	/**
+	 * Remove the top node from the stack
+	 * @return
+	 */
+	public int pop() {
+		return nodes[--size];
+	}
+	
+	/**
+	 * Is the stack empty
+	 * @return
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+}
@@ -0,0 +1,311 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.sstable.spatialindex.rtree;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bboxdb.commons.math.Hyperrectangle;
+
+/**
+ * The upper levels of a R-tree, decoded once into primitive arrays. A query 
+ * starts at the pinned root node; the references to the nodes below the pinned 
+ * levels are handed to the reader of the index file.
+ */
+public final class RTreePinnedNodes {
+	
+	/**
+	 * The visitor for the content of a decoded node
+	 */
+	public interface NodeVisitor {
+		
+		/**
+		 * An entry of a leaf node, the full space has no coordinates
+		 * @param box
+		 * @param value
+		 */
+		public void visitEntry(final double[] box, final long value);
+		
+		/**
+		 * A child node, the full space has no coordinates
+		 * @param box
+		 * @param node
+		 */
+		public void visitChild(final double[] box, final int node);
+	}
+	
+	/**
+	 * The decoder for the nodes of the index file
+	 */
+	public interface NodeDecoder {
+		
+		/**
+		 * Decode the node with the given reference
+		 * @param node
+		 * @param visitor
+		 */
+		public void decodeNode(final int node, final NodeVisitor visitor);
+	}
+	
+	/**
+	 * The slot contains an entry
+	 */
+	private final static byte SLOT_ENTRY = 0;
+	
+	/**
+	 * The slot references a pinned node
+	 */
+	private final static byte SLOT_PINNED_CHILD = 1;
+	
+	/**
+	 * The slot references a node of the index file
+	 */
+	private final static byte SLOT_FILE_CHILD = 2;
+	
+	/**
+	 * The first slot of each node (the last element is the number of slots)
+	 */
+	private final int[] nodeSlots;
+	
+	/**
+	 * The types of the slots
+	 */
+	private final byte[] slotTypes;
+	
+	/**
+	 * The entry values or node references of the slots
+	 */
+	private final long[] slotPointers;
+	
+	/**
+	 * The position of the box of each slot (the last element is the number of coordinates)
+	 */
+	private final int[] slotBoxes;
+	
+	/**
+	 * The coordinates of the boxes
+	 */
+	private final double[] boxes;
+	
+	/**
+	 * The number of pinned levels
+	 */
+	private final int levels;
+
+	private RTreePinnedNodes(final List<List<Slot>> nodes, final Map<Integer, Integer> pinnedNodes, 
+			final int levels) {
+		
+		final int slots = nodes.stream().mapToInt(List::size).sum();
+		final int coordinates = nodes.stream()
+				.flatMap(List::stream)
+				.mapToInt(s -> s.box.length)
+				.sum();
+		
+		this.nodeSlots = new int[nodes.size() + 1];
+		this.slotTypes = new byte[slots];
+		this.slotPointers = new long[slots];
+		this.slotBoxes = new int[slots + 1];
+		this.boxes = new double[coordinates];
+		this.levels = levels;
+		
+		int slot = 0;
+		int boxPos = 0;
+		
+		for(int node = 0; node < nodes.size(); node++) {
+			nodeSlots[node] = slot;
+			
+			for(final Slot nodeSlot : nodes.get(node)) {
+				final Integer pinnedNode = nodeSlot.child ? pinnedNodes.get((int) nodeSlot.pointer) : null;
+				
+				if(! nodeSlot.child) {
+					slotTypes[slot] = SLOT_ENTRY;
+					slotPointers[slot] = nodeSlot.pointer;
+				} else if(pinnedNode != null) {
+					slotTypes[slot] = SLOT_PINNED_CHILD;
+					slotPointers[slot] = pinnedNode;
+				} else {
+					slotTypes[slot] = SLOT_FILE_CHILD;
+					slotPointers[slot] = nodeSlot.pointer;
+				}
+				
+				slotBoxes[slot] = boxPos;
+				System.arraycopy(nodeSlot.box, 0, boxes, boxPos, nodeSlot.box.length);
+				boxPos += nodeSlot.box.length;
+				slot++;
+			}
+		}
+		
+		nodeSlots[nodes.size()] = slot;
+		slotBoxes[slots] = boxPos;
+	}
+	
+	/**
+	 * Decode the upper levels of the tree. Complete levels are pinned as long as 
+	 * the number of pinned nodes does not exceed the budget.
+	 * 
+	 * @param rootNode
+	 * @param maxNodes
+	 * @param decoder
+	 * @return the pinned nodes or null, if not even the root node can be pinned
+	 */
+	public static RTreePinnedNodes pinUpperLevels(final int rootNode, final int maxNodes, 
+			final NodeDecoder decoder) {
+		
+		final List<List<Slot>> nodes = new ArrayList<>();
+		final Map<Integer, Integer> pinnedNodes = new HashMap<>();
+		
+		List<Integer> level = new ArrayList<>();
+		level.add(rootNode);
+		int levels = 0;
+		
+		while(! level.isEmpty() && nodes.size() + level.size() <= maxNodes) {
+			final List<Integer> nextLevel = new ArrayList<>();
+			
+			for(final int node : level) {
+				final List<Slot> slots = new ArrayList<>();
+				pinnedNodes.put(node, nodes.size());
+				nodes.add(slots);
+				
+				decoder.decodeNode(node, new NodeVisitor() {
+					
+					@Override
+					public void visitEntry(final double[] box, final long value) {
+						slots.add(new Slot(box, value, false));
+					}
+					
+					@Override
+					public void visitChild(final double[] box, final int child) {
+						slots.add(new Slot(box, child, true));
+						nextLevel.add(child);
+					}
+				});
+			}
+			
+			level = nextLevel;
+			levels++;
+		}
+		
+		if(nodes.isEmpty()) {
+			return null;
+		}
+		
+		return new RTreePinnedNodes(nodes, pinnedNodes, levels);
+	}
+	
+	/**
+	 * Query the pinned nodes, the references to the nodes of the index file 
+	 * that need to be visited are pushed to the file node stack
+	 * 
+	 * @param queryBox
+	 * @param fileNodes
+	 * @param result
+	 */
+	public void query(final RTreeQueryBox queryBox, final RTreeNodeStack fileNodes, 
+			final RTreeQueryResult result) {
+		
+		final RTreeNodeStack stack = new RTreeNodeStack();
+		stack.push(0);
+		
+		while(! stack.isEmpty()) {
+			final int node = stack.pop();
+			
+			for(int slot = nodeSlots[node]; slot < nodeSlots[node + 1]; slot++) {
+				final int boxPos = slotBoxes[slot];
+				final int boxDimensions = (slotBoxes[slot + 1] - boxPos) / 2;
+				
+				if(! queryBox.intersects(boxes, boxPos, boxDimensions)) {
+					continue;
+				}
+				
+				final long pointer = slotPointers[slot];
+				
+				if(slotTypes[slot] == SLOT_PINNED_CHILD) {
+					stack.push((int) pointer);
+				} else if(slotTypes[slot] == SLOT_FILE_CHILD) {
+					fileNodes.push((int) pointer);
+				} else if(result.isCollectingEntries()) {
+					result.addEntry(getBoundingBox(boxPos, boxDimensions), pointer);
+				} else {
+					result.add(pointer);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Get the bounding box of a slot
+	 * @param boxPos
+	 * @param boxDimensions
+	 * @return
+	 */
+	private Hyperrectangle getBoundingBox(final int boxPos, final int boxDimensions) {
+		
+		if(boxDimensions == 0) {
+			return Hyperrectangle.FULL_SPACE;
+		}
+		
+		final double[] values = new double[2 * boxDimensions];
+		System.arraycopy(boxes, boxPos, values, 0, values.length);
+		return new Hyperrectangle(values);
+	}
+	
+	/**
+	 * Get the number of pinned nodes
+	 * @return
+	 */
+	public int getNodes() {
+		return nodeSlots.length - 1;
+	}
+	
+	/**
+	 * Get the number of pinned levels
+	 * @return
+	 */
+	public int getLevels() {
+		return levels;
+	}
+	
+	/**
+	 * A decoded slot of a node
+	 */
+	private final static class Slot {
+		
+		/**
+		 * The coordinates of the box
+		 */
+		private final double[] box;
+		
+		/**
+		 * The value or the child node reference
+		 */
+		private final long pointer;
+		
+		/**
+		 * Is the slot a child node
+		 */
+		private final boolean child;
+
+		public Slot(final double[] box, final long pointer, final boolean child) {
+			this.box = box;
+			this.pointer = pointer;
+			this.child = child;
+		}
+	}
+}
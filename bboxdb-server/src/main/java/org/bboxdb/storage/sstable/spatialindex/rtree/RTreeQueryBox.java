@@ -0,0 +1,206 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.sstable.spatialindex.rtree;
+
+import java.nio.ByteBuffer;
+
+import org.bboxdb.commons.io.DataEncoderHelper;
+import org.bboxdb.commons.math.DoubleInterval;
+import org.bboxdb.commons.math.Hyperrectangle;
+
+/**
+ * A query bounding box as primitive arrays. The box is compared with serialized 
+ * bounding boxes without decoding them. The intersection test has the same semantics 
+ * as Hyperrectangle.intersects for the closed intervals of the stored bounding boxes.
+ */
+public final class RTreeQueryBox {
+	
+	/**
+	 * The bytes of one dimension of a bounding box
+	 */
+	public final static int DIMENSION_BYTES = 2 * DataEncoderHelper.DOUBLE_BYTES;
+	
+	/**
+	 * The query covers the full space
+	 */
+	private final boolean fullSpace;
+	
+	/**
+	 * The dimensions of the query
+	 */
+	private final int dimensions;
+	
+	/**
+	 * The low coordinates
+	 */
+	private final double[] low;
+	
+	/**
+	 * The high coordinates
+	 */
+	private final double[] high;
+	
+	/**
+	 * Is the low point included
+	 */
+	private final boolean[] lowIncluded;
+	
+	/**
+	 * Is the high point included
+	 */
+	private final boolean[] highIncluded;
+	
+	public RTreeQueryBox(final Hyperrectangle boundingBox) {
+		this.fullSpace = (boundingBox == Hyperrectangle.FULL_SPACE || boundingBox.getDimension() == 0);
+		this.dimensions = boundingBox.getDimension();
+		this.low = new double[dimensions];
+		this.high = new double[dimensions];
+		this.lowIncluded = new boolean[dimensions];
+		this.highIncluded = new boolean[dimensions];
+		
+		for(int d = 0; d < dimensions; d++) {
+			final DoubleInterval interval = boundingBox.getIntervalForDimension(d);
+			low[d] = interval.getBegin();
+			high[d] = interval.getEnd();
+			lowIncluded[d] = interval.isBeginIncluded();
+			highIncluded[d] = interval.isEndIncluded();
+		}
+	}
+	
+	/**
+	 * Does the query intersect the length prefixed bounding box at the given position
+	 * @param memory
+	 * @param boxPos
+	 * @param boxLength
+	 * @return
+	 */
+	public boolean intersects(final ByteBuffer memory, final int boxPos, final int boxLength) {
+		
+		// The full space intersects everything
+		if(fullSpace || boxLength == 0) {
+			return true;
+		}
+		
+		if(boxLength / DIMENSION_BYTES != dimensions) {
+			return false;
+		}
+		
+		return intersectsCoordinates(memory, boxPos);
+	}
+	
+	/**
+	 * Does the query intersect the bounding box with the given dimensions at the
+	 * given position. Boxes with an infinite extent represent the full space.
+	 * 
+	 * @param memory
+	 * @param boxPos
+	 * @param boxDimensions
+	 * @return
+	 */
+	public boolean intersectsFixed(final ByteBuffer memory, final int boxPos, final int boxDimensions) {
+		
+		if(fullSpace || boxDimensions == 0) {
+			return true;
+		}
+		
+		if(boxDimensions != dimensions) {
+			return isFullSpace(memory, boxPos);
+		}
+		
+		return intersectsCoordinates(memory, boxPos);
+	}
+	
+	/**
+	 * Does the query intersect the box in the array. Boxes without dimensions 
+	 * represent the full space.
+	 * 
+	 * @param boxes
+	 * @param boxPos
+	 * @param boxDimensions
+	 * @return
+	 */
+	public boolean intersects(final double[] boxes, final int boxPos, final int boxDimensions) {
+		
+		if(fullSpace || boxDimensions == 0) {
+			return true;
+		}
+		
+		if(boxDimensions != dimensions) {
+			return false;
+		}
+		
+		for(int d = 0; d < dimensions; d++) {
+			if(! intersectsDimension(d, boxes[boxPos + 2 * d], boxes[boxPos + 2 * d + 1])) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Is the fixed width box at the given position the full space
+	 * @param memory
+	 * @param boxPos
+	 * @return
+	 */
+	public static boolean isFullSpace(final ByteBuffer memory, final int boxPos) {
+		return memory.getDouble(boxPos) == Double.NEGATIVE_INFINITY 
+				&& memory.getDouble(boxPos + DataEncoderHelper.DOUBLE_BYTES) == Double.POSITIVE_INFINITY;
+	}
+	
+	/**
+	 * Compare the coordinates of the box at the given position
+	 * @param memory
+	 * @param boxPos
+	 * @return
+	 */
+	private boolean intersectsCoordinates(final ByteBuffer memory, final int boxPos) {
+		for(int d = 0; d < dimensions; d++) {
+			final int pos = boxPos + d * DIMENSION_BYTES;
+			final double boxLow = memory.getDouble(pos);
+			final double boxHigh = memory.getDouble(pos + DataEncoderHelper.DOUBLE_BYTES);
+			
+			if(! intersectsDimension(d, boxLow, boxHigh)) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Does the query intersect the closed interval in the given dimension
+	 * @param d
+	 * @param boxLow
+	 * @param boxHigh
+	 * @return
+	 */
+	private boolean intersectsDimension(final int d, final double boxLow, final double boxHigh) {
+		
+		if(high[d] < boxLow || (high[d] == boxLow && ! highIncluded[d])) {
+			return false;
+		}
+		
+		if(low[d] > boxHigh || (low[d] == boxHigh && ! lowIncluded[d])) {
+			return false;
+		}
+		
+		return true;
+	}
+}
@@ -0,0 +1,93 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.sstable.spatialindex.rtree;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.bboxdb.commons.math.Hyperrectangle;
+import org.bboxdb.storage.sstable.spatialindex.SpatialIndexEntry;
+
+/**
+ * The result of a R-tree query, the values are collected in a primitive array. 
+ * The entries are only decoded if an entry list is provided.
+ */
+public final class RTreeQueryResult {
+	
+	/**
+	 * The initial size of the result
+	 */
+	private final static int INITIAL_SIZE = 64;
+
+	/**
+	 * The found values
+	 */
+	private long[] values = new long[INITIAL_SIZE];
+	
+	/**
+	 * The number of found values
+	 */
+	private int size = 0;
+	
+	/**
+	 * The list for the decoded entries or null
+	 */
+	private final List<SpatialIndexEntry> entryList;
+
+	public RTreeQueryResult(final List<SpatialIndexEntry> entryList) {
+		this.entryList = entryList;
+	}
+	
+	/**
+	 * Are the entries decoded
+	 * @return
+	 */
+	public boolean isCollectingEntries() {
+		return entryList != null;
+	}
+	
+	/**
+	 * Add a found value
+	 * @param value
+	 */
+	public void add(final long value) {
+		if(size == values.length) {
+			values = Arrays.copyOf(values, values.length * 2);
+		}
+		
+		values[size++] = value;
+	}
+	
+	/**
+	 * Add a found entry
+	 * @param boundingBox
+	 * @param value
+	 */
+	public void addEntry(final Hyperrectangle boundingBox, final long value) {
+		add(value);
+		entryList.add(new SpatialIndexEntry(boundingBox, value));
+	}
+	
+	/**
+	 * Get the found values
+	 * @return
+	 */
+	public long[] toArray() {
+		return Arrays.copyOf(values, size);
+	}
+}
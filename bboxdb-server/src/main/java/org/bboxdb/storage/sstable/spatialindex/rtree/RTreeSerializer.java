@@ -76,7 +76,7 @@ public class RTreeSerializer {
 		
 		try {
 			// Write the magic bytes
-			randomAccessFile.write(SSTableConst.MAGIC_BYTES_SPATIAL_RTREE_INDEX);
+			randomAccessFile.write(SSTableConst.MAGIC_BYTES_SPATIAL_RTREE_INDEX_V2);
 
 			// Write the tree configuration
 			final ByteBuffer nodeSizeBytes = DataEncoderHelper.intToByteBuffer(maxNodeSize);
@@ -136,7 +136,7 @@ public class RTreeSerializer {
 		randomAccessFile.write(nodeIdBytes.array());
 		
 		// Bounding box data
-		final byte[] boundingBoxBytes = node.getBoundingBox().toByteArray();
+		final byte[] boundingBoxBytes = node.getQueryBoundingBox().toByteArray();
 		final ByteBuffer boundingBoxLength = DataEncoderHelper.intToByteBuffer(boundingBoxBytes.length);
 		randomAccessFile.write(boundingBoxLength.array());
 		randomAccessFile.write(boundingBoxBytes);
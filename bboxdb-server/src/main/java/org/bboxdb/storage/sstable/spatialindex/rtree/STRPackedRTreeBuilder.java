@@ -0,0 +1,301 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.sstable.spatialindex.rtree;
+
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+import org.bboxdb.commons.math.Hyperrectangle;
+import org.bboxdb.storage.StorageManagerException;
+import org.bboxdb.storage.sstable.spatialindex.BoundingBoxEntity;
+import org.bboxdb.storage.sstable.spatialindex.SpatialIndexBuilder;
+import org.bboxdb.storage.sstable.spatialindex.SpatialIndexEntry;
+
+/**
+ * A bulk loaded R-tree. The entries are collected and the tree is packed 
+ * with the Sort-Tile-Recursive (STR) algorithm when it is written or queried. 
+ * All nodes except the last node of each level are completely filled.
+ * 
+ * The tree uses the same nodes and serializer as the RTreeBuilder, so the
+ * written index can be read by all R-tree readers.
+ */
+public final class STRPackedRTreeBuilder implements SpatialIndexBuilder {
+	
+	/**
+	 * The node factory
+	 */
+	private final RTreeNodeFactory nodeFactory;
+
+	/**
+	 * The max size of a node
+	 */
+	private final int maxNodeSize;
+	
+	/**
+	 * The collected entries
+	 */
+	private final List<SpatialIndexEntry> entries;
+	
+	/**
+	 * The root node (null if the tree needs to be packed)
+	 */
+	private RTreeDirectoryNode rootNode;
+
+	public STRPackedRTreeBuilder() {
+		this(RTreeBuilder.DEFAULT_NODE_SIZE);
+	}
+	
+	public STRPackedRTreeBuilder(final int maxNodeSize) {
+		
+		if(maxNodeSize <= 1) {
+			throw new IllegalArgumentException("Unable to construct an index with max node size: "
+					+ maxNodeSize);
+		}
+		
+		this.maxNodeSize = maxNodeSize;
+		this.nodeFactory = new RTreeNodeFactory();
+		this.entries = new ArrayList<>();
+		this.rootNode = null;
+	}
+
+	@Override
+	public boolean bulkInsert(final List<SpatialIndexEntry> elements) {
+		boolean result = true;
+
+		for(final SpatialIndexEntry entry : elements) {
+			final boolean insertResult = insert(entry);
+
+			if(! insertResult) {
+				result = false;
+			}
+		}
+
+		return result;
+	}
+
+	@Override
+	public boolean insert(final SpatialIndexEntry element) {
+		
+		if(element.getBoundingBox() == null) {
+			return false;
+		}
+		
+		entries.add(element);
+		rootNode = null;
+		
+		return true;
+	}
+
+	@Override
+	public void writeToFile(final RandomAccessFile randomAccessFile) throws StorageManagerException {
+		final RTreeCompactSerializer rTreeSerializer = new RTreeCompactSerializer(getRootNode(), maxNodeSize);
+		rTreeSerializer.writeToStream(randomAccessFile);
+	}
+
+	@Override
+	public List<? extends SpatialIndexEntry> getEntriesForRegion(final Hyperrectangle boundingBox) {
+		return getRootNode().getEntriesForRegion(boundingBox);
+	}
+	
+	@Override
+	public Iterator<SpatialIndexEntry> getEntriesByDistance(final Hyperrectangle queryBox) {
+		return RTreeNearestNeighborSearch.forDirectoryNode(queryBox, getRootNode());
+	}
+	
+	/**
+	 * Get the root node, pack the tree if needed
+	 * @return
+	 */
+	public RTreeDirectoryNode getRootNode() {
+		if(rootNode == null) {
+			rootNode = packTree();
+		}
+		
+		return rootNode;
+	}
+	
+	/**
+	 * Pack the entries into a tree
+	 * @return the root node
+	 */
+	private RTreeDirectoryNode packTree() {
+		
+		final int dimensions = getMaxDimension(entries);
+		
+		if(entries.size() <= maxNodeSize) {
+			final RTreeDirectoryNode leafNode = nodeFactory.buildDirectoryNode();
+			leafNode.getIndexEntries().addAll(entries);
+			updateLeafBoundingBox(leafNode, dimensions);
+			return leafNode;
+		}
+		
+		// Leaf level
+		List<RTreeDirectoryNode> level = new ArrayList<>();
+		
+		for(final List<SpatialIndexEntry> group : pack(new ArrayList<>(entries), dimensions)) {
+			final RTreeDirectoryNode leafNode = nodeFactory.buildDirectoryNode();
+			leafNode.getIndexEntries().addAll(group);
+			updateLeafBoundingBox(leafNode, dimensions);
+			level.add(leafNode);
+		}
+		
+		// Directory levels
+		while(level.size() > 1) {
+			final List<RTreeDirectoryNode> nextLevel = new ArrayList<>();
+			
+			for(final List<RTreeDirectoryNode> group : pack(level, dimensions)) {
+				final RTreeDirectoryNode directoryNode = nodeFactory.buildDirectoryNode();
+				
+				for(final RTreeDirectoryNode child : group) {
+					directoryNode.addDirectoryNodeChild(child);
+					child.setParentNode(directoryNode);
+				}
+				
+				directoryNode.updateBoundingBox();
+				nextLevel.add(directoryNode);
+			}
+			
+			level = nextLevel;
+		}
+		
+		return level.get(0);
+	}
+	
+	/**
+	 * Update the bounding box of the leaf node. Entries without a bounding box
+	 * (the full space) are ignored by the covering box, so a leaf with such entries
+	 * covers the whole space. Otherwise, the entries could not be found by a query.
+	 * 
+	 * @param leafNode
+	 * @param dimensions
+	 */
+	private void updateLeafBoundingBox(final RTreeDirectoryNode leafNode, final int dimensions) {
+		leafNode.updateBoundingBox();
+		
+		if(dimensions == 0) {
+			return;
+		}
+		
+		final boolean containsFullSpace = leafNode.getIndexEntries()
+				.stream()
+				.anyMatch(e -> e.getBoundingBox().getDimension() == 0);
+		
+		if(containsFullSpace) {
+			leafNode.setBoundingBox(Hyperrectangle.createFullCoveringDimensionBoundingBox(dimensions));
+		}
+	}
+	
+	/**
+	 * Group the elements into nodes of max node size (Sort-Tile-Recursive)
+	 * @param elements
+	 * @param dimensions
+	 * @return
+	 */
+	private <T extends BoundingBoxEntity> List<List<T>> pack(final List<T> elements, 
+			final int dimensions) {
+		
+		final List<List<T>> result = new ArrayList<>();
+		packDimension(elements, 0, Math.max(1, dimensions), result);
+		return result;
+	}
+	
+	/**
+	 * Sort the elements by the given dimension and tile them into slices. The 
+	 * slices are packed recursively by the next dimension.
+	 * 
+	 * @param elements
+	 * @param dimension
+	 * @param dimensions
+	 * @param result
+	 */
+	private <T extends BoundingBoxEntity> void packDimension(final List<T> elements, 
+			final int dimension, final int dimensions, final List<List<T>> result) {
+		
+		elements.sort(Comparator.comparingDouble(e -> getCenter(e.getBoundingBox(), dimension)));
+
+		// Last dimension, cut the sorted elements into nodes
+		if(dimension == dimensions - 1) {
+			for(int i = 0; i < elements.size(); i += maxNodeSize) {
+				final int end = Math.min(i + maxNodeSize, elements.size());
+				result.add(new ArrayList<>(elements.subList(i, end)));
+			}
+			
+			return;
+		}
+		
+		final int nodes = (int) Math.ceil(elements.size() / (double) maxNodeSize);
+		final int remainingDimensions = dimensions - dimension;
+		final int slices = (int) Math.ceil(Math.pow(nodes, 1.0 / remainingDimensions));
+		final int nodesPerSlice = (int) Math.ceil(nodes / (double) slices);
+		final int sliceSize = nodesPerSlice * maxNodeSize;
+		
+		for(int i = 0; i < elements.size(); i += sliceSize) {
+			final int end = Math.min(i + sliceSize, elements.size());
+			packDimension(new ArrayList<>(elements.subList(i, end)), dimension + 1, dimensions, result);
+		}
+	}
+	
+	/**
+	 * Get the center of the box in the given dimension
+	 * @param boundingBox
+	 * @param dimension
+	 * @return
+	 */
+	private static double getCenter(final Hyperrectangle boundingBox, final int dimension) {
+		
+		// Boxes with less dimensions (e.g., the full space) are sorted to the beginning
+		if(dimension >= boundingBox.getDimension()) {
+			return Double.NEGATIVE_INFINITY;
+		}
+		
+		return (boundingBox.getCoordinateLow(dimension) + boundingBox.getCoordinateHigh(dimension)) / 2.0;
+	}
+	
+	/**
+	 * Get the max dimension of the entries
+	 * @param entries
+	 * @return
+	 */
+	private static int getMaxDimension(final List<SpatialIndexEntry> entries) {
+		int dimensions = 0;
+		
+		for(final SpatialIndexEntry entry : entries) {
+			dimensions = Math.max(dimensions, entry.getBoundingBox().getDimension());
+		}
+		
+		return dimensions;
+	}
+
+	/**
+	 * Get the maximal node size
+	 * @return
+	 */
+	public int getMaxNodeSize() {
+		return maxNodeSize;
+	}
+	
+	/**
+	 * Test the covering of the child nodes
+	 */
+	public void testCovering() {
+		getRootNode().testCovering();
+	}
+}
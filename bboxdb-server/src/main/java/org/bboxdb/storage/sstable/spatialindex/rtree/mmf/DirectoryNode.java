@@ -18,7 +18,7 @@
 package org.bboxdb.storage.sstable.spatialindex.rtree.mmf;
 
 import java.io.IOException;
-import java.nio.MappedByteBuffer;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -59,9 +59,11 @@ public class DirectoryNode {
 	 * Read the node from byte buffer
 	 * @param memory
 	 * @param maxNodeSize
+	 * @param longEntryValues
 	 * @throws IOException 
 	 */
-	public void initFromByteBuffer(final MappedByteBuffer memory, final int maxNodeSize) throws IOException {
+	public void initFromByteBuffer(final ByteBuffer memory, final int maxNodeSize, 
+			final boolean longEntryValues) throws IOException {
 		nodeId = memory.getInt();				
 		
 		// Bounding box data
@@ -78,7 +80,7 @@ public class DirectoryNode {
 			memory.get(followingByte, 0, followingByte.length);
 			
 			if(Arrays.equals(followingByte, RTreeBuilder.MAGIC_CHILD_NODE_FOLLOWING)) {
-				final SpatialIndexEntry spatialIndexEntry = SpatialIndexEntry.readFromByteBuffer(memory);
+				final SpatialIndexEntry spatialIndexEntry = SpatialIndexEntry.readFromByteBuffer(memory, longEntryValues);
 				indexEntries.add(spatialIndexEntry);
 			} else if(! Arrays.equals(followingByte, RTreeBuilder.MAGIC_CHILD_NODE_NOT_EXISTING)) {
 				throw new IllegalArgumentException("Unknown node type following: " + Arrays.toString(followingByte));
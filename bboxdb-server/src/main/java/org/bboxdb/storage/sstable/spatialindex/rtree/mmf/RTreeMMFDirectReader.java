@@ -0,0 +1,444 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.sstable.spatialindex.rtree.mmf;
+
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.bboxdb.commons.io.DataEncoderHelper;
+import org.bboxdb.commons.math.Hyperrectangle;
+import org.bboxdb.misc.BBoxDBConfigurationManager;
+import org.bboxdb.storage.StorageManagerException;
+import org.bboxdb.storage.sstable.spatialindex.SpatialIndexEntry;
+import org.bboxdb.storage.sstable.spatialindex.rtree.RTreeBatchQuery;
+import org.bboxdb.storage.sstable.spatialindex.rtree.RTreeBuilder;
+import org.bboxdb.storage.sstable.spatialindex.rtree.RTreeCompactLayout;
+import org.bboxdb.storage.sstable.spatialindex.rtree.RTreeNearestNeighborSearch;
+import org.bboxdb.storage.sstable.spatialindex.rtree.RTreeNodeStack;
+import org.bboxdb.storage.sstable.spatialindex.rtree.RTreePinnedNodes;
+import org.bboxdb.storage.sstable.spatialindex.rtree.RTreeQueryBox;
+import org.bboxdb.storage.sstable.spatialindex.rtree.RTreeQueryResult;
+
+/**
+ * A memory mapped R-tree reader that evaluates the queries directly on the 
+ * mapped nodes. The nodes are not decoded, the bounding boxes are compared in 
+ * place and only absolute reads are used. Therefore, the reader can be used 
+ * by concurrent queries and does not allocate memory per visited node.
+ * 
+ * Indices with fixed size nodes are queried by the RTreeCompactLayout. The upper 
+ * levels of the tree can be decoded once into memory (see RTreePinnedNodes), so 
+ * the queries descend into the mapped file only for the lower levels.
+ */
+public class RTreeMMFDirectReader extends RTreeMMFReader {
+	
+	/**
+	 * The magic value of a following child node
+	 */
+	private final static int CHILD_NODE_FOLLOWING 
+		= ByteBuffer.wrap(RTreeBuilder.MAGIC_CHILD_NODE_FOLLOWING).getInt();
+	
+	/**
+	 * The magic value of a non existing child node
+	 */
+	private final static int CHILD_NODE_NOT_EXISTING 
+		= ByteBuffer.wrap(RTreeBuilder.MAGIC_CHILD_NODE_NOT_EXISTING).getInt();
+	
+	/**
+	 * The max number of nodes of the upper levels that are decoded into memory
+	 */
+	private final int maxPinnedNodes;
+	
+	/**
+	 * The pinned upper levels of the tree (null if no levels are pinned)
+	 */
+	private volatile RTreePinnedNodes pinnedNodes;
+	
+	public RTreeMMFDirectReader() {
+		this(BBoxDBConfigurationManager.getConfiguration().getStorageSpatialIndexPinnedNodes());
+	}
+	
+	public RTreeMMFDirectReader(final int maxPinnedNodes) {
+		this.maxPinnedNodes = maxPinnedNodes;
+	}
+	
+	@Override
+	public void readFromFile(final RandomAccessFile randomAccessFile) 
+			throws StorageManagerException, InterruptedException {
+		
+		super.readFromFile(randomAccessFile);
+		
+		if(maxPinnedNodes <= 0) {
+			return;
+		}
+		
+		final MappedByteBuffer memory = getMappedMemory();
+		final RTreeCompactLayout layout = getCompactLayout();
+		
+		try {
+			if(layout != null) {
+				pinnedNodes = RTreePinnedNodes.pinUpperLevels(0, maxPinnedNodes, 
+						(n, v) -> layout.decodeNode(memory, n, v));
+			} else {
+				pinnedNodes = RTreePinnedNodes.pinUpperLevels(getFirstNodePos(), maxPinnedNodes, 
+						(n, v) -> decodeVariableNode(memory, n, v));
+			}
+		} catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+			throw new StorageManagerException("Unable to read spatial index", e);
+		}
+	}
+	
+	@Override
+	public void close() {
+		pinnedNodes = null;
+		super.close();
+	}
+
+	@Override
+	public long[] getPositionsForRegion(final Hyperrectangle boundingBox) throws StorageManagerException {
+		return queryIndex(boundingBox, null);
+	}
+	
+	@Override
+	public List<SpatialIndexEntry> getEntriesForRegion(final Hyperrectangle boundingBox) 
+			throws StorageManagerException {
+		
+		final List<SpatialIndexEntry> resultList = new ArrayList<>();
+		queryIndex(boundingBox, resultList);
+		return resultList;
+	}
+	
+	/**
+	 * Query the index with all bounding boxes in one traversal of the tree. The 
+	 * pinned levels are not used, the nodes are visited once per batch.
+	 */
+	@Override
+	public long[][] getPositionsForRegions(final List<Hyperrectangle> boundingBoxes) 
+			throws StorageManagerException {
+		
+		final MappedByteBuffer memory = getMappedMemory();
+		
+		if(memory == null) {
+			throw new StorageManagerException("The spatial index is closed");
+		}
+		
+		final RTreeCompactLayout layout = getCompactLayout();
+		final RTreeBatchQuery batchQuery = new RTreeBatchQuery(boundingBoxes);
+		
+		try {
+			if(layout != null) {
+				layout.queryBatch(memory, batchQuery);
+			} else {
+				queryVariableNodesBatch(memory, batchQuery);
+			}
+		} catch (IndexOutOfBoundsException e) {
+			throw new StorageManagerException("Unable to read spatial index", e);
+		}
+		
+		return batchQuery.getResults();
+	}
+	
+	/**
+	 * Search the entries best-first on the mapped nodes. The pinned levels are not 
+	 * used, the search decodes only the nodes that are closer than the found entries.
+	 */
+	@Override
+	public Iterator<SpatialIndexEntry> getEntriesByDistance(final Hyperrectangle queryBox) 
+			throws StorageManagerException {
+		
+		final MappedByteBuffer memory = getMappedMemory();
+		
+		if(memory == null) {
+			throw new StorageManagerException("The spatial index is closed");
+		}
+		
+		final RTreeCompactLayout layout = getCompactLayout();
+		
+		if(layout != null) {
+			return RTreeNearestNeighborSearch.forIndexFile(queryBox, 0, 
+					(n, v) -> layout.decodeNode(memory, n, v));
+		}
+		
+		return RTreeNearestNeighborSearch.forIndexFile(queryBox, getFirstNodePos(), 
+				(n, v) -> decodeVariableNode(memory, n, v));
+	}
+	
+	/**
+	 * Get the pinned upper levels of the tree
+	 * @return
+	 */
+	public RTreePinnedNodes getPinnedNodes() {
+		return pinnedNodes;
+	}
+	
+	/**
+	 * Query the index 
+	 * @param boundingBox
+	 * @param entryList - the list for the decoded entries or null
+	 * @return the values of the matching entries
+	 * @throws StorageManagerException
+	 */
+	private long[] queryIndex(final Hyperrectangle boundingBox, final List<SpatialIndexEntry> entryList) 
+			throws StorageManagerException {
+		
+		final MappedByteBuffer memory = getMappedMemory();
+		
+		if(memory == null) {
+			throw new StorageManagerException("The spatial index is closed");
+		}
+		
+		final RTreeCompactLayout layout = getCompactLayout();
+		final RTreePinnedNodes pinned = pinnedNodes;
+		final RTreeQueryBox queryBox = new RTreeQueryBox(boundingBox);
+		final RTreeNodeStack stack = new RTreeNodeStack();
+		final RTreeQueryResult result = new RTreeQueryResult(entryList);
+		
+		try {
+			if(pinned != null) {
+				pinned.query(queryBox, stack, result);
+			} else if(layout != null) {
+				stack.push(0);
+			} else {
+				stack.push(getFirstNodePos());
+			}
+			
+			if(layout != null) {
+				layout.queryNodes(memory, queryBox, stack, result);
+			} else {
+				queryVariableNodes(memory, queryBox, stack, result);
+			}
+		} catch (IndexOutOfBoundsException e) {
+			throw new StorageManagerException("Unable to read spatial index", e);
+		}
+		
+		return result.toArray();
+	}
+	
+	/**
+	 * Query the nodes with a variable size on the stack and their children
+	 * @param memory
+	 * @param queryBox
+	 * @param stack
+	 * @param result
+	 * @throws StorageManagerException
+	 */
+	private void queryVariableNodes(final ByteBuffer memory, final RTreeQueryBox queryBox, 
+			final RTreeNodeStack stack, final RTreeQueryResult result) throws StorageManagerException {
+		
+		final int valueBytes = longEntryValues ? DataEncoderHelper.LONG_BYTES : DataEncoderHelper.INT_BYTES;
+		
+		while(! stack.isEmpty()) {
+			final int nodePos = stack.pop();
+			
+			// Node id (4 bytes), bounding box length (4 bytes) and bounding box
+			final int nodeBoxLength = memory.getInt(nodePos + DataEncoderHelper.INT_BYTES);
+			final int nodeBoxPos = nodePos + 2 * DataEncoderHelper.INT_BYTES;
+			
+			if(! queryBox.intersects(memory, nodeBoxPos, nodeBoxLength)) {
+				continue;
+			}
+			
+			int pos = nodeBoxPos + nodeBoxLength;
+			
+			// Index entries: magic, value, bounding box length and bounding box
+			for(int i = 0; i < maxNodeSize; i++) {
+				final int magic = memory.getInt(pos);
+				pos += DataEncoderHelper.INT_BYTES;
+				
+				if(magic == CHILD_NODE_NOT_EXISTING) {
+					continue;
+				}
+				
+				if(magic != CHILD_NODE_FOLLOWING) {
+					throw new StorageManagerException("Unknown node type following: " + magic);
+				}
+				
+				final int boxLength = memory.getInt(pos + valueBytes);
+				final int boxPos = pos + valueBytes + DataEncoderHelper.INT_BYTES;
+				
+				if(queryBox.intersects(memory, boxPos, boxLength)) {
+					final long value = longEntryValues ? memory.getLong(pos) : memory.getInt(pos);
+					
+					if(result.isCollectingEntries()) {
+						result.addEntry(readBoundingBox(memory, boxPos, boxLength), value);
+					} else {
+						result.add(value);
+					}
+				}
+				
+				pos = boxPos + boxLength;
+			}
+			
+			// Child node pointer
+			for(int i = 0; i < maxNodeSize; i++) {
+				final int childPointer = memory.getInt(pos);
+				pos += DataEncoderHelper.INT_BYTES;
+				
+				if(childPointer != CHILD_NODE_NOT_EXISTING) {
+					stack.push(childPointer);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Query the nodes with a variable size with a batch of boxes
+	 * @param memory
+	 * @param batchQuery
+	 * @throws StorageManagerException
+	 */
+	private void queryVariableNodesBatch(final ByteBuffer memory, final RTreeBatchQuery batchQuery) 
+			throws StorageManagerException {
+		
+		final int valueBytes = longEntryValues ? DataEncoderHelper.LONG_BYTES : DataEncoderHelper.INT_BYTES;
+		batchQuery.pushRootNode(getFirstNodePos());
+		
+		while(! batchQuery.isEmpty()) {
+			final int[] probes = batchQuery.pop();
+			final int nodePos = batchQuery.getCurrentNode();
+			
+			// Node id (4 bytes), bounding box length (4 bytes) and bounding box
+			final int nodeBoxLength = memory.getInt(nodePos + DataEncoderHelper.INT_BYTES);
+			final int nodeBoxPos = nodePos + 2 * DataEncoderHelper.INT_BYTES;
+			
+			batchQuery.clearMatchingProbes();
+			
+			for(final int probe : probes) {
+				if(batchQuery.getQueryBox(probe).intersects(memory, nodeBoxPos, nodeBoxLength)) {
+					batchQuery.addMatchingProbe(probe);
+				}
+			}
+			
+			if(! batchQuery.hasMatchingProbes()) {
+				continue;
+			}
+			
+			final int[] nodeProbes = batchQuery.getMatchingProbes();
+			int pos = nodeBoxPos + nodeBoxLength;
+			
+			// Index entries: magic, value, bounding box length and bounding box
+			for(int i = 0; i < maxNodeSize; i++) {
+				final int magic = memory.getInt(pos);
+				pos += DataEncoderHelper.INT_BYTES;
+				
+				if(magic == CHILD_NODE_NOT_EXISTING) {
+					continue;
+				}
+				
+				if(magic != CHILD_NODE_FOLLOWING) {
+					throw new StorageManagerException("Unknown node type following: " + magic);
+				}
+				
+				final int boxLength = memory.getInt(pos + valueBytes);
+				final int boxPos = pos + valueBytes + DataEncoderHelper.INT_BYTES;
+				
+				batchQuery.clearMatchingProbes();
+				
+				for(final int probe : nodeProbes) {
+					if(batchQuery.getQueryBox(probe).intersects(memory, boxPos, boxLength)) {
+						batchQuery.addMatchingProbe(probe);
+					}
+				}
+				
+				if(batchQuery.hasMatchingProbes()) {
+					final long value = longEntryValues ? memory.getLong(pos) : memory.getInt(pos);
+					batchQuery.addValueForMatchingProbes(value);
+				}
+				
+				pos = boxPos + boxLength;
+			}
+			
+			// Child node pointer, the box of the child is checked when the child is visited
+			for(int i = 0; i < maxNodeSize; i++) {
+				final int childPointer = memory.getInt(pos);
+				pos += DataEncoderHelper.INT_BYTES;
+				
+				if(childPointer != CHILD_NODE_NOT_EXISTING) {
+					batchQuery.pushNode(childPointer, nodeProbes);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Decode the node with a variable size for the pinned upper levels of the tree. 
+	 * The box of a child node is read from the child node.
+	 * 
+	 * @param memory
+	 * @param nodePos
+	 * @param visitor
+	 */
+	private void decodeVariableNode(final ByteBuffer memory, final int nodePos, 
+			final RTreePinnedNodes.NodeVisitor visitor) {
+		
+		final int valueBytes = longEntryValues ? DataEncoderHelper.LONG_BYTES : DataEncoderHelper.INT_BYTES;
+		final int nodeBoxLength = memory.getInt(nodePos + DataEncoderHelper.INT_BYTES);
+		int pos = nodePos + 2 * DataEncoderHelper.INT_BYTES + nodeBoxLength;
+		
+		for(int i = 0; i < maxNodeSize; i++) {
+			final int magic = memory.getInt(pos);
+			pos += DataEncoderHelper.INT_BYTES;
+			
+			if(magic == CHILD_NODE_NOT_EXISTING) {
+				continue;
+			}
+			
+			if(magic != CHILD_NODE_FOLLOWING) {
+				throw new IllegalArgumentException("Unknown node type following: " + magic);
+			}
+			
+			final int boxLength = memory.getInt(pos + valueBytes);
+			final int boxPos = pos + valueBytes + DataEncoderHelper.INT_BYTES;
+			final long value = longEntryValues ? memory.getLong(pos) : memory.getInt(pos);
+			visitor.visitEntry(readBoundingBox(memory, boxPos, boxLength).toDoubleArray(), value);
+			pos = boxPos + boxLength;
+		}
+		
+		for(int i = 0; i < maxNodeSize; i++) {
+			final int childPointer = memory.getInt(pos);
+			pos += DataEncoderHelper.INT_BYTES;
+			
+			if(childPointer == CHILD_NODE_NOT_EXISTING) {
+				continue;
+			}
+			
+			final int childBoxLength = memory.getInt(childPointer + DataEncoderHelper.INT_BYTES);
+			final int childBoxPos = childPointer + 2 * DataEncoderHelper.INT_BYTES;
+			final Hyperrectangle childBox = readBoundingBox(memory, childBoxPos, childBoxLength);
+			visitor.visitChild(childBox.toDoubleArray(), childPointer);
+		}
+	}
+	
+	/**
+	 * Decode the bounding box at the given position
+	 * @param memory
+	 * @param boxPos
+	 * @param boxLength
+	 * @return
+	 */
+	private static Hyperrectangle readBoundingBox(final ByteBuffer memory, final int boxPos, 
+			final int boxLength) {
+		
+		final byte[] boxBytes = new byte[boxLength];
+		memory.get(boxPos, boxBytes);
+		return Hyperrectangle.fromByteArray(boxBytes);
+	}
+}
@@ -19,6 +19,7 @@ package org.bboxdb.storage.sstable.spatialindex.rtree.mmf;
 
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
@@ -34,15 +35,16 @@ import org.bboxdb.misc.Const;
 import org.bboxdb.storage.StorageManagerException;
 import org.bboxdb.storage.sstable.spatialindex.SpatialIndexEntry;
 import org.bboxdb.storage.sstable.spatialindex.rtree.AbstractRTreeReader;
+import org.bboxdb.storage.sstable.spatialindex.rtree.RTreeCompactLayout;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class RTreeMMFReader extends AbstractRTreeReader {
 
 	/**
-	 * The mapped memory
+	 * The mapped memory, the queries use own views of the memory
 	 */
-	private MappedByteBuffer memory;
+	private volatile MappedByteBuffer memory;
 	
 	/**
 	 * The file channel
@@ -54,6 +56,11 @@ public class RTreeMMFReader extends AbstractRTreeReader {
 	 */
 	private volatile int firstNodePos;
 	
+	/**
+	 * The layout of the index (only set for indices with fixed size nodes)
+	 */
+	private volatile RTreeCompactLayout compactLayout;
+	
 	/**
 	 * The Logger
 	 */
@@ -73,6 +80,10 @@ public class RTreeMMFReader extends AbstractRTreeReader {
 			final long size = fileChannel.size();
 			memory = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, size);
 			memory.order(Const.APPLICATION_BYTE_ORDER);
+			
+			if(compactFormat) {
+				compactLayout = RTreeCompactLayout.fromBuffer(memory);
+			}
 		} catch (IOException e) {
 			throw new StorageManagerException(e);
 		}
@@ -81,9 +92,11 @@ public class RTreeMMFReader extends AbstractRTreeReader {
 	@Override
 	public void close() {
 		
-		if(memory != null) {
-			UnsafeMemoryHelper.unmapMemory(memory);
+		final MappedByteBuffer mappedMemory = memory;
+		
+		if(mappedMemory != null) {
 			memory = null;
+			UnsafeMemoryHelper.unmapMemory(mappedMemory);
 		}
 		
 		if(fileChannel != null) {
@@ -96,10 +109,56 @@ public class RTreeMMFReader extends AbstractRTreeReader {
 		}
 	}
 
+	/**
+	 * Get the mapped memory (null if the reader is closed)
+	 * @return
+	 */
+	protected MappedByteBuffer getMappedMemory() {
+		return memory;
+	}
+	
+	/**
+	 * Get the position of the first node
+	 * @return
+	 */
+	protected int getFirstNodePos() {
+		return firstNodePos;
+	}
+	
+	/**
+	 * Get the layout of the index (null for indices with variable size nodes)
+	 * @return
+	 */
+	protected RTreeCompactLayout getCompactLayout() {
+		return compactLayout;
+	}
+
 	@Override
-	public synchronized List<SpatialIndexEntry> getEntriesForRegion(final Hyperrectangle boundingBox) 
+	public List<SpatialIndexEntry> getEntriesForRegion(final Hyperrectangle boundingBox) 
 			throws StorageManagerException {
 		
+		final MappedByteBuffer mappedMemory = memory;
+		
+		if(mappedMemory == null) {
+			throw new StorageManagerException("The spatial index is closed");
+		}
+		
+		if(compactLayout != null) {
+			final List<SpatialIndexEntry> resultList = new ArrayList<>();
+			
+			try {
+				compactLayout.queryIndex(mappedMemory, boundingBox, resultList);
+			} catch (IndexOutOfBoundsException e) {
+				throw new StorageManagerException("Unable to read spatial index", e);
+			}
+			
+			return resultList;
+		}
+		
+		// The position of the view is independent of other queries
+		final ByteBuffer view = mappedMemory.duplicate();
+		view.order(Const.APPLICATION_BYTE_ORDER);
+		
 		final List<SpatialIndexEntry> resultList = new ArrayList<>();
 		final Queue<Integer> readTasks = new LinkedTransferQueue<>();
 		readTasks.add(firstNodePos);
@@ -109,9 +168,9 @@ public class RTreeMMFReader extends AbstractRTreeReader {
 			while(! readTasks.isEmpty()) {
 			
 				final int position = readTasks.remove();
-				memory.position(position);
+				view.position(position);
 				final DirectoryNode directoryNode = new DirectoryNode();
-				directoryNode.initFromByteBuffer(memory, maxNodeSize);
+				directoryNode.initFromByteBuffer(view, maxNodeSize, longEntryValues);
 				
 				if(directoryNode.getBoundingBox().intersects(boundingBox)) {
 					
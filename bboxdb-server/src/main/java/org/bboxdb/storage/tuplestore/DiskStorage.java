@@ -36,6 +36,8 @@ import org.bboxdb.storage.tuplestore.manager.TupleStoreManagerRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.annotations.VisibleForTesting;
+
 import io.prometheus.client.Gauge;
 
 public class DiskStorage implements BBoxDBService {
@@ -45,6 +47,11 @@ public class DiskStorage implements BBoxDBService {
 	 */
 	public final List<Thread> runningThreads = new ArrayList<>();
 	
+	/**
+	 * The running compact and checkpoint threads
+	 */
+	private final List<Thread> serviceThreads = new ArrayList<>();
+	
 	/**
 	 * The state of the service
 	 */
@@ -150,6 +157,7 @@ public class DiskStorage implements BBoxDBService {
 		compactThread.setName("Compact thread for: " + basedir);
 		compactThread.start();
 		runningThreads.add(compactThread);
+		serviceThreads.add(compactThread);
 	}
 	
 	/**
@@ -164,6 +172,7 @@ public class DiskStorage implements BBoxDBService {
 			checkpointThread.setName("Checkpoint thread for: " + basedir);
 			checkpointThread.start();
 			runningThreads.add(checkpointThread);
+			serviceThreads.add(checkpointThread);
 		}
 	}
 
@@ -181,8 +190,22 @@ public class DiskStorage implements BBoxDBService {
 		ThreadHelper.stopThreads(runningThreads);
 		
 		runningThreads.clear();
+		serviceThreads.clear();
 		serviceState.dispatchToTerminated();
 	}
+	
+	/**
+	 * Stop the compact and the checkpoint thread, the flush threads keep running. 
+	 * No background task changes the SSTables of the storage afterwards.
+	 */
+	@VisibleForTesting
+	public void stopServiceThreads() {
+		logger.info("Stop service threads");
+		ThreadHelper.stopThreads(serviceThreads);
+		
+		runningThreads.removeAll(serviceThreads);
+		serviceThreads.clear();
+	}
 
 	@Override
 	public String getServicename() {
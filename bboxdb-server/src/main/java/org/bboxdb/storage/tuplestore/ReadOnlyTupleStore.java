@@ -17,11 +17,13 @@
  *******************************************************************************/
 package org.bboxdb.storage.tuplestore;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
 import org.bboxdb.commons.concurrent.AcquirableResource;
 import org.bboxdb.commons.math.Hyperrectangle;
+import org.bboxdb.commons.math.HyperrectangleHelper;
 import org.bboxdb.storage.StorageManagerException;
 import org.bboxdb.storage.entity.Tuple;
 import org.bboxdb.storage.entity.TupleStoreName;
@@ -55,6 +57,38 @@ public interface ReadOnlyTupleStore extends Iterable<Tuple>, AcquirableResource
 	 */
 	public Iterator<Tuple> getAllTuplesInBoundingBox(final Hyperrectangle boundingBox);
 	
+	/**
+	 * Get all tuples that are inside the bounding boxes
+	 * @param boundingBoxes
+	 * @return the tuples for each bounding box
+	 */
+	public default List<List<Tuple>> getAllTuplesInBoundingBoxes(final List<Hyperrectangle> boundingBoxes) {
+		final List<List<Tuple>> result = new ArrayList<>(boundingBoxes.size());
+		
+		for(final Hyperrectangle boundingBox : boundingBoxes) {
+			final List<Tuple> tuples = new ArrayList<>();
+			getAllTuplesInBoundingBox(boundingBox).forEachRemaining(tuples::add);
+			result.add(tuples);
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Get the tuples in the order of the distance of their bounding box to the query 
+	 * box. The default implementation sorts all tuples, tuple stores with a R-tree 
+	 * read the tuples best-first and only as far as the iterator is consumed.
+	 * 
+	 * @param queryBox
+	 * @return
+	 */
+	public default Iterator<Tuple> getAllTuplesByDistance(final Hyperrectangle queryBox) {
+		final List<Tuple> tuples = new ArrayList<>();
+		getAllTuplesInBoundingBox(Hyperrectangle.FULL_SPACE).forEachRemaining(tuples::add);
+		tuples.sort(HyperrectangleHelper.getDistanceComparator(queryBox, Tuple::getBoundingBox));
+		return tuples.iterator();
+	}
+	
 	/**
 	 * Get the number of tuples in the storage
 	 * @return
@@ -87,6 +121,25 @@ public interface ReadOnlyTupleStore extends Iterable<Tuple>, AcquirableResource
 	 */
 	public long getNewestTupleInsertedTimestamp();
 	
+	/**
+	 * Get a box that covers the bounding boxes of all tuples. Tuple stores 
+	 * that don't track the extent of the tuples return the full space.
+	 * @return
+	 */
+	public default Hyperrectangle getCoveringBox() {
+		return Hyperrectangle.FULL_SPACE;
+	}
+	
+	/**
+	 * Is the key between the smallest and the largest key of the tuple store. Tuple 
+	 * stores that don't track the key range return always true.
+	 * @param key
+	 * @return
+	 */
+	public default boolean isKeyInRange(final String key) {
+		return true;
+	}
+	
 	/**
 	 * Delete the object and persistent data as soon as usage == 0
 	 */
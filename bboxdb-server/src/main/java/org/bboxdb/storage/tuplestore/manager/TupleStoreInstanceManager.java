@@ -23,7 +23,7 @@ import java.util.Collections;
 import java.util.List;
 
 import org.bboxdb.storage.StorageManagerException;
-import org.bboxdb.storage.memtable.Memtable;
+import org.bboxdb.storage.memtable.AbstractMemtable;
 import org.bboxdb.storage.sstable.reader.SSTableFacade;
 import org.bboxdb.storage.tuplestore.ReadOnlyTupleStore;
 import org.slf4j.Logger;
@@ -39,12 +39,12 @@ public class TupleStoreInstanceManager {
 	/**
 	 * The active memtable
 	 */
-	private Memtable memtable;
+	private AbstractMemtable memtable;
 	
 	/**
 	 * The unflushed memtables
 	 */
-	private final List<Memtable> unflushedMemtables;
+	private final List<AbstractMemtable> unflushedMemtables;
 	
 	/**
 	 * The reader for existing SSTables
@@ -75,24 +75,34 @@ public class TupleStoreInstanceManager {
 	 * @param newMemtable
 	 * @return 
 	 */
-	public synchronized Memtable activateNewMemtable(final Memtable newMemtable) {
+	public synchronized AbstractMemtable activateNewMemtable(final AbstractMemtable newMemtable) {
 		
 		if(memtable != null) {
 			unflushedMemtables.add(memtable);
 		}	
 		
-		final Memtable oldMemtable = memtable;
+		final AbstractMemtable oldMemtable = memtable;
 		memtable = newMemtable;
 		
 		return oldMemtable;
 	}
 	
+	/**
+	 * Add a memtable that is not the active memtable (e.g., a memtable 
+	 * that is recovered from a write ahead log) to the unflushed memtable list
+	 * 
+	 * @param unflushedMemtable
+	 */
+	public synchronized void addUnflushedMemtable(final AbstractMemtable unflushedMemtable) {
+		unflushedMemtables.add(unflushedMemtable);
+	}
+	
 	/**
 	 * After the flush, the memtable can be replaced with an sstable facade
 	 * @param memtable
 	 * @param sstableFacade
 	 */
-	public synchronized void replaceMemtableWithSSTable(final Memtable memtable, 
+	public synchronized void replaceMemtableWithSSTable(final AbstractMemtable memtable, 
 			final SSTableFacade sstableFacade) {
 		
 		//logger.debug("Replacing memtable {} with sstable {}", memtable, sstableFacade);
@@ -182,7 +192,7 @@ public class TupleStoreInstanceManager {
 	 * Get the active memtable
 	 * @return
 	 */
-	public Memtable getMemtable() {
+	public AbstractMemtable getMemtable() {
 		return memtable;
 	}
 	
@@ -212,7 +222,7 @@ public class TupleStoreInstanceManager {
 	 * @throws InterruptedException 
 	 * @throws StorageManagerException 
 	 */
-	public synchronized void waitForMemtableFlush(final Memtable memtable) 
+	public synchronized void waitForMemtableFlush(final AbstractMemtable memtable) 
 			throws InterruptedException, StorageManagerException {
 		
 		//logger.info("Waiting for flush {} / {}", memtable.getInternalName(), unflushedMemtables);
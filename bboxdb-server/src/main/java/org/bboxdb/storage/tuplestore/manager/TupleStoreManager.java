@@ -24,6 +24,8 @@ import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.BiConsumer;
 
 import org.bboxdb.commons.DuplicateResolver;
@@ -42,18 +44,21 @@ import org.bboxdb.misc.BBoxDBConfiguration;
 import org.bboxdb.misc.BBoxDBException;
 import org.bboxdb.misc.BBoxDBService;
 import org.bboxdb.storage.StorageManagerException;
+import org.bboxdb.storage.entity.DeletedTuple;
 import org.bboxdb.storage.entity.DistributionGroupMetadata;
 import org.bboxdb.storage.entity.MemtableAndTupleStoreManagerPair;
 import org.bboxdb.storage.entity.Tuple;
 import org.bboxdb.storage.entity.TupleStoreConfiguration;
 import org.bboxdb.storage.entity.TupleStoreName;
-import org.bboxdb.storage.memtable.Memtable;
+import org.bboxdb.storage.memtable.AbstractMemtable;
+import org.bboxdb.storage.memtable.MemtableFactory;
 import org.bboxdb.storage.sstable.SSTableConst;
 import org.bboxdb.storage.sstable.SSTableHelper;
 import org.bboxdb.storage.sstable.duplicateresolver.TupleDuplicateResolverFactory;
 import org.bboxdb.storage.sstable.reader.SSTableFacade;
 import org.bboxdb.storage.tuplestore.DiskStorage;
 import org.bboxdb.storage.tuplestore.ReadOnlyTupleStore;
+import org.bboxdb.storage.wal.WriteAheadLogDurability;
 import org.bboxdb.storage.wal.WriteAheadLogManager;
 import org.bboxdb.storage.wal.WriteAheadLogReader;
 import org.bboxdb.storage.wal.WriteAheadLogWriter;
@@ -109,6 +114,12 @@ public class TupleStoreManager implements BBoxDBService {
 	 */
 	protected final BlockingQueueWithSingleExecutor callbackExecutor;
 	
+	/**
+	 * The memtable lock. Writers hold the read lock while they put data 
+	 * into the active memtable, the write lock is needed to replace the memtable.
+	 */
+	protected final ReadWriteLock memtableLock;
+	
 	/**
 	 * The get performance counter
 	 */
@@ -133,6 +144,7 @@ public class TupleStoreManager implements BBoxDBService {
 		this.nextFreeTableNumber = new AtomicInteger();
 		this.tupleStoreInstances = new TupleStoreInstanceManager();
 		this.insertCallbacks = new CopyOnWriteArrayList<>();
+		this.memtableLock = new ReentrantReadWriteLock();
 		
 		// Prevent race conditions between watermarks and callbacks by 
 		// limiting the thread pool to one.
@@ -166,10 +178,12 @@ public class TupleStoreManager implements BBoxDBService {
 
 			tupleStoreInstances.clear();
 
-			initNewMemtable();
 			scanForExistingTables();
 			loadTuplstoreMetaData();
 
+			// The metadata is needed to determine the memtable type
+			initNewMemtable();
+
 			nextFreeTableNumber.set(getLastSequencenumberFromReader() + 1);
 			tupleStoreInstances.setReadWrite();
 
@@ -228,6 +242,13 @@ public class TupleStoreManager implements BBoxDBService {
 			Thread.currentThread().interrupt();
 		}
 		
+		// The memory of the not flushed memtables is no longer used by this instance
+		for(final ReadOnlyTupleStore tupleStore : tupleStoreInstances.getAllInMemoryStorages()) {
+			if(tupleStore instanceof AbstractMemtable) {
+				((AbstractMemtable) tupleStore).releaseWriteBufferMemory();
+			}
+		}
+		
 		for(final BBoxDBService service : tupleStoreInstances.getSstableFacades()) {
 			try {
 				service.shutdown();
@@ -244,7 +265,7 @@ public class TupleStoreManager implements BBoxDBService {
 	 * @return
 	 */
 	public boolean flush() {
-		final Memtable activeMemtable = tupleStoreInstances.getMemtable();
+		final AbstractMemtable activeMemtable = tupleStoreInstances.getMemtable();
 
 		if(activeMemtable == null) {
 			return true;
@@ -268,28 +289,84 @@ public class TupleStoreManager implements BBoxDBService {
 	}
 
 	/**
-	 * Apply the old write ahead logs
+	 * Apply the old write ahead logs. The memtables are rebuilt directly from
+	 * the logs (without writing a new log) and scheduled for flushing. A log
+	 * is deleted after all of its memtables are flushed.
 	 */
 	private void applyWal() {
 		final String storageDir = storage.getBasedir().getAbsolutePath();
 		final String baseDir = SSTableHelper.getSSTableDir(storageDir, tupleStoreName);
 
 		final List<File> walFiles = WriteAheadLogManager.getAllWalFiles(new File(baseDir));
-		logger.debug("Apply old WAL files {}", walFiles);
-
-		for(final File walFile: walFiles) {
-			try(
-					final WriteAheadLogReader reader = new WriteAheadLogReader(walFile);
-			){
-				for(final Tuple tuple : reader) {
-					put(tuple);
+
+		if(walFiles.isEmpty()) {
+			return;
+		}
+
+		logger.info("Replaying {} WAL files for table {}", walFiles.size(), tupleStoreName.getFullname());
+
+		walFiles.parallelStream().forEach(this::replayWal);
+	}
+
+	/**
+	 * Rebuild the memtables of the write ahead log
+	 * @param walFile
+	 */
+	private void replayWal(final File walFile) {
+		final List<AbstractMemtable> memtables = new ArrayList<>();
+		boolean replayComplete = false;
+
+		try(final WriteAheadLogReader reader = new WriteAheadLogReader(walFile)) {
+			AbstractMemtable memtable = null;
+
+			for(final Tuple tuple : reader) {
+				if(memtable == null || memtable.isFull()
+						|| memtable.tryPut(tuple) == AbstractMemtable.MEMTABLE_FULL) {
+					memtable = createMemtable(null);
+					memtables.add(memtable);
+					memtable.put(tuple);
 				}
+			}
 
-				reader.close();
-				reader.deleteFile();
-			} catch (Exception e) {
-				logger.error("Got an exception while applying WAL", e);
+			reader.truncateTornTail();
+			replayComplete = true;
+		} catch (Exception e) {
+			logger.error("Got an exception while applying WAL " + walFile, e);
+		}
+
+		if(memtables.isEmpty()) {
+			if(replayComplete) {
+				deleteWalFile(walFile);
 			}
+			return;
+		}
+
+		final AtomicInteger unflushedMemtables = new AtomicInteger(memtables.size());
+
+		for(final AbstractMemtable memtable : memtables) {
+
+			// The log is kept if it could not be read completely
+			if(replayComplete) {
+				memtable.registerDeleteCallback(() -> {
+					if(unflushedMemtables.decrementAndGet() == 0) {
+						deleteWalFile(walFile);
+					}
+				});
+			}
+
+			memtable.setImmutable();
+			tupleStoreInstances.addUnflushedMemtable(memtable);
+			storage.scheduleMemtableFlush(new MemtableAndTupleStoreManagerPair(memtable, this));
+		}
+	}
+
+	/**
+	 * Delete the given write ahead log
+	 * @param walFile
+	 */
+	private void deleteWalFile(final File walFile) {
+		if(walFile.exists() && ! walFile.delete()) {
+			logger.error("Unable to delete WAL {}", walFile);
 		}
 	}
 
@@ -576,6 +653,11 @@ public class TupleStoreManager implements BBoxDBService {
 			if(! file.delete() && file.exists()) {
 				throw new RuntimeException("Unable to delete file: " + file);
 			}
+		} else if(SSTableHelper.isFileNameSSTableKeyIndex(filename)) {
+			logger.info("Deleting key index file: {} ", file);
+			if(! file.delete() && file.exists()) {
+				throw new RuntimeException("Unable to delete file: " + file);
+			}
 		} else if(SSTableHelper.isFileNameSSTableBloomFilter(filename)) {
 			logger.info("Deleting bloom filter file: {} ", file);
 			if(! file.delete() && file.exists()) {
@@ -669,27 +751,107 @@ public class TupleStoreManager implements BBoxDBService {
 	 * Open a new memtable and schedule the old memtable for flushing
 	 * @throws StorageManagerException
 	 */
-	public synchronized void initNewMemtable() {
+	public void initNewMemtable() {
 
-		final WriteAheadLogWriter walWriter = getWriteAheadLogWriter();
+		memtableLock.writeLock().lock();
 
-		final Memtable memtable = new Memtable(tupleStoreName,
-				configuration.getMemtableEntriesMax(),
+		try {
+			final AbstractMemtable memtable = createMemtable(getWriteAheadLogWriter());
+			final AbstractMemtable oldMemtable = tupleStoreInstances.activateNewMemtable(memtable);
+
+			if(oldMemtable != null) {
+				oldMemtable.setImmutable();
+
+				final MemtableAndTupleStoreManagerPair memtableTask
+					= new MemtableAndTupleStoreManagerPair(oldMemtable, this);
+
+				storage.scheduleMemtableFlush(memtableTask);
+			}
+
+			logger.debug("Activated a new memtable: {}", memtable.getInternalName());
+		} finally {
+			memtableLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Create and acquire a new memtable
+	 * @param walWriter - the write ahead log of the memtable or null
+	 * @return
+	 */
+	private AbstractMemtable createMemtable(final WriteAheadLogWriter walWriter) {
+		final AbstractMemtable memtable = MemtableFactory.getInstance(tupleStoreConfiguration,
+				tupleStoreName, configuration.getMemtableEntriesMax(),
 				configuration.getMemtableSizeMax(), walWriter);
 
+		memtable.setWriteBufferManager(getWriteBufferManager());
 		memtable.acquire();
 		memtable.init();
 
-		final Memtable oldMemtable = tupleStoreInstances.activateNewMemtable(memtable);
+		return memtable;
+	}
+
+	/**
+	 * Replace the given memtable with a new one, if it is still the active memtable
+	 * @param activeMemtable
+	 */
+	public void replaceActiveMemtable(final AbstractMemtable activeMemtable) {
+		memtableLock.writeLock().lock();
+
+		try {
+			// Another writer has already replaced the memtable
+			if(getMemtable() == activeMemtable) {
+				initNewMemtable();
+			}
+		} finally {
+			memtableLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Put the tuple into the active memtable. Multiple writers can insert
+	 * data in parallel, a full memtable is replaced under the write lock.
+	 *
+	 * @param tuple
+	 * @throws StorageManagerException
+	 */
+	private void putIntoMemtable(final Tuple tuple) throws StorageManagerException {
+
+		// Can block, so it is called before the memtable lock is acquired
+		getWriteBufferManager().beforeWrite();
 
-		if(oldMemtable != null) {
-			final MemtableAndTupleStoreManagerPair memtableTask
-				= new MemtableAndTupleStoreManagerPair(oldMemtable, this);
+		while(true) {
+			final AbstractMemtable memtable;
+			long walPosition = AbstractMemtable.MEMTABLE_FULL;
+
+			memtableLock.readLock().lock();
+
+			try {
+				memtable = getMemtable();
+
+				if(! memtable.isFull()) {
+					walPosition = memtable.tryPut(tuple);
+				}
+			} finally {
+				memtableLock.readLock().unlock();
+			}
+
+			// Wait for the group commit of the own WAL record outside of the lock
+			if(walPosition != AbstractMemtable.MEMTABLE_FULL) {
+				memtable.awaitWalDurability(walPosition);
+				return;
+			}
 
-			storage.scheduleMemtableFlush(memtableTask);
+			replaceActiveMemtable(memtable);
 		}
+	}
 
-		logger.debug("Activated a new memtable: {}", memtable.getInternalName());
+	/**
+	 * Get the node-wide write buffer manager
+	 * @return
+	 */
+	private WriteBufferManager getWriteBufferManager() {
+		return storage.getTupleStoreManagerRegistry().getWriteBufferManager();
 	}
 
 	/**
@@ -706,7 +868,10 @@ public class TupleStoreManager implements BBoxDBService {
 		final String ssTableDir = SSTableHelper.getSSTableDir(storageDir, tupleStoreName);
 
 		try {
-			return new WriteAheadLogWriter(new File(ssTableDir), System.currentTimeMillis());
+			final WriteAheadLogDurability durability = WriteAheadLogDurability.fromString(
+					configuration.getStorageWriteAheadLogDurability());
+
+			return new WriteAheadLogWriter(new File(ssTableDir), System.currentTimeMillis(), durability);
 		} catch (IOException e) {
 			logger.error("Unable to create write ahead log writer", e);
 			return null;
@@ -739,20 +904,13 @@ public class TupleStoreManager implements BBoxDBService {
 		}
 
 		try {
-			// Ensure that only one memtable is newly created			
 			if(storeOnDisk && tuple.isPersistentTuple()) {
 				
 				if(tupleStoreInstances.getState() == TupleStoreManagerState.READ_ONLY) {
 					throw new RejectedException("Storage manager is in read only state: " + tupleStoreName);
 				}
 				
-				synchronized (this) {
-					if(getMemtable().isFull()) {
-						initNewMemtable();
-					}
-	
-					getMemtable().put(tuple);
-				}
+				putIntoMemtable(tuple);
 			}
 
 			// Notify callbacks
@@ -789,15 +947,8 @@ public class TupleStoreManager implements BBoxDBService {
 			throw new RejectedException("Storage manager is in read only state: " + tupleStoreName);
 		}
 
-		// Ensure that only one memtable is newly created
 		try {
-			synchronized (this) {
-				if(getMemtable().isFull()) {
-					initNewMemtable();
-				}
-
-				getMemtable().delete(key, timestamp);
-			}
+			putIntoMemtable(new DeletedTuple(key, timestamp));
 		} catch (StorageManagerException e) {
 			serviceState.dispatchToFailed(e);
 			throw e;
@@ -811,7 +962,7 @@ public class TupleStoreManager implements BBoxDBService {
 	 * @param sstableFacade
 	 * @throws RejectedException
 	 */
-	public void replaceMemtableWithSSTable(final Memtable memtable, final SSTableFacade sstableFacade)
+	public void replaceMemtableWithSSTable(final AbstractMemtable memtable, final SSTableFacade sstableFacade)
 			throws RejectedException {
 
 		if(tupleStoreInstances.getState() == TupleStoreManagerState.READ_ONLY) {
@@ -865,7 +1016,7 @@ public class TupleStoreManager implements BBoxDBService {
 	 * Get the active memtable
 	 * @return
 	 */
-	public Memtable getMemtable() {
+	public AbstractMemtable getMemtable() {
 		return tupleStoreInstances.getMemtable();
 	}
 
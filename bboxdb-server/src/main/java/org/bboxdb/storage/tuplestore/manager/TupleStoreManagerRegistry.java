@@ -28,6 +28,9 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -40,9 +43,11 @@ import org.bboxdb.misc.BBoxDBService;
 import org.bboxdb.storage.StorageManagerException;
 import org.bboxdb.storage.entity.TupleStoreConfiguration;
 import org.bboxdb.storage.entity.TupleStoreName;
+import org.bboxdb.storage.sstable.SSTableConst;
 import org.bboxdb.storage.sstable.SSTableHelper;
 import org.bboxdb.storage.tuplestore.DiskStorage;
 import org.bboxdb.storage.tuplestore.TupleStoreLocator;
+import org.bboxdb.storage.wal.WriteAheadLogManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -86,6 +91,11 @@ public class TupleStoreManagerRegistry implements BBoxDBService {
 	 */
 	private final TupleStoreZookeeperObserver zookeeperObserver;
 
+	/**
+	 * The node-wide memtable memory manager
+	 */
+	private final WriteBufferManager writeBufferManager;
+
 	/**
 	 * The logger
 	 */
@@ -103,6 +113,8 @@ public class TupleStoreManagerRegistry implements BBoxDBService {
 		this.flushCallbacks = new CopyOnWriteArrayList<>();
 		this.serviceState = new ServiceState();
 		this.zookeeperObserver = new TupleStoreZookeeperObserver(this);
+		this.writeBufferManager = new WriteBufferManager(configuration.getMemtableGlobalSizeMax(),
+				() -> managerInstances.values());
 	}
 
 	/**
@@ -150,9 +162,66 @@ public class TupleStoreManagerRegistry implements BBoxDBService {
 			}
 		}
 
+		recoverTupleStoresFromWal();
+
 		serviceState.dispatchToRunning();
 	}
 
+	/**
+	 * Open the tuple stores with old write ahead logs in parallel. The memtables 
+	 * are rebuilt from the logs when the tuple store managers are initialized.
+	 * 
+	 * @throws InterruptedException
+	 */
+	private void recoverTupleStoresFromWal() throws InterruptedException {
+		final List<TupleStoreManager> recoveryManagers = new ArrayList<>();
+
+		for(final Map.Entry<TupleStoreName, String> entry : tupleStoreLocations.entrySet()) {
+			final DiskStorage storage = storages.get(entry.getValue());
+			final String storageDir = storage.getBasedir().getAbsolutePath();
+			final String sstableDir = SSTableHelper.getSSTableDir(storageDir, entry.getKey());
+
+			if(WriteAheadLogManager.getAllWalFiles(new File(sstableDir)).isEmpty()) {
+				continue;
+			}
+
+			final File metadataFile = new File(sstableDir + File.separatorChar + SSTableConst.TUPLE_STORE_METADATA);
+
+			if(! metadataFile.exists()) {
+				logger.warn("Not recovering WAL of table {}, metadata file is missing", entry.getKey());
+				continue;
+			}
+
+			recoveryManagers.add(new TupleStoreManager(storage, entry.getKey(), configuration));
+		}
+
+		if(recoveryManagers.isEmpty()) {
+			return;
+		}
+
+		logger.info("Recovering {} tuple stores from write ahead logs", recoveryManagers.size());
+
+		final int threads = Math.min(recoveryManagers.size(), Runtime.getRuntime().availableProcessors());
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+		try {
+			for(final TupleStoreManager tupleStoreManager : recoveryManagers) {
+				executor.submit(tupleStoreManager::init);
+			}
+
+			executor.shutdown();
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} finally {
+			executor.shutdownNow();
+		}
+
+		for(final TupleStoreManager tupleStoreManager : recoveryManagers) {
+			if(tupleStoreManager.getServiceState().isInRunningState()) {
+				managerInstances.put(tupleStoreManager.getTupleStoreName(), tupleStoreManager);
+			}
+		}
+	}
+
 	/**
 	 * Get the storage manager for a given table. If the storage manager does not
 	 * exist, it will be created
@@ -543,6 +612,14 @@ public class TupleStoreManagerRegistry implements BBoxDBService {
 		return configuration;
 	}
 
+	/**
+	 * Get the write buffer manager
+	 * @return
+	 */
+	public WriteBufferManager getWriteBufferManager() {
+		return writeBufferManager;
+	}
+
 	@Override
 	public String getServicename() {
 		return "The storage registry";
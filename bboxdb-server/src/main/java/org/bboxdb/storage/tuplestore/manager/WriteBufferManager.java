@@ -0,0 +1,335 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *******************************************************************************/
+package org.bboxdb.storage.tuplestore.manager;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.bboxdb.commons.FileSizeHelper;
+import org.bboxdb.storage.memtable.AbstractMemtable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.prometheus.client.Gauge;
+
+/**
+ * The write buffer manager bounds the memory of all memtables of the node. When
+ * the memory usage is high, the largest memtables are flushed and the writes are
+ * throttled. When the budget is exhausted, the writes are blocked until
+ * memtables are flushed.
+ *
+ */
+public class WriteBufferManager {
+
+	/**
+	 * The memory budget for all memtables in bytes
+	 */
+	private final long budgetBytes;
+
+	/**
+	 * The bytes used by all memtables
+	 */
+	private final AtomicLong usedBytes = new AtomicLong();
+
+	/**
+	 * The bytes used by memtables that are scheduled for flushing
+	 */
+	private final AtomicLong immutableBytes = new AtomicLong();
+
+	/**
+	 * Is a flush triggered by this manager in progress
+	 */
+	private final AtomicBoolean flushInProgress = new AtomicBoolean();
+
+	/**
+	 * The lock for the blocked writes
+	 */
+	private final Lock memoryLock = new ReentrantLock();
+
+	/**
+	 * Signaled when memory is freed
+	 */
+	private final Condition memoryFreed = memoryLock.newCondition();
+
+	/**
+	 * The tuple store managers of the node
+	 */
+	private final Supplier<Collection<TupleStoreManager>> tupleStoreManagers;
+
+	/**
+	 * The mutable memtables are flushed above this fraction of the budget
+	 */
+	public final static double FLUSH_TRIGGER_FRACTION = 0.8;
+
+	/**
+	 * The writes are delayed above this fraction of the budget
+	 */
+	public final static double WRITE_THROTTLE_FRACTION = 0.9;
+
+	/**
+	 * The max delay of a write before the budget is exhausted
+	 */
+	public final static long MAX_WRITE_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	/**
+	 * The max time a write is blocked, afterwards the write is performed to
+	 * prevent a deadlock when no memtable can be flushed
+	 */
+	public final static long MAX_WRITE_STALL_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+	/**
+	 * The default budget (fraction of the max heap)
+	 */
+	public final static double DEFAULT_HEAP_FRACTION = 0.4;
+
+	/**
+	 * The budget
+	 */
+	private final static Gauge writeBufferBudgetBytes = Gauge.build()
+			.name("bboxdb_write_buffer_budget_bytes")
+			.help("Memory budget of all memtables").register();
+
+	/**
+	 * The used bytes
+	 */
+	private final static Gauge writeBufferUsedBytes = Gauge.build()
+			.name("bboxdb_write_buffer_used_bytes")
+			.help("Memory used by all memtables").register();
+
+	/**
+	 * The stall time
+	 */
+	private final static Gauge writeBufferStallSeconds = Gauge.build()
+			.name("bboxdb_write_buffer_stall_seconds")
+			.help("Total time writes were delayed or blocked by the write buffer manager").register();
+
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(WriteBufferManager.class);
+
+	public WriteBufferManager(final long budgetBytes,
+			final Supplier<Collection<TupleStoreManager>> tupleStoreManagers) {
+
+		this.budgetBytes = budgetBytes > 0 ? budgetBytes
+				: (long) (Runtime.getRuntime().maxMemory() * DEFAULT_HEAP_FRACTION);
+
+		this.tupleStoreManagers = tupleStoreManagers;
+
+		writeBufferBudgetBytes.set(this.budgetBytes);
+	}
+
+	/**
+	 * Memory is used by a memtable
+	 * @param bytes
+	 */
+	public void reserveMemory(final long bytes) {
+		final long usage = usedBytes.addAndGet(bytes);
+		writeBufferUsedBytes.set(usage);
+	}
+
+	/**
+	 * Memory is no longer used by a memtable
+	 * @param bytes
+	 * @param immutable
+	 */
+	public void freeMemory(final long bytes, final boolean immutable) {
+		if(immutable) {
+			immutableBytes.addAndGet(-bytes);
+		}
+
+		final long usage = usedBytes.addAndGet(-bytes);
+		writeBufferUsedBytes.set(usage);
+
+		if(usage < budgetBytes) {
+			memoryLock.lock();
+			try {
+				memoryFreed.signalAll();
+			} finally {
+				memoryLock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * A memtable with the given size is scheduled for flushing
+	 * @param bytes
+	 */
+	public void markImmutable(final long bytes) {
+		immutableBytes.addAndGet(bytes);
+	}
+
+	/**
+	 * Should the mutable memtables be flushed. The memory of the scheduled
+	 * memtables is freed after the flush, so a flush is only triggered when
+	 * enough memory is used by the active memtables.
+	 * @return
+	 */
+	public boolean shouldFlush() {
+		final long usage = usedBytes.get();
+		final long mutableUsage = usage - immutableBytes.get();
+
+		if(mutableUsage >= budgetBytes * FLUSH_TRIGGER_FRACTION) {
+			return true;
+		}
+
+		return usage >= budgetBytes && mutableUsage >= budgetBytes / 2;
+	}
+
+	/**
+	 * Called before a tuple is written. Flushes memtables if needed and delays
+	 * the write (graded) when the memory usage is high. When the budget is
+	 * exhausted, the write is blocked until memory is freed.
+	 */
+	public void beforeWrite() {
+		if(shouldFlush()) {
+			flushLargestMemtable();
+		}
+
+		final long usage = usedBytes.get();
+		final long throttleBytes = (long) (budgetBytes * WRITE_THROTTLE_FRACTION);
+
+		if(usage < throttleBytes) {
+			return;
+		}
+
+		final long startTime = System.nanoTime();
+
+		if(usage < budgetBytes) {
+			final double fraction = (usage - throttleBytes) / (double) (budgetBytes - throttleBytes);
+			LockSupport.parkNanos((long) (fraction * MAX_WRITE_DELAY_NANOS));
+		} else {
+			waitForMemory();
+		}
+
+		final long stallTime = System.nanoTime() - startTime;
+		writeBufferStallSeconds.inc(stallTime / (double) TimeUnit.SECONDS.toNanos(1));
+	}
+
+	/**
+	 * Block until the memory usage is below the budget
+	 */
+	private void waitForMemory() {
+		final long waitUntil = System.currentTimeMillis() + MAX_WRITE_STALL_MILLIS;
+
+		logger.debug("Write buffer budget exhausted ({} of {}), blocking write",
+				FileSizeHelper.readableFileSize(usedBytes.get()),
+				FileSizeHelper.readableFileSize(budgetBytes));
+
+		memoryLock.lock();
+		try {
+			while(usedBytes.get() >= budgetBytes) {
+				final long remaining = waitUntil - System.currentTimeMillis();
+
+				if(remaining <= 0) {
+					logger.warn("Write was blocked for {} ms, performing write with {} of {} used",
+							MAX_WRITE_STALL_MILLIS, FileSizeHelper.readableFileSize(usedBytes.get()),
+							FileSizeHelper.readableFileSize(budgetBytes));
+					return;
+				}
+
+				if(! memoryFreed.await(Math.min(remaining, 100), TimeUnit.MILLISECONDS)) {
+					logger.trace("No memory was freed, {} of {} used", usedBytes.get(), budgetBytes);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			memoryLock.unlock();
+		}
+	}
+
+	/**
+	 * Flush the largest (and for the same size the oldest) active memtable of the node
+	 */
+	private void flushLargestMemtable() {
+
+		// Only one flush at the same time
+		if(! flushInProgress.compareAndSet(false, true)) {
+			return;
+		}
+
+		try {
+			TupleStoreManager flushManager = null;
+			AbstractMemtable flushMemtable = null;
+
+			for(final TupleStoreManager tupleStoreManager : tupleStoreManagers.get()) {
+
+				if(! tupleStoreManager.getServiceState().isInRunningState()) {
+					continue;
+				}
+
+				final AbstractMemtable memtable = tupleStoreManager.getMemtable();
+
+				if(memtable == null || memtable.isEmpty()) {
+					continue;
+				}
+
+				if(flushMemtable == null || memtable.getSize() > flushMemtable.getSize()
+						|| (memtable.getSize() == flushMemtable.getSize()
+							&& memtable.getCreatedTimestamp() < flushMemtable.getCreatedTimestamp())) {
+					flushManager = tupleStoreManager;
+					flushMemtable = memtable;
+				}
+			}
+
+			if(flushManager == null) {
+				return;
+			}
+
+			logger.debug("Write buffer usage is {} of {}, flushing memtable {}",
+					FileSizeHelper.readableFileSize(usedBytes.get()),
+					FileSizeHelper.readableFileSize(budgetBytes), flushMemtable.getInternalName());
+
+			flushManager.replaceActiveMemtable(flushMemtable);
+		} finally {
+			flushInProgress.set(false);
+		}
+	}
+
+	/**
+	 * Get the budget
+	 * @return
+	 */
+	public long getBudgetBytes() {
+		return budgetBytes;
+	}
+
+	/**
+	 * Get the used bytes
+	 * @return
+	 */
+	public long getUsedBytes() {
+		return usedBytes.get();
+	}
+
+	/**
+	 * Get the bytes of the memtables that are scheduled for flushing
+	 * @return
+	 */
+	public long getImmutableBytes() {
+		return immutableBytes.get();
+	}
+}
@@ -0,0 +1,248 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.storage.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.bboxdb.commons.io.UnsafeMemoryHelper;
+
+/**
+ * A read only file that is mapped into memory as a list of segments. A single
+ * MappedByteBuffer is limited to 2 GB, the segments allow the mapping of larger
+ * files. All methods use absolute positions in the file. Values that cross the
+ * border of two segments are copied.
+ */
+public final class MappedFileSegments {
+	
+	/**
+	 * The mapped segments
+	 */
+	private final MappedByteBuffer[] segments;
+	
+	/**
+	 * The size of a segment
+	 */
+	private final int segmentSize;
+	
+	/**
+	 * The size of the file
+	 */
+	private final long size;
+	
+	/**
+	 * The byte order
+	 */
+	private final ByteOrder byteOrder;
+	
+	/**
+	 * The default size of a segment (1 GB)
+	 */
+	public final static int DEFAULT_SEGMENT_SIZE = 1024 * 1024 * 1024;
+	
+	public MappedFileSegments(final FileChannel fileChannel, final int segmentSize, 
+			final ByteOrder byteOrder) throws IOException {
+		
+		this.segmentSize = segmentSize;
+		this.size = fileChannel.size();
+		this.byteOrder = byteOrder;
+		
+		final int numberOfSegments = (int) ((size + segmentSize - 1) / segmentSize);
+		this.segments = new MappedByteBuffer[Math.max(1, numberOfSegments)];
+		
+		for(int i = 0; i < segments.length; i++) {
+			final long segmentStart = (long) i * segmentSize;
+			final long segmentLength = Math.min(segmentSize, size - segmentStart);
+			segments[i] = fileChannel.map(FileChannel.MapMode.READ_ONLY, segmentStart, segmentLength);
+			segments[i].order(byteOrder);
+		}
+	}
+	
+	/**
+	 * Get the size of the file
+	 * @return
+	 */
+	public long size() {
+		return size;
+	}
+	
+	/**
+	 * Get the number of segments
+	 * @return
+	 */
+	public int getNumberOfSegments() {
+		return segments.length;
+	}
+	
+	/**
+	 * Read a byte
+	 * @param position
+	 * @return
+	 */
+	public byte get(final long position) {
+		return segments[getSegment(position)].get(getOffset(position));
+	}
+	
+	/**
+	 * Read a short
+	 * @param position
+	 * @return
+	 */
+	public short getShort(final long position) {
+		final int offset = getOffset(position);
+		
+		if(offset + Short.BYTES <= segmentSize) {
+			return segments[getSegment(position)].getShort(offset);
+		}
+		
+		return getBuffer(position, Short.BYTES).getShort();
+	}
+	
+	/**
+	 * Read an int
+	 * @param position
+	 * @return
+	 */
+	public int getInt(final long position) {
+		final int offset = getOffset(position);
+		
+		if(offset + Integer.BYTES <= segmentSize) {
+			return segments[getSegment(position)].getInt(offset);
+		}
+		
+		return getBuffer(position, Integer.BYTES).getInt();
+	}
+	
+	/**
+	 * Read a long
+	 * @param position
+	 * @return
+	 */
+	public long getLong(final long position) {
+		final int offset = getOffset(position);
+		
+		if(offset + Long.BYTES <= segmentSize) {
+			return segments[getSegment(position)].getLong(offset);
+		}
+		
+		return getBuffer(position, Long.BYTES).getLong();
+	}
+	
+	/**
+	 * Copy bytes into the destination array
+	 * @param position
+	 * @param destination
+	 * @param destinationOffset
+	 * @param length
+	 */
+	public void get(final long position, final byte[] destination, final int destinationOffset, 
+			final int length) {
+		
+		checkRange(position, length);
+		
+		long readPosition = position;
+		int copied = 0;
+		
+		while(copied < length) {
+			final int offset = getOffset(readPosition);
+			final int chunk = Math.min(length - copied, segmentSize - offset);
+			segments[getSegment(readPosition)].get(offset, destination, destinationOffset + copied, chunk);
+			copied += chunk;
+			readPosition += chunk;
+		}
+	}
+	
+	/**
+	 * Copy bytes into the destination array
+	 * @param position
+	 * @param destination
+	 */
+	public void get(final long position, final byte[] destination) {
+		get(position, destination, 0, destination.length);
+	}
+	
+	/**
+	 * Get a buffer for the given region. The position of the buffer is 
+	 * the start of the region and the limit is the end of the region. If the 
+	 * region is located in one segment, a view of the segment is returned, 
+	 * otherwise the region is copied.
+	 * 
+	 * @param position
+	 * @param length
+	 * @return
+	 */
+	public ByteBuffer getBuffer(final long position, final int length) {
+		checkRange(position, length);
+		
+		final int offset = getOffset(position);
+		
+		if(offset + length <= segmentSize) {
+			final ByteBuffer view = segments[getSegment(position)].duplicate();
+			view.order(byteOrder);
+			view.limit(offset + length);
+			view.position(offset);
+			return view;
+		}
+		
+		final byte[] bytes = new byte[length];
+		get(position, bytes);
+		return ByteBuffer.wrap(bytes).order(byteOrder);
+	}
+	
+	/**
+	 * Unmap all segments
+	 */
+	public void unmap() {
+		for(final MappedByteBuffer segment : segments) {
+			UnsafeMemoryHelper.unmapMemory(segment);
+		}
+	}
+	
+	/**
+	 * Check that the region is located in the file
+	 * @param position
+	 * @param length
+	 */
+	private void checkRange(final long position, final int length) {
+		if(position < 0 || length < 0 || position + length > size) {
+			throw new IndexOutOfBoundsException("Unable to read " + length 
+					+ " bytes at " + position + " file size is " + size);
+		}
+	}
+	
+	/**
+	 * Get the segment for the position
+	 * @param position
+	 * @return
+	 */
+	private int getSegment(final long position) {
+		return (int) (position / segmentSize);
+	}
+	
+	/**
+	 * Get the offset of the position in the segment
+	 * @param position
+	 * @return
+	 */
+	private int getOffset(final long position) {
+		return (int) (position % segmentSize);
+	}
+}
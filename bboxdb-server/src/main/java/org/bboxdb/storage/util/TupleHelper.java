@@ -29,6 +29,7 @@ import java.util.Comparator;
 import org.bboxdb.commons.io.DataEncoderHelper;
 import org.bboxdb.commons.math.Hyperrectangle;
 import org.bboxdb.storage.entity.DeletedTuple;
+import org.bboxdb.storage.entity.LazyTuple;
 import org.bboxdb.storage.entity.Tuple;
 import org.bboxdb.storage.sstable.SSTableConst;
 
@@ -36,11 +37,32 @@ import com.google.common.io.ByteStreams;
 
 public class TupleHelper {
 	
+	/**
+	 * The size of the tuple header (key length, box length, data length,
+	 * version timestamp and received timestamp)
+	 */
+	public final static int TUPLE_HEADER_BYTES = DataEncoderHelper.SHORT_BYTES 
+			+ 2 * DataEncoderHelper.INT_BYTES + 2 * DataEncoderHelper.LONG_BYTES;
+	
+	/**
+	 * The offsets of the header fields in a serialized tuple
+	 */
+	public final static int KEY_LENGTH_OFFSET = 0;
+	public final static int BOX_LENGTH_OFFSET = KEY_LENGTH_OFFSET + DataEncoderHelper.SHORT_BYTES;
+	public final static int DATA_LENGTH_OFFSET = BOX_LENGTH_OFFSET + DataEncoderHelper.INT_BYTES;
+	public final static int VERSION_TIMESTAMP_OFFSET = DATA_LENGTH_OFFSET + DataEncoderHelper.INT_BYTES;
+	public final static int RECEIVED_TIMESTAMP_OFFSET = VERSION_TIMESTAMP_OFFSET + DataEncoderHelper.LONG_BYTES;
+	
 	/**
 	 * Compare the tuples by key
 	 */
 	public final static Comparator<Tuple> TUPLE_KEY_COMPARATOR = 
 			(t1, t2) -> {
+				// Serialized tuples are compared without decoding the keys
+				if(t1 instanceof LazyTuple && t2 instanceof LazyTuple) {
+					return ((LazyTuple) t1).compareKeyTo((LazyTuple) t2);
+				}
+				
 				return t1.getKey().compareTo(t2.getKey());
 			};
 	
@@ -101,6 +123,17 @@ public class TupleHelper {
 	 * @throws IOException
 	 */
 	public static void writeTupleToStream(final Tuple tuple, final OutputStream outputStream) throws IOException {
+		
+		// Copy the serialized form instead of encoding the tuple again
+		if(tuple instanceof LazyTuple) {
+			final LazyTuple lazyTuple = (LazyTuple) tuple;
+			
+			if(lazyTuple.isSerializedFormValid()) {
+				lazyTuple.writeSerializedTuple(outputStream);
+				return;
+			}
+		}
+		
 		final byte[] keyBytes = tuple.getKey().getBytes(StandardCharsets.UTF_8);
 		final ByteBuffer keyLengthBytes = DataEncoderHelper.shortToByteBuffer((short) keyBytes.length);
 
@@ -122,6 +155,47 @@ public class TupleHelper {
 		outputStream.write(data);
 	}
 	
+	/**
+	 * Write the encoded tuple at the given offset into the byte buffer (absolute 
+	 * operations, the position of the buffer is not changed). The format is the 
+	 * same as used by writeTupleToStream.
+	 * 
+	 * @param keyBytes
+	 * @param boxBytes
+	 * @param dataBytes
+	 * @param versionTimestamp
+	 * @param receivedTimestamp
+	 * @param byteBuffer
+	 * @param offset
+	 * @return the amount of written bytes
+	 */
+	public static int writeTupleToBuffer(final byte[] keyBytes, final byte[] boxBytes, 
+			final byte[] dataBytes, final long versionTimestamp, final long receivedTimestamp, 
+			final ByteBuffer byteBuffer, final int offset) {
+		
+		assert (byteBuffer.order() == DataEncoderHelper.APPLICATION_BYTE_ORDER);
+		
+		int pos = offset;
+		byteBuffer.putShort(pos, (short) keyBytes.length);
+		pos += DataEncoderHelper.SHORT_BYTES;
+		byteBuffer.putInt(pos, boxBytes.length);
+		pos += DataEncoderHelper.INT_BYTES;
+		byteBuffer.putInt(pos, dataBytes.length);
+		pos += DataEncoderHelper.INT_BYTES;
+		byteBuffer.putLong(pos, versionTimestamp);
+		pos += DataEncoderHelper.LONG_BYTES;
+		byteBuffer.putLong(pos, receivedTimestamp);
+		pos += DataEncoderHelper.LONG_BYTES;
+		byteBuffer.put(pos, keyBytes);
+		pos += keyBytes.length;
+		byteBuffer.put(pos, boxBytes);
+		pos += boxBytes.length;
+		byteBuffer.put(pos, dataBytes);
+		pos += dataBytes.length;
+		
+		return pos - offset;
+	}
+	
 	/**
 	 * Convert the tuple into bytes
 	 * @param tuple
@@ -169,6 +243,86 @@ public class TupleHelper {
 		return new Tuple(keyString, boundingBox, dataBytes, versionTimestamp, receivedTimestamp);
 	}
 	
+	/**
+	 * Decode the tuple at the current reader position into a lazy tuple. The 
+	 * serialized tuple is copied once into an own array, so the tuple stays valid 
+	 * after the buffer is released. The key, the bounding box and the data are 
+	 * decoded on first access.
+	 * 
+	 * @param byteBuffer
+	 * @return
+	 * @throws IOException
+	 */
+	public static Tuple decodeLazyTuple(final ByteBuffer byteBuffer) throws IOException {
+		final int offset = byteBuffer.position();
+		
+		if(isDeletedTuple(byteBuffer, offset)) {
+			return decodeTuple(byteBuffer);
+		}
+		
+		final int tupleLength = getSerializedTupleLength(byteBuffer, offset);
+		final byte[] tupleBytes = new byte[tupleLength];
+		byteBuffer.get(tupleBytes, 0, tupleBytes.length);
+		
+		final ByteBuffer tupleBuffer = ByteBuffer.wrap(tupleBytes);
+		tupleBuffer.order(DataEncoderHelper.APPLICATION_BYTE_ORDER);
+		
+		return new LazyTuple(tupleBuffer, 0);
+	}
+	
+	/**
+	 * Decode the tuple at the current reader position into a lazy tuple without 
+	 * copying it. The tuple is backed by the buffer, so the buffer has to stay 
+	 * valid as long as the tuple is in use. The position of the buffer is moved 
+	 * behind the tuple.
+	 * 
+	 * @param byteBuffer
+	 * @return
+	 * @throws IOException
+	 */
+	public static Tuple decodeLazyTupleView(final ByteBuffer byteBuffer) throws IOException {
+		final int offset = byteBuffer.position();
+		
+		if(isDeletedTuple(byteBuffer, offset)) {
+			return decodeTuple(byteBuffer);
+		}
+		
+		final int tupleLength = getSerializedTupleLength(byteBuffer, offset);
+		final LazyTuple tuple = new LazyTuple(byteBuffer, offset);
+		byteBuffer.position(offset + tupleLength);
+		
+		return tuple;
+	}
+	
+	/**
+	 * Get the length of the serialized tuple at the given offset
+	 * @param byteBuffer
+	 * @param offset
+	 * @return
+	 */
+	public static int getSerializedTupleLength(final ByteBuffer byteBuffer, final int offset) {
+		final short keyLength = byteBuffer.getShort(offset + KEY_LENGTH_OFFSET);
+		final int boxLength = byteBuffer.getInt(offset + BOX_LENGTH_OFFSET);
+		final int dataLength = byteBuffer.getInt(offset + DATA_LENGTH_OFFSET);
+		
+		return TUPLE_HEADER_BYTES + keyLength + boxLength + dataLength;
+	}
+	
+	/**
+	 * Decode the tuple at the given offset, the position of the buffer is not changed
+	 * 
+	 * @param byteBuffer
+	 * @param offset
+	 * @return
+	 * @throws IOException
+	 */
+	public static Tuple decodeTuple(final ByteBuffer byteBuffer, final int offset) throws IOException {
+		final ByteBuffer tupleBuffer = byteBuffer.duplicate();
+		tupleBuffer.order(byteBuffer.order());
+		tupleBuffer.position(offset);
+		return decodeTuple(tupleBuffer);
+	}
+	
 	/**
 	 * Read the tuple from the input stream
 	 * @param inputStream
@@ -225,6 +379,32 @@ public class TupleHelper {
 		return isDeletedTuple(tuple.getBoundingBox(), tuple.getDataBytes());
 	}
 	
+	/**
+	 * Is the serialized tuple at the given offset a deleted tuple?
+	 * @param byteBuffer
+	 * @param offset
+	 * @return
+	 */
+	public static boolean isDeletedTuple(final ByteBuffer byteBuffer, final int offset) {
+		final byte[] marker = SSTableConst.DELETED_MARKER;
+		
+		if(byteBuffer.getInt(offset + BOX_LENGTH_OFFSET) != marker.length 
+				|| byteBuffer.getInt(offset + DATA_LENGTH_OFFSET) != marker.length) {
+			return false;
+		}
+		
+		final int boxOffset = offset + TUPLE_HEADER_BYTES + byteBuffer.getShort(offset + KEY_LENGTH_OFFSET);
+		final int dataOffset = boxOffset + marker.length;
+		
+		for(int i = 0; i < marker.length; i++) {
+			if(byteBuffer.get(boxOffset + i) != marker[i] || byteBuffer.get(dataOffset + i) != marker[i]) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
 	/**
 	 * Is this a deleted tuple?
 	 * @param boxBytes
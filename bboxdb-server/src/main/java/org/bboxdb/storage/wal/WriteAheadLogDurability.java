@@ -0,0 +1,64 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *******************************************************************************/
+package org.bboxdb.storage.wal;
+
+public enum WriteAheadLogDurability {
+	
+	/**
+	 * The data is written to the OS after each tuple (no fsync)
+	 */
+	FLUSH("flush"), 
+	
+	/**
+	 * The data is written and synced in batches by the sync thread, 
+	 * the writers wait until their batch is durable
+	 */
+	GROUP_FSYNC("group-fsync"), 
+	
+	/**
+	 * The data is synced after each tuple
+	 */
+	PER_WRITE_FSYNC("per-write-fsync");
+
+	private final String mode;
+
+	WriteAheadLogDurability(final String mode) {
+		this.mode = mode;
+	}
+
+	public String getModeString() {
+		return mode;
+	}
+
+	/**
+	 * Get the durability mode for the string. Unknown modes are rejected, a typo 
+	 * in the configuration must not silently disable the fsync.
+	 * 
+	 * @param value
+	 * @return
+	 */
+	public static WriteAheadLogDurability fromString(final String value) {
+		for (WriteAheadLogDurability durability : WriteAheadLogDurability.values()) {
+			if (durability.getModeString().equalsIgnoreCase(value)) {
+				return durability;
+			}
+		}
+
+		throw new IllegalArgumentException("Unknown write ahead log durability: " + value);
+	}
+}
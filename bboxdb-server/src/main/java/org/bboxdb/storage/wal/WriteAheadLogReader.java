@@ -22,9 +22,16 @@ import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.zip.CRC32C;
 
+import org.bboxdb.commons.io.DataEncoderHelper;
 import org.bboxdb.storage.StorageManagerException;
 import org.bboxdb.storage.entity.Tuple;
 import org.bboxdb.storage.sstable.SSTableConst;
@@ -37,15 +44,30 @@ import com.google.common.io.ByteStreams;
 public final class WriteAheadLogReader implements Closeable, Iterable<Tuple> {
 
 	/**
-	 * The input stream
+	 * The input stream (for write ahead logs without segments)
 	 */
 	private BufferedInputStream inputStream;
 
+	/**
+	 * The mapped file (for segmented write ahead logs)
+	 */
+	private MappedByteBuffer mappedBuffer;
+
 	/**
 	 * The file
 	 */
 	private final File file;
 
+	/**
+	 * The file position after the last valid record
+	 */
+	private long validLength;
+
+	/**
+	 * Contains the file a torn (partially written or corrupted) record
+	 */
+	private boolean tornTail;
+
 	/**
 	 * The Logger
 	 */
@@ -69,6 +91,10 @@ public final class WriteAheadLogReader implements Closeable, Iterable<Tuple> {
 				return true;
 			}
 
+			if(inputStream == null) {
+				return false;
+			}
+
 			try {
 				final int availableBytes = inputStream.available();
 
@@ -99,6 +125,115 @@ public final class WriteAheadLogReader implements Closeable, Iterable<Tuple> {
 		}
 	}
 
+	/**
+	 * The iterator for the checksummed records of a segmented write ahead log
+	 */
+	private final class SegmentRecordIterator implements Iterator<Tuple> {
+
+		/**
+		 * The position of the next record
+		 */
+		private int position = SSTableConst.MAGIC_BYTES_WAL_SEGMENTED.length;
+
+		/**
+		 * The checksum
+		 */
+		private final CRC32C checksum = new CRC32C();
+
+		/**
+		 * The next tuple
+		 */
+		private Tuple nextTuple = null;
+
+		@Override
+		public boolean hasNext() {
+
+			// We have already fetched a tuple
+			if(nextTuple != null) {
+				return true;
+			}
+
+			if(mappedBuffer == null) {
+				return false;
+			}
+
+			nextTuple = readRecord();
+
+			return nextTuple != null;
+		}
+
+		/**
+		 * Read the record at the current position
+		 * @return the tuple or null at the end of the log
+		 */
+		private Tuple readRecord() {
+			final int limit = mappedBuffer.capacity();
+
+			if(position + WriteAheadLogWriter.RECORD_HEADER_BYTES > limit) {
+				return null;
+			}
+
+			final int tupleLength = mappedBuffer.getInt(position);
+
+			// End of the log, the rest of the segment is not used
+			if(tupleLength == 0) {
+				return null;
+			}
+
+			final int expectedChecksum = mappedBuffer.getInt(position + DataEncoderHelper.INT_BYTES);
+			final int tupleOffset = position + WriteAheadLogWriter.RECORD_HEADER_BYTES;
+
+			if(tupleLength < TupleHelper.TUPLE_HEADER_BYTES || tupleLength > limit - tupleOffset) {
+				handleTornRecord();
+				return null;
+			}
+
+			final ByteBuffer tupleBuffer = mappedBuffer.duplicate();
+			tupleBuffer.limit(tupleOffset + tupleLength).position(tupleOffset);
+			checksum.reset();
+			checksum.update(tupleBuffer);
+
+			if((int) checksum.getValue() != expectedChecksum) {
+				handleTornRecord();
+				return null;
+			}
+
+			try {
+				final Tuple tuple = TupleHelper.decodeTuple(mappedBuffer, tupleOffset);
+				position = tupleOffset + tupleLength;
+				validLength = Math.max(validLength, position);
+				return tuple;
+			} catch (IOException e) {
+				logger.error("Got IO exception", e);
+				handleTornRecord();
+				return null;
+			}
+		}
+
+		/**
+		 * A torn record is found, the log ends at the last valid record
+		 */
+		private void handleTornRecord() {
+			logger.warn("Found torn record in WAL {} at position {}, ignoring the tail",
+					file, position);
+
+			tornTail = true;
+		}
+
+		@Override
+		public Tuple next() {
+
+			if(nextTuple == null) {
+				throw new RuntimeException("next() called but nextTupe is null,"
+						+ " do you forget to call hasNext()?");
+			}
+
+			final Tuple tupleToReturn = nextTuple;
+			nextTuple = null;
+			return tupleToReturn;
+		}
+	}
+
 	public WriteAheadLogReader(final File basedir, final int memtableNumber) throws IOException, StorageManagerException {
 		this(WriteAheadLogManager.getFileForWal(basedir, memtableNumber));
 	}
@@ -117,12 +252,41 @@ public final class WriteAheadLogReader implements Closeable, Iterable<Tuple> {
 		final byte[] magicBytes = new byte[expectedMagic.length];
 
 		ByteStreams.readFully(inputStream, magicBytes, 0, expectedMagic.length);
+		this.validLength = expectedMagic.length;
+
+		if(Arrays.equals(magicBytes, SSTableConst.MAGIC_BYTES_WAL_SEGMENTED)) {
+			inputStream.close();
+			inputStream = null;
+			mapFile();
+			return;
+		}
 
 		if(! Arrays.equals(magicBytes, expectedMagic)) {
 			throw new StorageManagerException("File " + file + " does not contain the magic bytes");
 		}
 	}
 
+	/**
+	 * Map the segmented write ahead log
+	 * @throws IOException
+	 * @throws StorageManagerException
+	 */
+	private void mapFile() throws IOException, StorageManagerException {
+		try (
+				final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+				final FileChannel channel = randomAccessFile.getChannel();
+		) {
+			final long size = channel.size();
+
+			if(size > Integer.MAX_VALUE) {
+				throw new StorageManagerException("WAL " + file + " is too large: " + size);
+			}
+
+			mappedBuffer = channel.map(MapMode.READ_ONLY, 0, size);
+			mappedBuffer.order(DataEncoderHelper.APPLICATION_BYTE_ORDER);
+		}
+	}
+
 	/**
 	 * Close the WAL reader
 	 */
@@ -132,13 +296,61 @@ public final class WriteAheadLogReader implements Closeable, Iterable<Tuple> {
 			inputStream.close();
 			inputStream = null;
 		}
+
+		mappedBuffer = null;
 	}
 
 	@Override
 	public Iterator<Tuple> iterator() {
+		if(inputStream == null && mappedBuffer != null) {
+			return new SegmentRecordIterator();
+		}
+
 		return new TupleIterator();
 	}
 
+	/**
+	 * Get the file position after the last valid record that was read
+	 * @return
+	 */
+	public long getValidLength() {
+		return validLength;
+	}
+
+	/**
+	 * Contains the log a torn record (only known after the records are read)
+	 * @return
+	 */
+	public boolean hasTornTail() {
+		return tornTail;
+	}
+
+	/**
+	 * Cut the log after the last valid record, so the torn record can not be
+	 * mistaken for valid data when new data is appended
+	 * @throws IOException
+	 */
+	public void truncateTornTail() throws IOException {
+		if(! tornTail) {
+			return;
+		}
+
+		close();
+
+		try(final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+			logger.info("Truncating WAL {} to {} bytes", file, validLength);
+			randomAccessFile.setLength(validLength);
+		}
+	}
+
+	/**
+	 * Get the file
+	 * @return
+	 */
+	public File getFile() {
+		return file;
+	}
+
 	/**
 	 * Delete the base file
 	 * @throws IOException
@@ -0,0 +1,150 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *******************************************************************************/
+package org.bboxdb.storage.wal;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.bboxdb.commons.concurrent.ExceptionSafeRunnable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The sync thread of the group commit WAL. The writes of all WAL writers
+ * that arrive within the group commit interval are synced together.
+ *
+ */
+public class WriteAheadLogSyncer extends ExceptionSafeRunnable {
+
+	/**
+	 * The writers with unsynced data
+	 */
+	private final BlockingQueue<WriteAheadLogWriter> pendingWriters;
+
+	/**
+	 * The group commit interval
+	 */
+	private final long groupCommitNanos;
+
+	/**
+	 * The sync thread
+	 */
+	private final Thread thread;
+
+	/**
+	 * The default group commit interval
+	 */
+	public final static long DEFAULT_GROUP_COMMIT_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+	/**
+	 * The instance
+	 */
+	private final static WriteAheadLogSyncer instance = new WriteAheadLogSyncer(DEFAULT_GROUP_COMMIT_NANOS);
+
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(WriteAheadLogSyncer.class);
+
+	private WriteAheadLogSyncer(final long groupCommitNanos) {
+		this.groupCommitNanos = groupCommitNanos;
+		this.pendingWriters = new LinkedBlockingQueue<>();
+
+		this.thread = new Thread(this);
+		thread.setName("WAL sync thread");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Get the instance, the sync thread is started when the class is loaded
+	 * @return
+	 */
+	public static WriteAheadLogSyncer getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Schedule a sync for the writer
+	 * @param writer
+	 */
+	public void scheduleSync(final WriteAheadLogWriter writer) {
+		pendingWriters.add(writer);
+	}
+
+	/**
+	 * The size limit of a batch is reached, sync without waiting for the interval
+	 */
+	public void wakeup() {
+		LockSupport.unpark(thread);
+	}
+
+	@Override
+	protected void runThread() throws Exception {
+		final List<WriteAheadLogWriter> writers = new ArrayList<>();
+
+		while(! Thread.currentThread().isInterrupted()) {
+			try {
+				final WriteAheadLogWriter firstWriter = pendingWriters.take();
+
+				// Wait for more writes of the batch
+				final long deadline = firstWriter.getFirstPendingNanos() + groupCommitNanos;
+
+				while(! firstWriter.isBatchSizeReached()) {
+					final long waitNanos = deadline - System.nanoTime();
+
+					if(waitNanos <= 0) {
+						break;
+					}
+
+					LockSupport.parkNanos(waitNanos);
+				}
+
+				writers.add(firstWriter);
+				pendingWriters.drainTo(writers);
+
+				for(final WriteAheadLogWriter writer : writers) {
+					syncWriter(writer);
+				}
+
+				writers.clear();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Sync the pending data of the writer. A failed sync is stored in the writer, 
+	 * so the waiters fail and the sync thread keeps running for the other writers.
+	 * @param writer
+	 */
+	private void syncWriter(final WriteAheadLogWriter writer) {
+		try {
+			writer.syncPendingData();
+		} catch (IOException | RuntimeException e) {
+			logger.error("Unable to sync WAL " + writer.getFile(), e);
+			writer.failPendingSync(e);
+		}
+	}
+}
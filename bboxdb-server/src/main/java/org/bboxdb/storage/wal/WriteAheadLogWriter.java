@@ -17,65 +17,466 @@
  *******************************************************************************/
 package org.bboxdb.storage.wal;
 
-import java.io.BufferedOutputStream;
 import java.io.Closeable;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32C;
 
+import org.bboxdb.commons.io.DataEncoderHelper;
 import org.bboxdb.storage.StorageManagerException;
 import org.bboxdb.storage.entity.Tuple;
 import org.bboxdb.storage.sstable.SSTableConst;
 import org.bboxdb.storage.util.TupleHelper;
 
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * The write ahead log writer. The file is preallocated in fixed-size segments
+ * that are written through a memory mapping. Every record is prefixed with
+ * the length and a CRC32C checksum of the tuple:
+ *
+ * +-------------------------------------------+
+ * | Length (n) |   CRC32C   |     Tuple       |
+ * |   4 Byte   |   4 Byte   |     n Byte      |
+ * +-------------------------------------------+
+ *
+ * The unused part of the last segment contains only zeros, a record with
+ * the length 0 marks the end of the log.
+ */
 public final class WriteAheadLogWriter implements Closeable {
 
 	/**
-	 * The file writer
+	 * The file
 	 */
-	private BufferedOutputStream os;
+	private final RandomAccessFile randomAccessFile;
+
+	/**
+	 * The channel of the file
+	 */
+	private FileChannel channel;
 
 	/**
 	 * The file
 	 */
 	private final File file;
 
+	/**
+	 * The durability mode
+	 */
+	private final WriteAheadLogDurability durability;
+
+	/**
+	 * The size of a segment
+	 */
+	private final int segmentSize;
+
+	/**
+	 * The mapping of the active segment (guarded by this)
+	 */
+	private MappedByteBuffer segmentBuffer;
+
+	/**
+	 * The file position of the active segment (guarded by this)
+	 */
+	private long segmentStart;
+
+	/**
+	 * The checksum of the records (guarded by this)
+	 */
+	private final CRC32C checksum = new CRC32C();
+
+	/**
+	 * The position after the last appended record (written under this)
+	 */
+	private volatile long appendedPosition;
+
+	/**
+	 * The position up to the data is durable (according to the durability mode)
+	 */
+	private volatile long durablePosition;
+
+	/**
+	 * The lock for syncing the data, the waiters for the durability are notified
+	 */
+	private final Object writeLock = new Object();
+
+	/**
+	 * Is a sync scheduled in the sync thread
+	 */
+	private final AtomicBoolean syncScheduled = new AtomicBoolean(false);
+
+	/**
+	 * The time the first tuple of the pending batch was appended
+	 */
+	private volatile long firstPendingNanos;
+
+	/**
+	 * The exception of a failed sync
+	 */
+	private volatile IOException writeException;
+
+	/**
+	 * The failure that is thrown by the next syncs (used by the tests)
+	 */
+	private volatile RuntimeException injectedSyncFailure;
+
+	/**
+	 * The size of the record header (length and checksum)
+	 */
+	public final static int RECORD_HEADER_BYTES = 2 * DataEncoderHelper.INT_BYTES;
+
+	/**
+	 * The default size of a segment (8 MB)
+	 */
+	public final static int DEFAULT_SEGMENT_SIZE = 8 * 1024 * 1024;
+
+	/**
+	 * The max size of a group commit batch
+	 */
+	public final static int GROUP_COMMIT_MAX_BYTES = 1024 * 1024;
+
 	public WriteAheadLogWriter(final File basedir, final long memtableNumber) throws IOException {
+		this(basedir, memtableNumber, WriteAheadLogDurability.FLUSH);
+	}
+
+	public WriteAheadLogWriter(final File basedir, final long memtableNumber,
+			final WriteAheadLogDurability durability) throws IOException {
+		this(basedir, memtableNumber, durability, DEFAULT_SEGMENT_SIZE);
+	}
+
+	public WriteAheadLogWriter(final File basedir, final long memtableNumber,
+			final WriteAheadLogDurability durability, final int segmentSize) throws IOException {
 
 		this.file = WriteAheadLogManager.getFileForWal(basedir, memtableNumber);
+		this.durability = durability;
+		this.segmentSize = segmentSize;
 
 		if(file.exists()) {
 			throw new RuntimeException("File " + file + " does already exist");
 		}
 
-		this.os = new BufferedOutputStream(new FileOutputStream(file));
+		this.randomAccessFile = new RandomAccessFile(file, "rw");
+		this.channel = randomAccessFile.getChannel();
 
-		os.write(SSTableConst.MAGIC_BYTES_WAL);
+		final byte[] magicBytes = SSTableConst.MAGIC_BYTES_WAL_SEGMENTED;
+		mapSegment(0, Math.max(segmentSize, magicBytes.length + RECORD_HEADER_BYTES));
+		segmentBuffer.put(0, magicBytes);
+
+		this.appendedPosition = magicBytes.length;
+		this.durablePosition = appendedPosition;
 	}
 
 	/**
-	 * Add a tuple to the WAL
-	 * @param tuple
+	 * Preallocate and map a new segment
+	 * @param start
+	 * @param size
 	 * @throws IOException
 	 */
-	public void addTuple(final Tuple tuple) throws StorageManagerException {
+	private void mapSegment(final long start, final int size) throws IOException {
+		randomAccessFile.setLength(start + size);
+		segmentBuffer = channel.map(MapMode.READ_WRITE, start, size);
+		segmentBuffer.order(DataEncoderHelper.APPLICATION_BYTE_ORDER);
+		segmentStart = start;
+	}
+
+	/**
+	 * Add a tuple to the WAL. Depending on the durability mode, the tuple is
+	 * synced before the method returns or later by the sync thread
+	 * (see awaitDurable).
+	 *
+	 * @param tuple
+	 * @return the position after the tuple
+	 * @throws StorageManagerException
+	 */
+	public long addTuple(final Tuple tuple) throws StorageManagerException {
+		final byte[] keyBytes = tuple.getKey().getBytes(StandardCharsets.UTF_8);
+		final byte[] boxBytes = tuple.getBoundingBoxBytes();
+		final byte[] dataBytes = tuple.getDataBytes();
+
+		final int tupleLength = TupleHelper.TUPLE_HEADER_BYTES
+				+ keyBytes.length + boxBytes.length + dataBytes.length;
+
+		final long position;
+
+		synchronized (this) {
+			if(channel == null) {
+				throw new StorageManagerException("The WAL " + file + " is already closed");
+			}
+
+			try {
+				ensureCapacity(RECORD_HEADER_BYTES + tupleLength);
+			} catch (IOException e) {
+				throw new StorageManagerException(e);
+			}
+
+			final int offset = (int) (appendedPosition - segmentStart);
+			final int tupleOffset = offset + RECORD_HEADER_BYTES;
+
+			TupleHelper.writeTupleToBuffer(keyBytes, boxBytes, dataBytes, tuple.getVersionTimestamp(),
+					tuple.getReceivedTimestamp(), segmentBuffer, tupleOffset);
+
+			final ByteBuffer tupleBuffer = segmentBuffer.duplicate();
+			tupleBuffer.limit(tupleOffset + tupleLength).position(tupleOffset);
+			checksum.reset();
+			checksum.update(tupleBuffer);
+
+			// The length is written last, a partial record is never visible for readers
+			segmentBuffer.putInt(offset + DataEncoderHelper.INT_BYTES, (int) checksum.getValue());
+			segmentBuffer.putInt(offset, tupleLength);
+
+			appendedPosition += RECORD_HEADER_BYTES + tupleLength;
+			position = appendedPosition;
+		}
+
 		try {
-			assert (os != null) : "Writer can not be null";
-			TupleHelper.writeTupleToStream(tuple, os);
-			os.flush();
+			switch (durability) {
+			case GROUP_FSYNC:
+				scheduleSync();
+				break;
+			case PER_WRITE_FSYNC:
+				syncPendingData();
+				break;
+			case FLUSH:
+			default:
+				// The mapped data is already in the page cache of the operating system
+				break;
+			}
 		} catch (IOException e) {
 			throw new StorageManagerException(e);
 		}
+
+		return position;
+	}
+
+	/**
+	 * Map a new segment if the record does not fit into the active segment. The
+	 * unsynced data of the old segment is synced in the fsync modes.
+	 *
+	 * @param recordLength
+	 * @throws IOException
+	 */
+	private void ensureCapacity(final int recordLength) throws IOException {
+		final long segmentEnd = segmentStart + segmentBuffer.capacity();
+
+		// Keep space for the end marker
+		if(appendedPosition + recordLength + DataEncoderHelper.INT_BYTES <= segmentEnd) {
+			return;
+		}
+
+		if(isFsyncMode()) {
+			forceRange(segmentBuffer, segmentStart, durablePosition, appendedPosition);
+		}
+
+		mapSegment(appendedPosition, Math.max(segmentSize, recordLength + DataEncoderHelper.INT_BYTES));
+	}
+
+	/**
+	 * Schedule the pending data for the sync thread
+	 */
+	private void scheduleSync() {
+		final WriteAheadLogSyncer syncer = WriteAheadLogSyncer.getInstance();
+
+		if(syncScheduled.compareAndSet(false, true)) {
+			firstPendingNanos = System.nanoTime();
+			syncer.scheduleSync(this);
+		}
+
+		if(isBatchSizeReached()) {
+			syncer.wakeup();
+		}
+	}
+
+	/**
+	 * Sync the appended data to the disk
+	 * @throws IOException
+	 */
+	protected void syncPendingData() throws IOException {
+		synchronized (writeLock) {
+			final MappedByteBuffer buffer;
+			final long bufferStart;
+			final long position;
+
+			synchronized (this) {
+				if(channel == null) {
+					return;
+				}
+
+				buffer = segmentBuffer;
+				bufferStart = segmentStart;
+				position = appendedPosition;
+				syncScheduled.set(false);
+			}
+
+			try {
+				if(injectedSyncFailure != null) {
+					throw injectedSyncFailure;
+				}
+
+				forceRange(buffer, bufferStart, durablePosition, position);
+			} catch (IOException e) {
+				writeException = e;
+				throw e;
+			} catch (RuntimeException e) {
+				final IOException syncException = new IOException("Unable to sync WAL " + file, e);
+				writeException = syncException;
+				throw syncException;
+			} finally {
+				if(writeException == null) {
+					durablePosition = Math.max(durablePosition, position);
+				}
+
+				writeLock.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Fail the pending sync, the waiters for the durability get the exception
+	 * @param e
+	 */
+	protected void failPendingSync(final Exception e) {
+		synchronized (writeLock) {
+			if(writeException == null) {
+				writeException = (e instanceof IOException) 
+						? (IOException) e : new IOException("Unable to sync WAL " + file, e);
+			}
+
+			writeLock.notifyAll();
+		}
+	}
+
+	/**
+	 * Let the next syncs fail with the given exception
+	 * @param syncFailure
+	 */
+	@VisibleForTesting
+	public void injectSyncFailure(final RuntimeException syncFailure) {
+		this.injectedSyncFailure = syncFailure;
+	}
+
+	/**
+	 * Force the given file range of the segment to the disk
+	 * @param buffer
+	 * @param bufferStart
+	 * @param from
+	 * @param to
+	 * @throws IOException
+	 */
+	private static void forceRange(final MappedByteBuffer buffer, final long bufferStart,
+			final long from, final long to) throws IOException {
+
+		final int startOffset = (int) Math.max(0, from - bufferStart);
+		final int endOffset = (int) (to - bufferStart);
+
+		if(endOffset <= startOffset) {
+			return;
+		}
+
+		try {
+			buffer.force(startOffset, endOffset - startOffset);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Wait until the data up to the position is durable (according to the
+	 * durability mode). Only in mode GROUP_FSYNC the data is synced
+	 * asynchronously, in all other modes the method returns immediately.
+	 *
+	 * @param position
+	 * @throws StorageManagerException
+	 */
+	public void awaitDurable(final long position) throws StorageManagerException {
+		if(durability != WriteAheadLogDurability.GROUP_FSYNC) {
+			return;
+		}
+
+		try {
+			synchronized (writeLock) {
+				while(durablePosition < position) {
+
+					if(writeException != null) {
+						throw new StorageManagerException("Unable to sync WAL " + file, writeException);
+					}
+
+					writeLock.wait();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new StorageManagerException("Interrupted while waiting for WAL sync", e);
+		}
+	}
+
+	/**
+	 * Is the durability mode a fsync mode
+	 * @return
+	 */
+	private boolean isFsyncMode() {
+		return durability == WriteAheadLogDurability.GROUP_FSYNC
+				|| durability == WriteAheadLogDurability.PER_WRITE_FSYNC;
 	}
 
 	/**
-	 * Close the WAL writer
+	 * Is the size limit for the pending batch reached
+	 * @return
+	 */
+	protected boolean isBatchSizeReached() {
+		return appendedPosition - durablePosition >= GROUP_COMMIT_MAX_BYTES;
+	}
+
+	/**
+	 * Get the time the first tuple of the pending batch was appended
+	 * @return
+	 */
+	protected long getFirstPendingNanos() {
+		return firstPendingNanos;
+	}
+
+	/**
+	 * Get the position after the last appended tuple
+	 * @return
+	 */
+	public long getAppendedPosition() {
+		return appendedPosition;
+	}
+
+	/**
+	 * Get the durability mode
+	 * @return
+	 */
+	public WriteAheadLogDurability getDurability() {
+		return durability;
+	}
+
+	/**
+	 * Close the WAL writer, the appended data is synced (when a fsync mode is used)
 	 */
 	@Override
 	public void close() throws IOException {
-		if(os != null) {
-			os.close();
-			os = null;
+		synchronized (writeLock) {
+			try {
+				if(isFsyncMode()) {
+					syncPendingData();
+				}
+			} finally {
+				synchronized (this) {
+					if(channel != null) {
+						segmentBuffer = null;
+						channel = null;
+						randomAccessFile.close();
+					}
+				}
+			}
 		}
 	}
 
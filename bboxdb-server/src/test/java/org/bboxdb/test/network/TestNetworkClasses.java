@@ -59,6 +59,7 @@ import org.bboxdb.network.packets.request.QueryHyperrectangleRequest;
 import org.bboxdb.network.packets.request.QueryHyperrectangleTimeRequest;
 import org.bboxdb.network.packets.request.QueryInsertTimeRequest;
 import org.bboxdb.network.packets.request.QueryJoinRequest;
+import org.bboxdb.network.packets.request.QueryKNearestNeighborRequest;
 import org.bboxdb.network.packets.request.QueryKeyRequest;
 import org.bboxdb.network.packets.request.QueryVersionTimeRequest;
 import org.bboxdb.network.packets.response.CompressionEnvelopeResponse;
@@ -80,6 +81,8 @@ import org.bboxdb.storage.entity.MultiTuple;
 import org.bboxdb.storage.entity.Tuple;
 import org.bboxdb.storage.entity.TupleStoreConfiguration;
 import org.bboxdb.storage.entity.TupleStoreConfigurationBuilder;
+import org.bboxdb.storage.sstable.SSTableCompression;
+import org.bboxdb.storage.sstable.compact.MergeStrategyType;
 import org.bboxdb.storage.entity.TupleStoreName;
 import org.bboxdb.storage.util.TupleHelper;
 import org.junit.Assert;
@@ -475,6 +478,10 @@ public class TestNetworkClasses {
 				.withVersions(666)
 				.withSpatialIndexReader("reader")
 				.withSpatialIndexWriter("writer")
+				.withSSTableCompression(SSTableCompression.ZSTD)
+				.withSSTableBlockSize(4096)
+				.withMergeStrategy(MergeStrategyType.SIZE_TIERED)
+				.withSpatialPartitions(4)
 				.build();
 		
 		final CreateTableRequest createPackage = new CreateTableRequest(sequenceNumber, "test", ssTableConfiguration);
@@ -562,6 +569,37 @@ public class TestNetworkClasses {
 		Assert.assertTrue(queryRequest.toString().length() > 10);
 	}
 	
+	/**
+	 * Test decode k nearest neighbor query
+	 * @throws IOException 
+	 * @throws PacketEncodeException 
+	 */
+	@Test(timeout=60000)
+	public void testDecodeKNearestNeighborQuery() throws IOException, PacketEncodeException {
+		final String table = "table1";
+		final Hyperrectangle queryBox = new Hyperrectangle(10d, 10d, 20d, 20d);
+		final short sequenceNumber = sequenceNumberGenerator.getNextSequenceNummber();
+		
+		final QueryKNearestNeighborRequest queryRequest = new QueryKNearestNeighborRequest(
+				sequenceNumber, ROUTING_HEADER_ROUTED, table, queryBox, 42);
+		
+		byte[] encodedPackage = networkPackageToByte(queryRequest);
+		Assert.assertNotNull(encodedPackage);
+
+		final ByteBuffer bb = NetworkPackageDecoder.encapsulateBytes(encodedPackage);
+		boolean result = NetworkPackageDecoder.validateRequestPackageHeader(bb, NetworkConst.REQUEST_TYPE_QUERY);
+		Assert.assertTrue(result);
+
+		final QueryKNearestNeighborRequest decodedPackage = QueryKNearestNeighborRequest.decodeTuple(bb);
+		Assert.assertEquals(queryRequest.getQueryBox(), decodedPackage.getQueryBox());
+		Assert.assertEquals(queryRequest.getTable(), decodedPackage.getTable());
+		Assert.assertEquals(42, decodedPackage.getK());
+		Assert.assertEquals(NetworkConst.REQUEST_QUERY_KNN, NetworkPackageDecoder.getQueryTypeFromRequest(bb));
+		Assert.assertEquals(sequenceNumber, decodedPackage.getSequenceNumber());
+		
+		Assert.assertTrue(queryRequest.toString().length() > 10);
+	}
+	
 	/**
 	 * Test decode bounding box query - without UDFs
 	 * @throws IOException 
@@ -833,6 +871,7 @@ public class TestNetworkClasses {
 		final HelloRequest decodedPackage = HelloRequest.decodeRequest(bb);
 				
 		Assert.assertEquals(helloPackage, decodedPackage);
+		Assert.assertEquals(2, decodedPackage.getProtocolVersion());
 		Assert.assertFalse(decodedPackage.getPeerCapabilities().hasGZipCompression());
 		Assert.assertFalse(helloPackage.getPeerCapabilities().hasGZipCompression());
 		
@@ -887,6 +926,7 @@ public class TestNetworkClasses {
 		final HelloResponse decodedPackage = HelloResponse.decodePackage(bb);
 				
 		Assert.assertEquals(helloPackage, decodedPackage);
+		Assert.assertEquals(2, decodedPackage.getProtocolVersion());
 		Assert.assertFalse(decodedPackage.getPeerCapabilities().hasGZipCompression());
 		Assert.assertFalse(helloPackage.getPeerCapabilities().hasGZipCompression());
 		
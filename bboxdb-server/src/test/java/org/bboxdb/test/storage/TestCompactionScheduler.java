@@ -0,0 +1,213 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.test.storage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.bboxdb.commons.RejectedException;
+import org.bboxdb.commons.math.Hyperrectangle;
+import org.bboxdb.misc.BBoxDBException;
+import org.bboxdb.storage.StorageManagerException;
+import org.bboxdb.storage.entity.Tuple;
+import org.bboxdb.storage.entity.TupleStoreConfiguration;
+import org.bboxdb.storage.entity.TupleStoreName;
+import org.bboxdb.storage.sstable.compact.CompactionMetrics;
+import org.bboxdb.storage.sstable.compact.CompactionScheduler;
+import org.bboxdb.storage.sstable.compact.SSTableCompactor;
+import org.bboxdb.storage.sstable.reader.SSTableFacade;
+import org.bboxdb.storage.sstable.reader.SSTableKeyIndexReader;
+import org.bboxdb.storage.tuplestore.manager.TupleStoreManager;
+import org.bboxdb.storage.tuplestore.manager.TupleStoreManagerRegistry;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestCompactionScheduler {
+	
+	/**
+	 * The output relation name
+	 */
+	protected final static TupleStoreName TEST_RELATION = new TupleStoreName("testgroup1_relation1");
+	
+	/**
+	 * The storage registry
+	 */
+	private static TupleStoreManagerRegistry storageRegistry;
+	
+	@BeforeClass
+	public static void beforeClass() throws InterruptedException, BBoxDBException {
+		storageRegistry = new TupleStoreManagerRegistry();
+		storageRegistry.init();
+	}
+	
+	@AfterClass
+	public static void afterClass() {
+		if(storageRegistry != null) {
+			storageRegistry.shutdown();
+			storageRegistry = null;
+		}
+	}
+
+	@Test(timeout=60000)
+	public void testPriority() throws InterruptedException {
+		final CompactionScheduler scheduler = new CompactionScheduler("test", 1, 0);
+		final CountDownLatch blockLatch = new CountDownLatch(1);
+		final CountDownLatch doneLatch = new CountDownLatch(4);
+		final List<String> executionOrder = Collections.synchronizedList(new ArrayList<>());
+		
+		// Block the worker
+		Assert.assertTrue(scheduler.schedule(new TupleStoreName("testgroup1_table1"), 0, () -> {
+			try {
+				blockLatch.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			doneLatch.countDown();
+		}));
+		
+		for(final int priority : Arrays.asList(1, 5, 3)) {
+			final TupleStoreName tupleStoreName = new TupleStoreName("testgroup1_table" + priority + "0");
+			Assert.assertTrue(scheduler.schedule(tupleStoreName, priority, () -> {
+				executionOrder.add(tupleStoreName.getTablename());
+				doneLatch.countDown();
+			}));
+		}
+		
+		Assert.assertEquals(3, scheduler.getPendingTasks());
+		blockLatch.countDown();
+		doneLatch.await();
+		
+		Assert.assertEquals(Arrays.asList("table50", "table30", "table10"), executionOrder);
+		
+		scheduler.shutdown();
+	}
+	
+	@Test(timeout=60000)
+	public void testOneTaskPerTupleStore() throws InterruptedException {
+		final CompactionScheduler scheduler = new CompactionScheduler("test", 2, 0);
+		final CountDownLatch blockLatch = new CountDownLatch(1);
+		final CountDownLatch doneLatch = new CountDownLatch(1);
+
+		final Runnable task = () -> {
+			try {
+				blockLatch.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			doneLatch.countDown();
+		};
+		
+		Assert.assertFalse(scheduler.isScheduled(TEST_RELATION));
+		Assert.assertTrue(scheduler.schedule(TEST_RELATION, 1, task));
+		Assert.assertTrue(scheduler.isScheduled(TEST_RELATION));
+		Assert.assertFalse(scheduler.schedule(TEST_RELATION, 1, task));
+		
+		blockLatch.countDown();
+		doneLatch.await();
+		
+		// The task is unregistered after the execution
+		while(scheduler.isScheduled(TEST_RELATION)) {
+			Thread.sleep(10);
+		}
+		
+		Assert.assertEquals(0, scheduler.getRunningTasks());
+		Assert.assertTrue(scheduler.schedule(TEST_RELATION, 1, () -> {}));
+		
+		scheduler.shutdown();
+	}
+	
+	@Test(timeout=60000)
+	public void testShutdown() throws InterruptedException {
+		final CompactionScheduler scheduler = new CompactionScheduler("test", 1, 0);
+		final CountDownLatch startedLatch = new CountDownLatch(1);
+		
+		scheduler.schedule(TEST_RELATION, 1, () -> {
+			startedLatch.countDown();
+			try {
+				Thread.sleep(TimeUnit.MINUTES.toMillis(5));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		
+		startedLatch.await();
+		
+		// Running tasks are interrupted
+		scheduler.shutdown();
+		Assert.assertEquals(0, scheduler.getRunningTasks());
+	}
+	
+	@Test(timeout=60000)
+	public void testRateLimiter() throws StorageManagerException, RejectedException, InterruptedException {
+		final CompactionScheduler unlimitedScheduler = new CompactionScheduler("test", 1, 0);
+		Assert.assertNull(unlimitedScheduler.getRateLimiter());
+		unlimitedScheduler.shutdown();
+		
+		storageRegistry.deleteTable(TEST_RELATION);
+		storageRegistry.createTable(TEST_RELATION, new TupleStoreConfiguration());
+		final TupleStoreManager storageManager = storageRegistry.getTupleStoreManager(TEST_RELATION);
+
+		for(int table = 0; table < 2; table++) {
+			for(int i = 0; i < 1000; i++) {
+				storageManager.put(new Tuple(Integer.toString(i), Hyperrectangle.FULL_SPACE, 
+						"abcdefghijklmnopqrstuvwxyz".getBytes()));
+			}
+			storageManager.flush();
+		}
+		
+		final List<SSTableKeyIndexReader> reader = new ArrayList<>();
+		
+		for(final SSTableFacade facade : storageManager.getSstableFacades()) {
+			reader.add(facade.getSsTableKeyIndexReader());
+		}
+		
+		final double throttledBytesBefore = CompactionMetrics.getThrottledBytes();
+		
+		// The rate limiter permits a burst of one second
+		final long bytesPerSecond = 20_000;
+		final CompactionScheduler scheduler = new CompactionScheduler("test", 1, bytesPerSecond);
+		Assert.assertEquals(bytesPerSecond, scheduler.getRateLimiter().getRate(), 0.1);
+		
+		final SSTableCompactor compactor = new SSTableCompactor(storageManager, reader);
+		compactor.setRateLimiter(scheduler.getRateLimiter());
+		
+		final long start = System.currentTimeMillis();
+		compactor.executeCompactation();
+		final long duration = System.currentTimeMillis() - start;
+		
+		Assert.assertEquals(1000, compactor.getWrittenTuples());
+		
+		final long bytes = compactor.getResultList().stream()
+			.mapToLong(w -> w.getSstableFile().length())
+			.sum();
+		
+		// The tuples are smaller than the written records, so the expected duration is lower
+		final long expectedDuration = bytes * 1000 / bytesPerSecond / 4;
+		Assert.assertTrue(duration >= expectedDuration);
+		Assert.assertTrue(CompactionMetrics.getThrottledBytes() > throttledBytesBefore);
+		
+		compactor.getResultList().forEach(w -> w.deleteFromDisk());
+		scheduler.shutdown();
+	}
+}
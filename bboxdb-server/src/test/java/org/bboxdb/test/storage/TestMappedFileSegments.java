@@ -0,0 +1,137 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.test.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.bboxdb.misc.Const;
+import org.bboxdb.storage.util.MappedFileSegments;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestMappedFileSegments {
+
+	/**
+	 * Write the test file
+	 * @return
+	 * @throws IOException
+	 */
+	private File writeTestFile() throws IOException {
+		final File file = File.createTempFile("segments-", "-test");
+		file.deleteOnExit();
+
+		final ByteBuffer buffer = ByteBuffer.allocate(100).order(Const.APPLICATION_BYTE_ORDER);
+
+		for(int i = 0; i < 100; i++) {
+			buffer.put((byte) i);
+		}
+
+		// Values at the border of the segments (segment size 16)
+		buffer.putShort(15, (short) 4711);
+		buffer.putInt(30, 123456789);
+		buffer.putLong(44, 1234567890123L);
+
+		try(final RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.write(buffer.array());
+		}
+
+		return file;
+	}
+
+	/**
+	 * Test the reading of values that cross segment borders
+	 * @throws IOException
+	 */
+	@Test(timeout=60000)
+	public void testReadValues() throws IOException {
+		final File file = writeTestFile();
+
+		try(final RandomAccessFile raf = new RandomAccessFile(file, "r");
+				final FileChannel channel = raf.getChannel()) {
+
+			final MappedFileSegments memory = new MappedFileSegments(channel, 16, Const.APPLICATION_BYTE_ORDER);
+
+			Assert.assertEquals(100, memory.size());
+			Assert.assertEquals(7, memory.getNumberOfSegments());
+			Assert.assertEquals(0, memory.get(0));
+			Assert.assertEquals(99, memory.get(99));
+			Assert.assertEquals(4711, memory.getShort(15));
+			Assert.assertEquals(123456789, memory.getInt(30));
+			Assert.assertEquals(1234567890123L, memory.getLong(44));
+
+			final byte[] bytes = new byte[20];
+			memory.get(60, bytes);
+
+			for(int i = 0; i < bytes.length; i++) {
+				Assert.assertEquals(60 + i, bytes[i]);
+			}
+
+			memory.unmap();
+		}
+	}
+
+	/**
+	 * Test the buffer views
+	 * @throws IOException
+	 */
+	@Test(timeout=60000)
+	public void testGetBuffer() throws IOException {
+		final File file = writeTestFile();
+
+		try(final RandomAccessFile raf = new RandomAccessFile(file, "r");
+				final FileChannel channel = raf.getChannel()) {
+
+			final MappedFileSegments memory = new MappedFileSegments(channel, 16, Const.APPLICATION_BYTE_ORDER);
+
+			// Located in one segment
+			final ByteBuffer view = memory.getBuffer(65, 10);
+			Assert.assertEquals(10, view.remaining());
+			Assert.assertEquals(65, view.get());
+
+			// Crossing the segment border
+			final ByteBuffer copy = memory.getBuffer(60, 20);
+			Assert.assertEquals(20, copy.remaining());
+
+			for(int i = 0; i < 20; i++) {
+				Assert.assertEquals(60 + i, copy.get());
+			}
+
+			memory.unmap();
+		}
+	}
+
+	/**
+	 * Reading outside of the file is not possible
+	 * @throws IOException
+	 */
+	@Test(timeout=60000, expected=IndexOutOfBoundsException.class)
+	public void testReadOutsideOfFile() throws IOException {
+		final File file = writeTestFile();
+
+		try(final RandomAccessFile raf = new RandomAccessFile(file, "r");
+				final FileChannel channel = raf.getChannel()) {
+
+			final MappedFileSegments memory = new MappedFileSegments(channel, 16, Const.APPLICATION_BYTE_ORDER);
+			memory.getLong(96);
+		}
+	}
+}
@@ -444,6 +444,41 @@ public class TestMemtable {
 		Assert.assertEquals(2, resultList3.size());
 	}
 
+	/**
+	 * Test the nearest neighbor search while tuples are inserted
+	 * @throws Exception
+	 */
+	@Test(timeout=60000)
+	public void testNearestNeighborsConcurrentInsert() throws Exception {
+		for(int i = 0; i < 100; i++) {
+			memtable.put(new Tuple(Integer.toString(i), new Hyperrectangle((double) i, (double) i), "abc".getBytes()));
+		}
+
+		final Thread writer = new Thread(() -> {
+			try {
+				for(int i = 100; i < MEMTABLE_MAX_ENTRIES; i++) {
+					memtable.put(new Tuple(Integer.toString(i), new Hyperrectangle((double) i, (double) i), "abc".getBytes()));
+				}
+			} catch (StorageManagerException e) {
+				throw new RuntimeException(e);
+			}
+		});
+
+		writer.start();
+
+		final Iterator<Tuple> tuples = memtable.getAllTuplesByDistance(new Hyperrectangle(-1.0, -1.0));
+		final List<Tuple> resultList = Lists.newArrayList(tuples);
+
+		writer.join();
+
+		// All tuples that were stored before the search are found in the order of their distance
+		Assert.assertTrue(resultList.size() >= 100);
+
+		for(int i = 0; i < resultList.size(); i++) {
+			Assert.assertEquals(Integer.toString(i), resultList.get(i).getKey());
+		}
+	}
+
 	/**
 	 * Test the newest tuple insert timestamp
 	 * @throws StorageManagerException
@@ -0,0 +1,420 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.test.storage;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.bboxdb.commons.RejectedException;
+import org.bboxdb.commons.math.Hyperrectangle;
+import org.bboxdb.misc.BBoxDBConfigurationManager;
+import org.bboxdb.misc.BBoxDBException;
+import org.bboxdb.storage.StorageManagerException;
+import org.bboxdb.storage.entity.Tuple;
+import org.bboxdb.storage.entity.TupleStoreConfiguration;
+import org.bboxdb.storage.entity.TupleStoreConfigurationBuilder;
+import org.bboxdb.storage.entity.TupleStoreMetaData;
+import org.bboxdb.storage.entity.TupleStoreName;
+import org.bboxdb.storage.sstable.SSTableHelper;
+import org.bboxdb.storage.sstable.compact.BasicMergeStrategy;
+import org.bboxdb.storage.sstable.compact.CompactionMetrics;
+import org.bboxdb.storage.sstable.compact.LeveledMergeStrategy;
+import org.bboxdb.storage.sstable.compact.MergeStrategy;
+import org.bboxdb.storage.sstable.compact.MergeStrategyFactory;
+import org.bboxdb.storage.sstable.compact.MergeStrategyType;
+import org.bboxdb.storage.sstable.compact.SSTableServiceRunnable;
+import org.bboxdb.storage.sstable.compact.SizeTieredMergeStrategy;
+import org.bboxdb.storage.sstable.compact.TimeWindowMergeStrategy;
+import org.bboxdb.storage.sstable.reader.SSTableFacade;
+import org.bboxdb.storage.tuplestore.DiskStorage;
+import org.bboxdb.storage.tuplestore.manager.TupleStoreManager;
+import org.bboxdb.storage.tuplestore.manager.TupleStoreManagerRegistry;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestMergeStrategies {
+	
+	/**
+	 * The output relation name
+	 */
+	protected final static TupleStoreName TEST_RELATION = new TupleStoreName("testgroup1_relation1");
+	
+	/**
+	 * The storage directory
+	 */
+	private static final String STORAGE_DIRECTORY = BBoxDBConfigurationManager.getConfiguration().getStorageDirectories().get(0);
+	
+	/**
+	 * The number of keys
+	 */
+	private static final int KEYS = 500;
+	
+	/**
+	 * The storage registry
+	 */
+	private static TupleStoreManagerRegistry storageRegistry;
+	
+	@BeforeClass
+	public static void beforeClass() throws InterruptedException, BBoxDBException {
+		storageRegistry = new TupleStoreManagerRegistry();
+		storageRegistry.init();
+		
+		// The tests run the compactions and expirations by themselves. The checkpoint
+		// thread would flush the tuples with old timestamps and the compact thread would 
+		// change the tables in the background.
+		storageRegistry.getAllStorages().forEach(DiskStorage::stopServiceThreads);
+	}
+	
+	@AfterClass
+	public static void afterClass() {
+		if(storageRegistry != null) {
+			storageRegistry.shutdown();
+			storageRegistry = null;
+		}
+	}
+	
+	@Before
+	public void clearData() throws StorageManagerException {
+		storageRegistry.deleteTable(TEST_RELATION);
+		final String relationDirectory = SSTableHelper.getSSTableDir(STORAGE_DIRECTORY, TEST_RELATION);
+		final File relationDirectoryFile = new File(relationDirectory);
+		relationDirectoryFile.mkdirs();
+	}
+	
+	@Test(timeout=60000)
+	public void testMergeStrategyFactory() {
+		final TupleStoreConfiguration configuration = new TupleStoreConfiguration();
+		Assert.assertTrue(MergeStrategyFactory.getInstance(configuration) instanceof BasicMergeStrategy);
+		
+		configuration.setMergeStrategy(MergeStrategyType.SIZE_TIERED.getTypeString());
+		Assert.assertTrue(MergeStrategyFactory.getInstance(configuration) instanceof SizeTieredMergeStrategy);
+		
+		configuration.setMergeStrategy(MergeStrategyType.LEVELED.getTypeString());
+		Assert.assertTrue(MergeStrategyFactory.getInstance(configuration) instanceof LeveledMergeStrategy);
+		
+		configuration.setMergeStrategy(MergeStrategyType.TIME_WINDOW.getTypeString());
+		configuration.setTtl(TimeUnit.HOURS.toMillis(24));
+		final MergeStrategy timeWindowStrategy = MergeStrategyFactory.getInstance(configuration);
+		Assert.assertTrue(timeWindowStrategy instanceof TimeWindowMergeStrategy);
+		Assert.assertEquals(TimeUnit.HOURS.toMicros(1), 
+				((TimeWindowMergeStrategy) timeWindowStrategy).getWindowSizeInMicroseconds());
+		
+		configuration.setMergeStrategy("unknown");
+		Assert.assertTrue(MergeStrategyFactory.getInstance(configuration) instanceof BasicMergeStrategy);
+	}
+	
+	@Test(timeout=60000)
+	public void testKeyRangeOverlap() {
+		final TupleStoreMetaData metadata1 = new TupleStoreMetaData();
+		metadata1.setFirstKey("b");
+		metadata1.setLastKey("d");
+		
+		final TupleStoreMetaData metadata2 = new TupleStoreMetaData();
+		metadata2.setFirstKey("d");
+		metadata2.setLastKey("f");
+		
+		final TupleStoreMetaData metadata3 = new TupleStoreMetaData();
+		metadata3.setFirstKey("e");
+		metadata3.setLastKey("g");
+		
+		Assert.assertTrue(LeveledMergeStrategy.isOverlapping(metadata1, metadata2));
+		Assert.assertFalse(LeveledMergeStrategy.isOverlapping(metadata1, metadata3));
+		Assert.assertTrue(LeveledMergeStrategy.isOverlapping(metadata2, metadata3));
+		
+		// No key range
+		Assert.assertTrue(LeveledMergeStrategy.isOverlapping(metadata1, new TupleStoreMetaData()));
+	}
+	
+	@Test(timeout=60000)
+	public void testSizeTieredMergeStrategy() throws StorageManagerException, RejectedException, 
+		BBoxDBException, InterruptedException {
+		
+		final TupleStoreConfiguration configuration = TupleStoreConfigurationBuilder
+				.create()
+				.withMergeStrategy(MergeStrategyType.SIZE_TIERED)
+				.build();
+		
+		final TupleStoreManager storageManager = storageRegistry.createTable(TEST_RELATION, configuration);
+		final SSTableServiceRunnable serviceRunnable = getServiceRunnable();
+		final MergeStrategy mergeStrategy = new SizeTieredMergeStrategy(4, 32, 0.5, 1.5, 0);
+		
+		// Three tables of a similar size are not merged
+		for(int round = 0; round < 3; round++) {
+			writeRound(storageManager, round * KEYS, round);
+			Assert.assertFalse(serviceRunnable.compactTupleStore(storageManager, mergeStrategy));
+		}
+		
+		// The fourth table triggers a merge
+		writeRound(storageManager, 3 * KEYS, 3);
+		Assert.assertTrue(serviceRunnable.compactTupleStore(storageManager, mergeStrategy));
+		Assert.assertFalse(serviceRunnable.compactTupleStore(storageManager, mergeStrategy));
+		Assert.assertEquals(1, storageManager.getSstableFacades().size());
+		
+		// The merged table is bigger and in a new bucket
+		for(int round = 4; round < 7; round++) {
+			writeRound(storageManager, round * KEYS, round);
+			Assert.assertFalse(serviceRunnable.compactTupleStore(storageManager, mergeStrategy));
+		}
+		
+		Assert.assertEquals(4, storageManager.getSstableFacades().size());
+		Assert.assertEquals(4, CompactionMetrics.getReadAmplification(TEST_RELATION), 0.001);
+		Assert.assertTrue(CompactionMetrics.getWriteAmplification() > 1);
+		
+		for(int round = 0; round < 7; round++) {
+			assertData(storageManager, round * KEYS, round);
+		}
+	}
+
+	@Test(timeout=60000)
+	public void testLeveledMergeStrategy() throws StorageManagerException, RejectedException, 
+		BBoxDBException, InterruptedException {
+		
+		final TupleStoreConfiguration configuration = TupleStoreConfigurationBuilder
+				.create()
+				.withMergeStrategy(MergeStrategyType.LEVELED)
+				.build();
+		
+		final TupleStoreManager storageManager = storageRegistry.createTable(TEST_RELATION, configuration);
+		final SSTableServiceRunnable serviceRunnable = getServiceRunnable();
+		
+		// Small tables and levels to get multiple levels
+		final LeveledMergeStrategy mergeStrategy = new LeveledMergeStrategy(2, 32, 4096, 2, 4);
+		
+		final int rounds = 20;
+		
+		for(int round = 0; round < rounds; round++) {
+			writeRound(storageManager, 0, round);
+			
+			for(int i = 0; i < 100; i++) {
+				if(! serviceRunnable.compactTupleStore(storageManager, mergeStrategy)) {
+					break;
+				}
+			}
+			
+			assertLevelsAreDisjoint(storageManager);
+		}
+		
+		final List<SSTableFacade> facades = new ArrayList<>(storageManager.getSstableFacades());
+		
+		Assert.assertTrue(facades.stream().anyMatch(f -> f.getSsTableMetadata().getLevel() > 1));
+		
+		// All levels are within their limits
+		for(int level = 1; level < 4; level++) {
+			final int tableLevel = level;
+			
+			final long levelSize = facades.stream()
+				.filter(f -> f.getSsTableMetadata().getLevel() == tableLevel)
+				.mapToLong(f -> f.getSize())
+				.sum();
+			
+			Assert.assertTrue(levelSize <= mergeStrategy.getMaxLevelSize(level));
+		}
+		
+		Assert.assertEquals(facades.size(), CompactionMetrics.getReadAmplification(TEST_RELATION), 0.001);
+		Assert.assertTrue(CompactionMetrics.getWriteAmplification() > 1);
+
+		assertData(storageManager, 0, rounds - 1);
+	}
+
+	@Test(timeout=60000)
+	public void testTimeWindowMergeStrategy() throws StorageManagerException, RejectedException, 
+		BBoxDBException, InterruptedException {
+		
+		final TupleStoreConfiguration configuration = TupleStoreConfigurationBuilder
+				.create()
+				.withMergeStrategy(MergeStrategyType.TIME_WINDOW)
+				.build();
+		
+		final TupleStoreManager storageManager = storageRegistry.createTable(TEST_RELATION, configuration);
+		final SSTableServiceRunnable serviceRunnable = getServiceRunnable();
+		final TimeWindowMergeStrategy mergeStrategy = new TimeWindowMergeStrategy(1, TimeUnit.DAYS, 
+				new SizeTieredMergeStrategy(4, 32, 0.5, 1.5, 0));
+		
+		final long now = System.currentTimeMillis() * 1000;
+		final long windowSize = mergeStrategy.getWindowSizeInMicroseconds();
+		
+		// Three tables in the window before the last window, two tables in the last window
+		// and two tables in the current window
+		final long[] timestamps = {now - 3 * windowSize, now - 3 * windowSize + 1, now - 3 * windowSize + 2,
+				now - windowSize, now - windowSize + 1, now, now + 1};
+		
+		for(int round = 0; round < timestamps.length; round++) {
+			writeRound(storageManager, round * KEYS, round, timestamps[round]);
+		}
+		
+		Assert.assertEquals(3, mergeStrategy.getWindows(getFacades(storageManager)).size());
+		
+		// The last window is merged first
+		Assert.assertTrue(serviceRunnable.compactTupleStore(storageManager, mergeStrategy));
+		Assert.assertEquals(6, storageManager.getSstableFacades().size());
+		
+		Assert.assertTrue(serviceRunnable.compactTupleStore(storageManager, mergeStrategy));
+		Assert.assertEquals(4, storageManager.getSstableFacades().size());
+		
+		// The current window does not contain enough tables for a size tiered merge
+		Assert.assertFalse(serviceRunnable.compactTupleStore(storageManager, mergeStrategy));
+		
+		// The merged tables stay in their windows
+		final Map<Long, List<SSTableFacade>> windows = mergeStrategy.getWindows(getFacades(storageManager));
+		Assert.assertEquals(3, windows.size());
+		Assert.assertEquals(Arrays.asList(1, 1, 2), windows.values().stream()
+				.map(List::size).collect(Collectors.toList()));
+		
+		for(int round = 0; round < timestamps.length; round++) {
+			assertData(storageManager, round * KEYS, round);
+		}
+	}
+	
+	@Test(timeout=60000)
+	public void testExpireSSTables() throws StorageManagerException, RejectedException, 
+		BBoxDBException, InterruptedException {
+		
+		final TupleStoreConfiguration configuration = TupleStoreConfigurationBuilder
+				.create()
+				.withTTL(1, TimeUnit.HOURS)
+				.build();
+		
+		final TupleStoreManager storageManager = storageRegistry.createTable(TEST_RELATION, configuration);
+		final SSTableServiceRunnable serviceRunnable = getServiceRunnable();
+		final long now = System.currentTimeMillis() * 1000;
+		
+		writeRound(storageManager, 0, 0, now - TimeUnit.HOURS.toMicros(3));
+		writeRound(storageManager, KEYS, 1, now - TimeUnit.HOURS.toMicros(2));
+		writeRound(storageManager, 2 * KEYS, 2, now);
+		
+		Assert.assertEquals(3, storageManager.getSstableFacades().size());
+		
+		final double expiredBefore = CompactionMetrics.getExpiredSSTables();
+		Assert.assertEquals(2, serviceRunnable.expireSSTables(storageManager));
+		Assert.assertEquals(0, serviceRunnable.expireSSTables(storageManager));
+		Assert.assertEquals(expiredBefore + 2, CompactionMetrics.getExpiredSSTables(), 0.001);
+		
+		Assert.assertEquals(1, storageManager.getSstableFacades().size());
+		Assert.assertTrue(storageManager.get(String.format("key%05d", 0)).isEmpty());
+		assertData(storageManager, 2 * KEYS, 2);
+		
+		// Tables without TTL don't expire
+		storageRegistry.deleteTable(TEST_RELATION);
+		final TupleStoreManager storageManager2 = storageRegistry.createTable(TEST_RELATION, 
+				new TupleStoreConfiguration());
+		writeRound(storageManager2, 0, 0, now - TimeUnit.DAYS.toMicros(300));
+		Assert.assertEquals(0, serviceRunnable.expireSSTables(storageManager2));
+	}
+
+	/**
+	 * Write the keys with the value of the round and flush the memtable
+	 * @param storageManager
+	 * @param firstKey
+	 * @param round
+	 * @throws StorageManagerException
+	 * @throws RejectedException
+	 */
+	private void writeRound(final TupleStoreManager storageManager, final int firstKey, 
+			final int round) throws StorageManagerException, RejectedException {
+		
+		writeRound(storageManager, firstKey, round, System.currentTimeMillis() * 1000);
+	}
+	
+	/**
+	 * Write the keys with the value of the round and the version timestamp and flush the memtable
+	 * @param storageManager
+	 * @param firstKey
+	 * @param round
+	 * @param versionTimestamp
+	 * @throws StorageManagerException
+	 * @throws RejectedException
+	 */
+	private void writeRound(final TupleStoreManager storageManager, final int firstKey, 
+			final int round, final long versionTimestamp) throws StorageManagerException, RejectedException {
+		
+		for(int i = firstKey; i < firstKey + KEYS; i++) {
+			final String key = String.format("key%05d", i);
+			storageManager.put(new Tuple(key, Hyperrectangle.FULL_SPACE, 
+					Integer.toString(round).getBytes(), versionTimestamp));
+		}
+		
+		storageManager.flush();
+	}
+	
+	/**
+	 * Get the SSTables of the tuple store
+	 * @param storageManager
+	 * @return
+	 */
+	private List<SSTableFacade> getFacades(final TupleStoreManager storageManager) {
+		return new ArrayList<>(storageManager.getSstableFacades());
+	}
+	
+	/**
+	 * Assert that the keys have the value of the round
+	 * @param storageManager
+	 * @param firstKey
+	 * @param round
+	 * @throws StorageManagerException
+	 */
+	private void assertData(final TupleStoreManager storageManager, final int firstKey, 
+			final int round) throws StorageManagerException {
+		
+		for(int i = firstKey; i < firstKey + KEYS; i++) {
+			final String key = String.format("key%05d", i);
+			final List<Tuple> tuples = storageManager.get(key);
+			Assert.assertEquals(1, tuples.size());
+			Assert.assertEquals(Integer.toString(round), new String(tuples.get(0).getDataBytes()));
+		}
+	}
+	
+	/**
+	 * Assert that the key ranges of the tables in the levels >= 1 are disjoint
+	 * @param storageManager
+	 */
+	private void assertLevelsAreDisjoint(final TupleStoreManager storageManager) {
+		final List<SSTableFacade> facades = new ArrayList<>(storageManager.getSstableFacades());
+		
+		for(final SSTableFacade facade1 : facades) {
+			for(final SSTableFacade facade2 : facades) {
+				final TupleStoreMetaData metadata1 = facade1.getSsTableMetadata();
+				final TupleStoreMetaData metadata2 = facade2.getSsTableMetadata();
+				
+				if(facade1 == facade2 || metadata1.getLevel() == 0 
+						|| metadata1.getLevel() != metadata2.getLevel()) {
+					continue;
+				}
+				
+				Assert.assertFalse(LeveledMergeStrategy.isOverlapping(metadata1, metadata2));
+			}
+		}
+	}
+
+	/**
+	 * Get the service runnable of the storage
+	 * @return
+	 */
+	private SSTableServiceRunnable getServiceRunnable() {
+		final List<DiskStorage> storages = storageRegistry.getAllStorages();
+		Assert.assertEquals(1, storages.size());
+		return new SSTableServiceRunnable(storages.get(0));
+	}
+}
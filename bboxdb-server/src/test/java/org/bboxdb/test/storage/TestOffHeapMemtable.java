@@ -0,0 +1,399 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *******************************************************************************/
+package org.bboxdb.test.storage;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.bboxdb.commons.MicroSecondTimestampProvider;
+import org.bboxdb.commons.io.FileUtil;
+import org.bboxdb.commons.math.DoubleInterval;
+import org.bboxdb.commons.math.Hyperrectangle;
+import org.bboxdb.misc.BBoxDBConfigurationManager;
+import org.bboxdb.storage.StorageManagerException;
+import org.bboxdb.storage.entity.DeletedTuple;
+import org.bboxdb.storage.entity.Tuple;
+import org.bboxdb.storage.entity.TupleStoreConfiguration;
+import org.bboxdb.storage.entity.TupleStoreConfigurationBuilder;
+import org.bboxdb.storage.entity.TupleStoreName;
+import org.bboxdb.storage.memtable.AbstractMemtable;
+import org.bboxdb.storage.memtable.DirectBufferPool;
+import org.bboxdb.storage.memtable.Memtable;
+import org.bboxdb.storage.memtable.MemtableFactory;
+import org.bboxdb.storage.memtable.MemtableType;
+import org.bboxdb.storage.memtable.OffHeapMemtable;
+import org.bboxdb.storage.sstable.SSTableCreator;
+import org.bboxdb.storage.sstable.SSTableHelper;
+import org.bboxdb.storage.sstable.SSTableWriter;
+import org.bboxdb.storage.util.TupleHelper;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class TestOffHeapMemtable {
+
+	/**
+	 * The table name
+	 */
+	private static final TupleStoreName MEMTABLE_TABLE_NAME = new TupleStoreName("3_mygroup_test");
+
+	/**
+	 * The max amount of entries
+	 */
+	private static final int MEMTABLE_MAX_ENTRIES = 10000;
+
+	/**
+	 * The max size of a memtable
+	 */
+	private static final int MEMTABLE_MAX_SIZE = 10_000_000;
+
+	/**
+	 * The directory for the SSTables
+	 */
+	private static final String STORAGE_DIRECTORY = BBoxDBConfigurationManager.getConfiguration().getStorageDirectories().get(0);
+
+	/**
+	 * The memtable reference
+	 */
+	private OffHeapMemtable memtable;
+
+	@Before
+	public void before() {
+		memtable = new OffHeapMemtable(MEMTABLE_TABLE_NAME, MEMTABLE_MAX_ENTRIES, MEMTABLE_MAX_SIZE, null);
+		memtable.init();
+		memtable.acquire();
+	}
+
+	@After
+	public void after() {
+		memtable.deleteOnClose();
+		memtable.release();
+		memtable.shutdown();
+	}
+
+	/**
+	 * Test insert and get
+	 * @throws Exception
+	 */
+	@Test(timeout=60000)
+	public void testInsertAndGet() throws Exception {
+		final Tuple tuple1 = new Tuple("1", Hyperrectangle.FULL_SPACE, "abc".getBytes(), 1);
+		final Tuple tuple2 = new Tuple("2", Hyperrectangle.FULL_SPACE, "def".getBytes(), 2);
+		final Tuple tuple3 = new Tuple("1", Hyperrectangle.FULL_SPACE, "ghi".getBytes(), 3);
+		memtable.put(tuple1);
+		memtable.put(tuple2);
+		memtable.put(tuple3);
+
+		Assert.assertEquals(Lists.newArrayList(tuple1, tuple3), memtable.get("1"));
+		Assert.assertEquals(Lists.newArrayList(tuple2), memtable.get("2"));
+		Assert.assertTrue(memtable.get("3").isEmpty());
+		Assert.assertEquals(3, memtable.getNumberOfTuples());
+		Assert.assertEquals(1, memtable.getOldestTupleVersionTimestamp());
+		Assert.assertEquals(3, memtable.getNewestTupleVersionTimestamp());
+	}
+
+	/**
+	 * Test the deletion of a tuple
+	 * @throws Exception
+	 */
+	@Test(timeout=60000)
+	public void testTupleDelete() throws Exception {
+		final Tuple createdTuple = new Tuple("1", Hyperrectangle.FULL_SPACE, "abc".getBytes());
+		memtable.put(createdTuple);
+		memtable.delete("1", MicroSecondTimestampProvider.getNewTimestamp());
+
+		final List<Tuple> result = memtable.get("1");
+		Assert.assertEquals(2, result.size());
+		Assert.assertEquals(createdTuple, result.get(0));
+		Assert.assertTrue(result.get(1) instanceof DeletedTuple);
+	}
+
+	/**
+	 * Test the sorted list
+	 * @throws StorageManagerException
+	 */
+	@Test(timeout=60000)
+	public void testSortedList() throws StorageManagerException {
+		final Tuple tuple1 = new Tuple("5", Hyperrectangle.FULL_SPACE, "abc".getBytes(), 4);
+		final Tuple tuple2 = new Tuple("3", Hyperrectangle.FULL_SPACE, "def".getBytes(), 2);
+		final Tuple tuple3 = new Tuple("5", Hyperrectangle.FULL_SPACE, "ghi".getBytes(), 1);
+		memtable.put(tuple1);
+		memtable.put(tuple2);
+		memtable.put(tuple3);
+
+		Assert.assertEquals(Lists.newArrayList(tuple2, tuple3, tuple1), memtable.getSortedTupleList());
+		Assert.assertEquals(Lists.newArrayList(tuple2, tuple3, tuple1), Lists.newArrayList(memtable.iterator()));
+	}
+
+	/**
+	 * Test the bounding box query
+	 * @throws StorageManagerException
+	 */
+	@Test(timeout=60000)
+	public void testBoundingBoxQuery() throws StorageManagerException {
+		final Tuple tuple1 = new Tuple("1", new Hyperrectangle(1d, 2d, 1d, 2d), "abc".getBytes());
+		final Tuple tuple2 = new Tuple("2", new Hyperrectangle(10d, 20d, 10d, 20d), "def".getBytes());
+		final Tuple tuple3 = new Tuple("3", new Hyperrectangle(1.5d, 4d, 1.5d, 4d), "ghi".getBytes());
+		memtable.put(tuple1);
+		memtable.put(tuple2);
+		memtable.put(tuple3);
+
+		final List<Tuple> result = Lists.newArrayList(
+				memtable.getAllTuplesInBoundingBox(new Hyperrectangle(0d, 3d, 0d, 3d)));
+
+		Assert.assertEquals(2, result.size());
+		Assert.assertTrue(result.contains(tuple1));
+		Assert.assertTrue(result.contains(tuple3));
+	}
+
+	/**
+	 * Test the overflow of the memtable
+	 * @throws StorageManagerException
+	 */
+	@Test(timeout=60000)
+	public void testFull() throws StorageManagerException {
+		final OffHeapMemtable smallMemtable = new OffHeapMemtable(MEMTABLE_TABLE_NAME, 2, MEMTABLE_MAX_SIZE, null);
+		smallMemtable.init();
+		smallMemtable.acquire();
+
+		Assert.assertNotEquals(AbstractMemtable.MEMTABLE_FULL, smallMemtable.tryPut(new Tuple("1", Hyperrectangle.FULL_SPACE, "abc".getBytes())));
+		Assert.assertFalse(smallMemtable.isFull());
+		Assert.assertNotEquals(AbstractMemtable.MEMTABLE_FULL, smallMemtable.tryPut(new Tuple("2", Hyperrectangle.FULL_SPACE, "abc".getBytes())));
+		Assert.assertTrue(smallMemtable.isFull());
+		Assert.assertEquals(AbstractMemtable.MEMTABLE_FULL, smallMemtable.tryPut(new Tuple("3", Hyperrectangle.FULL_SPACE, "abc".getBytes())));
+		Assert.assertEquals(2, smallMemtable.getNumberOfTuples());
+
+		smallMemtable.deleteOnClose();
+		smallMemtable.release();
+	}
+
+	/**
+	 * Test the bounding box query with deleted and full space tuples
+	 * @throws StorageManagerException
+	 */
+	@Test(timeout=60000)
+	public void testBoundingBoxQueryDeletedAndFullSpace() throws StorageManagerException {
+		final Tuple tuple1 = new Tuple("1", new Hyperrectangle(1d, 2d, 1d, 2d), "abc".getBytes());
+		final Tuple tuple2 = new Tuple("2", Hyperrectangle.FULL_SPACE, "def".getBytes());
+		memtable.put(tuple1);
+		memtable.put(tuple2);
+		memtable.delete("3", MicroSecondTimestampProvider.getNewTimestamp());
+
+		final List<Tuple> result1 = Lists.newArrayList(
+				memtable.getAllTuplesInBoundingBox(new Hyperrectangle(2d, 3d, 2d, 3d)));
+		Assert.assertEquals(Lists.newArrayList(tuple1, tuple2), result1);
+
+		// The point 2.0 is excluded
+		final Hyperrectangle openBox = new Hyperrectangle(Lists.newArrayList(
+				new DoubleInterval(2d, 3d, false, true), new DoubleInterval(2d, 3d, false, true)));
+		final List<Tuple> result2 = Lists.newArrayList(memtable.getAllTuplesInBoundingBox(openBox));
+		Assert.assertEquals(Lists.newArrayList(tuple2), result2);
+
+		final List<Tuple> result3 = Lists.newArrayList(
+				memtable.getAllTuplesInBoundingBox(Hyperrectangle.FULL_SPACE));
+		Assert.assertEquals(Lists.newArrayList(tuple1, tuple2), result3);
+	}
+
+	/**
+	 * Test tuples that span multiple arenas
+	 * @throws StorageManagerException
+	 */
+	@Test(timeout=60000)
+	public void testMultipleArenas() throws StorageManagerException {
+		final DirectBufferPool bufferPool = new DirectBufferPool(1024, 2);
+		final OffHeapMemtable smallArenaMemtable = new OffHeapMemtable(MEMTABLE_TABLE_NAME,
+				MEMTABLE_MAX_ENTRIES, MEMTABLE_MAX_SIZE, null, bufferPool);
+		smallArenaMemtable.init();
+		smallArenaMemtable.acquire();
+
+		final List<Tuple> tuples = new ArrayList<>();
+
+		for(int i = 0; i < 100; i++) {
+			tuples.add(new Tuple(Integer.toString(i), new Hyperrectangle(1d, 2d), new byte[i * 10]));
+		}
+
+		// Bigger than the arena size
+		tuples.add(new Tuple("big", new Hyperrectangle(1d, 2d), new byte[5000]));
+
+		for(final Tuple tuple : tuples) {
+			smallArenaMemtable.put(tuple);
+		}
+
+		for(final Tuple tuple : tuples) {
+			Assert.assertEquals(Lists.newArrayList(tuple), smallArenaMemtable.get(tuple.getKey()));
+		}
+
+		tuples.sort(TupleHelper.TUPLE_KEY_AND_VERSION_COMPARATOR);
+		Assert.assertEquals(tuples, smallArenaMemtable.getSortedTupleList());
+
+		smallArenaMemtable.deleteOnClose();
+		smallArenaMemtable.release();
+
+		Assert.assertEquals(2, bufferPool.getPooledChunks());
+		Assert.assertEquals(0, smallArenaMemtable.getNumberOfTuples());
+	}
+
+	/**
+	 * The serialized tuples are copied into the SSTable, the result has to be
+	 * the same as for the on-heap memtable
+	 * @throws Exception
+	 */
+	@Test(timeout=60000)
+	public void testWriteToSSTable() throws Exception {
+		final Memtable heapMemtable = new Memtable(MEMTABLE_TABLE_NAME, MEMTABLE_MAX_ENTRIES, MEMTABLE_MAX_SIZE, null);
+		heapMemtable.init();
+		heapMemtable.acquire();
+
+		for(int i = 0; i < 100; i++) {
+			final Tuple tuple = new Tuple(Integer.toString(i % 37), new Hyperrectangle((double) i, (double) i + 1),
+					Integer.toString(i).getBytes(), i);
+			memtable.put(tuple);
+			heapMemtable.put(tuple);
+		}
+
+		// Both memtables need the same received timestamp
+		final Tuple deletedTuple = new DeletedTuple("5", 1000);
+		memtable.put(deletedTuple);
+		heapMemtable.put(deletedTuple);
+
+		final String relationDirectory = SSTableHelper.getSSTableDir(STORAGE_DIRECTORY, MEMTABLE_TABLE_NAME);
+		final File relationDirectoryFile = new File(relationDirectory);
+		FileUtil.deleteRecursive(relationDirectoryFile.toPath());
+		relationDirectoryFile.mkdirs();
+
+		final SSTableWriter heapWriter = new SSTableWriter(STORAGE_DIRECTORY, MEMTABLE_TABLE_NAME, 1,
+				MEMTABLE_MAX_ENTRIES, SSTableCreator.MEMTABLE);
+		heapWriter.open();
+		heapMemtable.writeToSSTable(heapWriter);
+		heapWriter.close();
+
+		final SSTableWriter offHeapWriter = new SSTableWriter(STORAGE_DIRECTORY, MEMTABLE_TABLE_NAME, 2,
+				MEMTABLE_MAX_ENTRIES, SSTableCreator.MEMTABLE);
+		offHeapWriter.open();
+		memtable.writeToSSTable(offHeapWriter);
+		offHeapWriter.close();
+
+		Assert.assertArrayEquals(Files.readAllBytes(heapWriter.getSstableFile().toPath()),
+				Files.readAllBytes(offHeapWriter.getSstableFile().toPath()));
+		Assert.assertArrayEquals(Files.readAllBytes(heapWriter.getSstableIndexFile().toPath()),
+				Files.readAllBytes(offHeapWriter.getSstableIndexFile().toPath()));
+		Assert.assertArrayEquals(Files.readAllBytes(heapWriter.getMetadataFile().toPath()),
+				Files.readAllBytes(offHeapWriter.getMetadataFile().toPath()));
+
+		heapMemtable.deleteOnClose();
+		heapMemtable.release();
+		FileUtil.deleteRecursive(relationDirectoryFile.toPath());
+	}
+
+	/**
+	 * Test the nearest neighbor search
+	 * @throws StorageManagerException
+	 */
+	@Test(timeout=60000)
+	public void testNearestNeighbors() throws StorageManagerException {
+		final Tuple tuple1 = new Tuple("1", new Hyperrectangle(1d, 2d, 1d, 2d), "abc".getBytes());
+		final Tuple tuple2 = new Tuple("2", new Hyperrectangle(10d, 20d, 10d, 20d), "def".getBytes());
+		final Tuple tuple3 = new Tuple("3", new Hyperrectangle(3d, 4d, 3d, 4d), "ghi".getBytes());
+		memtable.put(tuple1);
+		memtable.put(tuple2);
+		memtable.put(tuple3);
+		memtable.delete("4", MicroSecondTimestampProvider.getNewTimestamp());
+
+		final List<Tuple> result = Lists.newArrayList(
+				memtable.getAllTuplesByDistance(new Hyperrectangle(5d, 5d, 5d, 5d)));
+
+		Assert.assertEquals(Lists.newArrayList(tuple3, tuple1, tuple2), result);
+	}
+
+	/**
+	 * Insert data with multiple threads
+	 * @throws Exception
+	 */
+	@Test(timeout=60000)
+	public void testConcurrentInsert() throws Exception {
+		final int threads = 8;
+		final int tuplesPerThread = MEMTABLE_MAX_ENTRIES / threads;
+
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		final List<Future<Boolean>> futures = new ArrayList<>();
+
+		for(int thread = 0; thread < threads; thread++) {
+			final int threadNumber = thread;
+			futures.add(executor.submit(() -> {
+				for(int i = 0; i < tuplesPerThread; i++) {
+					final String key = threadNumber + "_" + i;
+					final Hyperrectangle box = new Hyperrectangle((double) i, (double) i + 1);
+					memtable.put(new Tuple(key, box, key.getBytes()));
+				}
+				return true;
+			}));
+		}
+
+		for(final Future<Boolean> future : futures) {
+			Assert.assertTrue(future.get());
+		}
+
+		executor.shutdown();
+
+		Assert.assertEquals(threads * tuplesPerThread, memtable.getNumberOfTuples());
+
+		final List<Tuple> sortedList = memtable.getSortedTupleList();
+		Assert.assertEquals(threads * tuplesPerThread, sortedList.size());
+
+		for(int i = 1; i < sortedList.size(); i++) {
+			Assert.assertTrue(TupleHelper.TUPLE_KEY_AND_VERSION_COMPARATOR.compare(
+					sortedList.get(i - 1), sortedList.get(i)) <= 0);
+		}
+
+		for(int thread = 0; thread < threads; thread++) {
+			final List<Tuple> tuples = memtable.get(thread + "_17");
+			Assert.assertEquals(1, tuples.size());
+			Assert.assertEquals(thread + "_17", new String(tuples.get(0).getDataBytes()));
+		}
+
+		final List<Tuple> boxResult = Lists.newArrayList(
+				memtable.getAllTuplesInBoundingBox(new Hyperrectangle(0.5d, 0.6d)));
+		Assert.assertEquals(threads, boxResult.size());
+
+		final List<Tuple> distanceResult = Lists.newArrayList(
+				memtable.getAllTuplesByDistance(new Hyperrectangle(0.5d, 0.6d)));
+		Assert.assertEquals(threads * tuplesPerThread, distanceResult.size());
+	}
+
+	/**
+	 * Test the memtable factory
+	 */
+	@Test(timeout=60000)
+	public void testMemtableFactory() {
+		final TupleStoreConfiguration configuration = TupleStoreConfigurationBuilder.create()
+				.withMemtableType(MemtableType.OFFHEAP)
+				.build();
+
+		final AbstractMemtable memtable = MemtableFactory.getInstance(configuration,
+				MEMTABLE_TABLE_NAME, 10, 10, null);
+		Assert.assertTrue(memtable instanceof OffHeapMemtable);
+	}
+}
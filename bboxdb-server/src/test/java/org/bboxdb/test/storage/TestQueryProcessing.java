@@ -23,10 +23,14 @@ import java.util.List;
 import java.util.stream.Collectors;
 
 import org.bboxdb.commons.RejectedException;
+import org.bboxdb.commons.MicroSecondTimestampProvider;
 import org.bboxdb.commons.math.Hyperrectangle;
 import org.bboxdb.misc.BBoxDBException;
 import org.bboxdb.query.queryprocessor.operator.BoundingBoxSelectOperator;
 import org.bboxdb.query.queryprocessor.operator.FullTablescanOperator;
+import org.bboxdb.query.queryprocessor.operator.KNearestNeighborOperator;
+import org.bboxdb.query.queryprocessor.operator.NewerAsInsertTimeSeclectionOperator;
+import org.bboxdb.query.queryprocessor.operator.NewerAsVersionTimeSelectionOperator;
 import org.bboxdb.query.queryprocessor.operator.Operator;
 import org.bboxdb.query.queryprocessor.operator.SpatialIndexReadOperator;
 import org.bboxdb.query.queryprocessor.operator.join.IndexedSpatialJoinOperator;
@@ -35,6 +39,8 @@ import org.bboxdb.storage.entity.MultiTuple;
 import org.bboxdb.storage.entity.Tuple;
 import org.bboxdb.storage.entity.TupleStoreConfiguration;
 import org.bboxdb.storage.entity.TupleStoreName;
+import org.bboxdb.storage.sstable.reader.SSTableFacade;
+import org.bboxdb.storage.tuplestore.manager.TupleStoreAquirer;
 import org.bboxdb.storage.tuplestore.manager.TupleStoreManager;
 import org.bboxdb.storage.tuplestore.manager.TupleStoreManagerRegistry;
 import org.junit.AfterClass;
@@ -332,6 +338,55 @@ public class TestQueryProcessing {
 		Assert.assertEquals(0, resultList.size());
 	}
 
+	/**
+	 * Join more tuples than one index probe batch contains, the join partners 
+	 * are stored in SSTables and in the memtable
+	 * @throws StorageManagerException
+	 * @throws RejectedException
+	 */
+	@Test(timeout=60000)
+	public void testJoinBatches() throws StorageManagerException, RejectedException {
+		storageRegistry.deleteTable(TABLE_1);
+		storageRegistry.createTable(TABLE_1, new TupleStoreConfiguration());
+
+		storageRegistry.deleteTable(TABLE_2);
+		storageRegistry.createTable(TABLE_2, new TupleStoreConfiguration());
+
+		final TupleStoreManager storageManager1 = storageRegistry.getTupleStoreManager(TABLE_1);
+		final TupleStoreManager storageManager2 = storageRegistry.getTupleStoreManager(TABLE_2);
+		
+		final int tuples = 500;
+		
+		for(int i = 0; i < tuples; i++) {
+			storageManager1.put(new Tuple("a" + i, new Hyperrectangle((double) i, i + 1.0), "value".getBytes()));
+			storageManager2.put(new Tuple("b" + i, new Hyperrectangle(i + 0.5, i + 0.6), "value".getBytes()));
+			
+			if(i == tuples / 2) {
+				storageManager2.flush();
+			}
+		}
+		
+		// A new version of a join partner outside of the range of the old version
+		storageManager2.put(new Tuple("b0", new Hyperrectangle(-10.0, -9.0), "value".getBytes()));
+
+		final Hyperrectangle queryRange = Hyperrectangle.FULL_SPACE;
+		final SpatialIndexReadOperator operator1 = new SpatialIndexReadOperator(storageManager1, queryRange);
+		final SpatialIndexReadOperator operator2 = new SpatialIndexReadOperator(storageManager2, queryRange);
+
+		final IndexedSpatialJoinOperator joinQueryProcessor = new IndexedSpatialJoinOperator(operator1,
+				operator2);
+
+		final List<MultiTuple> resultList = Lists.newArrayList(joinQueryProcessor.iterator());
+		joinQueryProcessor.close();
+
+		Assert.assertEquals(tuples - 1, resultList.size());
+		
+		for(final MultiTuple tuple : resultList) {
+			Assert.assertEquals(tuple.getTuple(0).getKey().substring(1), tuple.getTuple(1).getKey().substring(1));
+			Assert.assertNotEquals("a0", tuple.getTuple(0).getKey());
+		}
+	}
+
 	/**
 	 * Simple Join
 	 * @throws StorageManagerException
@@ -615,4 +670,129 @@ public class TestQueryProcessing {
 		Assert.assertEquals(2, resultList.get(0).getBoundingBox().getDimension());
 		Assert.assertEquals(new Hyperrectangle(2.5d, 5.5d, 2.5d, 5.5d), resultList.get(0).getBoundingBox());
 	}
+	
+	/**
+	 * Test the k nearest neighbor query across memtables and sstables
+	 * @throws StorageManagerException
+	 * @throws RejectedException
+	 * @throws IOException
+	 */
+	@Test(timeout=60000)
+	public void testKNearestNeighborQuery() throws StorageManagerException, RejectedException, IOException {
+		storageRegistry.deleteTable(TABLE_1);
+		storageRegistry.createTable(TABLE_1, new TupleStoreConfiguration());
+		final TupleStoreManager storageManager = storageRegistry.getTupleStoreManager(TABLE_1);
+		
+		for(int i = 1; i <= 20; i++) {
+			final double position = i;
+			storageManager.put(new Tuple(Integer.toString(i), 
+					new Hyperrectangle(position, position, 0d, 0d), "value".getBytes()));
+			
+			if(i % 7 == 0) {
+				storageManager.flush();
+			}
+		}
+		
+		// Move tuple 3 away and delete tuple 5
+		storageManager.put(new Tuple("3", new Hyperrectangle(100d, 100d, 0d, 0d), "value".getBytes()));
+		storageManager.delete("5", MicroSecondTimestampProvider.getNewTimestamp());
+		
+		final Hyperrectangle queryPoint = new Hyperrectangle(0d, 0d, 0d, 0d);
+		final Operator queryPlan = new KNearestNeighborOperator(storageManager, queryPoint, 5);
+		
+		final List<String> keys = Lists.newArrayList(queryPlan.iterator()).stream()
+				.map(t -> t.convertToSingleTupleIfPossible().getKey())
+				.collect(Collectors.toList());
+		queryPlan.close();
+		
+		Assert.assertEquals(Lists.newArrayList("1", "2", "4", "6", "7"), keys);
+		
+		// More neighbors than tuples
+		final KNearestNeighborOperator allTuplesOperator = new KNearestNeighborOperator(storageManager, queryPoint, 100);
+		final List<Tuple> allTuples = allTuplesOperator.getNearestTuples();
+		allTuplesOperator.close();
+		
+		Assert.assertEquals(19, allTuples.size());
+		Assert.assertEquals("3", allTuples.get(18).getKey());
+		Assert.assertEquals(new Hyperrectangle(100d, 100d, 0d, 0d), allTuples.get(18).getBoundingBox());
+	}
+	
+	/**
+	 * Skip the tuple stores by the covering box, the time range and the key range
+	 * @throws StorageManagerException
+	 * @throws RejectedException
+	 * @throws IOException
+	 */
+	@Test(timeout=60000)
+	public void testTupleStorePruning() throws StorageManagerException, RejectedException, IOException {
+		storageRegistry.deleteTable(TABLE_1);
+		storageRegistry.createTable(TABLE_1, new TupleStoreConfiguration());
+		final TupleStoreManager storageManager = storageRegistry.getTupleStoreManager(TABLE_1);
+
+		final Tuple tuple1 = new Tuple("1", new Hyperrectangle(1.0, 2.0, 1.0, 2.0), "value1".getBytes());
+		final Tuple tuple2 = new Tuple("2", new Hyperrectangle(1.5, 2.5, 1.5, 2.5), "value2".getBytes());
+		storageManager.put(tuple1);
+		storageManager.put(tuple2);
+		storageManager.flush();
+		
+		final long timestamp = MicroSecondTimestampProvider.getNewTimestamp();
+
+		// Move tuple 1 to an other region
+		final Tuple tuple3 = new Tuple("1", new Hyperrectangle(10.0, 20.0, 10.0, 20.0), "value3".getBytes());
+		final Tuple tuple4 = new Tuple("4", new Hyperrectangle(11.0, 12.0, 11.0, 12.0), "value4".getBytes());
+		storageManager.put(tuple3);
+		storageManager.put(tuple4);
+		storageManager.flush();
+		
+		try (final TupleStoreAquirer aquirer = new TupleStoreAquirer(storageManager)) {
+			final List<SSTableFacade> facades = aquirer.getTupleStores().stream()
+				.filter(s -> s instanceof SSTableFacade)
+				.map(s -> (SSTableFacade) s)
+				.collect(Collectors.toList());
+
+			Assert.assertEquals(2, facades.size());
+			
+			for(final SSTableFacade facade : facades) {
+				Assert.assertTrue(facade.getCoveringBox().getDimension() == 2);
+				Assert.assertFalse(facade.isKeyInRange("0"));
+				Assert.assertFalse(facade.isKeyInRange("5"));
+			}
+		}
+		
+		// Tuple 1 is found in the first SSTable but the newest version is outside of the box
+		final Operator queryPlan1 = new SpatialIndexReadOperator(storageManager, 
+				new Hyperrectangle(0.0, 5.0, 0.0, 5.0));
+		final List<Tuple> result1 = Lists.newArrayList(queryPlan1.iterator()).stream()
+				.map(t -> t.convertToSingleTupleIfPossible()).collect(Collectors.toList());
+		queryPlan1.close();
+		Assert.assertEquals(Lists.newArrayList(tuple2), result1);
+
+		final Operator queryPlan2 = new SpatialIndexReadOperator(storageManager, 
+				new Hyperrectangle(9.0, 15.0, 9.0, 15.0));
+		final List<Tuple> result2 = Lists.newArrayList(queryPlan2.iterator()).stream()
+				.map(t -> t.convertToSingleTupleIfPossible()).collect(Collectors.toList());
+		queryPlan2.close();
+		Assert.assertEquals(2, result2.size());
+		Assert.assertTrue(result2.contains(tuple3));
+		Assert.assertTrue(result2.contains(tuple4));
+		
+		// Only the second SSTable contains newer tuples
+		final Operator queryPlan3 = new NewerAsVersionTimeSelectionOperator(timestamp, 
+				new FullTablescanOperator(storageManager));
+		final List<Tuple> result3 = Lists.newArrayList(queryPlan3.iterator()).stream()
+				.map(t -> t.convertToSingleTupleIfPossible()).collect(Collectors.toList());
+		queryPlan3.close();
+		Assert.assertEquals(2, result3.size());
+		Assert.assertTrue(result3.contains(tuple3));
+		Assert.assertTrue(result3.contains(tuple4));
+		
+		final Operator queryPlan4 = new NewerAsInsertTimeSeclectionOperator(Long.MAX_VALUE, 
+				new FullTablescanOperator(storageManager));
+		Assert.assertFalse(queryPlan4.iterator().hasNext());
+		queryPlan4.close();
+		
+		// Keys outside of the key range
+		Assert.assertTrue(storageManager.get("0").isEmpty());
+		Assert.assertEquals(Lists.newArrayList(tuple3), storageManager.get("1"));
+	}
 }
@@ -19,7 +19,14 @@ package org.bboxdb.test.storage;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.bboxdb.commons.io.FileUtil;
 import org.bboxdb.commons.math.Hyperrectangle;
@@ -27,12 +34,17 @@ import org.bboxdb.misc.BBoxDBConfigurationManager;
 import org.bboxdb.storage.entity.DeletedTuple;
 import org.bboxdb.storage.entity.Tuple;
 import org.bboxdb.storage.entity.TupleStoreName;
+import org.bboxdb.storage.sstable.SSTableCompression;
+import org.bboxdb.storage.sstable.SSTableConst;
 import org.bboxdb.storage.sstable.SSTableCreator;
 import org.bboxdb.storage.sstable.SSTableHelper;
 import org.bboxdb.storage.sstable.SSTableWriter;
 import org.bboxdb.storage.sstable.reader.SSTableFacade;
 import org.bboxdb.storage.sstable.reader.SSTableKeyIndexReader;
 import org.bboxdb.storage.sstable.reader.SSTableReader;
+import org.bboxdb.storage.sstable.reader.SSTableSortedKeyIndexReader;
+import org.bboxdb.storage.sstable.spatialindex.grid.GridIndexBuilder;
+import org.bboxdb.storage.sstable.spatialindex.rtree.STRPackedRTreeBuilder;
 import org.bboxdb.storage.tuplestore.ReadOnlyTupleStore;
 import org.junit.Assert;
 import org.junit.Test;
@@ -156,6 +168,435 @@ public class TestSSTable {
 		}
 		
 		Assert.assertEquals(tupleList.size(), tupleCounter);
+		
+		assertScanIterator(sstableReader, tupleList);
+	}
+	
+	/**
+	 * The sequential scan should return all tuples in the order of the file
+	 * @param sstableReader
+	 * @param tupleList
+	 */
+	private void assertScanIterator(final SSTableReader sstableReader, final List<Tuple> tupleList) {
+		final Iterator<Tuple> iterator = sstableReader.scanIterator();
+		Assert.assertNotNull(iterator);
+		
+		int tupleCounter = 0;
+		while(iterator.hasNext()) {
+			Assert.assertEquals(tupleList.get(tupleCounter), iterator.next());
+			tupleCounter++;
+		}
+		
+		Assert.assertEquals(tupleList.size(), tupleCounter);
+	}
+
+	/**
+	 * Test the snappy compressed SSTables
+	 * @throws Exception
+	 */
+	@Test(timeout=60000)
+	public void testSnappyCompressedSSTable() throws Exception {
+		testCompressedSSTable(SSTableCompression.SNAPPY);
+	}
+	
+	/**
+	 * Test the zstd compressed SSTables
+	 * @throws Exception
+	 */
+	@Test(timeout=60000)
+	public void testZstdCompressedSSTable() throws Exception {
+		testCompressedSSTable(SSTableCompression.ZSTD);
+	}
+
+	/**
+	 * Write and read a compressed SSTable with multiple blocks
+	 * @param compression
+	 * @throws Exception
+	 */
+	private void testCompressedSSTable(final SSTableCompression compression) throws Exception {
+		final String relationDirectory = SSTableHelper.getSSTableDir(STORAGE_DIRECTORY, TEST_RELATION);
+		final File relationDirectoryFile = new File(relationDirectory);
+		FileUtil.deleteRecursive(relationDirectoryFile.toPath());
+		relationDirectoryFile.mkdirs();
+		
+		final List<Tuple> tupleList = new ArrayList<>();
+		for(int i = 0; i < 1000; i++) {
+			final String key = String.format("%05d", i);
+			final Hyperrectangle box = new Hyperrectangle((double) i, (double) i + 1, 1d, 2d);
+			tupleList.add(new Tuple(key, box, ("value " + i + " some compressible data").getBytes()));
+			
+			// Duplicate keys on block boundaries
+			if(i % 50 == 0) {
+				tupleList.add(new Tuple(key, box, ("value " + i + " second version").getBytes()));
+			}
+		}
+		
+		final SSTableWriter ssTableWriter = new SSTableWriter(STORAGE_DIRECTORY, TEST_RELATION, 1, 
+				tupleList.size(), SSTableCreator.MEMTABLE, compression, 1024);
+		ssTableWriter.open();
+		ssTableWriter.addTuples(tupleList);
+		ssTableWriter.close();
+		
+		final SSTableFacade ssTableFacade = new SSTableFacade(STORAGE_DIRECTORY, TEST_RELATION, 1, 0);
+		ssTableFacade.init();
+		ssTableFacade.acquire();
+		
+		final SSTableReader sstableReader = ssTableFacade.getSsTableReader();
+		final SSTableKeyIndexReader ssTableIndexReader = ssTableFacade.getSsTableKeyIndexReader();
+		
+		Assert.assertNotNull(sstableReader.getBlockIndex());
+		Assert.assertEquals(compression, sstableReader.getBlockIndex().getCompression());
+		Assert.assertTrue(sstableReader.getBlockIndex().getBlocks() > 10);
+		
+		// Full scan
+		int tupleCounter = 0;
+		for(final Tuple tuple : ssTableIndexReader) {
+			Assert.assertEquals(tupleList.get(tupleCounter), tuple);
+			tupleCounter++;
+		}
+		Assert.assertEquals(tupleList.size(), tupleCounter);
+		
+		// Sequential scan
+		assertScanIterator(sstableReader, tupleList);
+		
+		// Point lookups
+		for(int i = 0; i < 1000; i++) {
+			final String key = String.format("%05d", i);
+			final int expectedVersions = (i % 50 == 0) ? 2 : 1;
+			Assert.assertEquals(expectedVersions, ssTableFacade.get(key).size());
+			Assert.assertEquals(key, sstableReader.scanForTuple(key).getKey());
+		}
+		
+		Assert.assertTrue(ssTableFacade.get("").isEmpty());
+		Assert.assertTrue(ssTableFacade.get("00010a").isEmpty());
+		Assert.assertTrue(ssTableFacade.get("99999").isEmpty());
+		Assert.assertNull(sstableReader.scanForTuple("99999"));
+		
+		// Spatial query
+		final Hyperrectangle queryBox = new Hyperrectangle(100.5d, 102.5d, 1d, 2d);
+		final Iterator<Tuple> iterator = ssTableFacade.getAllTuplesInBoundingBox(queryBox);
+		int spatialResults = 0;
+		while(iterator.hasNext()) {
+			Assert.assertTrue(iterator.next().getBoundingBox().intersects(queryBox));
+			spatialResults++;
+		}
+		
+		// Tuple 100 (two versions), 101 and 102
+		Assert.assertEquals(4, spatialResults);
+		
+		ssTableFacade.release();
+		ssTableFacade.shutdown();
+	}
+
+	/**
+	 * Test a SSTable with a packed spatial index
+	 * @throws Exception
+	 */
+	@Test(timeout=60000)
+	public void testPackedSpatialIndex() throws Exception {
+		final String relationDirectory = SSTableHelper.getSSTableDir(STORAGE_DIRECTORY, TEST_RELATION);
+		final File relationDirectoryFile = new File(relationDirectory);
+		FileUtil.deleteRecursive(relationDirectoryFile.toPath());
+		relationDirectoryFile.mkdirs();
+		
+		final List<Tuple> tupleList = new ArrayList<>();
+		for(int i = 0; i < 5000; i++) {
+			final String key = String.format("%05d", i);
+			final double x = i % 100;
+			final double y = i / 100;
+			final Hyperrectangle box = new Hyperrectangle(x, x + 0.5, y, y + 0.5);
+			tupleList.add(new Tuple(key, box, ("value " + i).getBytes()));
+		}
+		
+		final SSTableWriter ssTableWriter = new SSTableWriter(STORAGE_DIRECTORY, TEST_RELATION, 1, 
+				tupleList.size(), SSTableCreator.MEMTABLE, SSTableCompression.NONE, 
+				SSTableConst.DEFAULT_BLOCK_SIZE, new STRPackedRTreeBuilder());
+		ssTableWriter.open();
+		ssTableWriter.addTuples(tupleList);
+		ssTableWriter.close();
+		
+		final SSTableFacade ssTableFacade = new SSTableFacade(STORAGE_DIRECTORY, TEST_RELATION, 1, 0);
+		ssTableFacade.init();
+		ssTableFacade.acquire();
+		
+		for(int i = 0; i < 100; i++) {
+			final Hyperrectangle queryBox = new Hyperrectangle(i - 0.75, i + 0.25, 10.0, 20.25);
+			final Iterator<Tuple> iterator = ssTableFacade.getAllTuplesInBoundingBox(queryBox);
+			int spatialResults = 0;
+			while(iterator.hasNext()) {
+				Assert.assertTrue(iterator.next().getBoundingBox().intersects(queryBox));
+				spatialResults++;
+			}
+			
+			// Column i (and i - 1), rows 10 to 20
+			final int expectedColumns = (i == 0) ? 1 : 2;
+			Assert.assertEquals(expectedColumns * 11, spatialResults);
+		}
+		
+		ssTableFacade.release();
+		ssTableFacade.shutdown();
+	}
+	
+	/**
+	 * Test a SSTable with points in a grid index
+	 * @throws Exception
+	 */
+	@Test(timeout=60000)
+	public void testGridSpatialIndex() throws Exception {
+		final String relationDirectory = SSTableHelper.getSSTableDir(STORAGE_DIRECTORY, TEST_RELATION);
+		final File relationDirectoryFile = new File(relationDirectory);
+		FileUtil.deleteRecursive(relationDirectoryFile.toPath());
+		relationDirectoryFile.mkdirs();
+		
+		final List<Tuple> tupleList = new ArrayList<>();
+		for(int i = 0; i < 5000; i++) {
+			final String key = String.format("%05d", i);
+			final double x = i % 100;
+			final double y = i / 100;
+			final Hyperrectangle point = new Hyperrectangle(x, x, y, y);
+			tupleList.add(new Tuple(key, point, ("value " + i).getBytes()));
+		}
+		
+		final SSTableWriter ssTableWriter = new SSTableWriter(STORAGE_DIRECTORY, TEST_RELATION, 1, 
+				tupleList.size(), SSTableCreator.MEMTABLE, SSTableCompression.NONE, 
+				SSTableConst.DEFAULT_BLOCK_SIZE, new GridIndexBuilder());
+		ssTableWriter.open();
+		ssTableWriter.addTuples(tupleList);
+		ssTableWriter.close();
+		
+		// The reader is chosen by the magic bytes of the index
+		final SSTableFacade ssTableFacade = new SSTableFacade(STORAGE_DIRECTORY, TEST_RELATION, 1, 0);
+		ssTableFacade.init();
+		ssTableFacade.acquire();
+		
+		for(int i = 0; i < 100; i++) {
+			final Hyperrectangle queryBox = new Hyperrectangle(i - 1.0, (double) i, 10.0, 20.5);
+			final Iterator<Tuple> iterator = ssTableFacade.getAllTuplesInBoundingBox(queryBox);
+			int spatialResults = 0;
+			while(iterator.hasNext()) {
+				Assert.assertTrue(iterator.next().getBoundingBox().intersects(queryBox));
+				spatialResults++;
+			}
+			
+			// Column i (and i - 1), rows 10 to 20
+			final int expectedColumns = (i == 0) ? 1 : 2;
+			Assert.assertEquals(expectedColumns * 11, spatialResults);
+		}
+		
+		ssTableFacade.release();
+		ssTableFacade.shutdown();
+	}
+	
+	/**
+	 * Test the sorted key index
+	 * @throws Exception
+	 */
+	@Test(timeout=60000)
+	public void testSortedKeyIndex() throws Exception {
+		final String relationDirectory = SSTableHelper.getSSTableDir(STORAGE_DIRECTORY, TEST_RELATION);
+		final File relationDirectoryFile = new File(relationDirectory);
+		FileUtil.deleteRecursive(relationDirectoryFile.toPath());
+		relationDirectoryFile.mkdirs();
+		
+		final List<Tuple> tupleList = new ArrayList<>();
+		for(int i = 0; i < 1000; i++) {
+			final String key = String.format("key_%05d", i * 2);
+			tupleList.add(new Tuple(key, Hyperrectangle.FULL_SPACE, ("value " + i).getBytes()));
+			
+			// More versions than entries in a key index block
+			if(i % 100 == 0) {
+				for(int version = 0; version < 50; version++) {
+					tupleList.add(new Tuple(key, Hyperrectangle.FULL_SPACE, ("version " + version).getBytes()));
+				}
+			}
+		}
+		
+		final SSTableWriter ssTableWriter = new SSTableWriter(STORAGE_DIRECTORY, TEST_RELATION, 1, 
+				tupleList.size(), SSTableCreator.MEMTABLE);
+		ssTableWriter.open();
+		ssTableWriter.addTuples(tupleList);
+		final File keyIndexFile = ssTableWriter.getSortedKeyIndexFile();
+		ssTableWriter.close();
+		
+		Assert.assertTrue(keyIndexFile.exists());
+		
+		final SSTableReader sstableReader = new SSTableReader(STORAGE_DIRECTORY, TEST_RELATION, 1);
+		sstableReader.init();
+		final SSTableKeyIndexReader ssTableIndexReader = new SSTableKeyIndexReader(sstableReader);
+		ssTableIndexReader.init();
+		
+		final SSTableSortedKeyIndexReader sortedKeyIndexReader = ssTableIndexReader.getSortedKeyIndexReader();
+		Assert.assertNotNull(sortedKeyIndexReader);
+		Assert.assertTrue(sortedKeyIndexReader.getBlocks() > 1);
+		Assert.assertEquals(tupleList.size(), sortedKeyIndexReader.getNumberOfEntries());
+		
+		for(int i = 0; i < 1000; i++) {
+			final String key = String.format("key_%05d", i * 2);
+			final List<Long> positions = ssTableIndexReader.getPositionsForTuple(key);
+			final int expectedVersions = (i % 100 == 0) ? 51 : 1;
+			Assert.assertEquals(expectedVersions, positions.size());
+			
+			final List<Long> binarySearchPositions = ssTableIndexReader.getPositionsForTupleWithBinarySearch(key);
+			Assert.assertEquals(new HashSet<>(binarySearchPositions), new HashSet<>(positions));
+			
+			for(final long position : positions) {
+				Assert.assertEquals(key, sstableReader.getTupleAtPosition(position).getKey());
+			}
+			
+			// Not existing keys
+			Assert.assertTrue(ssTableIndexReader.getPositionsForTuple(String.format("key_%05d", i * 2 + 1)).isEmpty());
+		}
+		
+		Assert.assertTrue(ssTableIndexReader.getPositionsForTuple("").isEmpty());
+		Assert.assertTrue(ssTableIndexReader.getPositionsForTuple("a").isEmpty());
+		Assert.assertTrue(ssTableIndexReader.getPositionsForTuple("key_").isEmpty());
+		Assert.assertTrue(ssTableIndexReader.getPositionsForTuple("zzz").isEmpty());
+		
+		ssTableIndexReader.shutdown();
+		sstableReader.shutdown();
+		
+		// SSTables without a sorted key index
+		Assert.assertTrue(keyIndexFile.delete());
+		
+		final SSTableReader sstableReader2 = new SSTableReader(STORAGE_DIRECTORY, TEST_RELATION, 1);
+		sstableReader2.init();
+		final SSTableKeyIndexReader ssTableIndexReader2 = new SSTableKeyIndexReader(sstableReader2);
+		ssTableIndexReader2.init();
+		
+		Assert.assertNull(ssTableIndexReader2.getSortedKeyIndexReader());
+		Assert.assertEquals(51, ssTableIndexReader2.getPositionsForTuple("key_00200").size());
+		Assert.assertEquals(1, ssTableIndexReader2.getPositionsForTuple("key_00202").size());
+		Assert.assertTrue(ssTableIndexReader2.getPositionsForTuple("key_00201").isEmpty());
+		
+		ssTableIndexReader2.shutdown();
+		sstableReader2.shutdown();
+	}
+
+	/**
+	 * Read the same SSTable from multiple threads
+	 * @throws Exception
+	 */
+	@Test(timeout=60000)
+	public void testConcurrentReads() throws Exception {
+		for(final SSTableCompression compression : Arrays.asList(SSTableCompression.NONE, SSTableCompression.ZSTD)) {
+			final String relationDirectory = SSTableHelper.getSSTableDir(STORAGE_DIRECTORY, TEST_RELATION);
+			final File relationDirectoryFile = new File(relationDirectory);
+			FileUtil.deleteRecursive(relationDirectoryFile.toPath());
+			relationDirectoryFile.mkdirs();
+			
+			final List<Tuple> tupleList = new ArrayList<>();
+			for(int i = 0; i < 2000; i++) {
+				final String key = String.format("%05d", i);
+				final Hyperrectangle box = new Hyperrectangle((double) i, (double) i + 0.5, 1d, 2d);
+				tupleList.add(new Tuple(key, box, ("value " + i).getBytes()));
+			}
+			
+			final SSTableWriter ssTableWriter = new SSTableWriter(STORAGE_DIRECTORY, TEST_RELATION, 1, 
+					tupleList.size(), SSTableCreator.MEMTABLE, compression, 1024);
+			ssTableWriter.open();
+			ssTableWriter.addTuples(tupleList);
+			ssTableWriter.close();
+			
+			final SSTableFacade ssTableFacade = new SSTableFacade(STORAGE_DIRECTORY, TEST_RELATION, 1, 0);
+			ssTableFacade.init();
+			ssTableFacade.acquire();
+			
+			final ExecutorService executor = Executors.newFixedThreadPool(8);
+			
+			try {
+				final List<Future<Void>> futures = new ArrayList<>();
+				
+				for(int thread = 0; thread < 8; thread++) {
+					final int seed = thread;
+					futures.add(executor.submit(() -> {
+						final Random random = new Random(seed);
+						
+						for(int i = 0; i < 1000; i++) {
+							final int tupleNumber = random.nextInt(tupleList.size());
+							final Tuple expected = tupleList.get(tupleNumber);
+							
+							final List<Tuple> result = ssTableFacade.get(expected.getKey());
+							Assert.assertEquals(1, result.size());
+							Assert.assertEquals(expected, result.get(0));
+							
+							final Iterator<Tuple> iterator = ssTableFacade.getAllTuplesInBoundingBox(expected.getBoundingBox());
+							Assert.assertTrue(iterator.hasNext());
+							Assert.assertEquals(expected, iterator.next());
+							Assert.assertFalse(iterator.hasNext());
+							
+							final SSTableKeyIndexReader keyIndexReader = ssTableFacade.getSsTableKeyIndexReader();
+							Assert.assertEquals(1, keyIndexReader.getPositionsForTupleWithBinarySearch(expected.getKey()).size());
+						}
+						
+						return null;
+					}));
+				}
+				
+				for(final Future<Void> future : futures) {
+					future.get();
+				}
+			} finally {
+				executor.shutdown();
+				ssTableFacade.release();
+				ssTableFacade.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * Read the SSTable with small mapped segments, so that tuples and
+	 * index entries cross the segment borders
+	 * @throws Exception
+	 */
+	@Test(timeout=60000)
+	public void testSmallMappedSegments() throws Exception {
+		for(final SSTableCompression compression : SSTableCompression.values()) {
+			final String relationDirectory = SSTableHelper.getSSTableDir(STORAGE_DIRECTORY, TEST_RELATION);
+			final File relationDirectoryFile = new File(relationDirectory);
+			FileUtil.deleteRecursive(relationDirectoryFile.toPath());
+			relationDirectoryFile.mkdirs();
+			
+			final List<Tuple> tupleList = new ArrayList<>();
+			for(int i = 0; i < 500; i++) {
+				final String key = String.format("%05d", i);
+				final Hyperrectangle box = new Hyperrectangle((double) i, (double) i + 1, 1d, 2d);
+				tupleList.add(new Tuple(key, box, ("value " + i).getBytes()));
+			}
+			
+			final SSTableWriter ssTableWriter = new SSTableWriter(STORAGE_DIRECTORY, TEST_RELATION, 1, 
+					tupleList.size(), SSTableCreator.MEMTABLE, compression, 1024);
+			ssTableWriter.open();
+			ssTableWriter.addTuples(tupleList);
+			ssTableWriter.close();
+			
+			final SSTableReader sstableReader = new SSTableReader(STORAGE_DIRECTORY, TEST_RELATION, 1);
+			sstableReader.setSegmentSize(333);
+			sstableReader.init();
+			
+			final SSTableKeyIndexReader ssTableIndexReader = new SSTableKeyIndexReader(sstableReader);
+			ssTableIndexReader.setSegmentSize(77);
+			ssTableIndexReader.init();
+			
+			Assert.assertTrue(sstableReader.getMemory().getNumberOfSegments() > 1);
+			Assert.assertTrue(ssTableIndexReader.getMemory().getNumberOfSegments() > 1);
+			
+			int tupleCounter = 0;
+			for(final Tuple tuple : ssTableIndexReader) {
+				Assert.assertEquals(tupleList.get(tupleCounter), tuple);
+				tupleCounter++;
+			}
+			Assert.assertEquals(tupleList.size(), tupleCounter);
+			
+			for(final Tuple tuple : tupleList) {
+				final List<Long> positions = ssTableIndexReader.getPositionsForTuple(tuple.getKey());
+				Assert.assertEquals(1, positions.size());
+				Assert.assertEquals(tuple, sstableReader.getTupleAtPosition(positions.get(0)));
+				Assert.assertEquals(tuple, sstableReader.scanForTuple(tuple.getKey()));
+			}
+			
+			ssTableIndexReader.shutdown();
+			sstableReader.shutdown();
+		}
 	}
 
 	/**
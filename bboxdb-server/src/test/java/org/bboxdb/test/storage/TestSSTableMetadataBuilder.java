@@ -317,6 +317,54 @@ public class TestSSTableMetadataBuilder {
 		tmpFile.delete();
 	}
 
+	/**
+	 * Test the key range and the covering box flag
+	 */
+	@Test(timeout=60000)
+	public void testKeyRangeAndFullSpaceTuples() {
+		final SSTableMetadataBuilder ssTableIndexBuilder = new SSTableMetadataBuilder(SSTableCreator.MEMTABLE);
+
+		Assert.assertNull(ssTableIndexBuilder.getMetaData().getFirstKey());
+		Assert.assertNull(ssTableIndexBuilder.getMetaData().getLastKey());
+		
+		addTwoTuples(ssTableIndexBuilder);
+		ssTableIndexBuilder.updateWithTuple(new Tuple("abb", new Hyperrectangle(1d, 2d, 1d, 2d), "".getBytes()));
+		
+		Assert.assertEquals("abb", ssTableIndexBuilder.getMetaData().getFirstKey());
+		Assert.assertEquals("def", ssTableIndexBuilder.getMetaData().getLastKey());
+		Assert.assertTrue(ssTableIndexBuilder.getMetaData().isBoundingBoxCoversAllTuples());
+
+		// Deleted tuples have no bounding box
+		ssTableIndexBuilder.updateWithTuple(new DeletedTuple("xyz"));
+		Assert.assertEquals("xyz", ssTableIndexBuilder.getMetaData().getLastKey());
+		Assert.assertTrue(ssTableIndexBuilder.getMetaData().isBoundingBoxCoversAllTuples());
+		
+		ssTableIndexBuilder.updateWithTuple(new Tuple("ghi", Hyperrectangle.FULL_SPACE, "".getBytes()));
+		Assert.assertFalse(ssTableIndexBuilder.getMetaData().isBoundingBoxCoversAllTuples());
+		Assert.assertArrayEquals(new double[] {1d, 2d, 1d, 5f}, 
+				ssTableIndexBuilder.getMetaData().getBoundingBoxData(), 0.001d);
+		
+		final TupleStoreMetaData metaData = ssTableIndexBuilder.getMetaData();
+		final TupleStoreMetaData metaDataRead = TupleStoreMetaData.importFromYaml(metaData.exportToYaml());
+		Assert.assertEquals(metaData, metaDataRead);
+	}
+	
+	/**
+	 * Metadata without the key range and the covering box flag (written by older versions)
+	 */
+	@Test(timeout=60000)
+	public void testReadOldMetadata() {
+		final String yamlData = "tuples: 1\noldestTupleVersionTimestamp: 1\nnewestTupleVersionTimestamp: 1\n"
+				+ "newestTupleInsertedTimstamp: 1\ndimensions: 1\nboundingBoxData: [1.0, 2.0]\n"
+				+ "sstableCreator: memtable\n";
+		
+		final TupleStoreMetaData metaDataRead = TupleStoreMetaData.importFromYaml(yamlData);
+		Assert.assertEquals(1, metaDataRead.getTuples());
+		Assert.assertFalse(metaDataRead.isBoundingBoxCoversAllTuples());
+		Assert.assertNull(metaDataRead.getFirstKey());
+		Assert.assertNull(metaDataRead.getLastKey());
+	}
+
 	/**
 	 * Add two tuples to the index builder
 	 * @param ssTableIndexBuilder
@@ -0,0 +1,266 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *******************************************************************************/
+package org.bboxdb.test.storage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.bboxdb.commons.MicroSecondTimestampProvider;
+import org.bboxdb.commons.math.Hyperrectangle;
+import org.bboxdb.storage.StorageManagerException;
+import org.bboxdb.storage.entity.DeletedTuple;
+import org.bboxdb.storage.entity.Tuple;
+import org.bboxdb.storage.entity.TupleStoreConfiguration;
+import org.bboxdb.storage.entity.TupleStoreConfigurationBuilder;
+import org.bboxdb.storage.entity.TupleStoreName;
+import org.bboxdb.storage.memtable.AbstractMemtable;
+import org.bboxdb.storage.memtable.Memtable;
+import org.bboxdb.storage.memtable.MemtableFactory;
+import org.bboxdb.storage.memtable.MemtableType;
+import org.bboxdb.storage.memtable.SkipListMemtable;
+import org.bboxdb.storage.util.TupleHelper;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class TestSkipListMemtable {
+
+	/**
+	 * The table name
+	 */
+	private static final TupleStoreName MEMTABLE_TABLE_NAME = new TupleStoreName("3_mygroup_test");
+
+	/**
+	 * The max amount of entries
+	 */
+	private static final int MEMTABLE_MAX_ENTRIES = 10000;
+
+	/**
+	 * The max size of a memtable
+	 */
+	private static final int MEMTABLE_MAX_SIZE = 10_000_000;
+
+	/**
+	 * The memtable reference
+	 */
+	private SkipListMemtable memtable;
+
+	@Before
+	public void before() {
+		memtable = new SkipListMemtable(MEMTABLE_TABLE_NAME, MEMTABLE_MAX_ENTRIES, MEMTABLE_MAX_SIZE, null);
+		memtable.init();
+		memtable.acquire();
+	}
+
+	@After
+	public void after() {
+		memtable.deleteOnClose();
+		memtable.release();
+		memtable.shutdown();
+	}
+
+	/**
+	 * Test insert and get
+	 * @throws Exception
+	 */
+	@Test(timeout=60000)
+	public void testInsertAndGet() throws Exception {
+		final Tuple tuple1 = new Tuple("1", Hyperrectangle.FULL_SPACE, "abc".getBytes(), 1);
+		final Tuple tuple2 = new Tuple("2", Hyperrectangle.FULL_SPACE, "def".getBytes(), 2);
+		final Tuple tuple3 = new Tuple("1", Hyperrectangle.FULL_SPACE, "ghi".getBytes(), 3);
+		memtable.put(tuple1);
+		memtable.put(tuple2);
+		memtable.put(tuple3);
+
+		Assert.assertEquals(Lists.newArrayList(tuple1, tuple3), memtable.get("1"));
+		Assert.assertEquals(Lists.newArrayList(tuple2), memtable.get("2"));
+		Assert.assertTrue(memtable.get("3").isEmpty());
+		Assert.assertEquals(3, memtable.getNumberOfTuples());
+		Assert.assertEquals(1, memtable.getOldestTupleVersionTimestamp());
+		Assert.assertEquals(3, memtable.getNewestTupleVersionTimestamp());
+	}
+
+	/**
+	 * Test the deletion of a tuple
+	 * @throws Exception
+	 */
+	@Test(timeout=60000)
+	public void testTupleDelete() throws Exception {
+		final Tuple createdTuple = new Tuple("1", Hyperrectangle.FULL_SPACE, "abc".getBytes());
+		memtable.put(createdTuple);
+		memtable.delete("1", MicroSecondTimestampProvider.getNewTimestamp());
+
+		final List<Tuple> result = memtable.get("1");
+		Assert.assertEquals(2, result.size());
+		Assert.assertEquals(createdTuple, result.get(0));
+		Assert.assertTrue(result.get(1) instanceof DeletedTuple);
+	}
+
+	/**
+	 * Test the sorted list
+	 * @throws StorageManagerException
+	 */
+	@Test(timeout=60000)
+	public void testSortedList() throws StorageManagerException {
+		final Tuple tuple1 = new Tuple("5", Hyperrectangle.FULL_SPACE, "abc".getBytes(), 4);
+		final Tuple tuple2 = new Tuple("3", Hyperrectangle.FULL_SPACE, "def".getBytes(), 2);
+		final Tuple tuple3 = new Tuple("5", Hyperrectangle.FULL_SPACE, "ghi".getBytes(), 1);
+		memtable.put(tuple1);
+		memtable.put(tuple2);
+		memtable.put(tuple3);
+
+		Assert.assertEquals(Lists.newArrayList(tuple2, tuple3, tuple1), memtable.getSortedTupleList());
+		Assert.assertEquals(Lists.newArrayList(tuple2, tuple3, tuple1), Lists.newArrayList(memtable.iterator()));
+	}
+
+	/**
+	 * Test the bounding box query
+	 * @throws StorageManagerException
+	 */
+	@Test(timeout=60000)
+	public void testBoundingBoxQuery() throws StorageManagerException {
+		final Tuple tuple1 = new Tuple("1", new Hyperrectangle(1d, 2d, 1d, 2d), "abc".getBytes());
+		final Tuple tuple2 = new Tuple("2", new Hyperrectangle(10d, 20d, 10d, 20d), "def".getBytes());
+		final Tuple tuple3 = new Tuple("3", new Hyperrectangle(1.5d, 4d, 1.5d, 4d), "ghi".getBytes());
+		memtable.put(tuple1);
+		memtable.put(tuple2);
+		memtable.put(tuple3);
+
+		final List<Tuple> result = Lists.newArrayList(
+				memtable.getAllTuplesInBoundingBox(new Hyperrectangle(0d, 3d, 0d, 3d)));
+
+		Assert.assertEquals(2, result.size());
+		Assert.assertTrue(result.contains(tuple1));
+		Assert.assertTrue(result.contains(tuple3));
+	}
+
+	/**
+	 * Test the overflow of the memtable
+	 * @throws StorageManagerException
+	 */
+	@Test(timeout=60000)
+	public void testFull() throws StorageManagerException {
+		final SkipListMemtable smallMemtable = new SkipListMemtable(MEMTABLE_TABLE_NAME, 2, MEMTABLE_MAX_SIZE, null);
+		smallMemtable.init();
+		smallMemtable.acquire();
+
+		Assert.assertNotEquals(AbstractMemtable.MEMTABLE_FULL, smallMemtable.tryPut(new Tuple("1", Hyperrectangle.FULL_SPACE, "abc".getBytes())));
+		Assert.assertFalse(smallMemtable.isFull());
+		Assert.assertNotEquals(AbstractMemtable.MEMTABLE_FULL, smallMemtable.tryPut(new Tuple("2", Hyperrectangle.FULL_SPACE, "abc".getBytes())));
+		Assert.assertTrue(smallMemtable.isFull());
+		Assert.assertEquals(AbstractMemtable.MEMTABLE_FULL, smallMemtable.tryPut(new Tuple("3", Hyperrectangle.FULL_SPACE, "abc".getBytes())));
+		Assert.assertEquals(2, smallMemtable.getNumberOfTuples());
+
+		smallMemtable.deleteOnClose();
+		smallMemtable.release();
+	}
+
+	/**
+	 * Insert data with multiple threads
+	 * @throws Exception
+	 */
+	@Test(timeout=60000)
+	public void testConcurrentInsert() throws Exception {
+		final int threads = 8;
+		final int tuplesPerThread = MEMTABLE_MAX_ENTRIES / threads;
+
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		final List<Future<Boolean>> futures = new ArrayList<>();
+
+		for(int thread = 0; thread < threads; thread++) {
+			final int threadNumber = thread;
+			futures.add(executor.submit(() -> {
+				for(int i = 0; i < tuplesPerThread; i++) {
+					final String key = threadNumber + "_" + i;
+					final Hyperrectangle box = new Hyperrectangle((double) i, (double) i + 1);
+					memtable.put(new Tuple(key, box, key.getBytes()));
+				}
+				return true;
+			}));
+		}
+
+		for(final Future<Boolean> future : futures) {
+			Assert.assertTrue(future.get());
+		}
+
+		executor.shutdown();
+
+		Assert.assertEquals(threads * tuplesPerThread, memtable.getNumberOfTuples());
+
+		final List<Tuple> sortedList = memtable.getSortedTupleList();
+		Assert.assertEquals(threads * tuplesPerThread, sortedList.size());
+
+		for(int i = 1; i < sortedList.size(); i++) {
+			Assert.assertTrue(TupleHelper.TUPLE_KEY_AND_VERSION_COMPARATOR.compare(
+					sortedList.get(i - 1), sortedList.get(i)) <= 0);
+		}
+
+		for(int thread = 0; thread < threads; thread++) {
+			Assert.assertEquals(1, memtable.get(thread + "_17").size());
+		}
+
+		final List<Tuple> boxResult = Lists.newArrayList(
+				memtable.getAllTuplesInBoundingBox(new Hyperrectangle(0.5d, 0.6d)));
+		Assert.assertEquals(threads, boxResult.size());
+	}
+
+	/**
+	 * Test the nearest neighbor search
+	 * @throws StorageManagerException
+	 */
+	@Test(timeout=60000)
+	public void testNearestNeighbors() throws StorageManagerException {
+		final Tuple tuple1 = new Tuple("1", new Hyperrectangle(1d, 2d, 1d, 2d), "abc".getBytes());
+		final Tuple tuple2 = new Tuple("2", new Hyperrectangle(10d, 20d, 10d, 20d), "def".getBytes());
+		final Tuple tuple3 = new Tuple("3", new Hyperrectangle(3d, 4d, 3d, 4d), "ghi".getBytes());
+		memtable.put(tuple1);
+		memtable.put(tuple2);
+		memtable.put(tuple3);
+		memtable.delete("4", MicroSecondTimestampProvider.getNewTimestamp());
+
+		final List<Tuple> result = Lists.newArrayList(
+				memtable.getAllTuplesByDistance(new Hyperrectangle(5d, 5d, 5d, 5d)));
+
+		Assert.assertEquals(Lists.newArrayList(tuple3, tuple1, tuple2), result);
+	}
+
+	/**
+	 * Test the memtable factory
+	 */
+	@Test(timeout=60000)
+	public void testMemtableFactory() {
+		final TupleStoreConfiguration configuration1 = TupleStoreConfigurationBuilder.create().build();
+		final AbstractMemtable memtable1 = MemtableFactory.getInstance(configuration1,
+				MEMTABLE_TABLE_NAME, 10, 10, null);
+		Assert.assertTrue(memtable1 instanceof Memtable);
+
+		final TupleStoreConfiguration configuration2 = TupleStoreConfigurationBuilder.create()
+				.withMemtableType(MemtableType.SKIPLIST)
+				.build();
+
+		final AbstractMemtable memtable2 = MemtableFactory.getInstance(configuration2,
+				MEMTABLE_TABLE_NAME, 10, 10, null);
+		Assert.assertTrue(memtable2 instanceof SkipListMemtable);
+	}
+}
@@ -0,0 +1,92 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.test.storage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.bboxdb.commons.math.Hyperrectangle;
+import org.bboxdb.storage.sstable.compact.SpatialPartitioner;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestSpatialPartitioner {
+
+	@Test(timeout=60000)
+	public void testPartitions() {
+		final List<Hyperrectangle> samples = new ArrayList<>();
+		
+		for(int x = 0; x < 10; x++) {
+			for(int y = 0; y < 10; y++) {
+				samples.add(new Hyperrectangle((double) x, (double) x, (double) y, (double) y));
+			}
+		}
+		
+		final SpatialPartitioner partitioner = new SpatialPartitioner(samples, 4);
+		Assert.assertEquals(4, partitioner.getPartitions());
+		Assert.assertEquals(2, partitioner.getDimension());
+		
+		// Each partition gets the same number of samples
+		final int[] partitionSize = new int[partitioner.getPartitions()];
+		for(final Hyperrectangle sample : samples) {
+			partitionSize[partitioner.getPartition(sample)]++;
+		}
+		
+		for(final int size : partitionSize) {
+			Assert.assertEquals(25, size);
+		}
+		
+		// Neighboring points belong to the same partition
+		Assert.assertEquals(partitioner.getPartition(new Hyperrectangle(0d, 0d, 0d, 0d)), 
+				partitioner.getPartition(new Hyperrectangle(1d, 1d, 1d, 1d)));
+		Assert.assertNotEquals(partitioner.getPartition(new Hyperrectangle(0d, 0d, 0d, 0d)), 
+				partitioner.getPartition(new Hyperrectangle(9d, 9d, 9d, 9d)));
+		
+		// Points outside of the sampled space
+		Assert.assertEquals(partitioner.getPartition(new Hyperrectangle(0d, 0d, 0d, 0d)), 
+				partitioner.getPartition(new Hyperrectangle(-100d, -100d, -100d, -100d)));
+	}
+	
+	@Test(timeout=60000)
+	public void testNoPartition() {
+		final List<Hyperrectangle> samples = Arrays.asList(new Hyperrectangle(1d, 2d, 1d, 2d), 
+				new Hyperrectangle(5d, 6d, 5d, 6d));
+		
+		final SpatialPartitioner partitioner = new SpatialPartitioner(samples, 4);
+		
+		// Only two distinct samples
+		Assert.assertEquals(2, partitioner.getPartitions());
+		Assert.assertEquals(SpatialPartitioner.NO_PARTITION, partitioner.getPartition(Hyperrectangle.FULL_SPACE));
+		Assert.assertEquals(SpatialPartitioner.NO_PARTITION, partitioner.getPartition(null));
+		Assert.assertEquals(SpatialPartitioner.NO_PARTITION, 
+				partitioner.getPartition(new Hyperrectangle(1d, 2d, 1d, 2d, 1d, 2d)));
+	}
+	
+	@Test(timeout=60000)
+	public void testEmptySamples() {
+		final SpatialPartitioner partitioner = new SpatialPartitioner(new ArrayList<>(), 4);
+		Assert.assertEquals(1, partitioner.getPartitions());
+		Assert.assertEquals(SpatialPartitioner.NO_PARTITION, 
+				partitioner.getPartition(new Hyperrectangle(1d, 2d, 1d, 2d)));
+		
+		final List<Hyperrectangle> equalSamples = Arrays.asList(new Hyperrectangle(1d, 2d), 
+				new Hyperrectangle(1d, 2d), new Hyperrectangle(1d, 2d));
+		Assert.assertEquals(1, new SpatialPartitioner(equalSamples, 4).getPartitions());
+	}
+}
@@ -17,6 +17,7 @@
  *******************************************************************************/
 package org.bboxdb.test.storage;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Phaser;
@@ -38,8 +39,10 @@ import org.bboxdb.storage.entity.TupleStoreConfigurationBuilder;
 import org.bboxdb.storage.entity.TupleStoreName;
 import org.bboxdb.storage.entity.WatermarkTuple;
 import org.bboxdb.storage.sstable.SSTableConst;
+import org.bboxdb.storage.sstable.SSTableHelper;
 import org.bboxdb.storage.tuplestore.manager.TupleStoreManager;
 import org.bboxdb.storage.tuplestore.manager.TupleStoreManagerRegistry;
+import org.bboxdb.storage.wal.WriteAheadLogWriter;
 import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.Before;
@@ -480,4 +483,48 @@ public class TestStorageManager {
 		final List<Tuple> readTuples2 = storageManager.get("abc");
 		Assert.assertTrue(readTuples2.isEmpty());
 	}
+
+	@Test(timeout=60000)
+	public void testRecoveryFromWal() throws Exception {
+		final TupleStoreName recoveryTable = new TupleStoreName("testgroup1_walrecovery");
+		storageRegistry.deleteTable(recoveryTable);
+		storageRegistry.createTable(recoveryTable, TupleStoreConfigurationBuilder.create().build());
+		storageRegistry.shutdownSStable(recoveryTable);
+
+		final String storageDir = storageRegistry.getAllStorages().get(0).getBasedir().getAbsolutePath();
+		final File tableDir = new File(SSTableHelper.getSSTableDir(storageDir, recoveryTable));
+		Assert.assertTrue(tableDir.exists());
+
+		// Write a WAL without a flush (e.g., after a crash)
+		final WriteAheadLogWriter walWriter = new WriteAheadLogWriter(tableDir, 1);
+		for(int i = 0; i < 100; i++) {
+			walWriter.addTuple(new Tuple(Integer.toString(i), new Hyperrectangle(1d, 2d), "abc".getBytes()));
+		}
+		walWriter.close();
+
+		final TupleStoreManagerRegistry recoveryRegistry = new TupleStoreManagerRegistry();
+		recoveryRegistry.init();
+
+		try {
+			// The table is opened during the init of the registry
+			Assert.assertTrue(recoveryRegistry.isStorageManagerActive(recoveryTable));
+
+			final TupleStoreManager recoveredManager = recoveryRegistry.getTupleStoreManager(recoveryTable);
+
+			for(int i = 0; i < 100; i++) {
+				Assert.assertEquals(1, recoveredManager.get(Integer.toString(i)).size());
+			}
+
+			// The WAL is deleted after the memtables are flushed
+			while(walWriter.getFile().exists()) {
+				Thread.sleep(10);
+			}
+
+			Assert.assertEquals(1, recoveredManager.get("1").size());
+		} finally {
+			recoveryRegistry.shutdown();
+		}
+
+		storageRegistry.deleteTable(recoveryTable);
+	}
 }
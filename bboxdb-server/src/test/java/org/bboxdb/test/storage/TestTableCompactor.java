@@ -33,10 +33,12 @@ import org.bboxdb.storage.StorageManagerException;
 import org.bboxdb.storage.entity.DeletedTuple;
 import org.bboxdb.storage.entity.Tuple;
 import org.bboxdb.storage.entity.TupleStoreConfiguration;
+import org.bboxdb.storage.entity.TupleStoreConfigurationBuilder;
 import org.bboxdb.storage.entity.TupleStoreName;
 import org.bboxdb.storage.sstable.SSTableCreator;
 import org.bboxdb.storage.sstable.SSTableHelper;
 import org.bboxdb.storage.sstable.SSTableWriter;
+import org.bboxdb.storage.sstable.compact.MergeStrategyType;
 import org.bboxdb.storage.sstable.compact.SSTableCompactor;
 import org.bboxdb.storage.sstable.compact.SSTableServiceRunnable;
 import org.bboxdb.storage.sstable.reader.SSTableFacade;
@@ -181,7 +183,7 @@ public class TestTableCompactor {
 		
 		// Check the consistency of the index
 		for(int i = 1; i < 500; i++) {
-			final List<Integer> positions = ssTableIndexReader.getPositionsForTuple(Integer.toString(i));
+			final List<Long> positions = ssTableIndexReader.getPositionsForTuple(Integer.toString(i));
 			Assert.assertTrue(positions.size() == 1);
 		}
 		
@@ -409,6 +411,143 @@ public class TestTableCompactor {
 		return ssTableIndexReader;
 	}
 	
+	/**
+	 * Test the spatially partitioned output
+	 * @throws StorageManagerException
+	 * @throws InterruptedException
+	 * @throws BBoxDBException 
+	 */
+	@Test(timeout=60000)
+	public void testSpatiallyPartitionedCompaction() throws StorageManagerException, 
+		InterruptedException, BBoxDBException {
+		
+		final List<Tuple> tupleList1 = new ArrayList<>();
+		final List<Tuple> tupleList2 = new ArrayList<>();
+		final List<Tuple> allTuples = new ArrayList<>();
+		
+		for(int i = 0; i < 400; i++) {
+			final double x = (i % 20) * 5;
+			final double y = (i / 20) * 5;
+			final Tuple tuple = new Tuple(Integer.toString(i), new Hyperrectangle(x, x + 1, y, y + 1), "abc".getBytes());
+			allTuples.add(tuple);
+			
+			if(i % 2 == 0) {
+				tupleList1.add(tuple);
+			} else {
+				tupleList2.add(tuple);
+			}
+		}
+		
+		tupleList2.add(new DeletedTuple("deleted"));
+		tupleList2.add(new Tuple("fullspace", Hyperrectangle.FULL_SPACE, "abc".getBytes()));
+		
+		final SSTableKeyIndexReader reader1 = addTuplesToFileAndGetReader(tupleList1, 1);
+		final SSTableKeyIndexReader reader2 = addTuplesToFileAndGetReader(tupleList2, 2);
+		
+		storageRegistry.deleteTable(TEST_RELATION);
+		storageRegistry.createTable(TEST_RELATION, TupleStoreConfigurationBuilder.create()
+				.withSpatialPartitions(4).build());
+		final TupleStoreManager storageManager = storageRegistry.getTupleStoreManager(TEST_RELATION);
+		
+		final SSTableCompactor compactor = new SSTableCompactor(storageManager, Arrays.asList(reader1, reader2));
+		compactor.executeCompactation();
+		
+		Assert.assertEquals(4, compactor.getSpatialPartitioner().getPartitions());
+		Assert.assertEquals(402, compactor.getWrittenTuples());
+		
+		// 4 spatial partitions and one output for the tuples without a bounding box
+		final List<SSTableWriter> resultWriter = compactor.getResultList();
+		Assert.assertEquals(5, resultWriter.size());
+		
+		final Hyperrectangle queryBox = new Hyperrectangle(2d, 3d, 2d, 3d);
+		final long expectedResults = allTuples.stream()
+				.filter(t -> t.getBoundingBox().intersects(queryBox))
+				.count();
+		
+		int partitionedOutputs = 0;
+		int intersectingOutputs = 0;
+		int tuples = 0;
+		int results = 0;
+		
+		for(final SSTableWriter writer : resultWriter) {
+			final SSTableFacade facade = new SSTableFacade(STORAGE_DIRECTORY, TEST_RELATION, writer.getTablenumber(), 0);
+			facade.init();
+			facade.acquire();
+			
+			final long outputTuples = facade.getNumberOfTuples();
+			tuples += outputTuples;
+			
+			if(! facade.getCoveringBox().equals(Hyperrectangle.FULL_SPACE)) {
+				partitionedOutputs++;
+				Assert.assertTrue(outputTuples >= 50);
+				
+				if(facade.getCoveringBox().intersects(queryBox)) {
+					intersectingOutputs++;
+					
+					final Iterator<Tuple> iterator = facade.getAllTuplesInBoundingBox(queryBox);
+					while(iterator.hasNext()) {
+						if(iterator.next().getBoundingBox().intersects(queryBox)) {
+							results++;
+						}
+					}
+				}
+			}
+			
+			facade.release();
+			facade.shutdown();
+		}
+		
+		Assert.assertEquals(4, partitionedOutputs);
+		Assert.assertEquals(1, intersectingOutputs);
+		Assert.assertEquals(402, tuples);
+		Assert.assertEquals(expectedResults, results);
+	}
+	
+	/**
+	 * Leveled stores need disjoint key ranges, the output is never partitioned
+	 * @throws StorageManagerException
+	 * @throws InterruptedException
+	 * @throws BBoxDBException 
+	 */
+	@Test(timeout=60000)
+	public void testNoSpatialPartitionsForLeveledStore() throws StorageManagerException, 
+		InterruptedException, BBoxDBException {
+		
+		final List<Tuple> tupleList1 = new ArrayList<>();
+		final List<Tuple> tupleList2 = new ArrayList<>();
+		
+		for(int i = 0; i < 400; i++) {
+			final double x = (i % 20) * 5;
+			final double y = (i / 20) * 5;
+			final Tuple tuple = new Tuple(Integer.toString(i), new Hyperrectangle(x, x + 1, y, y + 1), "abc".getBytes());
+			
+			if(i % 2 == 0) {
+				tupleList1.add(tuple);
+			} else {
+				tupleList2.add(tuple);
+			}
+		}
+		
+		final SSTableKeyIndexReader reader1 = addTuplesToFileAndGetReader(tupleList1, 1);
+		final SSTableKeyIndexReader reader2 = addTuplesToFileAndGetReader(tupleList2, 2);
+		
+		// A configuration that is not created by the builder (e.g., read from zookeeper)
+		final TupleStoreConfiguration configuration = new TupleStoreConfiguration();
+		configuration.setMergeStrategy(MergeStrategyType.LEVELED.getTypeString());
+		configuration.setSpatialPartitions(4);
+		
+		storageRegistry.deleteTable(TEST_RELATION);
+		storageRegistry.createTable(TEST_RELATION, configuration);
+		final TupleStoreManager storageManager = storageRegistry.getTupleStoreManager(TEST_RELATION);
+		
+		final SSTableCompactor compactor = new SSTableCompactor(storageManager, Arrays.asList(reader1, reader2));
+		compactor.executeCompactation();
+		
+		Assert.assertNull(compactor.getSpatialPartitioner());
+		Assert.assertEquals(1, compactor.getResultList().size());
+		Assert.assertEquals(400, compactor.getWrittenTuples());
+	}
+	
 	/**
 	 * Write the tuplelist into a SSTable and return a reader for this table
 	 * 
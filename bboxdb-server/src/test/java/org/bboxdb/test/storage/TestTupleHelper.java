@@ -27,9 +27,11 @@ import java.util.concurrent.TimeUnit;
 
 import org.bboxdb.commons.DuplicateResolver;
 import org.bboxdb.commons.math.Hyperrectangle;
+import org.bboxdb.network.client.tools.KNearestNeighborResolver;
 import org.bboxdb.storage.entity.DeletedTuple;
 import org.bboxdb.storage.entity.MultiTuple;
 import org.bboxdb.storage.entity.JoinedTupleIdentifier;
+import org.bboxdb.storage.entity.LazyTuple;
 import org.bboxdb.storage.entity.JoinedTupleIdentifier.Strategy;
 import org.bboxdb.storage.entity.Tuple;
 import org.bboxdb.storage.sstable.duplicateresolver.DoNothingDuplicateResolver;
@@ -60,6 +62,26 @@ public class TestTupleHelper {
 		Assert.assertEquals(tupleB, TupleHelper.returnMostRecentTuple(tupleB, tupleB));
 	}
 	
+	/**
+	 * Test the merge of the k nearest neighbors of the nodes
+	 */
+	@Test(timeout=60000)
+	public void testKNearestNeighborResolver() {
+		final Tuple tupleA = new Tuple("a", new Hyperrectangle(5d, 5d), "abc".getBytes(), 1);
+		final Tuple tupleB = new Tuple("b", new Hyperrectangle(1d, 1d), "abc".getBytes(), 1);
+		final Tuple tupleC = new Tuple("c", new Hyperrectangle(3d, 3d), "abc".getBytes(), 1);
+		final Tuple tupleD = new Tuple("d", new Hyperrectangle(2d, 2d), "abc".getBytes(), 1);
+		
+		// Tuple b is returned by two nodes
+		final List<Tuple> tupleList = new ArrayList<>(Arrays.asList(tupleA, tupleB, tupleB, 
+				tupleC, tupleD));
+		
+		final DuplicateResolver<Tuple> resolver = new KNearestNeighborResolver(new Hyperrectangle(0d, 0d), 3);
+		resolver.removeDuplicates(tupleList);
+		
+		Assert.assertEquals(Arrays.asList(tupleB, tupleD, tupleC), tupleList);
+	}
+	
 	/**
 	 * Test the duplicate tuple resolver
 	 */
@@ -481,4 +503,136 @@ public class TestTupleHelper {
 		Assert.assertTrue(id1.equals(id3));
 		Assert.assertTrue(id1.equals(id4));
 	}
+	
+	/**
+	 * Test the lazy decoding of tuples
+	 * @throws IOException 
+	 */
+	@Test(timeout=60000)
+	public void testLazyTuple() throws IOException {
+		final Tuple tuple = new Tuple("abc", new Hyperrectangle(1d, 2d, 3d, 4d), "def".getBytes(), 12, 14);
+		final ByteBuffer buffer = ByteBuffer.wrap(TupleHelper.tupleToBytes(tuple));
+		
+		final Tuple lazyTuple = TupleHelper.decodeLazyTuple(buffer);
+		Assert.assertTrue(lazyTuple instanceof LazyTuple);
+		Assert.assertFalse(buffer.hasRemaining());
+		
+		Assert.assertEquals(12, lazyTuple.getVersionTimestamp());
+		Assert.assertEquals(14, lazyTuple.getReceivedTimestamp());
+		Assert.assertEquals(tuple.getSize(), lazyTuple.getSize());
+		Assert.assertEquals("abc", lazyTuple.getKey());
+		Assert.assertEquals(tuple.getBoundingBox(), lazyTuple.getBoundingBox());
+		Assert.assertArrayEquals(tuple.getDataBytes(), lazyTuple.getDataBytes());
+		Assert.assertArrayEquals(tuple.getBoundingBoxBytes(), lazyTuple.getBoundingBoxBytes());
+		Assert.assertEquals(tuple, lazyTuple);
+		Assert.assertEquals(lazyTuple, tuple);
+		Assert.assertEquals(tuple.hashCode(), lazyTuple.hashCode());
+		Assert.assertEquals(0, tuple.compareTo(lazyTuple));
+		Assert.assertEquals(tuple.getEntityIdentifier(), lazyTuple.getEntityIdentifier());
+		
+		// The serialized form is copied
+		Assert.assertArrayEquals(TupleHelper.tupleToBytes(tuple), TupleHelper.tupleToBytes(lazyTuple));
+	}
+	
+	/**
+	 * Test the lazy decoding of tuples with a changed bounding box
+	 * @throws IOException 
+	 */
+	@Test(timeout=60000)
+	public void testLazyTupleChangedBoundingBox() throws IOException {
+		final Tuple tuple = new Tuple("abc", new Hyperrectangle(1d, 2d), "def".getBytes(), 12, 14);
+		final ByteBuffer buffer = ByteBuffer.wrap(TupleHelper.tupleToBytes(tuple));
+		final Tuple lazyTuple = TupleHelper.decodeLazyTuple(buffer);
+		
+		final Hyperrectangle newBox = new Hyperrectangle(5d, 6d, 7d, 8d);
+		lazyTuple.setBoundingBox(newBox);
+		tuple.setBoundingBox(newBox);
+		
+		Assert.assertEquals(newBox, lazyTuple.getBoundingBox());
+		Assert.assertArrayEquals(newBox.toByteArray(), lazyTuple.getBoundingBoxBytes());
+		Assert.assertEquals(tuple.getSize(), lazyTuple.getSize());
+		Assert.assertEquals(tuple, lazyTuple);
+		
+		final ByteBuffer resultBuffer = ByteBuffer.wrap(TupleHelper.tupleToBytes(lazyTuple));
+		Assert.assertEquals(tuple, TupleHelper.decodeTuple(resultBuffer));
+	}
+	
+	/**
+	 * Deleted tuples are decoded as deleted tuples
+	 * @throws IOException 
+	 */
+	@Test(timeout=60000)
+	public void testLazyTupleDeleted() throws IOException {
+		final Tuple tuple = new DeletedTuple("abc", 12);
+		final ByteBuffer buffer = ByteBuffer.wrap(TupleHelper.tupleToBytes(tuple));
+		final Tuple decodedTuple = TupleHelper.decodeLazyTuple(buffer);
+		
+		Assert.assertTrue(decodedTuple instanceof DeletedTuple);
+		Assert.assertTrue(TupleHelper.isDeletedTuple(decodedTuple));
+		Assert.assertEquals(tuple, decodedTuple);
+	}
+	
+	/**
+	 * Test the raw key comparison of lazy tuples
+	 * @throws IOException
+	 */
+	@Test(timeout=60000)
+	public void testLazyTupleKeyComparison() throws IOException {
+		final List<String> keys = Arrays.asList("", "a", "abc", "abd", "ab", "b", "\u00e4", 
+				"a\u00e4", "\uFFFF", "\uD83D\uDE00", "z");
+		
+		for(final String key1 : keys) {
+			for(final String key2 : keys) {
+				final LazyTuple tuple1 = toLazyTuple(key1);
+				final LazyTuple tuple2 = toLazyTuple(key2);
+				final int expected = Integer.signum(key1.compareTo(key2));
+				Assert.assertEquals(key1 + " / " + key2, expected, Integer.signum(tuple1.compareKeyTo(tuple2)));
+				Assert.assertEquals(key1 + " / " + key2, expected, 
+						Integer.signum(TupleHelper.TUPLE_KEY_COMPARATOR.compare(tuple1, tuple2)));
+			}
+		}
+	}
+	
+	/**
+	 * Test the zero-copy view on serialized tuples
+	 * @throws IOException
+	 */
+	@Test(timeout=60000)
+	public void testLazyTupleView() throws IOException {
+		final Tuple tuple1 = new Tuple("abc", new Hyperrectangle(1d, 2d), "value1".getBytes(), 12);
+		final Tuple tuple2 = new DeletedTuple("def", 14);
+		final byte[] bytes1 = TupleHelper.tupleToBytes(tuple1);
+		final byte[] bytes2 = TupleHelper.tupleToBytes(tuple2);
+		
+		final ByteBuffer buffer = ByteBuffer.allocate(bytes1.length + bytes2.length);
+		buffer.put(bytes1);
+		buffer.put(bytes2);
+		buffer.flip();
+		
+		final Tuple decodedTuple1 = TupleHelper.decodeLazyTupleView(buffer);
+		Assert.assertEquals(bytes1.length, buffer.position());
+		final Tuple decodedTuple2 = TupleHelper.decodeLazyTupleView(buffer);
+		Assert.assertEquals(bytes1.length + bytes2.length, buffer.position());
+		
+		Assert.assertTrue(decodedTuple1 instanceof LazyTuple);
+		Assert.assertEquals(tuple1, decodedTuple1);
+		Assert.assertTrue(decodedTuple2 instanceof DeletedTuple);
+		Assert.assertEquals(tuple2, decodedTuple2);
+		
+		final ByteBuffer serialized = ((LazyTuple) decodedTuple1).getSerializedTuple();
+		final byte[] serializedBytes = new byte[serialized.remaining()];
+		serialized.get(serializedBytes);
+		Assert.assertArrayEquals(bytes1, serializedBytes);
+	}
+	
+	/**
+	 * Serialize the tuple and decode it as lazy tuple
+	 * @param key
+	 * @return
+	 * @throws IOException
+	 */
+	private LazyTuple toLazyTuple(final String key) throws IOException {
+		final Tuple tuple = new Tuple(key, Hyperrectangle.FULL_SPACE, "value".getBytes());
+		return (LazyTuple) TupleHelper.decodeLazyTuple(ByteBuffer.wrap(TupleHelper.tupleToBytes(tuple)));
+	}
 }
@@ -20,6 +20,8 @@ package org.bboxdb.test.storage;
 import java.io.File;
 
 import org.bboxdb.storage.entity.TupleStoreConfiguration;
+import org.bboxdb.storage.entity.TupleStoreConfigurationBuilder;
+import org.bboxdb.storage.sstable.compact.MergeStrategyType;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -45,6 +47,11 @@ public class TestTuplestoreConfiguration {
 		configuration1.setSpatialIndexWriter("Test2");
 		configuration1.setTtl(4556);
 		configuration1.setVersions(5);
+		configuration1.setMemtableType("skiplist");
+		configuration1.setSstableCompression("snappy");
+		configuration1.setSstableBlockSize(4096);
+		configuration1.setMergeStrategy("leveled");
+		configuration1.setSpatialPartitions(8);
 		final String yamlString = configuration1.exportToYaml();
 		final TupleStoreConfiguration configuration2 = TupleStoreConfiguration.importFromYaml(yamlString);
 		
@@ -58,4 +65,22 @@ public class TestTuplestoreConfiguration {
 		final File tmpFile = new File("/tmp/tuplestore.nonexisting");
 		Assert.assertTrue(TupleStoreConfiguration.importFromYamlFile(tmpFile) == null);
 	}
+	
+	@Test(timeout=60_000, expected=IllegalArgumentException.class)
+	public void testLeveledStrategyWithSpatialPartitions() {
+		TupleStoreConfigurationBuilder.create()
+			.withMergeStrategy(MergeStrategyType.LEVELED)
+			.withSpatialPartitions(4)
+			.build();
+	}
+	
+	@Test(timeout=60_000)
+	public void testLeveledStrategyWithoutSpatialPartitions() {
+		final TupleStoreConfiguration configuration = TupleStoreConfigurationBuilder.create()
+			.withMergeStrategy(MergeStrategyType.LEVELED)
+			.withSpatialPartitions(1)
+			.build();
+		
+		Assert.assertEquals(MergeStrategyType.LEVELED.getTypeString(), configuration.getMergeStrategy());
+	}
 }
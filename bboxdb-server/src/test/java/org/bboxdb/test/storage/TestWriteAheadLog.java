@@ -22,17 +22,25 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.bboxdb.commons.io.FileUtil;
 import org.bboxdb.commons.math.Hyperrectangle;
+import org.bboxdb.misc.BBoxDBConfiguration;
 import org.bboxdb.storage.StorageManagerException;
 import org.bboxdb.storage.entity.DeletedTuple;
 import org.bboxdb.storage.entity.Tuple;
 import org.bboxdb.storage.entity.TupleStoreName;
 import org.bboxdb.storage.memtable.Memtable;
 import org.bboxdb.storage.util.TupleHelper;
+import org.bboxdb.storage.wal.WriteAheadLogDurability;
 import org.bboxdb.storage.wal.WriteAheadLogManager;
 import org.bboxdb.storage.wal.WriteAheadLogReader;
 import org.bboxdb.storage.wal.WriteAheadLogWriter;
@@ -40,6 +48,8 @@ import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.error.YAMLException;
 
 import com.google.common.collect.Lists;
 
@@ -250,4 +260,198 @@ public class TestWriteAheadLog {
 		
 		Assert.assertFalse(walFile.exists());
 	}
+	
+	@Test(timeout=60000)
+	public void testMemtableWalPosition() throws IOException, StorageManagerException {
+		final WriteAheadLogWriter walWriter = new WriteAheadLogWriter(tempDir, 1);
+		
+		final Memtable memtable = new Memtable(new TupleStoreName("abc_def"), 100, 100, walWriter);
+		memtable.init();
+		memtable.acquire();
+		
+		// The position after the own record of the tuple is returned
+		final long positionA = memtable.tryPut(TUPLE_A);
+		Assert.assertEquals(walWriter.getAppendedPosition(), positionA);
+		
+		final long positionB = memtable.tryPut(TUPLE_B);
+		Assert.assertEquals(walWriter.getAppendedPosition(), positionB);
+		Assert.assertTrue(positionA < positionB);
+		
+		memtable.awaitWalDurability(positionA);
+		
+		memtable.deleteOnClose();
+		memtable.release();
+	}
+	
+	@Test(timeout=60000)
+	public void testDurabilityModes() throws IOException, StorageManagerException {
+		int memtableNumber = 1;
+		
+		for(final WriteAheadLogDurability durability : WriteAheadLogDurability.values()) {
+			final WriteAheadLogWriter walWriter = new WriteAheadLogWriter(tempDir, memtableNumber++, durability);
+			Assert.assertEquals(durability, walWriter.getDurability());
+			
+			for(int i = 0; i < 100; i++) {
+				final long position = walWriter.addTuple(TUPLE_A);
+				walWriter.awaitDurable(position);
+			}
+			
+			walWriter.close();
+			
+			final WriteAheadLogReader reader = new WriteAheadLogReader(walWriter.getFile());
+			final List<Tuple> myList = Lists.newArrayList(reader.iterator());
+			Assert.assertEquals(100, myList.size());
+			reader.close();
+		}
+		
+		Assert.assertEquals(WriteAheadLogDurability.GROUP_FSYNC, WriteAheadLogDurability.fromString("group-fsync"));
+		Assert.assertEquals(WriteAheadLogDurability.PER_WRITE_FSYNC, WriteAheadLogDurability.fromString("PER-WRITE-FSYNC"));
+	}
+	
+	@Test(timeout=60000)
+	public void testUnknownDurabilityMode() {
+		for(final String mode : Arrays.asList("unknown", "none", "fsync", "group_fsync", null)) {
+			try {
+				WriteAheadLogDurability.fromString(mode);
+				Assert.fail("Unknown durability mode is accepted: " + mode);
+			} catch (IllegalArgumentException e) {
+				// Expected
+			}
+		}
+		
+		// The configuration rejects the unknown mode when it is read
+		final String configuration = "storageWriteAheadLogDurability: group_fsync";
+		
+		try {
+			new Yaml().loadAs(configuration, BBoxDBConfiguration.class);
+			Assert.fail("Unknown durability mode is accepted in the configuration");
+		} catch (YAMLException e) {
+			Assert.assertTrue(e.getCause() instanceof IllegalArgumentException 
+					|| e.getCause().getCause() instanceof IllegalArgumentException);
+		}
+		
+		final BBoxDBConfiguration validConfiguration = new Yaml().loadAs(
+				"storageWriteAheadLogDurability: group-fsync", BBoxDBConfiguration.class);
+		Assert.assertEquals("group-fsync", validConfiguration.getStorageWriteAheadLogDurability());
+	}
+	
+	@Test(timeout=60000)
+	public void testGroupCommit() throws Exception {
+		final WriteAheadLogWriter walWriter = new WriteAheadLogWriter(tempDir, 1, 
+				WriteAheadLogDurability.GROUP_FSYNC);
+		
+		final int threads = 8;
+		final int tuplesPerThread = 200;
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		final List<Future<Boolean>> futures = new ArrayList<>();
+		
+		for(int thread = 0; thread < threads; thread++) {
+			futures.add(executor.submit(() -> {
+				for(int i = 0; i < tuplesPerThread; i++) {
+					final long position = walWriter.addTuple(TUPLE_A);
+					walWriter.awaitDurable(position);
+				}
+				return true;
+			}));
+		}
+		
+		for(final Future<Boolean> future : futures) {
+			Assert.assertTrue(future.get());
+		}
+		
+		executor.shutdown();
+		
+		// All tuples are synced before the writer is closed
+		final WriteAheadLogReader reader = new WriteAheadLogReader(walWriter.getFile());
+		final List<Tuple> myList = Lists.newArrayList(reader.iterator());
+		Assert.assertEquals(threads * tuplesPerThread, myList.size());
+		reader.close();
+		
+		walWriter.close();
+	}
+	
+	@Test(timeout=60000)
+	public void testGroupCommitSyncFailure() throws IOException, StorageManagerException {
+		final WriteAheadLogWriter failingWriter = new WriteAheadLogWriter(tempDir, 1, 
+				WriteAheadLogDurability.GROUP_FSYNC);
+		
+		failingWriter.injectSyncFailure(new IllegalStateException("Injected sync failure"));
+		final long failedPosition = failingWriter.addTuple(TUPLE_A);
+		
+		// The waiter fails instead of waiting forever
+		try {
+			failingWriter.awaitDurable(failedPosition);
+			Assert.fail("The sync failure is not reported");
+		} catch (StorageManagerException e) {
+			// Expected
+		}
+		
+		failingWriter.injectSyncFailure(null);
+		failingWriter.close();
+		
+		// The sync thread is still running for the other writers
+		final WriteAheadLogWriter walWriter = new WriteAheadLogWriter(tempDir, 2, 
+				WriteAheadLogDurability.GROUP_FSYNC);
+		
+		for(int i = 0; i < 10; i++) {
+			final long position = walWriter.addTuple(TUPLE_A);
+			walWriter.awaitDurable(position);
+		}
+		
+		walWriter.close();
+	}
+	
+	@Test(timeout=60000)
+	public void testSegmentRollover() throws IOException, StorageManagerException {
+		final WriteAheadLogWriter walWriter = new WriteAheadLogWriter(tempDir, 1, 
+				WriteAheadLogDurability.PER_WRITE_FSYNC, 256);
+		
+		for(int i = 0; i < 100; i++) {
+			walWriter.addTuple(new Tuple(Integer.toString(i), new Hyperrectangle(1d, 2d), "abc".getBytes()));
+		}
+		
+		// Bigger than a segment
+		final Tuple bigTuple = new Tuple("big", new Hyperrectangle(1d, 2d), new byte[1024]);
+		walWriter.addTuple(bigTuple);
+		walWriter.addTuple(TUPLE_A);
+		walWriter.close();
+		
+		final WriteAheadLogReader reader = new WriteAheadLogReader(walWriter.getFile());
+		final List<Tuple> myList = Lists.newArrayList(reader.iterator());
+		Assert.assertEquals(102, myList.size());
+		Assert.assertEquals("0", myList.get(0).getKey());
+		Assert.assertEquals(bigTuple, myList.get(100));
+		Assert.assertFalse(reader.hasTornTail());
+		reader.close();
+	}
+	
+	@Test(timeout=60000)
+	public void testTornTail() throws IOException, StorageManagerException {
+		final WriteAheadLogWriter walWriter = new WriteAheadLogWriter(tempDir, 1);
+		walWriter.addTuple(TUPLE_A);
+		final long validPosition = walWriter.addTuple(TUPLE_B);
+		walWriter.addTuple(new Tuple("torn", new Hyperrectangle(1d, 2d), "abc".getBytes()));
+		walWriter.close();
+		
+		// Corrupt the data of the last record
+		try(final RandomAccessFile file = new RandomAccessFile(walWriter.getFile(), "rw")) {
+			file.seek(validPosition + WriteAheadLogWriter.RECORD_HEADER_BYTES 
+					+ TupleHelper.TUPLE_HEADER_BYTES + 1);
+			file.write('x');
+		}
+		
+		final WriteAheadLogReader reader = new WriteAheadLogReader(walWriter.getFile());
+		final List<Tuple> myList = Lists.newArrayList(reader.iterator());
+		Assert.assertEquals(2, myList.size());
+		Assert.assertTrue(reader.hasTornTail());
+		Assert.assertEquals(validPosition, reader.getValidLength());
+		
+		reader.truncateTornTail();
+		Assert.assertEquals(validPosition, walWriter.getFile().length());
+		
+		final WriteAheadLogReader reader2 = new WriteAheadLogReader(walWriter.getFile());
+		Assert.assertEquals(2, Lists.newArrayList(reader2.iterator()).size());
+		Assert.assertFalse(reader2.hasTornTail());
+		reader2.close();
+	}
 }
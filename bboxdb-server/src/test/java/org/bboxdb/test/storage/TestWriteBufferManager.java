@@ -0,0 +1,146 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *******************************************************************************/
+package org.bboxdb.test.storage;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.bboxdb.commons.math.Hyperrectangle;
+import org.bboxdb.storage.entity.Tuple;
+import org.bboxdb.storage.entity.TupleStoreName;
+import org.bboxdb.storage.memtable.AbstractMemtable;
+import org.bboxdb.storage.memtable.Memtable;
+import org.bboxdb.storage.memtable.OffHeapMemtable;
+import org.bboxdb.storage.tuplestore.manager.WriteBufferManager;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestWriteBufferManager {
+
+	/**
+	 * The table name
+	 */
+	private static final TupleStoreName MEMTABLE_TABLE_NAME = new TupleStoreName("3_mygroup_test");
+
+	/**
+	 * Test the flush decision
+	 */
+	@Test(timeout=60000)
+	public void testShouldFlush() {
+		final WriteBufferManager manager = new WriteBufferManager(1000, () -> new ArrayList<>());
+		Assert.assertEquals(1000, manager.getBudgetBytes());
+		Assert.assertFalse(manager.shouldFlush());
+
+		manager.reserveMemory(500);
+		Assert.assertFalse(manager.shouldFlush());
+
+		manager.reserveMemory(300);
+		Assert.assertTrue(manager.shouldFlush());
+
+		// The memory is already scheduled for flushing
+		manager.markImmutable(600);
+		Assert.assertFalse(manager.shouldFlush());
+
+		manager.freeMemory(600, true);
+		Assert.assertEquals(200, manager.getUsedBytes());
+		Assert.assertEquals(0, manager.getImmutableBytes());
+		Assert.assertFalse(manager.shouldFlush());
+	}
+
+	/**
+	 * Test the default budget
+	 */
+	@Test(timeout=60000)
+	public void testDefaultBudget() {
+		final WriteBufferManager manager = new WriteBufferManager(0, () -> new ArrayList<>());
+		Assert.assertTrue(manager.getBudgetBytes() > 0);
+		Assert.assertTrue(manager.getBudgetBytes() < Runtime.getRuntime().maxMemory());
+	}
+
+	/**
+	 * Test the accounting of the memtables
+	 * @throws Exception
+	 */
+	@Test(timeout=60000)
+	public void testMemtableAccounting() throws Exception {
+		final WriteBufferManager manager = new WriteBufferManager(1_000_000, () -> new ArrayList<>());
+
+		final AbstractMemtable memtable1 = new Memtable(MEMTABLE_TABLE_NAME, 100, 1_000_000, null);
+		final AbstractMemtable memtable2 = new OffHeapMemtable(MEMTABLE_TABLE_NAME, 100, 1_000_000, null);
+
+		for(final AbstractMemtable memtable : new AbstractMemtable[] {memtable1, memtable2}) {
+			memtable.setWriteBufferManager(manager);
+			memtable.init();
+			memtable.acquire();
+
+			for(int i = 0; i < 10; i++) {
+				memtable.put(new Tuple(Integer.toString(i), new Hyperrectangle(1d, 2d), "abc".getBytes()));
+			}
+		}
+
+		Assert.assertEquals(memtable1.getSize() + memtable2.getSize(), manager.getUsedBytes());
+
+		memtable1.setImmutable();
+		Assert.assertEquals(memtable1.getSize(), manager.getImmutableBytes());
+
+		memtable1.deleteOnClose();
+		memtable1.release();
+		Assert.assertEquals(memtable2.getSize(), manager.getUsedBytes());
+		Assert.assertEquals(0, manager.getImmutableBytes());
+
+		// Releasing the memory twice has no effect
+		memtable2.releaseWriteBufferMemory();
+		memtable2.releaseWriteBufferMemory();
+		Assert.assertEquals(0, manager.getUsedBytes());
+
+		memtable2.deleteOnClose();
+		memtable2.release();
+		Assert.assertEquals(0, manager.getUsedBytes());
+	}
+
+	/**
+	 * Writes are blocked until memory is freed
+	 * @throws InterruptedException
+	 */
+	@Test(timeout=60000)
+	public void testWriteStall() throws InterruptedException {
+		final WriteBufferManager manager = new WriteBufferManager(1000, () -> new ArrayList<>());
+
+		// Below the throttle limit
+		final long start = System.nanoTime();
+		manager.reserveMemory(800);
+		manager.beforeWrite();
+		Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+
+		manager.reserveMemory(200);
+		final CountDownLatch writeDone = new CountDownLatch(1);
+
+		final Thread writer = new Thread(() -> {
+			manager.beforeWrite();
+			writeDone.countDown();
+		});
+
+		writer.start();
+
+		Assert.assertFalse(writeDone.await(500, TimeUnit.MILLISECONDS));
+		manager.freeMemory(500, false);
+		Assert.assertTrue(writeDone.await(10, TimeUnit.SECONDS));
+		writer.join();
+	}
+}
@@ -0,0 +1,327 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.test.storage.grid;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.bboxdb.commons.math.Hyperrectangle;
+import org.bboxdb.storage.StorageManagerException;
+import org.bboxdb.storage.sstable.spatialindex.SpatialIndexBuilder;
+import org.bboxdb.storage.sstable.spatialindex.SpatialIndexEntry;
+import org.bboxdb.storage.sstable.spatialindex.SpatialIndexReader;
+import org.bboxdb.storage.sstable.spatialindex.SpatialIndexReaderFactory;
+import org.bboxdb.storage.sstable.spatialindex.grid.GridIndexBuilder;
+import org.bboxdb.storage.sstable.spatialindex.grid.GridIndexLayout;
+import org.bboxdb.storage.sstable.spatialindex.grid.GridIndexMMFReader;
+import org.bboxdb.storage.sstable.spatialindex.rtree.STRPackedRTreeBuilder;
+import org.bboxdb.test.storage.rtree.RTreeTestHelper;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestGridIndex {
+	
+	@Test(timeout=60_000)
+	public void testQueryOnEmptyIndex() {
+		final SpatialIndexBuilder index = new GridIndexBuilder();
+		final List<? extends SpatialIndexEntry> result = index.getEntriesForRegion(new Hyperrectangle(1d, 1d, 2d, 2d));
+		Assert.assertTrue(result.isEmpty());
+	}
+	
+	/**
+	 * Test to query the index with points
+	 */
+	@Test(timeout=60_000)
+	public void testPointQuery2d() {
+		final List<SpatialIndexEntry> pointList = generateRandomPointList(2, 25_000);
+		
+		final GridIndexBuilder index = new GridIndexBuilder();
+		index.bulkInsert(pointList);
+		RTreeTestHelper.queryIndex(pointList, index);
+		
+		Assert.assertTrue(index.getLayout().isPointsOnly());
+		
+		// 25000 entries / 16 entries per cell -> 1562 cells -> 64 x 64 cells
+		Assert.assertEquals(6, index.getLayout().getBits());
+	}
+	
+	/**
+	 * Test window queries against a scan of all entries
+	 */
+	@Test(timeout=60_000)
+	public void testWindowQuery() {
+		final List<SpatialIndexEntry> pointList = generateRandomPointList(2, 10_000);
+		final List<SpatialIndexEntry> boxList = RTreeTestHelper.generateRandomTupleList(2, 10_000);
+		final Random random = new Random(1);
+		
+		for(final List<SpatialIndexEntry> entries : List.of(pointList, boxList)) {
+			final SpatialIndexBuilder index = new GridIndexBuilder(4);
+			index.bulkInsert(entries);
+			
+			for(int i = 0; i < 100; i++) {
+				final double x = random.nextDouble() * 20_000 - 10_000;
+				final double y = random.nextDouble() * 20_000 - 10_000;
+				final double size = random.nextDouble() * 2000;
+				final Hyperrectangle queryBox = new Hyperrectangle(x, x + size, y, y + size);
+				
+				final List<Long> expected = entries.stream()
+						.filter(e -> e.getBoundingBox().intersects(queryBox))
+						.map(e -> e.getValue())
+						.sorted()
+						.collect(Collectors.toList());
+				
+				final List<Long> result = index.getEntriesForRegion(queryBox).stream()
+						.map(e -> e.getValue())
+						.sorted()
+						.collect(Collectors.toList());
+				
+				Assert.assertEquals(expected, result);
+			}
+			
+			// Queries outside of the grid
+			Assert.assertTrue(index.getEntriesForRegion(new Hyperrectangle(20_000d, 20_001d, 0d, 1d)).isEmpty());
+			Assert.assertTrue(index.getEntriesForRegion(new Hyperrectangle(0d, 1d, -20_001d, -20_000d)).isEmpty());
+			
+			// Query the full space 
+			Assert.assertEquals(entries.size(), index.getEntriesForRegion(Hyperrectangle.FULL_SPACE).size());
+		}
+	}
+	
+	/**
+	 * Test to query the index with boxes
+	 */
+	@Test(timeout=60_000)
+	public void testBoxQuery3d() {
+		final List<SpatialIndexEntry> tupleList = RTreeTestHelper.generateRandomTupleList(3, 5000);
+		
+		final GridIndexBuilder index = new GridIndexBuilder();
+		index.bulkInsert(tupleList);
+		RTreeTestHelper.queryIndex(tupleList, index);
+		
+		Assert.assertFalse(index.getLayout().isPointsOnly());
+	}
+	
+	/**
+	 * Test to query the index with boxes
+	 */
+	@Test(timeout=60_000)
+	public void testBoxQuery10d() {
+		final List<SpatialIndexEntry> tupleList = RTreeTestHelper.generateRandomTupleList(10, 5000);
+		
+		final SpatialIndexBuilder index = new GridIndexBuilder();
+		index.bulkInsert(tupleList);
+		RTreeTestHelper.queryIndex(tupleList, index);
+	}
+	
+	/**
+	 * All points on the same position
+	 */
+	@Test(timeout=60_000)
+	public void testSamePoint() {
+		final List<SpatialIndexEntry> pointList = new ArrayList<>();
+		
+		for(int i = 0; i < 1000; i++) {
+			pointList.add(new SpatialIndexEntry(new Hyperrectangle(5d, 5d, 7d, 7d), i));
+		}
+		
+		final SpatialIndexBuilder index = new GridIndexBuilder();
+		index.bulkInsert(pointList);
+		
+		Assert.assertEquals(1000, index.getEntriesForRegion(new Hyperrectangle(4d, 5d, 7d, 8d)).size());
+		Assert.assertTrue(index.getEntriesForRegion(new Hyperrectangle(4d, 4.9d, 7d, 8d)).isEmpty());
+	}
+	
+	/**
+	 * Entries with an infinite extent are stored in one cell
+	 */
+	@Test(timeout=60_000)
+	public void testInfiniteEntries() {
+		final List<SpatialIndexEntry> tupleList = generateRandomPointList(2, 1000);
+		final SpatialIndexEntry infiniteEntry = new SpatialIndexEntry(new Hyperrectangle(
+				Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, 0d, 1d), 4711);
+		tupleList.add(infiniteEntry);
+		
+		final GridIndexBuilder index = new GridIndexBuilder();
+		index.bulkInsert(tupleList);
+		RTreeTestHelper.queryIndex(tupleList, index);
+		Assert.assertEquals(0, index.getLayout().getBits());
+	}
+	
+	/**
+	 * Entries without a bounding box are found by all queries
+	 */
+	@Test(timeout=60_000)
+	public void testFullSpaceEntries() {
+		final List<SpatialIndexEntry> tupleList = generateRandomPointList(2, 1000);
+		final SpatialIndexEntry fullSpaceEntry = new SpatialIndexEntry(Hyperrectangle.FULL_SPACE, 4711);
+
+		final SpatialIndexBuilder index = new GridIndexBuilder();
+		index.insert(fullSpaceEntry);
+		index.bulkInsert(tupleList);
+		
+		final List<? extends SpatialIndexEntry> result 
+			= index.getEntriesForRegion(new Hyperrectangle(-100_000d, -99_999d, -100_000d, -99_999d));
+		Assert.assertEquals(List.of(fullSpaceEntry), result);
+		RTreeTestHelper.queryIndex(tupleList, index);
+	}
+	
+	@Test(timeout=60_000, expected=IllegalArgumentException.class)
+	public void testWrongEntriesPerCell() {
+		new GridIndexBuilder(0);
+	}
+	
+	@Test(timeout=60_000, expected=IllegalArgumentException.class)
+	public void testWrongDimension() {
+		final SpatialIndexBuilder index = new GridIndexBuilder();
+		index.insert(new SpatialIndexEntry(new Hyperrectangle(1d, 2d), 1));
+		index.insert(new SpatialIndexEntry(new Hyperrectangle(1d, 2d, 1d, 2d), 2));
+	}
+	
+	/**
+	 * Test the serialization of the index, the reader is chosen by the magic bytes
+	 * @throws StorageManagerException
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	@Test(timeout=60_000)
+	public void testSerializeIndex() throws StorageManagerException, IOException, InterruptedException {
+		final List<SpatialIndexEntry> pointList = generateRandomPointList(2, 5000);
+		pointList.add(new SpatialIndexEntry(Hyperrectangle.FULL_SPACE, 5000));
+		
+		final SpatialIndexBuilder index = new GridIndexBuilder();
+		index.bulkInsert(pointList);
+		
+		final File tempFile = File.createTempFile("grid-", "-test");
+		tempFile.deleteOnExit();
+		final RandomAccessFile raf = new RandomAccessFile(tempFile, "rw");		
+		index.writeToFile(raf);
+		raf.close();
+		
+		final RandomAccessFile rafRead = new RandomAccessFile(tempFile, "r");
+		final SpatialIndexReader indexRead = SpatialIndexReaderFactory.getInstance(rafRead);
+		Assert.assertTrue(indexRead instanceof GridIndexMMFReader);
+		indexRead.readFromFile(rafRead);
+		rafRead.close();
+		
+		RTreeTestHelper.queryIndex(pointList, indexRead);
+		
+		final Hyperrectangle queryBox = new Hyperrectangle(-1000d, 1000d, -500d, 2000d);
+		Assert.assertArrayEquals(
+				index.getEntriesForRegion(queryBox).stream().mapToLong(e -> e.getValue()).sorted().toArray(),
+				Arrays.stream(indexRead.getPositionsForRegion(queryBox)).sorted().toArray());
+		
+		indexRead.close();
+	}
+	
+	/**
+	 * R-tree files are not read by the grid reader
+	 * @throws StorageManagerException
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	@Test(timeout=60_000)
+	public void testReaderSelection() throws StorageManagerException, IOException, InterruptedException {
+		final SpatialIndexBuilder index = new STRPackedRTreeBuilder();
+		index.bulkInsert(generateRandomPointList(2, 100));
+		
+		final File tempFile = File.createTempFile("rtree-", "-test");
+		tempFile.deleteOnExit();
+		final RandomAccessFile raf = new RandomAccessFile(tempFile, "rw");		
+		index.writeToFile(raf);
+		raf.close();
+		
+		try (final RandomAccessFile rafRead = new RandomAccessFile(tempFile, "r")) {
+			Assert.assertFalse(SpatialIndexReaderFactory.getInstance(rafRead) instanceof GridIndexMMFReader);
+			Assert.assertEquals(0, rafRead.getFilePointer());
+			
+			final GridIndexMMFReader gridReader = new GridIndexMMFReader();
+			
+			try {
+				gridReader.readFromFile(rafRead);
+				Assert.fail("Exception expected");
+			} catch (StorageManagerException e) {
+				// Expected
+			} finally {
+				gridReader.close();
+			}
+		}
+	}
+	
+	/**
+	 * The size of a point entry
+	 */
+	@Test(timeout=60_000)
+	public void testIndexSize() {
+		final List<SpatialIndexEntry> pointList = generateRandomPointList(2, 10_000);
+		
+		final GridIndexBuilder index = new GridIndexBuilder();
+		index.bulkInsert(pointList);
+		
+		final GridIndexLayout layout = index.getLayout();
+		
+		// 2 coordinates and the value per point
+		Assert.assertEquals(10_000 * 24, layout.getFullSpaceOffset() - layout.getEntriesOffset());
+		Assert.assertEquals(layout.getCells() * GridIndexLayout.CELL_BYTES, 
+				layout.getEntriesOffset() - layout.getCellTableOffset());
+	}
+	
+	/**
+	 * Generate a list of random points
+	 * @param dimensions
+	 * @param elements
+	 * @return
+	 */
+	private static List<SpatialIndexEntry> generateRandomPointList(final int dimensions, final int elements) {
+		final List<SpatialIndexEntry> entryList = new ArrayList<>();
+		final Random random = new Random(elements);
+		
+		for(int i = 0; i < elements; i++) {
+			final double[] boundingBoxData = new double[dimensions * 2];
+			
+			for(int d = 0; d < dimensions; d++) {
+				final double position = random.nextDouble() * 20_000 - 10_000;
+				boundingBoxData[2 * d] = position;
+				boundingBoxData[2 * d + 1] = position;
+			}
+			
+			entryList.add(new SpatialIndexEntry(new Hyperrectangle(boundingBoxData), i));
+		}
+
+		return entryList;
+	}
+	
+	/**
+	 * Test the nearest neighbor search of the grid index
+	 * @throws StorageManagerException
+	 */
+	@Test(timeout=60_000)
+	public void testNearestNeighbors() throws StorageManagerException {
+		final List<SpatialIndexEntry> entries = generateRandomPointList(2, 2000);
+		final GridIndexBuilder index = new GridIndexBuilder();
+		index.bulkInsert(entries);
+		
+		final Hyperrectangle point = new Hyperrectangle(12d, 12d, -50d, -50d);
+		RTreeTestHelper.checkNearestNeighbors(entries, point, index.getEntriesByDistance(point));
+	}
+}
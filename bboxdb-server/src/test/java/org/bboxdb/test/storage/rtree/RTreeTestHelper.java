@@ -18,12 +18,14 @@
 package org.bboxdb.test.storage.rtree;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import org.bboxdb.commons.math.Hyperrectangle;
+import org.bboxdb.commons.math.HyperrectangleHelper;
 import org.bboxdb.storage.StorageManagerException;
 import org.bboxdb.storage.sstable.spatialindex.SpatialIndexBuilder;
 import org.bboxdb.storage.sstable.spatialindex.SpatialIndexEntry;
@@ -65,6 +67,36 @@ public class RTreeTestHelper {
 		}
 	}
 
+	/**
+	 * Check that the search returns all entries in the order of their distance
+	 * 
+	 * @param entries
+	 * @param queryBox
+	 * @param search
+	 */
+	public static void checkNearestNeighbors(final List<SpatialIndexEntry> entries, 
+			final Hyperrectangle queryBox, final Iterator<SpatialIndexEntry> search) {
+		
+		final List<Double> expectedDistances = entries.stream()
+				.map(e -> HyperrectangleHelper.getMinDistance(e.getBoundingBox(), queryBox))
+				.sorted()
+				.collect(Collectors.toList());
+		
+		final List<SpatialIndexEntry> result = new ArrayList<>();
+		search.forEachRemaining(result::add);
+		
+		Assert.assertEquals(entries.size(), result.size());
+		
+		Assert.assertEquals(
+				entries.stream().map(e -> e.getValue()).sorted().collect(Collectors.toList()), 
+				result.stream().map(e -> e.getValue()).sorted().collect(Collectors.toList()));
+		
+		for(int i = 0; i < result.size(); i++) {
+			final double distance = HyperrectangleHelper.getMinDistance(result.get(i).getBoundingBox(), queryBox);
+			Assert.assertEquals(expectedDistances.get(i), distance, 0.00001);
+		}
+	}
+
 	/**
 	 * Check the result list
 	 * @param entry
@@ -73,7 +105,7 @@ public class RTreeTestHelper {
 	private static void checkResult(final SpatialIndexEntry entry, 
 			final List<? extends SpatialIndexEntry> resultList) {
 		
-		final List<Integer> keyResult = resultList
+		final List<Long> keyResult = resultList
 				.stream()
 				.map(e -> e.getValue())
 				.filter(k -> k.equals(entry.getValue()))
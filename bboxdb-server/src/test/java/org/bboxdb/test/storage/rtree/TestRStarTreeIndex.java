@@ -0,0 +1,270 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.test.storage.rtree;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bboxdb.commons.math.Hyperrectangle;
+import org.bboxdb.storage.StorageManagerException;
+import org.bboxdb.storage.sstable.spatialindex.SpatialIndexBuilder;
+import org.bboxdb.storage.sstable.spatialindex.SpatialIndexEntry;
+import org.bboxdb.storage.sstable.spatialindex.rtree.AbstractRTreeReader;
+import org.bboxdb.storage.sstable.spatialindex.rtree.RStarTreeBuilder;
+import org.bboxdb.storage.sstable.spatialindex.rtree.RTreeMemoryReader;
+import org.bboxdb.storage.sstable.spatialindex.rtree.mmf.RTreeMMFDirectReader;
+import org.bboxdb.storage.sstable.spatialindex.rtree.mmf.RTreeMMFReader;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestRStarTreeIndex {
+	
+	@Test(timeout=60_000)
+	public void testQueryOnEmptytree() {
+		final SpatialIndexBuilder index = new RStarTreeBuilder();
+		final List<? extends SpatialIndexEntry> result = index.getEntriesForRegion(new Hyperrectangle(1d, 1d, 2d, 2d));
+		Assert.assertTrue(result.isEmpty());
+	}
+	
+	/**
+	 * Test to query the index
+	 */
+	@Test(timeout=60_000)
+	public void testBoxQuery1d() {
+		final List<SpatialIndexEntry> tupleList = RTreeTestHelper.getEntryList();
+		
+		final SpatialIndexBuilder index = new RStarTreeBuilder(3);
+		index.bulkInsert(tupleList);
+		RTreeTestHelper.queryIndex(tupleList, index);
+	}
+	
+	/**
+	 * Test to query the index
+	 */
+	@Test(timeout=60_000)
+	public void testBoxQuery2d() {
+		final List<SpatialIndexEntry> tupleList = RTreeTestHelper.generateRandomTupleList(2, 25_000);
+		
+		final SpatialIndexBuilder index = new RStarTreeBuilder();
+		index.bulkInsert(tupleList);
+		RTreeTestHelper.queryIndex(tupleList, index);
+	}
+	
+	/**
+	 * Test to query the index
+	 */
+	@Test(timeout=60_000)
+	public void testBoxQuery3d() {
+		final List<SpatialIndexEntry> tupleList = RTreeTestHelper.generateRandomTupleList(3, 5000);
+		
+		final SpatialIndexBuilder index = new RStarTreeBuilder(7);
+		index.bulkInsert(tupleList);
+		RTreeTestHelper.queryIndex(tupleList, index);
+	}
+	
+	/**
+	 * Test to query the index
+	 */
+	@Test(timeout=60_000)
+	public void testBoxQuery10d() {
+		final List<SpatialIndexEntry> tupleList = RTreeTestHelper.generateRandomTupleList(10, 5000);
+		
+		final SpatialIndexBuilder index = new RStarTreeBuilder();
+		index.bulkInsert(tupleList);
+		RTreeTestHelper.queryIndex(tupleList, index);
+	}
+	
+	/**
+	 * The query results have to be the same as a scan of all entries
+	 */
+	@Test(timeout=60_000)
+	public void testQueryResultSize() {
+		final List<SpatialIndexEntry> tupleList = RTreeTestHelper.generateRandomTupleList(2, 5000);
+		
+		final SpatialIndexBuilder index = new RStarTreeBuilder(8);
+		index.bulkInsert(tupleList);
+		
+		final Hyperrectangle queryBox = new Hyperrectangle(-1000d, 1000d, -2000d, 500d);
+		
+		final long expected = tupleList.stream()
+				.filter(e -> e.getBoundingBox().intersects(queryBox))
+				.count();
+		
+		Assert.assertEquals(expected, index.getEntriesForRegion(queryBox).size());
+		Assert.assertEquals(tupleList.size(), index.getEntriesForRegion(Hyperrectangle.FULL_SPACE).size());
+	}
+	
+	/**
+	 * The tree grows in height and keeps the nodes covered
+	 */
+	@Test(timeout=60_000)
+	public void testCovering() {
+		final List<SpatialIndexEntry> tupleList = RTreeTestHelper.generateRandomTupleList(3, 5000);
+		
+		final RStarTreeBuilder index = new RStarTreeBuilder(8);
+		Assert.assertEquals(0, index.getHeight());
+		
+		index.bulkInsert(tupleList);
+		index.testCovering();
+		
+		// 5000 entries in nodes with max 8 entries 
+		Assert.assertTrue(index.getHeight() >= 5);
+	}
+	
+	/**
+	 * Entries without a bounding box are found by all queries
+	 */
+	@Test(timeout=60_000)
+	public void testFullSpaceEntries() throws StorageManagerException, IOException, InterruptedException {
+		final List<SpatialIndexEntry> tupleList = RTreeTestHelper.generateRandomTupleList(2, 1000);
+		final List<SpatialIndexEntry> fullSpaceEntries = new ArrayList<>();
+		
+		for(int i = 0; i < 20; i++) {
+			fullSpaceEntries.add(new SpatialIndexEntry(Hyperrectangle.FULL_SPACE, 5000 + i));
+		}
+
+		final SpatialIndexBuilder index = new RStarTreeBuilder(8);
+		index.bulkInsert(fullSpaceEntries);
+		index.bulkInsert(tupleList);
+		
+		final Hyperrectangle queryBox = new Hyperrectangle(-100_000d, -99_999d, -100_000d, -99_999d);
+		
+		final List<? extends SpatialIndexEntry> result = index.getEntriesForRegion(queryBox);
+		Assert.assertEquals(fullSpaceEntries, result);
+		RTreeTestHelper.queryIndex(tupleList, index);
+		
+		// The full space entries are also found in the written index
+		final File tempFile = File.createTempFile("rtree-", "-test");
+		tempFile.deleteOnExit();
+		final RandomAccessFile raf = new RandomAccessFile(tempFile, "rw");		
+		index.writeToFile(raf);
+		raf.close();
+		
+		final AbstractRTreeReader indexRead = new RTreeMMFReader();
+		final RandomAccessFile rafRead = new RandomAccessFile(tempFile, "r");
+		indexRead.readFromFile(rafRead);
+		rafRead.close();
+		
+		Assert.assertEquals(fullSpaceEntries.size(), indexRead.getEntriesForRegion(queryBox).size());
+		RTreeTestHelper.queryIndex(tupleList, indexRead);
+		indexRead.close();
+	}
+	
+	/**
+	 * Only entries without a bounding box
+	 * @throws StorageManagerException
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	@Test(timeout=60_000)
+	public void testOnlyFullSpaceEntries() throws StorageManagerException, IOException, InterruptedException {
+		final List<SpatialIndexEntry> fullSpaceEntries = new ArrayList<>();
+		
+		for(int i = 0; i < 200; i++) {
+			fullSpaceEntries.add(new SpatialIndexEntry(Hyperrectangle.FULL_SPACE, i));
+		}
+
+		final RStarTreeBuilder index = new RStarTreeBuilder(8);
+		index.bulkInsert(fullSpaceEntries);
+		
+		Assert.assertEquals(0, index.getHeight());
+		Assert.assertEquals(fullSpaceEntries, index.getEntriesForRegion(new Hyperrectangle(1d, 2d)));
+		
+		final File tempFile = File.createTempFile("rtree-", "-test");
+		tempFile.deleteOnExit();
+		final RandomAccessFile raf = new RandomAccessFile(tempFile, "rw");		
+		index.writeToFile(raf);
+		raf.close();
+		
+		final AbstractRTreeReader indexRead = new RTreeMMFReader();
+		final RandomAccessFile rafRead = new RandomAccessFile(tempFile, "r");
+		indexRead.readFromFile(rafRead);
+		rafRead.close();
+		
+		Assert.assertEquals(fullSpaceEntries.size(), indexRead.getEntriesForRegion(new Hyperrectangle(1d, 2d)).size());
+		indexRead.close();
+	}
+	
+	@Test(timeout=60_000, expected=IllegalArgumentException.class)
+	public void testWrongNodeSize() {
+		new RStarTreeBuilder(2);
+	}
+	
+	@Test(timeout=60_000, expected=IllegalArgumentException.class)
+	public void testWrongDimension() {
+		final SpatialIndexBuilder index = new RStarTreeBuilder();
+		index.insert(new SpatialIndexEntry(new Hyperrectangle(1d, 2d), 1));
+		index.insert(new SpatialIndexEntry(new Hyperrectangle(1d, 2d, 1d, 2d), 2));
+	}
+	
+	/**
+	 * Test the serialization of the tree
+	 * @throws StorageManagerException
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	@Test(timeout=60_000)
+	public void testSerializeIndex() throws StorageManagerException, IOException, InterruptedException {
+		final List<SpatialIndexEntry> tupleList = RTreeTestHelper.generateRandomTupleList(2, 5000);
+		
+		final SpatialIndexBuilder index = new RStarTreeBuilder(12);
+		index.bulkInsert(tupleList);
+		
+		final File tempFile = File.createTempFile("rtree-", "-test");
+		tempFile.deleteOnExit();
+		final RandomAccessFile raf = new RandomAccessFile(tempFile, "rw");		
+		index.writeToFile(raf);
+		raf.close();
+		
+		final List<AbstractRTreeReader> readers = List.of(new RTreeMemoryReader(), 
+				new RTreeMMFReader(), new RTreeMMFDirectReader());
+		
+		for(final AbstractRTreeReader indexRead : readers) {
+			final RandomAccessFile rafRead = new RandomAccessFile(tempFile, "r");
+			indexRead.readFromFile(rafRead);
+			rafRead.close();
+			
+			RTreeTestHelper.queryIndex(tupleList, indexRead);
+			indexRead.close();
+		}
+	}
+	
+	/**
+	 * Test the nearest neighbor search
+	 */
+	@Test(timeout=60_000)
+	public void testNearestNeighbors() {
+		final List<SpatialIndexEntry> tupleList = RTreeTestHelper.generateRandomTupleList(2, 5000);
+		tupleList.add(new SpatialIndexEntry(Hyperrectangle.FULL_SPACE, 4711));
+		
+		final SpatialIndexBuilder index = new RStarTreeBuilder(16);
+		index.bulkInsert(tupleList);
+		
+		final Hyperrectangle point = new Hyperrectangle(12d, 12d, -50d, -50d);
+		RTreeTestHelper.checkNearestNeighbors(tupleList, point, index.getEntriesByDistance(point));
+		
+		final Hyperrectangle box = new Hyperrectangle(-500d, 500d, 1000d, 2000d);
+		RTreeTestHelper.checkNearestNeighbors(tupleList, box, index.getEntriesByDistance(box));
+		
+		final SpatialIndexBuilder emptyIndex = new RStarTreeBuilder();
+		Assert.assertFalse(emptyIndex.getEntriesByDistance(point).hasNext());
+	}
+}
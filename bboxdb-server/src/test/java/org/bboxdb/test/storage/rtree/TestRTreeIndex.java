@@ -184,7 +184,7 @@ public class TestRTreeIndex {
 		raf.close();
 		
 		final RandomAccessFile rafRead = new RandomAccessFile(tempFile, "r");
-		final SpatialIndexEntry readEntry = SpatialIndexEntry.readFromFile(rafRead);
+		final SpatialIndexEntry readEntry = SpatialIndexEntry.readFromFile(rafRead, true);
 		rafRead.close();
 		
 		Assert.assertEquals(rTreeSpatialIndexEntry.getValue(), readEntry.getValue());
@@ -211,7 +211,7 @@ public class TestRTreeIndex {
 		final ByteBuffer bb = ByteBuffer.wrap(data);
 		bb.order(Const.APPLICATION_BYTE_ORDER);
 		
-		final SpatialIndexEntry readEntry = SpatialIndexEntry.readFromByteBuffer(bb);
+		final SpatialIndexEntry readEntry = SpatialIndexEntry.readFromByteBuffer(bb, true);
 		
 		Assert.assertEquals(rTreeSpatialIndexEntry.getValue(), readEntry.getValue());
 		Assert.assertEquals(rTreeSpatialIndexEntry.getBoundingBox(), readEntry.getBoundingBox());
@@ -243,4 +243,63 @@ public class TestRTreeIndex {
 		Assert.assertTrue(result.isEmpty());
 	}
 	
+	
+	/**
+	 * Insert an entry for the full space as the first entry of the tree
+	 */
+	@Test(timeout=60_000)
+	public void testFullSpaceEntryFirst() {
+		final List<SpatialIndexEntry> tupleList = RTreeTestHelper.generateRandomTupleList(2, 1000);
+		
+		final SpatialIndexBuilder index = new RTreeBuilder(16);
+		index.insert(new SpatialIndexEntry(Hyperrectangle.FULL_SPACE, 1000));
+		index.bulkInsert(tupleList);
+		
+		RTreeTestHelper.queryIndex(tupleList, index);
+		Assert.assertEquals(1001, index.getEntriesForRegion(Hyperrectangle.FULL_SPACE).size());
+	}
+	
+	/**
+	 * Entries without a bounding box are returned by all range queries
+	 */
+	@Test(timeout=60_000)
+	public void testFullSpaceEntryRangeQuery() {
+		final List<SpatialIndexEntry> tupleList = RTreeTestHelper.generateRandomTupleList(2, 5000);
+		final SpatialIndexEntry fullSpaceEntry = new SpatialIndexEntry(Hyperrectangle.FULL_SPACE, 5000);
+		tupleList.add(fullSpaceEntry);
+		
+		final SpatialIndexBuilder index = new RTreeBuilder(16);
+		index.bulkInsert(tupleList);
+		
+		for(final SpatialIndexEntry entry : tupleList.subList(0, 1000)) {
+			final boolean fullSpaceFound = index.getEntriesForRegion(entry.getBoundingBox())
+					.stream()
+					.anyMatch(e -> e.getValue() == fullSpaceEntry.getValue());
+			
+			Assert.assertTrue("Query: " + entry.getBoundingBox(), fullSpaceFound);
+		}
+		
+		RTreeTestHelper.queryIndex(tupleList.subList(0, 5000), index);
+	}
+	
+	/**
+	 * Test the nearest neighbor search
+	 */
+	@Test(timeout=60_000)
+	public void testNearestNeighbors() {
+		final List<SpatialIndexEntry> tupleList = RTreeTestHelper.generateRandomTupleList(2, 5000);
+		tupleList.add(new SpatialIndexEntry(Hyperrectangle.FULL_SPACE, 4711));
+		
+		final SpatialIndexBuilder index = new RTreeBuilder(16);
+		index.bulkInsert(tupleList);
+		
+		final Hyperrectangle point = new Hyperrectangle(12d, 12d, -50d, -50d);
+		RTreeTestHelper.checkNearestNeighbors(tupleList, point, index.getEntriesByDistance(point));
+		
+		final Hyperrectangle box = new Hyperrectangle(-500d, 500d, 1000d, 2000d);
+		RTreeTestHelper.checkNearestNeighbors(tupleList, box, index.getEntriesByDistance(box));
+		
+		final SpatialIndexBuilder emptyIndex = new RTreeBuilder();
+		Assert.assertFalse(emptyIndex.getEntriesByDistance(point).hasNext());
+	}
 }
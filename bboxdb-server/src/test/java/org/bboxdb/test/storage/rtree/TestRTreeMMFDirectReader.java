@@ -0,0 +1,282 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.test.storage.rtree;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.bboxdb.commons.math.DoubleInterval;
+import org.bboxdb.commons.math.Hyperrectangle;
+import org.bboxdb.storage.StorageManagerException;
+import org.bboxdb.storage.sstable.spatialindex.SpatialIndexBuilder;
+import org.bboxdb.storage.sstable.spatialindex.SpatialIndexEntry;
+import org.bboxdb.storage.sstable.spatialindex.rtree.AbstractRTreeReader;
+import org.bboxdb.storage.sstable.spatialindex.rtree.RTreeBuilder;
+import org.bboxdb.storage.sstable.spatialindex.rtree.RTreeMemoryReader;
+import org.bboxdb.storage.sstable.spatialindex.rtree.STRPackedRTreeBuilder;
+import org.bboxdb.storage.sstable.spatialindex.rtree.mmf.RTreeMMFDirectReader;
+import org.bboxdb.storage.sstable.spatialindex.rtree.mmf.RTreeMMFReader;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestRTreeMMFDirectReader extends TestRTreeMemoryDeserializer {
+
+	@Override
+	protected AbstractRTreeReader getRTreeReader() {
+		return new RTreeMMFDirectReader();
+	}
+	
+	/**
+	 * Compare the results with the decoding reader
+	 * @throws Exception
+	 */
+	@Test(timeout=60000)
+	public void testCompareWithMMFReader() throws Exception {
+		final List<SpatialIndexEntry> tupleList = RTreeTestHelper.generateRandomTupleList(2, 5000);
+		tupleList.add(new SpatialIndexEntry(Hyperrectangle.FULL_SPACE, 4711));
+		
+		final SpatialIndexBuilder index = new RTreeBuilder(16);
+		index.bulkInsert(tupleList);
+		
+		final File tempFile = File.createTempFile("rtree-", "-test");
+		tempFile.deleteOnExit();
+		final RandomAccessFile raf = new RandomAccessFile(tempFile, "rw");		
+		index.writeToFile(raf);
+		raf.close();
+		
+		final RTreeMMFReader mmfReader = new RTreeMMFReader();
+		final RTreeMMFDirectReader directReader = new RTreeMMFDirectReader();
+		
+		for(final AbstractRTreeReader reader : Arrays.asList(mmfReader, directReader)) {
+			final RandomAccessFile rafRead = new RandomAccessFile(tempFile, "r");
+			reader.readFromFile(rafRead);
+			rafRead.close();
+		}
+		
+		final Random random = new Random(1);
+		
+		try {
+			for(int i = 0; i < 1000; i++) {
+				final Hyperrectangle queryBox = getQueryBox(random, tupleList);
+				final long[] expected = mmfReader.getPositionsForRegion(queryBox);
+				final long[] positions = directReader.getPositionsForRegion(queryBox);
+				
+				Arrays.sort(expected);
+				Arrays.sort(positions);
+				Assert.assertArrayEquals("Query: " + queryBox, expected, positions);
+				
+				final long[] entryPositions = directReader.getEntriesForRegion(queryBox)
+						.stream()
+						.mapToLong(SpatialIndexEntry::getValue)
+						.sorted()
+						.toArray();
+				Assert.assertArrayEquals(expected, entryPositions);
+			}
+			
+			// The full space finds all entries
+			Assert.assertEquals(tupleList.size(), 
+					directReader.getPositionsForRegion(Hyperrectangle.FULL_SPACE).length);
+		} finally {
+			mmfReader.close();
+			directReader.close();
+		}
+	}
+	
+	/**
+	 * Compare the results of readers with pinned upper levels with the unpinned reader
+	 * @throws Exception
+	 */
+	@Test(timeout=60000)
+	public void testPinnedLevels() throws Exception {
+		final List<SpatialIndexEntry> tupleList = RTreeTestHelper.generateRandomTupleList(2, 5000);
+		tupleList.add(new SpatialIndexEntry(Hyperrectangle.FULL_SPACE, 4711));
+		
+		// Variable size nodes and fixed size nodes
+		for(final SpatialIndexBuilder index : Arrays.asList(new RTreeBuilder(16), new STRPackedRTreeBuilder(16))) {
+			index.bulkInsert(tupleList);
+			
+			final File tempFile = File.createTempFile("rtree-", "-test");
+			tempFile.deleteOnExit();
+			final RandomAccessFile raf = new RandomAccessFile(tempFile, "rw");		
+			index.writeToFile(raf);
+			raf.close();
+			
+			final List<RTreeMMFDirectReader> readers = Arrays.asList(new RTreeMMFDirectReader(0), 
+					new RTreeMMFDirectReader(1), new RTreeMMFDirectReader(20), 
+					new RTreeMMFDirectReader(Integer.MAX_VALUE));
+			
+			for(final RTreeMMFDirectReader reader : readers) {
+				final RandomAccessFile rafRead = new RandomAccessFile(tempFile, "r");
+				reader.readFromFile(rafRead);
+				rafRead.close();
+			}
+			
+			Assert.assertNull(readers.get(0).getPinnedNodes());
+			Assert.assertEquals(1, readers.get(1).getPinnedNodes().getNodes());
+			Assert.assertEquals(1, readers.get(1).getPinnedNodes().getLevels());
+			Assert.assertTrue(readers.get(2).getPinnedNodes().getNodes() <= 20);
+			Assert.assertTrue(readers.get(3).getPinnedNodes().getLevels() 
+					> readers.get(2).getPinnedNodes().getLevels());
+			
+			final Random random = new Random(1);
+			
+			try {
+				for(int i = 0; i < 1000; i++) {
+					final Hyperrectangle queryBox = getQueryBox(random, tupleList);
+					final long[] expected = readers.get(0).getPositionsForRegion(queryBox);
+					Arrays.sort(expected);
+					
+					for(final RTreeMMFDirectReader reader : readers) {
+						final long[] positions = reader.getPositionsForRegion(queryBox);
+						Arrays.sort(positions);
+						Assert.assertArrayEquals("Query: " + queryBox, expected, positions);
+						
+						final long[] entryPositions = reader.getEntriesForRegion(queryBox)
+								.stream()
+								.mapToLong(SpatialIndexEntry::getValue)
+								.sorted()
+								.toArray();
+						Assert.assertArrayEquals(expected, entryPositions);
+					}
+				}
+				
+				for(final RTreeMMFDirectReader reader : readers) {
+					Assert.assertEquals(tupleList.size(), 
+							reader.getPositionsForRegion(Hyperrectangle.FULL_SPACE).length);
+				}
+			} finally {
+				readers.forEach(r -> r.close());
+			}
+		}
+	}
+	
+	/**
+	 * Compare the batch queries with the single queries
+	 * @throws Exception
+	 */
+	@Test(timeout=60000)
+	public void testBatchQuery() throws Exception {
+		final List<SpatialIndexEntry> tupleList = RTreeTestHelper.generateRandomTupleList(2, 5000);
+		tupleList.add(new SpatialIndexEntry(Hyperrectangle.FULL_SPACE, 4711));
+		
+		// Variable size nodes and fixed size nodes
+		for(final SpatialIndexBuilder index : Arrays.asList(new RTreeBuilder(16), new STRPackedRTreeBuilder(16))) {
+			index.bulkInsert(tupleList);
+			
+			final File tempFile = File.createTempFile("rtree-", "-test");
+			tempFile.deleteOnExit();
+			final RandomAccessFile raf = new RandomAccessFile(tempFile, "rw");		
+			index.writeToFile(raf);
+			raf.close();
+			
+			final RTreeMMFDirectReader reader = new RTreeMMFDirectReader();
+			final RandomAccessFile rafRead = new RandomAccessFile(tempFile, "r");
+			reader.readFromFile(rafRead);
+			rafRead.close();
+			
+			final Random random = new Random(1);
+			final List<Hyperrectangle> queryBoxes = new ArrayList<>();
+			
+			for(int i = 0; i < 500; i++) {
+				queryBoxes.add(getQueryBox(random, tupleList));
+			}
+			
+			queryBoxes.add(Hyperrectangle.FULL_SPACE);
+			
+			try {
+				final long[][] batchResult = reader.getPositionsForRegions(queryBoxes);
+				Assert.assertEquals(queryBoxes.size(), batchResult.length);
+				
+				for(int i = 0; i < queryBoxes.size(); i++) {
+					final long[] expected = reader.getPositionsForRegion(queryBoxes.get(i));
+					Arrays.sort(expected);
+					Arrays.sort(batchResult[i]);
+					Assert.assertArrayEquals("Query: " + queryBoxes.get(i), expected, batchResult[i]);
+				}
+				
+				Assert.assertEquals(0, reader.getPositionsForRegions(new ArrayList<>()).length);
+			} finally {
+				reader.close();
+			}
+		}
+	}
+	
+	/**
+	 * Get a query box, some queries use open intervals on the borders of existing boxes
+	 * @param random
+	 * @param tupleList
+	 * @return
+	 */
+	private Hyperrectangle getQueryBox(final Random random, final List<SpatialIndexEntry> tupleList) {
+		final Hyperrectangle entryBox = tupleList.get(random.nextInt(tupleList.size() - 1)).getBoundingBox();
+		
+		if(random.nextBoolean()) {
+			return entryBox.enlargeByAmount(random.nextDouble() * 10);
+		}
+		
+		// Touch the box only on the border
+		final DoubleInterval interval0 = new DoubleInterval(entryBox.getCoordinateHigh(0), 
+				entryBox.getCoordinateHigh(0) + 5, random.nextBoolean(), true);
+		final DoubleInterval interval1 = new DoubleInterval(entryBox.getCoordinateLow(1) - 5, 
+				entryBox.getCoordinateLow(1), true, random.nextBoolean());
+		
+		return new Hyperrectangle(Arrays.asList(interval0, interval1));
+	}
+	
+	@Test(timeout=60000, expected=StorageManagerException.class)
+	public void testQueryClosedReader() throws Exception {
+		final RTreeMMFDirectReader reader = new RTreeMMFDirectReader();
+		reader.getPositionsForRegion(new Hyperrectangle(1d, 2d));
+	}
+	
+	/**
+	 * Test the nearest neighbor search on the mapped nodes
+	 * @throws Exception
+	 */
+	@Test(timeout=60000)
+	public void testNearestNeighbors() throws Exception {
+		final List<SpatialIndexEntry> tupleList = RTreeTestHelper.generateRandomTupleList(2, 5000);
+		tupleList.add(new SpatialIndexEntry(Hyperrectangle.FULL_SPACE, 4711));
+		
+		final Hyperrectangle point = new Hyperrectangle(12d, 12d, -50d, -50d);
+		
+		// Variable size nodes and fixed size nodes
+		for(final SpatialIndexBuilder index : Arrays.asList(new RTreeBuilder(16), new STRPackedRTreeBuilder(16))) {
+			index.bulkInsert(tupleList);
+			
+			final File tempFile = File.createTempFile("rtree-", "-test");
+			tempFile.deleteOnExit();
+			final RandomAccessFile raf = new RandomAccessFile(tempFile, "rw");		
+			index.writeToFile(raf);
+			raf.close();
+			
+			for(final AbstractRTreeReader reader : Arrays.asList(new RTreeMMFDirectReader(), new RTreeMemoryReader())) {
+				final RandomAccessFile rafRead = new RandomAccessFile(tempFile, "r");
+				reader.readFromFile(rafRead);
+				rafRead.close();
+				
+				RTreeTestHelper.checkNearestNeighbors(tupleList, point, reader.getEntriesByDistance(point));
+				reader.close();
+			}
+		}
+	}
+}
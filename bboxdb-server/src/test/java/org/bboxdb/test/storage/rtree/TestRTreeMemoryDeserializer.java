@@ -22,6 +22,9 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.bboxdb.commons.math.Hyperrectangle;
 import org.bboxdb.storage.StorageManagerException;
@@ -29,7 +32,9 @@ import org.bboxdb.storage.sstable.spatialindex.SpatialIndexBuilder;
 import org.bboxdb.storage.sstable.spatialindex.SpatialIndexEntry;
 import org.bboxdb.storage.sstable.spatialindex.rtree.AbstractRTreeReader;
 import org.bboxdb.storage.sstable.spatialindex.rtree.RTreeBuilder;
+import org.bboxdb.storage.sstable.spatialindex.rtree.RTreeCompactSerializer;
 import org.bboxdb.storage.sstable.spatialindex.rtree.RTreeMemoryReader;
+import org.bboxdb.storage.sstable.spatialindex.rtree.STRPackedRTreeBuilder;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -168,4 +173,149 @@ public class TestRTreeMemoryDeserializer {
 		
 		RTreeTestHelper.queryIndex(tupleList, indexRead);
 	}
+	
+	/**
+	 * Test the decoding of the dynamic tree stored with fixed size nodes
+	 * @throws StorageManagerException
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	@Test(timeout=60000)
+	public void testReadCompactIndex() throws StorageManagerException, IOException, InterruptedException {
+		final List<SpatialIndexEntry> tupleList = RTreeTestHelper.generateRandomTupleList(2, 5000);
+		
+		final RTreeBuilder index = new RTreeBuilder();
+		index.bulkInsert(tupleList);
+		
+		final File tempFile = File.createTempFile("rtree-", "-test");
+		tempFile.deleteOnExit();
+		final RandomAccessFile raf = new RandomAccessFile(tempFile, "rw");
+		new RTreeCompactSerializer(index.getRootNode(), index.getMaxNodeSize()).writeToStream(raf);
+		raf.close();
+		
+		final AbstractRTreeReader indexRead = getRTreeReader();
+		final RandomAccessFile rafRead = new RandomAccessFile(tempFile, "r");
+		indexRead.readFromFile(rafRead);
+		rafRead.close();
+		
+		Assert.assertEquals(index.getMaxNodeSize(), indexRead.getMaxNodeSize());
+		RTreeTestHelper.queryIndex(tupleList, indexRead);
+		indexRead.close();
+	}
+	
+	/**
+	 * Test the encoding and the decoding of the packed index
+	 * @throws StorageManagerException
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	@Test(timeout=60000)
+	public void testSerializePackedIndex() throws StorageManagerException, IOException, InterruptedException {
+		final List<SpatialIndexEntry> tupleList = RTreeTestHelper.generateRandomTupleList(3, 5000);
+		tupleList.add(new SpatialIndexEntry(Hyperrectangle.FULL_SPACE, 5000));
+		
+		final SpatialIndexBuilder index = new STRPackedRTreeBuilder();
+		index.bulkInsert(tupleList);
+		
+		final File tempFile = File.createTempFile("rtree-", "-test");
+		tempFile.deleteOnExit();
+		final RandomAccessFile raf = new RandomAccessFile(tempFile, "rw");
+		index.writeToFile(raf);
+		raf.close();
+		
+		final AbstractRTreeReader indexRead = getRTreeReader();
+		final RandomAccessFile rafRead = new RandomAccessFile(tempFile, "r");
+		indexRead.readFromFile(rafRead);
+		rafRead.close();
+		
+		RTreeTestHelper.queryIndex(tupleList.subList(0, 5000), indexRead);
+		
+		final Hyperrectangle queryBox = new Hyperrectangle(1.0, 2.0, 1.0, 2.0, 1.0, 2.0);
+		final boolean fullSpaceFound = indexRead.getEntriesForRegion(queryBox).stream()
+				.anyMatch(e -> e.getValue() == 5000);
+		Assert.assertTrue(fullSpaceFound);
+		
+		indexRead.close();
+	}
+	
+	/**
+	 * Entries without a bounding box are found by all range queries on the index file
+	 * @throws StorageManagerException
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	@Test(timeout=60000)
+	public void testSerializeIndexWithFullSpace() throws StorageManagerException, IOException, InterruptedException {
+		final List<SpatialIndexEntry> tupleList = RTreeTestHelper.generateRandomTupleList(2, 5000);
+		tupleList.add(new SpatialIndexEntry(Hyperrectangle.FULL_SPACE, 5000));
+		
+		final SpatialIndexBuilder index = new RTreeBuilder(16);
+		index.bulkInsert(tupleList);
+		
+		final File tempFile = File.createTempFile("rtree-", "-test");
+		tempFile.deleteOnExit();
+		final RandomAccessFile raf = new RandomAccessFile(tempFile, "rw");
+		index.writeToFile(raf);
+		raf.close();
+		
+		final AbstractRTreeReader indexRead = getRTreeReader();
+		final RandomAccessFile rafRead = new RandomAccessFile(tempFile, "r");
+		indexRead.readFromFile(rafRead);
+		rafRead.close();
+		
+		RTreeTestHelper.queryIndex(tupleList.subList(0, 5000), indexRead);
+		
+		for(final SpatialIndexEntry entry : tupleList.subList(0, 1000)) {
+			final boolean fullSpaceFound = indexRead.getEntriesForRegion(entry.getBoundingBox())
+					.stream()
+					.anyMatch(e -> e.getValue() == 5000);
+			
+			Assert.assertTrue("Query: " + entry.getBoundingBox(), fullSpaceFound);
+		}
+		
+		indexRead.close();
+	}
+	
+	/**
+	 * Query the index concurrently
+	 * @throws Exception
+	 */
+	@Test(timeout=60000)
+	public void testConcurrentQueries() throws Exception {
+		final List<SpatialIndexEntry> tupleList = RTreeTestHelper.generateRandomTupleList(2, 5000);
+		
+		final SpatialIndexBuilder index = new RTreeBuilder();
+		index.bulkInsert(tupleList);
+		
+		final File tempFile = File.createTempFile("rtree-", "-test");
+		tempFile.deleteOnExit();
+		final RandomAccessFile raf = new RandomAccessFile(tempFile, "rw");		
+		index.writeToFile(raf);
+		raf.close();
+		
+		final AbstractRTreeReader indexRead = getRTreeReader();
+		final RandomAccessFile rafRead = new RandomAccessFile(tempFile, "r");
+		indexRead.readFromFile(rafRead);
+		rafRead.close();
+		
+		final ExecutorService executor = Executors.newFixedThreadPool(8);
+		
+		try {
+			final List<Future<Void>> futures = new ArrayList<>();
+			
+			for(int thread = 0; thread < 8; thread++) {
+				futures.add(executor.submit(() -> {
+					RTreeTestHelper.queryIndex(tupleList, indexRead);
+					return null;
+				}));
+			}
+			
+			for(final Future<Void> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+			indexRead.close();
+		}
+	}
 }
@@ -0,0 +1,199 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2022 the BBoxDB project
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package org.bboxdb.test.storage.rtree;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bboxdb.commons.math.Hyperrectangle;
+import org.bboxdb.storage.StorageManagerException;
+import org.bboxdb.storage.sstable.spatialindex.SpatialIndexBuilder;
+import org.bboxdb.storage.sstable.spatialindex.SpatialIndexEntry;
+import org.bboxdb.storage.sstable.spatialindex.rtree.AbstractRTreeReader;
+import org.bboxdb.storage.sstable.spatialindex.rtree.RTreeMemoryReader;
+import org.bboxdb.storage.sstable.spatialindex.rtree.STRPackedRTreeBuilder;
+import org.bboxdb.storage.sstable.spatialindex.rtree.mmf.RTreeMMFReader;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestSTRPackedRTreeIndex {
+	
+	@Test(timeout=60_000)
+	public void testQueryOnEmptytree() {
+		final SpatialIndexBuilder index = new STRPackedRTreeBuilder();
+		final List<? extends SpatialIndexEntry> result = index.getEntriesForRegion(new Hyperrectangle(1d, 1d, 2d, 2d));
+		Assert.assertTrue(result.isEmpty());
+	}
+	
+	/**
+	 * Test to query the index
+	 */
+	@Test(timeout=60_000)
+	public void testBoxQuery1d() {
+		final List<SpatialIndexEntry> tupleList = RTreeTestHelper.getEntryList();
+		
+		final SpatialIndexBuilder index = new STRPackedRTreeBuilder(4);
+		index.bulkInsert(tupleList);
+		RTreeTestHelper.queryIndex(tupleList, index);
+	}
+	
+	/**
+	 * Test to query the index
+	 */
+	@Test(timeout=60_000)
+	public void testBoxQuery2d() {
+		final List<SpatialIndexEntry> tupleList = RTreeTestHelper.generateRandomTupleList(2, 25_000);
+		
+		final SpatialIndexBuilder index = new STRPackedRTreeBuilder();
+		index.bulkInsert(tupleList);
+		RTreeTestHelper.queryIndex(tupleList, index);
+	}
+	
+	/**
+	 * Test to query the index
+	 */
+	@Test(timeout=60_000)
+	public void testBoxQuery3d() {
+		final List<SpatialIndexEntry> tupleList = RTreeTestHelper.generateRandomTupleList(3, 5000);
+		
+		final SpatialIndexBuilder index = new STRPackedRTreeBuilder(7);
+		index.bulkInsert(tupleList);
+		RTreeTestHelper.queryIndex(tupleList, index);
+	}
+	
+	/**
+	 * Test to query the index
+	 */
+	@Test(timeout=60_000)
+	public void testBoxQuery10d() {
+		final List<SpatialIndexEntry> tupleList = RTreeTestHelper.generateRandomTupleList(10, 5000);
+		
+		final SpatialIndexBuilder index = new STRPackedRTreeBuilder();
+		index.bulkInsert(tupleList);
+		RTreeTestHelper.queryIndex(tupleList, index);
+	}
+	
+	/**
+	 * Entries can be added after the tree was queried
+	 */
+	@Test(timeout=60_000)
+	public void testInsertAfterQuery() {
+		final List<SpatialIndexEntry> tupleList = RTreeTestHelper.generateRandomTupleList(2, 1000);
+		final List<SpatialIndexEntry> firstPart = new ArrayList<>(tupleList.subList(0, 500));
+		
+		final SpatialIndexBuilder index = new STRPackedRTreeBuilder(8);
+		index.bulkInsert(firstPart);
+		RTreeTestHelper.queryIndex(firstPart, index);
+		
+		index.bulkInsert(tupleList.subList(500, tupleList.size()));
+		RTreeTestHelper.queryIndex(tupleList, index);
+	}
+	
+	/**
+	 * Entries without a bounding box are found by all queries
+	 */
+	@Test(timeout=60_000)
+	public void testFullSpaceEntries() {
+		final List<SpatialIndexEntry> tupleList = RTreeTestHelper.generateRandomTupleList(2, 1000);
+		final SpatialIndexEntry fullSpaceEntry = new SpatialIndexEntry(Hyperrectangle.FULL_SPACE, 4711);
+		tupleList.add(fullSpaceEntry);
+
+		final SpatialIndexBuilder index = new STRPackedRTreeBuilder(8);
+		index.bulkInsert(tupleList);
+		
+		final List<? extends SpatialIndexEntry> result 
+			= index.getEntriesForRegion(new Hyperrectangle(-1000d, -999d, -1000d, -999d));
+		Assert.assertTrue(result.contains(fullSpaceEntry));
+		
+		// The remaining entries are not affected
+		tupleList.remove(fullSpaceEntry);
+		RTreeTestHelper.queryIndex(tupleList, index);
+	}
+	
+	/**
+	 * Test the covering of the nodes
+	 */
+	@Test(timeout=60_000)
+	public void testCovering() {
+		final List<SpatialIndexEntry> tupleList = RTreeTestHelper.generateRandomTupleList(3, 5000);
+		
+		final STRPackedRTreeBuilder index = new STRPackedRTreeBuilder();
+		index.bulkInsert(tupleList);
+		index.testCovering();		
+	}
+	
+	@Test(timeout=60_000, expected=IllegalArgumentException.class)
+	public void testWrongNodeSize() {
+		new STRPackedRTreeBuilder(1);
+	}
+	
+	/**
+	 * Test the serialization of the packed tree
+	 * @throws StorageManagerException
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	@Test(timeout=60_000)
+	public void testSerializeIndex() throws StorageManagerException, IOException, InterruptedException {
+		final List<SpatialIndexEntry> tupleList = RTreeTestHelper.generateRandomTupleList(2, 5000);
+		
+		final SpatialIndexBuilder index = new STRPackedRTreeBuilder(12);
+		index.bulkInsert(tupleList);
+		
+		final File tempFile = File.createTempFile("rtree-", "-test");
+		tempFile.deleteOnExit();
+		final RandomAccessFile raf = new RandomAccessFile(tempFile, "rw");		
+		index.writeToFile(raf);
+		raf.close();
+		
+		final List<AbstractRTreeReader> readers = List.of(new RTreeMemoryReader(), new RTreeMMFReader());
+		
+		for(final AbstractRTreeReader indexRead : readers) {
+			final RandomAccessFile rafRead = new RandomAccessFile(tempFile, "r");
+			indexRead.readFromFile(rafRead);
+			rafRead.close();
+			
+			RTreeTestHelper.queryIndex(tupleList, indexRead);
+			indexRead.close();
+		}
+	}
+	
+	/**
+	 * Test the nearest neighbor search
+	 */
+	@Test(timeout=60_000)
+	public void testNearestNeighbors() {
+		final List<SpatialIndexEntry> tupleList = RTreeTestHelper.generateRandomTupleList(2, 5000);
+		tupleList.add(new SpatialIndexEntry(Hyperrectangle.FULL_SPACE, 4711));
+		
+		final SpatialIndexBuilder index = new STRPackedRTreeBuilder(16);
+		index.bulkInsert(tupleList);
+		
+		final Hyperrectangle point = new Hyperrectangle(12d, 12d, -50d, -50d);
+		RTreeTestHelper.checkNearestNeighbors(tupleList, point, index.getEntriesByDistance(point));
+		
+		final Hyperrectangle box = new Hyperrectangle(-500d, 500d, 1000d, 2000d);
+		RTreeTestHelper.checkNearestNeighbors(tupleList, box, index.getEntriesByDistance(box));
+		
+		final SpatialIndexBuilder emptyIndex = new STRPackedRTreeBuilder();
+		Assert.assertFalse(emptyIndex.getEntriesByDistance(point).hasNext());
+	}
+}
@@ -17,8 +17,6 @@
  *******************************************************************************/
 package org.bboxdb.tools;
 
-import java.io.IOException;
-import java.nio.BufferUnderflowException;
 import java.util.List;
 
 import org.bboxdb.storage.StorageManagerException;
@@ -27,7 +25,6 @@ import org.bboxdb.storage.entity.TupleStoreName;
 import org.bboxdb.storage.sstable.reader.SSTableFacade;
 import org.bboxdb.storage.sstable.reader.SSTableKeyIndexReader;
 import org.bboxdb.storage.sstable.reader.SSTableReader;
-import org.bboxdb.storage.util.TupleHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -85,7 +82,7 @@ public class SSTableExaminer implements Runnable {
 			final SSTableReader ssTableReader = sstableFacade.getSsTableReader();
 			final SSTableKeyIndexReader ssTableIndexReader = sstableFacade.getSsTableKeyIndexReader();
 
-			fullTableScan(ssTableReader);
+			fullTableScan(ssTableIndexReader);
 			
 			if(! WILDCARD_KEY.equals(examineKey)) {
 				internalScan(ssTableReader);
@@ -110,11 +107,11 @@ public class SSTableExaminer implements Runnable {
 			throws StorageManagerException {
 		
 		System.out.println("Step3: Seach via index");
-		final List<Integer> positions = ssTableIndexReader.getPositionsForTuple(examineKey);
+		final List<Long> positions = ssTableIndexReader.getPositionsForTuple(examineKey);
 		System.out.println("Got index pos: " + positions);
 		
 		// Tuple found
-		for(final Integer position : positions) {
+		for(final Long position : positions) {
 			System.out.println(ssTableReader.getTupleAtPosition(position));
 		}
 	}
@@ -133,28 +130,22 @@ public class SSTableExaminer implements Runnable {
 	}
 
 	/**
-	 * Perform a full table scan
-	 * @param ssTableReader
-	 * @throws IOException
+	 * Perform a full table scan (the tuples are read in the order of the index, 
+	 * this works for uncompressed and block compressed SSTables)
+	 * @param ssTableIndexReader
 	 */
-	protected void fullTableScan(final SSTableReader ssTableReader) throws IOException {
+	protected void fullTableScan(final SSTableKeyIndexReader ssTableIndexReader) {
 		
 		System.out.println("Step 1: Looping over SSTable and searching for key: " + examineKey);
 		
 		int keys = 0;
 		
-		while(true) {
-			try {
-				final Tuple tuple = TupleHelper.decodeTuple(ssTableReader.getMemory());
-				if(tuple.getKey().equals(examineKey) || WILDCARD_KEY.equals(examineKey)) {
-					System.out.println(tuple);
-				}
-				
-				keys++;
-			} catch (BufferUnderflowException e) {
-				// Loop until the buffer is empty
-				break;
-			}			
+		for(final Tuple tuple : ssTableIndexReader) {
+			if(tuple.getKey().equals(examineKey) || WILDCARD_KEY.equals(examineKey)) {
+				System.out.println(tuple);
+			}
+			
+			keys++;
 		}
 		
 		System.out.println("Read " + keys + " tuples during scan");